@@ -0,0 +1,236 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.aaproperties;
+
+import org.biojava.nbio.aaproperties.CommandPrompt.PropertyName;
+import org.biojava.nbio.core.util.BoundedTaskQueue;
+import org.biojava.nbio.core.util.ConcurrencyTools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Computes peptide properties for many sequences in parallel. Each sequence is counted once into a
+ * {@link PeptideComposition} from which all the requested properties are derived, and the results are
+ * columns of primitive values, one per property.
+ * <p/>
+ * Example:
+ * <pre>
+ * BatchPeptideProperties batch = new BatchPeptideProperties(
+ *     Arrays.asList(PropertyName.MolecularWeight, PropertyName.IsoelectricPoint));
+ * batch.compute(new FileInputStream("proteome.fasta"), System.out, "\t", 4);
+ * </pre>
+ *
+ * @since 5.1.2
+ * @see PeptideComposition
+ */
+public class BatchPeptideProperties {
+
+	/** Number of FASTA records computed by one task */
+	private static final int BATCH_SIZE = 1000;
+
+	private final List<PropertyName> properties;
+
+	/**
+	 * Computes all the properties of {@link PropertyName}.
+	 */
+	public BatchPeptideProperties() {
+		this(Arrays.asList(PropertyName.values()));
+	}
+
+	/**
+	 * @param properties
+	 * 		the properties to compute, in the order of the columns
+	 */
+	public BatchPeptideProperties(List<PropertyName> properties) {
+		this.properties = new ArrayList<PropertyName>(properties);
+	}
+
+	/**
+	 * @return the properties computed, in the order of the columns
+	 */
+	public List<PropertyName> getProperties() {
+		return properties;
+	}
+
+	/**
+	 * Returns a property of a composition, with the same meaning as the column of the same name
+	 * in the output of {@link CommandPrompt}.
+	 *
+	 * @param composition
+	 * 		the composition of a sequence
+	 * @param property
+	 * 		the property to compute
+	 * @return the value of the property
+	 */
+	public static double getProperty(PeptideComposition composition, PropertyName property) {
+		switch (property) {
+		case MolecularWeight: return composition.getMolecularWeight();
+		case Absorbance_True: return composition.getAbsorbance(true);
+		case Absorbance_False: return composition.getAbsorbance(false);
+		case ExtinctionCoefficient_True: return composition.getExtinctionCoefficient(true);
+		case ExtinctionCoefficient_False: return composition.getExtinctionCoefficient(false);
+		case InstabilityIndex: return composition.getInstabilityIndex();
+		case ApliphaticIndex: return composition.getApliphaticIndex();
+		case AverageHydropathyValue: return composition.getAvgHydropathy();
+		case IsoelectricPoint: return composition.getIsoelectricPoint();
+		case NetCharge_pH_7: return composition.getNetCharge();
+		default: return composition.getComposition(property.name().charAt(0));
+		}
+	}
+
+	/**
+	 * Computes the properties of the sequences in parallel.
+	 *
+	 * @param sequences
+	 * 		protein sequences
+	 * @return the values of each property, indexed by column then by sequence
+	 * @throws InterruptedException
+	 * 		if interrupted while waiting for the results
+	 */
+	public double[][] compute(List<? extends CharSequence> sequences) throws InterruptedException {
+		double[][] columns = new double[properties.size()][sequences.size()];
+		List<Future<double[][]>> futures = new ArrayList<Future<double[][]>>();
+		for (int start = 0; start < sequences.size(); start += BATCH_SIZE) {
+			futures.add(ConcurrencyTools.submit(computeTask(sequences.subList(start, Math.min(start + BATCH_SIZE, sequences.size())))));
+		}
+		List<double[][]> batches = ConcurrencyTools.getAll(futures);
+		for (int i = 0; i < batches.size(); i++) {
+			double[][] batch = batches.get(i);
+			for (int column = 0; column < columns.length; column++) {
+				System.arraycopy(batch[column], 0, columns[column], i * BATCH_SIZE, batch[column].length);
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Reads the protein sequences of a FASTA stream and writes their properties as a table, with the
+	 * header line and the formatting of {@link CommandPrompt}. The sequences are computed in parallel
+	 * batches while the stream is read, and written in the order of the stream. Lower-case residues
+	 * are read as upper-case.
+	 *
+	 * @param fasta
+	 * 		protein sequences in FASTA format
+	 * @param output
+	 * 		where to write the table
+	 * @param delimiter
+	 * 		the delimiter of the columns
+	 * @param decimalPlace
+	 * 		the number of decimal places of the values
+	 * @throws IOException
+	 * 		if the stream cannot be read
+	 */
+	public void compute(InputStream fasta, PrintStream output, String delimiter, int decimalPlace) throws IOException {
+		output.print("SequenceName");
+		for (PropertyName property : properties) {
+			output.print(delimiter);
+			output.print(property.toString());
+		}
+		output.println();
+
+		// keep a bounded number of batches in flight so that memory does not grow with the stream
+		BoundedTaskQueue<double[][]> tasks = new BoundedTaskQueue<double[][]>();
+		Deque<List<String>> pendingHeaders = new ArrayDeque<List<String>>();
+		BufferedReader br = new BufferedReader(new InputStreamReader(fasta));
+		try {
+			List<String> headers = new ArrayList<String>();
+			List<String> sequences = new ArrayList<String>();
+			String header = "";
+			StringBuilder sb = new StringBuilder();
+			String line;
+			do {
+				line = br.readLine();
+				if (line != null) {
+					line = line.trim();
+				}
+				if (line == null || line.startsWith(">")) {
+					if (sb.length() > 0) {
+						headers.add(header);
+						sequences.add(sb.toString().toUpperCase());
+						sb.setLength(0);
+					}
+					if (line != null) {
+						header = line.substring(1);
+					}
+					if (sequences.size() == BATCH_SIZE || (line == null && !sequences.isEmpty())) {
+						while (tasks.isFull()) {
+							print(output, pendingHeaders.removeFirst(), tasks.take(), delimiter, decimalPlace);
+						}
+						pendingHeaders.add(headers);
+						tasks.submit(computeTask(sequences));
+						headers = new ArrayList<String>();
+						sequences = new ArrayList<String>();
+					}
+				} else if (line.length() > 0 && !line.startsWith(";")) {
+					sb.append(line);
+				}
+			} while (line != null);
+			while (!tasks.isEmpty()) {
+				print(output, pendingHeaders.removeFirst(), tasks.take(), delimiter, decimalPlace);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while computing peptide properties");
+		} finally {
+			tasks.cancel();
+			br.close();
+		}
+		output.flush();
+	}
+
+	private Callable<double[][]> computeTask(final List<? extends CharSequence> sequences) {
+		return new Callable<double[][]>() {
+			@Override
+			public double[][] call() {
+				double[][] columns = new double[properties.size()][sequences.size()];
+				for (int i = 0; i < sequences.size(); i++) {
+					PeptideComposition composition = new PeptideComposition(sequences.get(i));
+					for (int column = 0; column < columns.length; column++) {
+						columns[column][i] = getProperty(composition, properties.get(column));
+					}
+				}
+				return columns;
+			}
+		};
+	}
+
+	private static void print(PrintStream output, List<String> headers, double[][] columns, String delimiter, int decimalPlace) {
+		for (int i = 0; i < headers.size(); i++) {
+			output.print(headers.get(i).replace(delimiter, "_"));
+			for (double[] column : columns) {
+				output.print(delimiter + Utils.roundToDecimals(column[i], decimalPlace));
+			}
+			output.println();
+		}
+	}
+}
@@ -0,0 +1,465 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.aaproperties;
+
+import org.biojava.nbio.core.sequence.compound.AminoAcidCompound;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The residue counts of a protein sequence, computed in a single pass, from which all the properties
+ * of {@link IPeptideProperties} are derived without building a ProteinSequence or any map.
+ * <p/>
+ * The sequence is read as the adaptor methods of {@link PeptideProperties} read it: only the 20 standard
+ * amino acid codes, in upper case, are residues, any other character is treated as the '-' that
+ * {@link Utils#checkSequence(String)} replaces it with, but no warning is logged.
+ *
+ * @since 5.1.2
+ * @see PeptideProperties
+ * @see BatchPeptideProperties
+ */
+public final class PeptideComposition {
+
+	private static final double WATER_MOLECULAR_WEIGHT = 1.0079 + 17.0073;
+
+	/** Values indexed by residue - 'A', NaN for characters that are not standard amino acids */
+	private static final double[] MOLECULAR_WEIGHT = table(Constraints.aa2MolecularWeight);
+	private static final double[] HYDROPATHICITY = table(Constraints.aa2Hydrophathicity);
+	private static final double[] EXTINCTION_COEFFICIENT = table(Constraints.aa2ExtinctionCoefficient);
+	private static final double[] PKA = table(Constraints.aa2PKa);
+	private static final double[] N_TERMINAL_PKA = table(Constraints.aa2NTerminalPka);
+	private static final double[] C_TERMINAL_PKA = table(Constraints.aa2CTerminalPka);
+
+	/** Instability of each dipeptide, indexed by 26 * (first - 'A') + (second - 'A') */
+	private static final double[] INSTABILITY = new double[26 * 26];
+
+	static {
+		for (Map.Entry<String, Double> entry : Constraints.diAA2Instability.entrySet()) {
+			String dipeptide = entry.getKey();
+			INSTABILITY[26 * (dipeptide.charAt(0) - 'A') + dipeptide.charAt(1) - 'A'] = entry.getValue();
+		}
+	}
+
+	/*
+	 * ExPASy pK values, as in PeptidePropertiesImpl: each row corresponds to an amino acid
+	 * starting with Ala, the columns are Ct, Nt and Sm.
+	 */
+	private static final double[][] EXPASY_PK = {
+			{3.55, 7.59, 0.0},  // A
+			{3.55, 7.50, 0.0},  // B
+			{3.55, 7.50, 9.00}, // C
+			{3.55, 7.50, 4.05}, // D
+			{3.55, 7.70, 4.45}, // E
+			{3.55, 7.50, 0}, // F
+			{3.55, 7.50, 0}, // G
+			{3.55, 7.50, 5.98}, // H
+			{3.55, 7.50, 0.0}, // I
+			{0.0, 0.0, 0.0}, // J
+			{3.55, 7.50, 10.00}, // K
+			{3.55, 7.50, 0.0}, // L
+			{3.55, 7.00, 0.0},// M
+			{3.55, 7.50, 0.0},// N
+			{0.00, 0.00, 0.0},// O
+			{3.55, 8.36, 0.0},// P
+			{3.55, 7.50, 0.0}, // Q
+			{3.55, 7.50, 12.0},// R
+			{3.55, 6.93, 0.0},// S
+			{3.55, 6.82, 0.0}, // T
+			{0.00, 0.00, 0.0}, // U
+			{3.55, 7.44, 0.0},// V
+			{3.55, 7.50, 0.0},// W
+			{3.55, 7.50, 0.0},// X
+			{3.55, 7.50, 10.00},// Y
+			{3.55, 7.50, 0.0}}; // Z
+
+	private static final double PH_MIN = 0.0; /* minimum pH value */
+	private static final double PH_MAX = 14.0; /* maximum pH value */
+	private static final double MAXLOOP = 2000.0; /* maximum number of iterations */
+	private static final double EPSI = 0.0001; /* desired precision */
+
+	private final int[] counts = new int[26];
+	private final int length;
+	private final int validLength;
+	private final double instability;
+
+	/** First and last residue, -1 if the first or last character is not a residue */
+	private final int nTerminal;
+	private final int cTerminal;
+
+	/** First and last residue within the 25 first or 24 last characters, as searched by ExPASy */
+	private final int nTerminalExpasy;
+	private final int cTerminalExpasy;
+
+	/**
+	 * Counts the residues of sequence.
+	 *
+	 * @param sequence
+	 * 		a protein sequence
+	 */
+	public PeptideComposition(CharSequence sequence) {
+		length = sequence.length();
+		int valid = 0;
+		double sum = 0.0;
+		int previous = -1;
+		for (int i = 0; i < length; i++) {
+			int residue = residue(sequence.charAt(i));
+			if (residue >= 0) {
+				counts[residue]++;
+				valid++;
+				if (previous >= 0) {
+					sum += INSTABILITY[26 * previous + residue];
+				}
+			}
+			previous = residue;
+		}
+		validLength = valid;
+		instability = sum;
+
+		nTerminal = length > 0 ? residue(sequence.charAt(0)) : -1;
+		cTerminal = length > 0 ? residue(sequence.charAt(length - 1)) : -1;
+
+		int n = -1;
+		for (int i = 0; n < 0 && i < 25 && i < length; i++) {
+			n = residue(sequence.charAt(i));
+		}
+		nTerminalExpasy = n;
+		int c = -1;
+		for (int i = 1; c < 0 && i < 25 && i <= length; i++) {
+			c = residue(sequence.charAt(length - i));
+		}
+		cTerminalExpasy = c;
+	}
+
+	/**
+	 * @return the number of characters of the sequence
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the number of standard amino acids in the sequence
+	 */
+	public int getValidLength() {
+		return validLength;
+	}
+
+	/**
+	 * @param aminoAcidCode
+	 * 		a standard amino acid code
+	 * @return the number of occurrences of aminoAcidCode in the sequence
+	 */
+	public int getCount(char aminoAcidCode) {
+		int residue = residue(aminoAcidCode);
+		return residue < 0 ? 0 : counts[residue];
+	}
+
+	/**
+	 * @return the number of occurrences of each letter in the sequence, indexed by letter - 'A',
+	 * 		0 for the letters that are not standard amino acid codes
+	 */
+	public int[] getCounts() {
+		return Arrays.copyOf(counts, counts.length);
+	}
+
+	/**
+	 * @return the total molecular weight of the residues + weight of water molecule, 0 if there are no residues
+	 * @see IPeptideProperties#getMolecularWeight(org.biojava.nbio.core.sequence.ProteinSequence)
+	 */
+	public double getMolecularWeight() {
+		double value = sum(MOLECULAR_WEIGHT);
+		if (value == 0)
+			return value;
+		else
+			return value + WATER_MOLECULAR_WEIGHT;
+	}
+
+	/**
+	 * @param assumeCysReduced
+	 * 		true if Cys are assumed to be reduced and false if Cys are assumed to form cystines
+	 * @return the extinction coefficient
+	 * @see IPeptideProperties#getExtinctionCoefficient(org.biojava.nbio.core.sequence.ProteinSequence, boolean)
+	 */
+	public double getExtinctionCoefficient(boolean assumeCysReduced) {
+		double eProt = counts['Y' - 'A'] * EXTINCTION_COEFFICIENT['Y' - 'A'] +
+				counts['W' - 'A'] * EXTINCTION_COEFFICIENT['W' - 'A'];
+		if (!assumeCysReduced) {
+			//two Cys form a cystine
+			eProt += counts['C' - 'A'] / 2 * EXTINCTION_COEFFICIENT['C' - 'A'];
+		}
+		return eProt;
+	}
+
+	/**
+	 * @param assumeCysReduced
+	 * 		true if Cys are assumed to be reduced and false if Cys are assumed to form cystines
+	 * @return the absorbance, 0 if there are no residues
+	 * @see IPeptideProperties#getAbsorbance(org.biojava.nbio.core.sequence.ProteinSequence, boolean)
+	 */
+	public double getAbsorbance(boolean assumeCysReduced) {
+		double mw = getMolecularWeight();
+		if (mw == 0.0) {
+			return 0.0;
+		}
+		return getExtinctionCoefficient(assumeCysReduced) / mw;
+	}
+
+	/**
+	 * @return the instability index, 0 if there are no residues
+	 * @see IPeptideProperties#getInstabilityIndex(org.biojava.nbio.core.sequence.ProteinSequence)
+	 */
+	public double getInstabilityIndex() {
+		if (validLength == 0) {
+			return 0.0;
+		}
+		return instability * 10.0 / validLength;
+	}
+
+	/**
+	 * @return the aliphatic index
+	 * @see IPeptideProperties#getApliphaticIndex(org.biojava.nbio.core.sequence.ProteinSequence)
+	 */
+	public double getApliphaticIndex() {
+		final double a = 2.9;
+		final double b = 3.9;
+		double xAla = getComposition('A');
+		double xVal = getComposition('V');
+		double xIle = getComposition('I');
+		double xLeu = getComposition('L');
+		return (xAla + (a * xVal) + (b * (xIle + xLeu))) * 100;
+	}
+
+	/**
+	 * @return the average hydropathy value, 0 if there are no residues
+	 * @see IPeptideProperties#getAvgHydropathy(org.biojava.nbio.core.sequence.ProteinSequence)
+	 */
+	public double getAvgHydropathy() {
+		if (validLength == 0) {
+			return 0.0;
+		}
+		return sum(HYDROPATHICITY) / validLength;
+	}
+
+	/**
+	 * @return the isoelectric point using ExPASy pKa values
+	 * @see IPeptideProperties#getIsoelectricPoint(org.biojava.nbio.core.sequence.ProteinSequence)
+	 */
+	public double getIsoelectricPoint() {
+		return getIsoelectricPoint(true);
+	}
+
+	/**
+	 * @param useExpasyValues
+	 * 		whether to use ExPASy pKa values (true) or Innovagen pKa values (false)
+	 * @return the isoelectric point
+	 * @see IPeptideProperties#getIsoelectricPoint(org.biojava.nbio.core.sequence.ProteinSequence, boolean)
+	 */
+	public double getIsoelectricPoint(boolean useExpasyValues) {
+		if (useExpasyValues) {
+			return getIsoelectricPointExpasy(counts, nTerminalExpasy, cTerminalExpasy);
+		} else {
+			return getIsoelectricPointInnovagen(counts, nTerminal, cTerminal);
+		}
+	}
+
+	/**
+	 * @return the net charge at pH 7 using ExPASy pKa values
+	 * @see IPeptideProperties#getNetCharge(org.biojava.nbio.core.sequence.ProteinSequence)
+	 */
+	public double getNetCharge() {
+		return getNetCharge(true, 7.0);
+	}
+
+	/**
+	 * @param useExpasyValues
+	 * 		whether to use ExPASy pKa values (true) or Innovagen pKa values (false)
+	 * @param pHPoint
+	 * 		the pH value to use for computation of the net charge
+	 * @return the net charge at pHPoint
+	 * @see IPeptideProperties#getNetCharge(org.biojava.nbio.core.sequence.ProteinSequence, boolean, double)
+	 */
+	public double getNetCharge(boolean useExpasyValues, double pHPoint) {
+		if (useExpasyValues) {
+			return getNetChargeExpasy(counts, nTerminal, cTerminal, pHPoint);
+		} else {
+			return getNetChargeInnovagen(counts, nTerminal, cTerminal, pHPoint);
+		}
+	}
+
+	/**
+	 * @param aminoAcidCode
+	 * 		a standard amino acid code
+	 * @return the number of occurrences of aminoAcidCode divided by the length of the sequence
+	 * @see IPeptideProperties#getEnrichment(org.biojava.nbio.core.sequence.ProteinSequence, AminoAcidCompound)
+	 */
+	public double getEnrichment(char aminoAcidCode) {
+		return (double) getCount(aminoAcidCode) / length;
+	}
+
+	/**
+	 * @param aminoAcidCode
+	 * 		a standard amino acid code
+	 * @return the number of occurrences of aminoAcidCode divided by the number of residues, 0 if there are no residues
+	 * @see IPeptideProperties#getAAComposition(org.biojava.nbio.core.sequence.ProteinSequence)
+	 */
+	public double getComposition(char aminoAcidCode) {
+		if (validLength == 0) {
+			return 0.0;
+		}
+		return (double) getCount(aminoAcidCode) / validLength;
+	}
+
+	private double sum(double[] values) {
+		double sum = 0.0;
+		for (int i = 0; i < 26; i++) {
+			if (counts[i] > 0) {
+				sum += counts[i] * values[i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * @return c - 'A' if c is a standard amino acid code, else -1
+	 */
+	private static int residue(char c) {
+		int residue = c - 'A';
+		if (residue < 0 || residue >= 26 || Double.isNaN(MOLECULAR_WEIGHT[residue])) {
+			return -1;
+		}
+		return residue;
+	}
+
+	private static double[] table(Map<AminoAcidCompound, Double> values) {
+		double[] table = new double[26];
+		Arrays.fill(table, Double.NaN);
+		for (Map.Entry<AminoAcidCompound, Double> entry : values.entrySet()) {
+			table[entry.getKey().getShortName().charAt(0) - 'A'] = entry.getValue();
+		}
+		return table;
+	}
+
+	private static double exp10(double pka) {
+		return Math.pow(10, pka);
+	}
+
+	/**
+	 * Bisection for the pH where the ExPASy net charge is 0.
+	 *
+	 * @param comp the number of occurrences of each letter, indexed by letter - 'A'
+	 * @param nTermResidue letter - 'A' of the N-terminal residue, out of range if there is none
+	 * @param cTermResidue letter - 'A' of the C-terminal residue, out of range if there is none
+	 */
+	static double getIsoelectricPointExpasy(int[] comp, int nTermResidue, int cTermResidue) {
+		double phMin = PH_MIN;
+		double phMax = PH_MAX;
+
+		double phMid = 0.0;
+		double charge = 1.0;
+		for (int i = 0; i < MAXLOOP && (phMax - phMin) > EPSI; i++){
+			phMid = phMin + (phMax - phMin) / 2.0;
+
+			charge = getNetChargeExpasy(comp, nTermResidue, cTermResidue, phMid);
+
+			if (charge > 0.0) phMin = phMid;
+			else phMax = phMid;
+		}
+		return phMid;
+	}
+
+	static double getNetChargeExpasy(int[] comp, int nTermResidue, int cTermResidue, double ph) {
+		double cter = 0.0;
+		if(cTermResidue >= 0 && cTermResidue < 26) cter = exp10(-EXPASY_PK[cTermResidue][0]) / (exp10(-EXPASY_PK[cTermResidue][0]) + exp10(-ph));
+		double nter = 0.0;
+		if(nTermResidue >= 0 && nTermResidue < 26) nter = exp10(-ph) / (exp10(-EXPASY_PK[nTermResidue][1]) + exp10(-ph));
+
+		double carg = comp['R' - 'A'] * exp10(-ph) / (exp10(-EXPASY_PK['R' - 'A'][2]) + exp10(-ph));
+		double chis = comp['H' - 'A'] * exp10(-ph) / (exp10(-EXPASY_PK['H' - 'A'][2]) + exp10(-ph));
+		double clys = comp['K' - 'A'] * exp10(-ph) / (exp10(-EXPASY_PK['K' - 'A'][2]) + exp10(-ph));
+
+		double casp = comp['D' - 'A'] * exp10(-EXPASY_PK['D' - 'A'][2]) / (exp10(-EXPASY_PK['D' - 'A'][2]) + exp10(-ph));
+		double cglu = comp['E' - 'A'] * exp10(-EXPASY_PK['E' - 'A'][2]) / (exp10(-EXPASY_PK['E' - 'A'][2]) + exp10(-ph));
+
+		double ccys = comp['C' - 'A'] * exp10(-EXPASY_PK['C' - 'A'][2]) / (exp10(-EXPASY_PK['C' - 'A'][2]) + exp10(-ph));
+		double ctyr = comp['Y' - 'A'] * exp10(-EXPASY_PK['Y' - 'A'][2]) / (exp10(-EXPASY_PK['Y' - 'A'][2]) + exp10(-ph));
+
+		return (carg + clys + chis + nter) - (casp + cglu + ctyr + ccys + cter);
+	}
+
+	/**
+	 * Bisection for the pH where the Innovagen net charge is 0.
+	 *
+	 * @param comp the number of occurrences of each letter, indexed by letter - 'A'
+	 * @param nTerminal letter - 'A' of the N-terminal residue, -1 if there is none
+	 * @param cTerminal letter - 'A' of the C-terminal residue, -1 if there is none
+	 */
+	static double getIsoelectricPointInnovagen(int[] comp, int nTerminal, int cTerminal) {
+		double currentPH = 7.0;
+		double changeSize = 7.0;
+		double margin;
+		final double difference = 0.0001;
+
+		while(true){
+			margin = getNetChargeInnovagen(comp, nTerminal, cTerminal, currentPH);
+			//Within allowed difference
+			if(margin <= difference && margin >= -difference) break;
+			changeSize /= 2.0;
+			if(margin > 0){
+				currentPH += changeSize;
+			}else{
+				currentPH -= changeSize;
+			}
+		}
+		return currentPH;
+	}
+
+	static double getNetChargeInnovagen(int[] comp, int nTerminal, int cTerminal, double ph) {
+		//Lys => K, Arg => R, His => H
+		//Asp => D, Glu => E, Cys => C, Tyr => Y
+		double nTerminalCharge = 0.0;
+		if(nTerminal >= 0 && nTerminal < 26 && !Double.isNaN(N_TERMINAL_PKA[nTerminal])){
+			nTerminalCharge = getPosCharge(N_TERMINAL_PKA[nTerminal], ph);
+		}
+
+		double cTerminalCharge = 0.0;
+		if(cTerminal >= 0 && cTerminal < 26 && !Double.isNaN(C_TERMINAL_PKA[cTerminal])){
+			cTerminalCharge = getNegCharge(C_TERMINAL_PKA[cTerminal], ph);
+		}
+
+		double kCharge = comp['K' - 'A'] * getPosCharge(PKA['K' - 'A'], ph);
+		double rCharge = comp['R' - 'A'] * getPosCharge(PKA['R' - 'A'], ph);
+		double hCharge = comp['H' - 'A'] * getPosCharge(PKA['H' - 'A'], ph);
+		double dCharge = comp['D' - 'A'] * getNegCharge(PKA['D' - 'A'], ph);
+		double eCharge = comp['E' - 'A'] * getNegCharge(PKA['E' - 'A'], ph);
+		double cCharge = comp['C' - 'A'] * getNegCharge(PKA['C' - 'A'], ph);
+		double yCharge = comp['Y' - 'A'] * getNegCharge(PKA['Y' - 'A'], ph);
+		return (nTerminalCharge + kCharge + rCharge + hCharge) - (dCharge + eCharge + cCharge + yCharge + cTerminalCharge);
+	}
+
+	private static double getPosCharge(double pka, double ph){
+		return Math.pow(10, pka) / (Math.pow(10, pka) + Math.pow(10, ph));
+	}
+
+	private static double getNegCharge(double pka, double ph){
+		return Math.pow(10, ph) / (Math.pow(10, pka) + Math.pow(10, ph));
+	}
+}
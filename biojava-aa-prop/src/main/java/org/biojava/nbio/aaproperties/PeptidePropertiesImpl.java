@@ -287,80 +287,36 @@ public class PeptidePropertiesImpl implements IPeptideProperties{
 	}
 
 	private double getIsoelectricPointInnovagen(ProteinSequence sequence){
-		double currentPH = 7.0;
-		double changeSize = 7.0;
 		String sequenceString = sequence.toString();
-		char nTerminalChar = sequenceString.charAt(0);
-		char cTerminalChar = sequenceString.charAt(sequenceString.length() - 1);
-
-		Map<AminoAcidCompound, Integer> chargedAA2Count = this.getChargedAACount(sequence);
-		double margin;
-		final double difference = 0.0001;
-
-		while(true){
-			margin = this.getNetChargeInnovagen(chargedAA2Count, currentPH, nTerminalChar, cTerminalChar);
-			//Within allowed difference
-			if(margin <= difference && margin >= -difference) break;
-			changeSize /= 2.0;
-			if(margin > 0){
-				currentPH += changeSize;
-			}else{
-				currentPH -= changeSize;
-			}
+		int nTerminal = getLetterIndex(sequenceString.charAt(0));
+		int cTerminal = getLetterIndex(sequenceString.charAt(sequenceString.length() - 1));
+		return PeptideComposition.getIsoelectricPointInnovagen(getLetterCount(sequenceString), nTerminal, cTerminal);
+	}
+
+	/**
+	 * @return the number of occurrences of each letter regardless of case, indexed by letter - 'A'
+	 */
+	private int[] getLetterCount(String sequence){
+		int[] comp = new int[26];
+		for(int i = 0; i < sequence.length(); i++){
+			int index = getLetterIndex(sequence.charAt(i));
+			if(index >= 0) comp[index]++;
 		}
-		return currentPH;
+		return comp;
 	}
 
-	/*
-	 *  Pseudo code obtained from email correspondance with ExPASy Helpdesk, Gregoire Rossier
+	/**
+	 * @return letter - 'A' regardless of case, -1 if c is not a letter
 	 */
-	//
-	// Table of pk values :
-	// Note: the current algorithm does not use the last two columns.
-	// Each row corresponds to an amino acid starting with Ala. J, O and U are
-	// inexistant, but here only in order to have the complete alphabet.
-	//
-	// Ct Nt Sm Sc Sn
-	//
-	private final double[][] cPk = {
-			{3.55, 7.59, 0.0},  // A
-			{3.55, 7.50, 0.0},  // B
-			{3.55, 7.50, 9.00}, // C
-//			{4.55, 7.50, 4.05}, // D
-//			{4.75, 7.70, 4.45}, // E
-			{3.55, 7.50, 4.05}, // D
-			{3.55, 7.70, 4.45}, // E
-			{3.55, 7.50, 0}, // F
-			{3.55, 7.50, 0}, // G
-			{3.55, 7.50, 5.98}, // H
-			{3.55, 7.50, 0.0}, // I
-			{0.0, 0.0, 0.0}, // J
-			{3.55, 7.50, 10.00}, // K
-			{3.55, 7.50, 0.0}, // L
-			{3.55, 7.00, 0.0},// M
-			{3.55, 7.50, 0.0},// N
-			{0.00, 0.00, 0.0},// O
-			{3.55, 8.36, 0.0},// P
-			{3.55, 7.50, 0.0}, // Q
-			{3.55, 7.50, 12.0},// R
-			{3.55, 6.93, 0.0},// S
-			{3.55, 6.82, 0.0}, // T
-			{0.00, 0.00, 0.0}, // U
-			{3.55, 7.44, 0.0},// V
-			{3.55, 7.50, 0.0},// W
-			{3.55, 7.50, 0.0},// X
-			{3.55, 7.50, 10.00},// Y
-			{3.55, 7.50, 0.0}}; // Z
-
-	private final double PH_MIN = 0.0; /* minimum pH value */
-	private final double PH_MAX = 14.0; /* maximum pH value */
-	private final double MAXLOOP = 2000.0; /* maximum number of iterations */
-	private final double EPSI = 0.0001; /* desired precision */
-
-	private double exp10(double pka){
-		return Math.pow(10, pka);
+	private int getLetterIndex(char c){
+		int index = Character.toUpperCase(c) - 'A';
+		return index < 0 || index >= 26 ? -1 : index;
 	}
 
+	/*
+	 *  Pseudo code obtained from email correspondance with ExPASy Helpdesk, Gregoire Rossier,
+	 *  the table of pK values is in PeptideComposition
+	 */
 	private double getIsoelectricPointExpasy(String sequence){
 		//
 		// Compute the amino-acid composition.
@@ -386,20 +342,7 @@ public class PeptidePropertiesImpl implements IPeptideProperties{
 			cTermResidue = sequence.charAt(sequence.length() - index++) - 'A';
 		}
 
-		double phMin = PH_MIN;
-		double phMax = PH_MAX;
-
-		double phMid = 0.0;
-		double charge = 1.0;
-		for (int i = 0; i < MAXLOOP && (phMax - phMin) > EPSI; i++){
-			phMid = phMin + (phMax - phMin) / 2.0;
-
-			charge = getNetChargeExpasy(comp, nTermResidue, cTermResidue, phMid);
-
-			if (charge > 0.0) phMin = phMid;
-			else phMax = phMid;
-		}
-		return phMid;
+		return PeptideComposition.getIsoelectricPointExpasy(comp, nTermResidue, cTermResidue);
 	}
 
 	@Override
@@ -441,106 +384,14 @@ public class PeptidePropertiesImpl implements IPeptideProperties{
 		//
 		int nTermResidue = sequence.charAt(0) - 'A';
 		int cTermResidue = sequence.charAt(sequence.length() - 1) - 'A';
-		return getNetChargeExpasy(comp, nTermResidue, cTermResidue, pHPoint);
-	}
-
-	private double getNetChargeExpasy(int[] comp, int nTermResidue, int cTermResidue, double ph){
-		double cter = 0.0;
-		if(cTermResidue >= 0 && cTermResidue < 26) cter = exp10(-cPk[cTermResidue][0]) / (exp10(-cPk[cTermResidue][0]) + exp10(-ph));
-		double nter = 0.0;
-		if(nTermResidue >= 0 && nTermResidue < 26) nter = exp10(-ph) / (exp10(-cPk[nTermResidue][1]) + exp10(-ph));
-
-		double carg = comp['R' - 'A'] * exp10(-ph) / (exp10(-cPk['R' - 'A'][2]) + exp10(-ph));
-		double chis = comp['H' - 'A'] * exp10(-ph) / (exp10(-cPk['H' - 'A'][2]) + exp10(-ph));
-		double clys = comp['K' - 'A'] * exp10(-ph) / (exp10(-cPk['K' - 'A'][2]) + exp10(-ph));
-
-		double casp = comp['D' - 'A'] * exp10(-cPk['D' - 'A'][2]) / (exp10(-cPk['D' - 'A'][2]) + exp10(-ph));
-		double cglu = comp['E' - 'A'] * exp10(-cPk['E' - 'A'][2]) / (exp10(-cPk['E' - 'A'][2]) + exp10(-ph));
-
-		double ccys = comp['C' - 'A'] * exp10(-cPk['C' - 'A'][2]) / (exp10(-cPk['C' - 'A'][2]) + exp10(-ph));
-		double ctyr = comp['Y' - 'A'] * exp10(-cPk['Y' - 'A'][2]) / (exp10(-cPk['Y' - 'A'][2]) + exp10(-ph));
-
-		return (carg + clys + chis + nter) - (casp + cglu + ctyr + ccys + cter);
+		return PeptideComposition.getNetChargeExpasy(comp, nTermResidue, cTermResidue, pHPoint);
 	}
 
 	private double getNetChargeInnovagen(ProteinSequence sequence, double pHPoint) {
-		Map<AminoAcidCompound, Integer> chargedAA2Count = this.getChargedAACount(sequence);
 		String sequenceString = sequence.getSequenceAsString();
-		return getNetChargeInnovagen(chargedAA2Count, pHPoint, sequenceString.charAt(0), sequenceString.charAt(sequenceString.length() - 1));
-	}
-
-	private double getNetChargeInnovagen(Map<AminoAcidCompound, Integer> chargedAA2Count, double ph, char nTerminalChar, char cTerminalChar){
-		//Constraints.aa2PKa is aleady reinitialized in getChargedAACount hence no need to do it again
-
-		//Lys => K, Arg => R, His => H
-		//Asp => D, Glu => E, Cys => C, Tyr => Y
-		AminoAcidCompoundSet aaSet = new AminoAcidCompoundSet();
-
-		double nTerminalCharge = 0.0;
-		AminoAcidCompound nTermCompound = aaSet.getCompoundForString(String.valueOf(nTerminalChar));
-		if(Constraints.aa2NTerminalPka.containsKey(nTermCompound)){
-			nTerminalCharge = this.getPosCharge(Constraints.aa2NTerminalPka.get(nTermCompound), ph);
-		}
-
-		double cTerminalCharge = 0.0;
-		AminoAcidCompound cTermCompound = aaSet.getCompoundForString(String.valueOf(cTerminalChar));
-		if(Constraints.aa2CTerminalPka.containsKey(cTermCompound)){
-			cTerminalCharge = this.getNegCharge(Constraints.aa2CTerminalPka.get(cTermCompound), ph);
-		}
-
-		double kCharge = chargedAA2Count.get(aaSet.getCompoundForString("K")) * this.getPosCharge(Constraints.aa2PKa.get(aaSet.getCompoundForString("K")), ph);
-		double rCharge = chargedAA2Count.get(aaSet.getCompoundForString("R")) * this.getPosCharge(Constraints.aa2PKa.get(aaSet.getCompoundForString("R")), ph);
-		double hCharge = chargedAA2Count.get(aaSet.getCompoundForString("H")) * this.getPosCharge(Constraints.aa2PKa.get(aaSet.getCompoundForString("H")), ph);
-		double dCharge = chargedAA2Count.get(aaSet.getCompoundForString("D")) * this.getNegCharge(Constraints.aa2PKa.get(aaSet.getCompoundForString("D")), ph);
-		double eCharge = chargedAA2Count.get(aaSet.getCompoundForString("E")) * this.getNegCharge(Constraints.aa2PKa.get(aaSet.getCompoundForString("E")), ph);
-		double cCharge = chargedAA2Count.get(aaSet.getCompoundForString("C")) * this.getNegCharge(Constraints.aa2PKa.get(aaSet.getCompoundForString("C")), ph);
-		double yCharge = chargedAA2Count.get(aaSet.getCompoundForString("Y")) * this.getNegCharge(Constraints.aa2PKa.get(aaSet.getCompoundForString("Y")), ph);
-//		if((kCharge + rCharge + hCharge) == 0.0 && (dCharge + eCharge + cCharge + yCharge) == 0.0){
-//			return 0.0;
-//		}
-		return (nTerminalCharge + kCharge + rCharge + hCharge) - (dCharge + eCharge + cCharge + yCharge + cTerminalCharge);
-	}
-
-	private double getPosCharge(double pka, double ph){
-		return Math.pow(10, pka) / (Math.pow(10, pka) + Math.pow(10, ph));
-	}
-
-	private double getNegCharge(double pka, double ph){
-		return Math.pow(10, ph) / (Math.pow(10, pka) + Math.pow(10, ph));
-	}
-
-	private Map<AminoAcidCompound, Integer> getChargedAACount(ProteinSequence sequence){
-		//Lys => K, Arg => R, His => H
-		//Asp => D, Glu => E, Cys => C, Tyr => Y
-		int numK = 0;
-		int numR = 0;
-		int numH = 0;
-		int numD = 0;
-		int numE = 0;
-		int numC = 0;
-		int numY = 0;
-		char[] seq = this.getSequence(sequence.getSequenceAsString(), true);
-		for(char aa:seq){
-			switch(aa){
-			case 'K': numK++; break;
-			case 'R': numR++; break;
-			case 'H': numH++; break;
-			case 'D': numD++; break;
-			case 'E': numE++; break;
-			case 'C': numC++; break;
-			case 'Y': numY++; break;
-			}
-		}
-		AminoAcidCompoundSet aaSet = new AminoAcidCompoundSet();
-		Map<AminoAcidCompound, Integer> chargedAA2Count = new HashMap<AminoAcidCompound, Integer>();
-		chargedAA2Count.put(aaSet.getCompoundForString("K"), numK);
-		chargedAA2Count.put(aaSet.getCompoundForString("R"), numR);
-		chargedAA2Count.put(aaSet.getCompoundForString("H"), numH);
-		chargedAA2Count.put(aaSet.getCompoundForString("D"), numD);
-		chargedAA2Count.put(aaSet.getCompoundForString("E"), numE);
-		chargedAA2Count.put(aaSet.getCompoundForString("C"), numC);
-		chargedAA2Count.put(aaSet.getCompoundForString("Y"), numY);
-		return chargedAA2Count;
+		int nTerminal = getLetterIndex(sequenceString.charAt(0));
+		int cTerminal = getLetterIndex(sequenceString.charAt(sequenceString.length() - 1));
+		return PeptideComposition.getNetChargeInnovagen(getLetterCount(sequenceString), nTerminal, cTerminal, pHPoint);
 	}
 
 	@Override
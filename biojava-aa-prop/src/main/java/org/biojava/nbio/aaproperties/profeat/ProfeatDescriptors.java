@@ -0,0 +1,274 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.aaproperties.profeat;
+
+import org.biojava.nbio.aaproperties.profeat.IProfeatProperties.ATTRIBUTE;
+import org.biojava.nbio.aaproperties.profeat.IProfeatProperties.DISTRIBUTION;
+import org.biojava.nbio.aaproperties.profeat.IProfeatProperties.GROUPING;
+import org.biojava.nbio.aaproperties.profeat.IProfeatProperties.TRANSITION;
+import org.biojava.nbio.aaproperties.profeat.convertor.*;
+import org.biojava.nbio.core.util.ConcurrencyTools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Computes all the composition, transition and distribution descriptors of {@link IProfeatProperties}
+ * for a sequence into one row of primitive values. The sequence is encoded once into the groups of
+ * the seven attributes, counting the compositions and transitions of all the attributes in the same
+ * loop, and the distributions are then found in the encoded groups.
+ * <p/>
+ * A row holds {@link #FEATURES_PER_ATTRIBUTE} values per {@link ATTRIBUTE}, in the order of the
+ * enumeration: the compositions of the three groups, the six transitions, then the five distributions
+ * of each group. The values are the same as those of {@link ProfeatProperties}.
+ * <p/>
+ * An instance reuses its buffers from one sequence to the next and must not be shared between threads.
+ *
+ * @since 5.1.2
+ * @see ProfeatProperties
+ */
+public class ProfeatDescriptors {
+
+	/** Number of values computed for each attribute */
+	public static final int FEATURES_PER_ATTRIBUTE = GROUPING.values().length
+			+ TRANSITION.values().length
+			+ GROUPING.values().length * DISTRIBUTION.values().length;
+
+	/** Number of sequences computed by one task */
+	private static final int BATCH_SIZE = 1000;
+
+	private static final int ATTRIBUTES = ATTRIBUTE.values().length;
+
+	private static final int DISTRIBUTIONS = DISTRIBUTION.values().length;
+
+	/** Groups 1, 2 and 3 of the convertors, 0 for non-standard amino acids */
+	private static final int GROUPS = 4;
+
+	/** Group of each ASCII character for each attribute, in the order of ATTRIBUTE */
+	private static final byte[][] CODES = new byte[ATTRIBUTES][128];
+
+	/** The two groups of each TRANSITION */
+	private static final int[][] TRANSITION_GROUPS = { {1, 1}, {2, 2}, {3, 3}, {1, 2}, {1, 3}, {2, 3} };
+
+	static {
+		Convertor[] convertors = {
+				new Convert2Hydrophobicity(),
+				new Convert2NormalizedVanDerWaalsVolume(),
+				new Convert2Polarity(),
+				new Convert2Polarizability(),
+				new Convert2Charge(),
+				new Convert2SecondaryStructure(),
+				new Convert2SolventAccessibility() };
+		for (int a = 0; a < ATTRIBUTES; a++) {
+			for (char c = 0; c < 128; c++) {
+				CODES[a][c] = (byte) (convertors[a].convert(Character.toUpperCase(c)) - Convertor.unknownGroup);
+			}
+		}
+	}
+
+	private byte[] codes = new byte[0];
+	private final int[] counts = new int[ATTRIBUTES * GROUPS];
+	private final int[] pairs = new int[ATTRIBUTES * GROUPS * GROUPS];
+	private final int[] targets = new int[GROUPS * DISTRIBUTIONS];
+	private final int[] seen = new int[GROUPS];
+
+	/**
+	 * @return the number of values in a row
+	 */
+	public static int getFeatureCount() {
+		return ATTRIBUTES * FEATURES_PER_ATTRIBUTE;
+	}
+
+	/**
+	 * @return the index in a row of the composition of the group for the attribute
+	 */
+	public static int getIndex(ATTRIBUTE attribute, GROUPING group) {
+		return attribute.ordinal() * FEATURES_PER_ATTRIBUTE + group.ordinal();
+	}
+
+	/**
+	 * @return the index in a row of the transition for the attribute
+	 */
+	public static int getIndex(ATTRIBUTE attribute, TRANSITION transition) {
+		return attribute.ordinal() * FEATURES_PER_ATTRIBUTE + GROUPING.values().length + transition.ordinal();
+	}
+
+	/**
+	 * @return the index in a row of the distribution of the group for the attribute
+	 */
+	public static int getIndex(ATTRIBUTE attribute, GROUPING group, DISTRIBUTION distribution) {
+		return attribute.ordinal() * FEATURES_PER_ATTRIBUTE + GROUPING.values().length + TRANSITION.values().length
+				+ group.ordinal() * DISTRIBUTION.values().length + distribution.ordinal();
+	}
+
+	/**
+	 * Returns the names of the values of a row, such as HYDROPHOBICITY_GROUP1,
+	 * HYDROPHOBICITY_BETWEEN_12 or HYDROPHOBICITY_GROUP1_FIRST25.
+	 *
+	 * @return the names of the values, in the order of a row
+	 */
+	public static List<String> getFeatureNames() {
+		String[] names = new String[getFeatureCount()];
+		for (ATTRIBUTE attribute : ATTRIBUTE.values()) {
+			for (GROUPING group : GROUPING.values()) {
+				names[getIndex(attribute, group)] = attribute + "_" + group;
+				for (DISTRIBUTION distribution : DISTRIBUTION.values()) {
+					names[getIndex(attribute, group, distribution)] = attribute + "_" + group + "_" + distribution;
+				}
+			}
+			for (TRANSITION transition : TRANSITION.values()) {
+				names[getIndex(attribute, transition)] = attribute + "_" + transition;
+			}
+		}
+		List<String> list = new ArrayList<String>(names.length);
+		Collections.addAll(list, names);
+		return list;
+	}
+
+	/**
+	 * Computes the descriptors of a sequence into a new row.
+	 *
+	 * @param sequence
+	 * 		a protein sequence; characters other than the 20 standard amino acids are in no group
+	 * @return the row of {@link #getFeatureCount()} values
+	 */
+	public double[] compute(CharSequence sequence) {
+		double[] row = new double[getFeatureCount()];
+		compute(sequence, row, 0);
+		return row;
+	}
+
+	/**
+	 * Computes the descriptors of a sequence into a row of a preallocated array.
+	 *
+	 * @param sequence
+	 * 		a protein sequence; characters other than the 20 standard amino acids are in no group
+	 * @param row
+	 * 		the array receiving the values
+	 * @param offset
+	 * 		the index in the array of the first value, the array must hold {@link #getFeatureCount()}
+	 * 		values from there
+	 */
+	public void compute(CharSequence sequence, double[] row, int offset) {
+		int n = sequence.length();
+		if (codes.length < ATTRIBUTES * n) {
+			codes = new byte[ATTRIBUTES * n];
+		}
+		Arrays.fill(counts, 0);
+		Arrays.fill(pairs, 0);
+
+		// encode the sequence into the groups of every attribute, counting groups and adjacent pairs
+		for (int x = 0; x < n; x++) {
+			char c = sequence.charAt(x);
+			int k = c < 128 ? c : 0;
+			for (int a = 0; a < ATTRIBUTES; a++) {
+				int g = CODES[a][k];
+				codes[a * n + x] = (byte) g;
+				counts[a * GROUPS + g]++;
+				if (x > 0) {
+					pairs[(a * GROUPS + codes[a * n + x - 1]) * GROUPS + g]++;
+				}
+			}
+		}
+
+		for (int a = 0; a < ATTRIBUTES; a++) {
+			int base = offset + a * FEATURES_PER_ATTRIBUTE;
+			for (int g = 1; g < GROUPS; g++) {
+				row[base + g - 1] = (counts[a * GROUPS + g] + 0.0) / n;
+			}
+			base += GROUPS - 1;
+			for (int t = 0; t < TRANSITION_GROUPS.length; t++) {
+				int g1 = TRANSITION_GROUPS[t][0];
+				int g2 = TRANSITION_GROUPS[t][1];
+				int total = pairs[(a * GROUPS + g1) * GROUPS + g2];
+				if (g1 != g2) {
+					total += pairs[(a * GROUPS + g2) * GROUPS + g1];
+				}
+				row[base + t] = total / (n - 1.0);
+			}
+			base += TRANSITION_GROUPS.length;
+
+			// the occurrence of each group at which each distribution is reached
+			for (int g = 1; g < GROUPS; g++) {
+				int total = counts[a * GROUPS + g];
+				int d = g * DISTRIBUTIONS;
+				targets[d] = 1;
+				targets[d + 1] = total * 25 / 100;
+				targets[d + 2] = total * 50 / 100;
+				targets[d + 3] = total * 75 / 100;
+				targets[d + 4] = total;
+				for (int i = 0; i < DISTRIBUTIONS; i++) {
+					row[base + (g - 1) * DISTRIBUTIONS + i] = 0.0;
+				}
+			}
+			Arrays.fill(seen, 0);
+			for (int x = 0; x < n; x++) {
+				int g = codes[a * n + x];
+				if (g == 0) {
+					continue;
+				}
+				int current = ++seen[g];
+				for (int i = 0; i < DISTRIBUTIONS; i++) {
+					if (targets[g * DISTRIBUTIONS + i] == current) {
+						row[base + (g - 1) * DISTRIBUTIONS + i] = x + 1.0;
+					}
+				}
+			}
+			for (int i = 0; i < (GROUPS - 1) * DISTRIBUTIONS; i++) {
+				row[base + i] /= n;
+			}
+		}
+	}
+
+	/**
+	 * Computes the descriptors of the sequences in parallel.
+	 *
+	 * @param sequences
+	 * 		protein sequences
+	 * @return one row of {@link #getFeatureCount()} values per sequence
+	 * @throws InterruptedException
+	 * 		if interrupted while waiting for the results
+	 */
+	public static double[][] compute(List<? extends CharSequence> sequences) throws InterruptedException {
+		final double[][] rows = new double[sequences.size()][getFeatureCount()];
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int start = 0; start < sequences.size(); start += BATCH_SIZE) {
+			final int from = start;
+			final List<? extends CharSequence> batch = sequences.subList(start, Math.min(start + BATCH_SIZE, sequences.size()));
+			futures.add(ConcurrencyTools.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					ProfeatDescriptors descriptors = new ProfeatDescriptors();
+					for (int i = 0; i < batch.size(); i++) {
+						descriptors.compute(batch.get(i), rows[from + i], 0);
+					}
+					return null;
+				}
+			}));
+		}
+		ConcurrencyTools.getAll(futures);
+		return rows;
+	}
+}
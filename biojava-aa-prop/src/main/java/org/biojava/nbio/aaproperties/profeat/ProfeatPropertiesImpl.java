@@ -134,8 +134,14 @@ public class ProfeatPropertiesImpl implements IProfeatProperties{
 
 	@Override
 	public Map<ATTRIBUTE, Map<GROUPING, Double>> getComposition(ProteinSequence sequence) throws Exception {
+		double[] row = new ProfeatDescriptors().compute(sequence.getSequenceAsString());
 		Map<ATTRIBUTE, Map<GROUPING, Double>> attribute2Grouping2Composition = new HashMap<ATTRIBUTE, Map<GROUPING, Double>>();
-		for(ATTRIBUTE attribute:ATTRIBUTE.values()) attribute2Grouping2Composition.put(attribute, getComposition(sequence, attribute));
+		for(ATTRIBUTE attribute:ATTRIBUTE.values()){
+			Map<GROUPING, Double> grouping2Composition = new HashMap<GROUPING, Double>();
+			for(GROUPING group:GROUPING.values())
+				grouping2Composition.put(group, row[ProfeatDescriptors.getIndex(attribute, group)]);
+			attribute2Grouping2Composition.put(attribute, grouping2Composition);
+		}
 		return attribute2Grouping2Composition;
 	}
 
@@ -148,8 +154,14 @@ public class ProfeatPropertiesImpl implements IProfeatProperties{
 
 	@Override
 	public Map<ATTRIBUTE, Map<TRANSITION, Double>> getTransition(ProteinSequence sequence) throws Exception {
+		double[] row = new ProfeatDescriptors().compute(sequence.getSequenceAsString());
 		Map<ATTRIBUTE, Map<TRANSITION, Double>> attribute2Transition2Double = new HashMap<ATTRIBUTE, Map<TRANSITION, Double>>();
-		for(ATTRIBUTE attribute:ATTRIBUTE.values()) attribute2Transition2Double.put(attribute, getTransition(sequence, attribute));
+		for(ATTRIBUTE attribute:ATTRIBUTE.values()){
+			Map<TRANSITION, Double> transition2Double = new HashMap<TRANSITION, Double>();
+			for(TRANSITION transition:TRANSITION.values())
+				transition2Double.put(transition, row[ProfeatDescriptors.getIndex(attribute, transition)]);
+			attribute2Transition2Double.put(attribute, transition2Double);
+		}
 		return attribute2Transition2Double;
 	}
 
@@ -171,10 +183,19 @@ public class ProfeatPropertiesImpl implements IProfeatProperties{
 
 	@Override
 	public Map<ATTRIBUTE, Map<GROUPING, Map<DISTRIBUTION, Double>>> getDistributionPosition(ProteinSequence sequence) throws Exception {
+		double[] row = new ProfeatDescriptors().compute(sequence.getSequenceAsString());
 		Map<ATTRIBUTE, Map<GROUPING, Map<DISTRIBUTION, Double>>> attribute2Grouping2Distribution2Double =
 			new HashMap<ATTRIBUTE, Map<GROUPING, Map<DISTRIBUTION, Double>>>();
-		for(ATTRIBUTE attribute:ATTRIBUTE.values())
-			attribute2Grouping2Distribution2Double.put(attribute, getDistributionPosition(sequence, attribute));
+		for(ATTRIBUTE attribute:ATTRIBUTE.values()){
+			Map<GROUPING, Map<DISTRIBUTION, Double>> grouping2Distribution2Double = new HashMap<GROUPING, Map<DISTRIBUTION, Double>>();
+			for(GROUPING group:GROUPING.values()){
+				Map<DISTRIBUTION, Double> distribution2Double = new HashMap<DISTRIBUTION, Double>();
+				for(DISTRIBUTION distribution:DISTRIBUTION.values())
+					distribution2Double.put(distribution, row[ProfeatDescriptors.getIndex(attribute, group, distribution)]);
+				grouping2Distribution2Double.put(group, distribution2Double);
+			}
+			attribute2Grouping2Distribution2Double.put(attribute, grouping2Distribution2Double);
+		}
 		return attribute2Grouping2Distribution2Double;
 	}
 
@@ -78,12 +78,12 @@ public abstract class Convertor {
 	 * @return the converted sequence
 	 */
 	public String convert(ProteinSequence sequence){
-		String convertedSequence = "";
 		String uppercaseSequence = sequence.getSequenceAsString().toUpperCase();
+		StringBuilder convertedSequence = new StringBuilder(uppercaseSequence.length());
 		for(int x = 0; x < uppercaseSequence.length(); x++){
-			convertedSequence += String.valueOf(convert(uppercaseSequence.charAt(x)));
+			convertedSequence.append(convert(uppercaseSequence.charAt(x)));
 		}
-		return convertedSequence;
+		return convertedSequence.toString();
 	}
 
 }
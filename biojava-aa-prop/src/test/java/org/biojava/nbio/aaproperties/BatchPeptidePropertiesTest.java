@@ -0,0 +1,133 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.aaproperties;
+
+import org.biojava.nbio.aaproperties.CommandPrompt.PropertyName;
+import org.biojava.nbio.aaproperties.PeptideProperties.SingleLetterAACode;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchPeptidePropertiesTest {
+
+	private static final double delta = 0.00001;
+
+	private final String[] sequences = {
+			"MTADGPCRELLCQLRAAVRHRWWC1",
+			"3176412372301230183--2310",
+			"ACCACAAADADADACA",
+			"DCCACAAADADADACDAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAD",
+			"MTADGPCRELLCQLRAAVRHRWWC",
+			"KkRYWXBCCHDEY-CK",
+			"-YWCKHHRDE"
+	};
+
+	@Test
+	public void testSameAsPeptideProperties() {
+		for (String sequence : sequences) {
+			PeptideComposition composition = new PeptideComposition(sequence);
+			assertEquals(sequence, PeptideProperties.getMolecularWeight(sequence), composition.getMolecularWeight(), delta);
+			for (boolean assumeCysReduced : new boolean[] { true, false }) {
+				assertEquals(sequence, PeptideProperties.getAbsorbance(sequence, assumeCysReduced), composition.getAbsorbance(assumeCysReduced), delta);
+				assertEquals(sequence, PeptideProperties.getExtinctionCoefficient(sequence, assumeCysReduced), composition.getExtinctionCoefficient(assumeCysReduced), delta);
+			}
+			assertEquals(sequence, PeptideProperties.getInstabilityIndex(sequence), composition.getInstabilityIndex(), delta);
+			assertEquals(sequence, PeptideProperties.getApliphaticIndex(sequence), composition.getApliphaticIndex(), delta);
+			assertEquals(sequence, PeptideProperties.getAvgHydropathy(sequence), composition.getAvgHydropathy(), delta);
+			assertEquals(sequence, PeptideProperties.getIsoelectricPoint(sequence), composition.getIsoelectricPoint(), delta);
+			assertEquals(sequence, PeptideProperties.getIsoelectricPoint(sequence, false), composition.getIsoelectricPoint(false), delta);
+			assertEquals(sequence, PeptideProperties.getNetCharge(sequence), composition.getNetCharge(), delta);
+			for (double pH : new double[] { 3.0, 7.0, 10.5 }) {
+				assertEquals(sequence, PeptideProperties.getNetCharge(sequence, true, pH), composition.getNetCharge(true, pH), delta);
+				assertEquals(sequence, PeptideProperties.getNetCharge(sequence, false, pH), composition.getNetCharge(false, pH), delta);
+			}
+			for (SingleLetterAACode aminoAcid : SingleLetterAACode.values()) {
+				char code = aminoAcid.toString().charAt(0);
+				assertEquals(sequence, PeptideProperties.getEnrichment(sequence, aminoAcid), composition.getEnrichment(code), delta);
+				assertEquals(sequence, PeptideProperties.getAACompositionChar(sequence).get(code), composition.getComposition(code), delta);
+			}
+		}
+	}
+
+	@Test
+	public void testColumns() throws Exception {
+		List<String> list = BatchTestSequences.repeat(sequences);
+		BatchPeptideProperties batch = new BatchPeptideProperties();
+		double[][] columns = batch.compute(list);
+		assertEquals(PropertyName.values().length, columns.length);
+		for (int i = 0; i < list.size(); i++) {
+			PeptideComposition composition = new PeptideComposition(list.get(i));
+			for (int column = 0; column < columns.length; column++) {
+				assertEquals(BatchPeptideProperties.getProperty(composition, batch.getProperties().get(column)), columns[column][i], 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testSameAsCommandPrompt() throws Exception {
+		File expected = File.createTempFile("test", ".tsv");
+		expected.deleteOnExit();
+		CommandPrompt.run(new String[] { "-i", "./src/test/resources/test.fasta", "-a", "-f", "tsv", "-o", expected.toString() });
+
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		PrintStream output = new PrintStream(actual);
+		new BatchPeptideProperties().compute(new FileInputStream("./src/test/resources/test.fasta"), output, "\t", 4);
+		output.close();
+
+		assertEquals(Files.readAllLines(expected.toPath()), Arrays.asList(actual.toString().split("\r?\n")));
+	}
+
+	/**
+	 * Lower-case residues of a FASTA file are those of the upper-case sequence, as for {@link CommandPrompt}.
+	 */
+	@Test
+	public void testLowerCaseFasta() throws Exception {
+		String sequence = "MTADGPCRELLCQLRAAVRHRWWCKYHDE";
+		File fasta = File.createTempFile("test", ".fasta");
+		fasta.deleteOnExit();
+		Files.write(fasta.toPath(), Arrays.asList(">lower", sequence.toLowerCase(), ">mixed", "mtadgpcRELLCqlraavrhrwwckYHDE"));
+
+		File expected = File.createTempFile("test", ".tsv");
+		expected.deleteOnExit();
+		CommandPrompt.run(new String[] { "-i", fasta.toString(), "-a", "-f", "tsv", "-o", expected.toString() });
+
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		PrintStream output = new PrintStream(actual);
+		new BatchPeptideProperties().compute(new FileInputStream(fasta), output, "\t", 4);
+		output.close();
+
+		List<String> lines = Arrays.asList(actual.toString().split("\r?\n"));
+		assertEquals(Files.readAllLines(expected.toPath()), lines);
+		for (String line : lines.subList(1, lines.size())) {
+			String[] columns = line.split("\t");
+			assertEquals(line, PeptideProperties.getMolecularWeight(sequence), Double.parseDouble(columns[1]), 0.0001);
+			assertEquals(line, PeptideProperties.getIsoelectricPoint(sequence), Double.parseDouble(columns[9]), 0.0001);
+		}
+	}
+}
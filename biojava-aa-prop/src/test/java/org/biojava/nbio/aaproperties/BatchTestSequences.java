@@ -0,0 +1,53 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.aaproperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inputs of the tests comparing the parallel computations on many sequences
+ * with the computation of each sequence.
+ *
+ * @since 5.1.2
+ *
+ */
+public class BatchTestSequences {
+
+	/** more sequences than fit in one batch of the parallel computations, with a partial last batch */
+	public static final int SIZE = 2500;
+
+	private BatchTestSequences() {
+	}
+
+	/**
+	 *
+	 * @param sequences
+	 * @return {@link #SIZE} sequences, cycling through the given ones
+	 */
+	public static List<String> repeat(String[] sequences) {
+		List<String> list = new ArrayList<String>(SIZE);
+		for (int i = 0; i < SIZE; i++) {
+			list.add(sequences[i % sequences.length]);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.aaproperties.profeat;
+
+import org.biojava.nbio.aaproperties.BatchTestSequences;
+import org.biojava.nbio.aaproperties.profeat.IProfeatProperties.ATTRIBUTE;
+import org.biojava.nbio.aaproperties.profeat.IProfeatProperties.DISTRIBUTION;
+import org.biojava.nbio.aaproperties.profeat.IProfeatProperties.GROUPING;
+import org.biojava.nbio.aaproperties.profeat.IProfeatProperties.TRANSITION;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ProfeatDescriptorsTest {
+
+	private final String[] sequences = {
+			"QIKDLLVSSSTDLDTTLVLVNAIYFKGMWKTAFNAEDTREMPFHVTKQESKPVQMMCMNNSFNVATLPAE",
+			"MTADGPCRELLCQLRAAVRHRWWCXBZ",
+			"KRHDE",
+			"AAAA",
+			"W"
+	};
+
+	@Test
+	public void testSameAsProfeatProperties() throws Exception {
+		ProfeatDescriptors descriptors = new ProfeatDescriptors();
+		for (String sequence : sequences) {
+			double[] row = new double[ProfeatDescriptors.getFeatureCount() + 3];
+			descriptors.compute(sequence, row, 3);
+			for (ATTRIBUTE attribute : ATTRIBUTE.values()) {
+				for (GROUPING group : GROUPING.values()) {
+					assertEquals(sequence, ProfeatProperties.getComposition(sequence, attribute, group),
+							row[3 + ProfeatDescriptors.getIndex(attribute, group)], 0.0);
+					for (DISTRIBUTION distribution : DISTRIBUTION.values()) {
+						assertEquals(sequence, ProfeatProperties.getDistributionPosition(sequence, attribute, group, distribution),
+								row[3 + ProfeatDescriptors.getIndex(attribute, group, distribution)], 0.0);
+					}
+				}
+				for (TRANSITION transition : TRANSITION.values()) {
+					assertEquals(sequence, ProfeatProperties.getTransition(sequence, attribute, transition),
+							row[3 + ProfeatDescriptors.getIndex(attribute, transition)], 0.0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMaps() throws Exception {
+		String sequence = sequences[0];
+		Map<ATTRIBUTE, Map<GROUPING, Map<DISTRIBUTION, Double>>> distributions = ProfeatProperties.getDistributionPosition(sequence);
+		Map<ATTRIBUTE, Map<TRANSITION, Double>> transitions = ProfeatProperties.getTransition(sequence);
+		for (ATTRIBUTE attribute : ATTRIBUTE.values()) {
+			assertEquals(ProfeatProperties.getComposition(sequence, attribute), ProfeatProperties.getComposition(sequence).get(attribute));
+			assertEquals(ProfeatProperties.getTransition(sequence, attribute), transitions.get(attribute));
+			assertEquals(ProfeatProperties.getDistributionPosition(sequence, attribute), distributions.get(attribute));
+		}
+	}
+
+	@Test
+	public void testFeatureNames() {
+		List<String> names = ProfeatDescriptors.getFeatureNames();
+		assertEquals(ProfeatDescriptors.getFeatureCount(), names.size());
+		assertEquals(names.size(), new HashSet<String>(names).size());
+		assertEquals("VOLUME_BETWEEN_12", names.get(ProfeatDescriptors.getIndex(ATTRIBUTE.VOLUME, TRANSITION.BETWEEN_12)));
+		assertEquals("CHARGE_GROUP3_FIRST75", names.get(ProfeatDescriptors.getIndex(ATTRIBUTE.CHARGE, GROUPING.GROUP3, DISTRIBUTION.FIRST75)));
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		List<String> list = BatchTestSequences.repeat(sequences);
+		double[][] rows = ProfeatDescriptors.compute(list);
+		assertEquals(list.size(), rows.length);
+		ProfeatDescriptors descriptors = new ProfeatDescriptors();
+		for (int i = 0; i < list.size(); i++) {
+			assertTrue(Arrays.equals(descriptors.compute(list.get(i)), rows[i]));
+		}
+	}
+}
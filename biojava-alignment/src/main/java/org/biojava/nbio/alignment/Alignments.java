@@ -80,7 +80,7 @@ public class Alignments {
 		GLOBAL,
 		GLOBAL_IDENTITIES,   // similar to CLUSTALW and CLUSTALW2
 		GLOBAL_SIMILARITIES,
-		LOCAL,
+		LOCAL,               // score only, with the striped Smith-Waterman
 		LOCAL_IDENTITIES,
 		LOCAL_SIMILARITIES,
 		KMERS,               // similar to CLUSTAL and MUSCLE
@@ -258,8 +258,13 @@ public class Alignments {
 			SubstitutionMatrix<C> subMatrix) {
 		List<PairwiseSequenceScorer<S, C>> allPairs = new ArrayList<PairwiseSequenceScorer<S, C>>();
 		for (int i = 0; i < sequences.size(); i++) {
+			// local scores share the profile of the query
+			StripedSmithWaterman.QueryProfile<S, C> profile = (type == PairwiseSequenceScorerType.LOCAL &&
+					i + 1 < sequences.size()) ? new StripedSmithWaterman.QueryProfile<S, C>(sequences.get(i),
+					gapPenalty, subMatrix) : null;
 			for (int j = i+1; j < sequences.size(); j++) {
-				allPairs.add(getPairwiseScorer(sequences.get(i), sequences.get(j), type, gapPenalty, subMatrix));
+				allPairs.add(profile != null ? new StripedSmithWaterman<S, C>(profile, sequences.get(j)) :
+						getPairwiseScorer(sequences.get(i), sequences.get(j), type, gapPenalty, subMatrix));
 			}
 		}
 		return allPairs;
@@ -380,7 +385,7 @@ public class Alignments {
 			return new FractionalSimilarityScorer<S, C>(getPairwiseAligner(query, target,
 					PairwiseSequenceAlignerType.GLOBAL, gapPenalty, subMatrix));
 		case LOCAL:
-			return getPairwiseAligner(query, target, PairwiseSequenceAlignerType.LOCAL, gapPenalty, subMatrix);
+			return new StripedSmithWaterman<S, C>(query, target, gapPenalty, subMatrix);
 		case LOCAL_IDENTITIES:
 			return new FractionalIdentityScorer<S, C>(getPairwiseAligner(query, target,
 					PairwiseSequenceAlignerType.LOCAL, gapPenalty, subMatrix));
@@ -0,0 +1,315 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.alignment;
+
+import org.biojava.nbio.alignment.template.AbstractScorer;
+import org.biojava.nbio.alignment.template.GapPenalty;
+import org.biojava.nbio.alignment.template.PairwiseSequenceScorer;
+import org.biojava.nbio.core.alignment.matrices.CompiledSubstitutionMatrix;
+import org.biojava.nbio.core.alignment.template.SubstitutionMatrix;
+import org.biojava.nbio.core.sequence.template.Compound;
+import org.biojava.nbio.core.sequence.template.Sequence;
+
+/**
+ * Computes the score of the local alignment of two {@link Sequence}s without the alignment itself, with the striped
+ * query profile of Farrar (Bioinformatics 2007, 23:156-161). The score is the same as the one of
+ * {@link SmithWaterman}, but only two columns of primitive scores are kept and no traceback is recorded.
+ * <p>
+ * The query is split into {@value #LANES} lanes of consecutive positions, and the dynamic programming matrix is
+ * computed one target position at a time over segments holding one position of every lane. The lanes of a segment
+ * do not depend on each other, so that the inner loops are simple element-wise loops over small arrays. The
+ * dependencies along the query between the lanes (the deletions) are corrected by the lazy loop of Farrar, which
+ * seldom runs more than once.
+ * <p>
+ * The {@link QueryProfile} of a query holds the substitution scores of the query for every target compound in the
+ * striped order: it can be shared by the scorers of one query against many targets, also concurrently.
+ *
+ * @since 5.1.2
+ * @param <S> each {@link Sequence} of the pair is of type S
+ * @param <C> each element of a {@link Sequence} is a {@link Compound} of type C
+ */
+public class StripedSmithWaterman<S extends Sequence<C>, C extends Compound> extends AbstractScorer
+		implements PairwiseSequenceScorer<S, C> {
+
+	/**
+	 * The number of lanes the query is split into
+	 */
+	public static final int LANES = 8;
+
+	/**
+	 * The substitution score of the padding at the end of the last lanes, low enough to never start an alignment
+	 */
+	private static final int PADDING = Integer.MIN_VALUE / 4;
+
+	/**
+	 * The substitution scores of a query for every target compound, in the striped order, and the gap penalties.
+	 * Instances are thread-safe.
+	 *
+	 * @param <S> the type of the query
+	 * @param <C> the type of the compounds
+	 */
+	public static class QueryProfile<S extends Sequence<C>, C extends Compound> {
+
+		private final S query;
+		private final CompiledSubstitutionMatrix<C> matrix;
+		private final int[] queryOrdinals;
+		private final int segmentLength;
+		private final boolean linear;
+		private final int gop, gep;
+		private final int maxScore;
+
+		// the striped scores of the query against every target compound, by ordinal, built when first needed
+		private int[][] profiles = new int[0][];
+
+		/**
+		 * Builds the profile of the given query.
+		 *
+		 * @param query the first {@link Sequence} of the pairs to score
+		 * @param gapPenalty the gap penalties used during alignment
+		 * @param subMatrix the set of substitution scores used during alignment
+		 */
+		public QueryProfile(S query, GapPenalty gapPenalty, SubstitutionMatrix<C> subMatrix) {
+			this.query = query;
+			matrix = new CompiledSubstitutionMatrix<C>(subMatrix);
+			queryOrdinals = matrix.encode(query);
+			segmentLength = (queryOrdinals.length + LANES - 1) / LANES;
+			linear = gapPenalty.getType() == GapPenalty.Type.LINEAR;
+			gop = gapPenalty.getOpenPenalty();
+			gep = gapPenalty.getExtensionPenalty();
+			int max = 0;
+			for (int q : queryOrdinals) {
+				max += matrix.getValue(q, q);
+			}
+			maxScore = max;
+		}
+
+		public S getQuery() {
+			return query;
+		}
+
+		/**
+		 * Returns the score of the local alignment of the query with the given target.
+		 *
+		 * @param target the second {@link Sequence} of the pair
+		 * @return the same score as {@link SmithWaterman#getScore()}
+		 */
+		public int score(S target) {
+			int[] targetOrdinals;
+			int[][] targetProfiles;
+			synchronized (this) {
+				targetOrdinals = matrix.encode(target);
+				targetProfiles = getProfiles(targetOrdinals);
+			}
+			return score(targetOrdinals, targetProfiles);
+		}
+
+		/**
+		 * Returns the maximum score of the pair of the query with the given target, as {@link SmithWaterman}:
+		 * the larger of the scores of the query and of the target aligned with themselves.
+		 *
+		 * @param target
+		 * @return
+		 */
+		public synchronized int getMaxScore(S target) {
+			int max = 0;
+			for (int t : matrix.encode(target)) {
+				max += matrix.getValue(t, t);
+			}
+			return Math.max(maxScore, max);
+		}
+
+		/**
+		 * Builds the profiles of the target compounds not seen before.
+		 * @param targetOrdinals
+		 * @return the profiles by ordinal
+		 */
+		private int[][] getProfiles(int[] targetOrdinals) {
+			if (profiles.length < matrix.size()) {
+				int[][] newProfiles = new int[matrix.size()][];
+				System.arraycopy(profiles, 0, newProfiles, 0, profiles.length);
+				profiles = newProfiles;
+			}
+			for (int t : targetOrdinals) {
+				if (profiles[t] == null) {
+					int[] profile = new int[segmentLength * LANES];
+					for (int s = 0; s < segmentLength; s++) {
+						for (int k = 0; k < LANES; k++) {
+							int i = k * segmentLength + s;
+							profile[s * LANES + k] = i < queryOrdinals.length ? matrix.getValue(queryOrdinals[i], t) : PADDING;
+						}
+					}
+					profiles[t] = profile;
+				}
+			}
+			return profiles;
+		}
+
+		/**
+		 * The dynamic programming over the target positions, following the recurrences of {@link SmithWaterman}:
+		 * a substitution extends the best state of the previous positions, gaps open after a substitution
+		 * (or after any state with a linear gap penalty) and every state is at least 0.
+		 * The value at query position i is stored at index (i % segmentLength) * LANES + i / segmentLength.
+		 */
+		private int score(int[] targetOrdinals, int[][] targetProfiles) {
+			if (queryOrdinals.length == 0 || targetOrdinals.length == 0) {
+				return 0;
+			}
+			final int size = segmentLength * LANES;
+			final int last = (segmentLength - 1) * LANES;
+			// the penalty of a gap of length 1
+			final int goe = linear ? gep : gop + gep;
+
+			// best state, substitutions and insertions (gaps in the query) of the previous and current target positions
+			int[] pT = new int[size], pM = new int[size], pE = new int[size];
+			int[] cT = new int[size], cM = new int[size], cE = new int[size];
+			// deletions (gaps in the target) of the current target position, and where they open from
+			int[] cF = new int[size], open = new int[size];
+			int[] vF = new int[LANES];
+
+			int best = 0;
+			for (int j = 0; j < targetOrdinals.length; j++) {
+				int[] profile = targetProfiles[targetOrdinals[j]];
+				int[] insertionOpen = linear ? pT : pM;
+
+				// substitutions and insertions only depend on the previous target position
+				cM[0] = Math.max(0, profile[0]);
+				for (int k = 1; k < LANES; k++) {
+					cM[k] = Math.max(0, pT[last + k - 1] + profile[k]);
+				}
+				for (int i = LANES; i < size; i++) {
+					cM[i] = Math.max(0, pT[i - LANES] + profile[i]);
+				}
+				for (int i = 0; i < size; i++) {
+					cE[i] = Math.max(0, Math.max(insertionOpen[i] + goe, pE[i] + gep));
+					open[i] = linear ? Math.max(cM[i], cE[i]) : cM[i];
+				}
+
+				// deletions within the lanes, assuming no deletion crosses into the next lane
+				for (int k = 0; k < LANES; k++) {
+					vF[k] = 0;
+				}
+				for (int s = 0; s < size; s += LANES) {
+					for (int k = 0; k < LANES; k++) {
+						cF[s + k] = vF[k];
+						vF[k] = Math.max(0, Math.max(cF[s + k] + gep, open[s + k] + goe));
+					}
+				}
+				// lazy loop: carry the deletions into the next lanes until they don't improve anything
+				boolean improved = true;
+				while (improved) {
+					for (int k = LANES - 1; k > 0; k--) {
+						vF[k] = vF[k - 1];
+					}
+					vF[0] = 0;
+					for (int s = 0; s < size && improved; s += LANES) {
+						improved = false;
+						for (int k = 0; k < LANES; k++) {
+							if (vF[k] > cF[s + k]) {
+								cF[s + k] = vF[k];
+								improved = true;
+							}
+							vF[k] = Math.max(0, Math.max(cF[s + k] + gep, open[s + k] + goe));
+						}
+					}
+				}
+
+				// only substitutions end a local alignment, or any state with a linear gap penalty
+				for (int i = 0; i < size; i++) {
+					cT[i] = Math.max(cM[i], Math.max(cE[i], cF[i]));
+					best = Math.max(best, linear ? cT[i] : cM[i]);
+				}
+
+				int[] swap = pT; pT = cT; cT = swap;
+				swap = pM; pM = cM; cM = swap;
+				swap = pE; pE = cE; cE = swap;
+			}
+			return best;
+		}
+	}
+
+	private final QueryProfile<S, C> profile;
+	private final S target;
+
+	private boolean scored;
+	private int score, max;
+
+	/**
+	 * Prepares for the scoring of a pairwise local sequence alignment.
+	 *
+	 * @param query the first {@link Sequence} of the pair to score
+	 * @param target the second {@link Sequence} of the pair to score
+	 * @param gapPenalty the gap penalties used during alignment
+	 * @param subMatrix the set of substitution scores used during alignment
+	 */
+	public StripedSmithWaterman(S query, S target, GapPenalty gapPenalty, SubstitutionMatrix<C> subMatrix) {
+		this(new QueryProfile<S, C>(query, gapPenalty, subMatrix), target);
+	}
+
+	/**
+	 * Prepares for the scoring of a pairwise local sequence alignment with the shared profile of the query.
+	 *
+	 * @param profile the profile of the first {@link Sequence} of the pair to score
+	 * @param target the second {@link Sequence} of the pair to score
+	 */
+	public StripedSmithWaterman(QueryProfile<S, C> profile, S target) {
+		this.profile = profile;
+		this.target = target;
+	}
+
+	// methods for PairwiseSequenceScorer
+
+	@Override
+	public S getQuery() {
+		return profile.getQuery();
+	}
+
+	@Override
+	public S getTarget() {
+		return target;
+	}
+
+	// methods for Scorer
+
+	@Override
+	public double getMaxScore() {
+		score();
+		return max;
+	}
+
+	@Override
+	public double getMinScore() {
+		return 0;
+	}
+
+	@Override
+	public double getScore() {
+		score();
+		return score;
+	}
+
+	private synchronized void score() {
+		if (!scored) {
+			score = profile.score(target);
+			max = profile.getMaxScore(target);
+			scored = true;
+		}
+	}
+}
@@ -27,6 +27,7 @@ import org.biojava.nbio.core.alignment.template.AlignedSequence.Step;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -44,6 +45,9 @@ public class AlignerHelper {
 
 	//private static final Logger logger = LoggerFactory.getLogger(AlignerHelper.class);
 
+	// codes of the pointers in a packed traceback
+	private static final int SUB = 1, DEL = 2, INS = 3;
+
 	// types
 
 	/**
@@ -294,6 +298,58 @@ public class AlignerHelper {
 			return list;
 		}
 	}
+	/**
+	 * Traceback pointers packed in 2 bits per state, one byte per cell: 0 for no pointer or 1 plus the ordinal of the
+	 * {@link Last} pointer, in bits 0-1 for the substitution state, 2-3 for the deletion state and 4-5 for the
+	 * insertion state. With a linear gap penalty only the substitution state is used. There is a row for each
+	 * position in the query, indexed by the position in the target. Compared to arrays of {@link Last} for every
+	 * cell this takes about 40 times less memory.
+	 * <p>
+	 * Subclasses can compute the rows on demand by overriding {@link #getRow(int)}.
+	 */
+	public static class PackedTraceback {
+
+		private static final Last[] LAST = Last.values();
+
+		protected final byte[][] rows;
+
+		public PackedTraceback(int rows) {
+			this.rows = new byte[rows][];
+		}
+
+		public byte[] getRow(int x) {
+			return rows[x];
+		}
+
+		public void setRow(int x, byte[] row) {
+			rows[x] = row;
+		}
+
+		/**
+		 * Returns the pointer of a state of a cell.
+		 * @param x position in query
+		 * @param y position in target
+		 * @param state 0 for substitution, 1 for deletion, 2 for insertion
+		 * @return the pointer or null
+		 */
+		public Last get(int x, int y, int state) {
+			return unpack(getRow(x)[y], state);
+		}
+
+		public static byte pack(Last substitution, Last deletion, Last insertion) {
+			return (byte) (code(substitution) | code(deletion) << 2 | code(insertion) << 4);
+		}
+
+		public static Last unpack(byte cell, int state) {
+			int code = (cell >> (2 * state)) & 3;
+			return (code == 0) ? null : LAST[code - 1];
+		}
+
+		private static int code(Last last) {
+			return (last == null) ? 0 : last.ordinal() + 1;
+		}
+	}
+
 	// updates cut rows given the latest row of traceback pointers
 	public static void setCuts(int x, Subproblem subproblem, Last[][] pointers, Cut[]cuts) {
 		for (Cut c : cuts) {
@@ -598,6 +654,196 @@ public class AlignerHelper {
 		return pointers;
 	}
 
+	/**
+	 * Calculates the optimal alignment score for the given sequence positions with an affine or constant gap penalty,
+	 * as {@link #setScorePoint(int, int, int, int, int, int[][][])}
+	 * @param x position in query
+	 * @param y position in target
+	 * @param gop gap opening penalty
+	 * @param gep gap extension penalty
+	 * @param sub compound match score
+	 * @param scores dynamic programming score matrix to fill at the given position
+	 * @return traceback directions for substitution, deletion and insertion, packed as in {@link PackedTraceback}
+	 */
+	public static int setPackedScorePoint(int x, int y, int gop, int gep, int sub, int[][][] scores) {
+		int[] diagonal = scores[x - 1][y - 1], up = scores[x - 1][y], left = scores[x][y - 1], cell = scores[x][y];
+		int pointers;
+
+		// substitution
+		if (diagonal[1] >= diagonal[0] && diagonal[1] >= diagonal[2]) {
+			cell[0] = diagonal[1] + sub;
+			pointers = DEL;
+		} else if (diagonal[0] >= diagonal[2]) {
+			cell[0] = diagonal[0] + sub;
+			pointers = SUB;
+		} else {
+			cell[0] = diagonal[2] + sub;
+			pointers = INS;
+		}
+
+		// deletion
+		if (up[1] >= up[0] + gop) {
+			cell[1] = up[1] + gep;
+			pointers |= DEL << 2;
+		} else {
+			cell[1] = up[0] + gop + gep;
+			pointers |= SUB << 2;
+		}
+
+		// insertion
+		if (left[0] + gop >= left[2]) {
+			cell[2] = left[0] + gop + gep;
+			pointers |= SUB << 4;
+		} else {
+			cell[2] = left[2] + gep;
+			pointers |= INS << 4;
+		}
+
+		return pointers;
+	}
+
+	/**
+	 * Calculates the optimal alignment score for the given sequence positions and a linear gap penalty,
+	 * as {@link #setScorePoint(int, int, int, int, int[][][])}
+	 * @param x position in query
+	 * @param y position in target
+	 * @param gep gap extension penalty
+	 * @param sub compound match score
+	 * @param scores dynamic programming score matrix to fill at the given position
+	 * @return traceback direction, packed as in {@link PackedTraceback}
+	 */
+	public static int setPackedScorePoint(int x, int y, int gep, int sub, int[][][] scores) {
+		int d = scores[x - 1][y][0] + gep;
+		int i = scores[x][y - 1][0] + gep;
+		int s = scores[x - 1][y - 1][0] + sub;
+		if (d >= s && d >= i) {
+			scores[x][y][0] = d;
+			return DEL;
+		} else if (s >= i) {
+			scores[x][y][0] = s;
+			return SUB;
+		} else {
+			scores[x][y][0] = i;
+			return INS;
+		}
+	}
+
+	/**
+	 * Score global alignment for a given position in the query sequence, storing the traceback pointers in a
+	 * packed row
+	 * @see #setScoreVector(int, int, int, int, int, int, int[], boolean, int[][][], boolean)
+	 */
+	public static void setPackedScoreVector(int x, int xb, int yb, int ye, int gop, int gep, int[] subs,
+			boolean storing, int[][][] scores, boolean startAnchored, byte[] pointers) {
+		int min = Integer.MIN_VALUE - gop - gep;
+		ensureScoringMatrixColumn(x, storing, scores);
+		if (x == xb) {
+			scores[xb][yb][1] = scores[xb][yb][2] = gop;
+			pointers[yb] = 0;
+			if (startAnchored) {
+				assert (xb > 0 && yb > 0);
+				int subproblemStartingScore = scores[xb - 1][yb - 1][0] + subs[yb];
+				scores[xb][yb][0] = subproblemStartingScore;
+				scores[xb][yb][1] = subproblemStartingScore + gop;
+				scores[xb][yb][2] = subproblemStartingScore + gop;
+				pointers[yb] = (byte) (SUB | SUB << 2 | SUB << 4);
+			}
+			for (int y = yb + 1; y <= ye; y++) {
+				scores[xb][y][0] = scores[xb][y][1] = min;
+				scores[xb][y][2] = scores[xb][y - 1][2] + gep;
+				pointers[y] = (byte) (INS << 4);
+			}
+		} else {
+			scores[x][yb][0] = scores[x][yb][2] = min;
+			scores[x][yb][1] = scores[x - 1][yb][1] + gep;
+			pointers[yb] = (byte) (DEL << 2);
+			for (int y = yb + 1; y <= ye; y++) {
+				pointers[y] = (byte) setPackedScorePoint(x, y, gop, gep, subs[y], scores);
+			}
+		}
+	}
+
+	/**
+	 * Score global alignment for a given position in the query sequence for a linear gap penalty, storing the
+	 * traceback pointers in a packed row
+	 * @see #setScoreVector(int, int, int, int, int, int[], boolean, int[][][], boolean)
+	 */
+	public static void setPackedScoreVector(int x, int xb, int yb, int ye, int gep, int[] subs, boolean storing,
+			int[][][] scores, boolean startAnchored, byte[] pointers) {
+		ensureScoringMatrixColumn(x, storing, scores);
+		if (x == xb) {
+			pointers[yb] = 0;
+			if (startAnchored) {
+				assert (xb > 0 && yb > 0);
+				scores[xb][yb][0] = scores[xb - 1][yb - 1][0] + subs[yb];
+				pointers[yb] = SUB;
+			}
+			for (int y = yb + 1; y <= ye; y++) {
+				scores[xb][y][0] = scores[xb][y - 1][0] + gep;
+				pointers[y] = INS;
+			}
+		} else {
+			scores[x][yb][0] = scores[x - 1][yb][0] + gep;
+			pointers[yb] = DEL;
+			for (int y = yb + 1; y <= ye; y++) {
+				pointers[y] = (byte) setPackedScorePoint(x, y, gep, subs[y], scores);
+			}
+		}
+	}
+
+	/**
+	 * Score local alignment for a given position in the query sequence, storing the traceback pointers in a
+	 * packed row
+	 * @see #setScoreVector(int, int, int, int, int, int, int[], boolean, int[][][], int[], int)
+	 */
+	public static void setPackedScoreVector(int x, int xb, int yb, int ye, int gop, int gep, int[] subs,
+			boolean storing, int[][][] scores, int[] xyMax, int score, byte[] pointers) {
+		ensureScoringMatrixColumn(x, storing, scores);
+		Arrays.fill(pointers, (byte) 0);
+		if (x != xb) {
+			for (int y = 1; y <= ye; y++) {
+				int pointer = setPackedScorePoint(x, y, gop, gep, subs[y], scores);
+				for (int z = 0; z < 3; z++) {
+					if (scores[x][y][z] <= 0) {
+						scores[x][y][z] = 0;
+						pointer &= ~(3 << (2 * z));
+					}
+				}
+				pointers[y] = (byte) pointer;
+				if (scores[x][y][0] > score) {
+					xyMax[0] = x;
+					xyMax[1] = y;
+					score = scores[x][y][0];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Score local alignment for a given position in the query sequence for a linear gap penalty, storing the
+	 * traceback pointers in a packed row
+	 * @see #setScoreVector(int, int, int, int, int, int[], boolean, int[][][], int[], int)
+	 */
+	public static void setPackedScoreVector(int x, int xb, int yb, int ye, int gep, int[] subs, boolean storing,
+			int[][][] scores, int[] xyMax, int score, byte[] pointers) {
+		ensureScoringMatrixColumn(x, storing, scores);
+		Arrays.fill(pointers, (byte) 0);
+		if (x != xb) {
+			for (int y = 1; y <= ye; y++) {
+				int pointer = setPackedScorePoint(x, y, gep, subs[y], scores);
+				if (scores[x][y][0] <= 0) {
+					scores[x][y][0] = 0;
+					pointer = 0;
+				} else if (scores[x][y][0] > score) {
+					xyMax[0] = x;
+					xyMax[1] = y;
+					score = scores[x][y][0];
+				}
+				pointers[y] = (byte) pointer;
+			}
+		}
+	}
+
 	private static void ensureScoringMatrixColumn(int x, boolean storingFullMatrix, int[][][] scores) {
 		if (!storingFullMatrix && x > 1) {
 			scores[x] = scores[x - 2];
@@ -682,6 +928,86 @@ public class AlignerHelper {
 		return setSteps(traceback, true, xyMax, Last.SUBSTITUTION, sx, sy);
 	}
 
+	/**
+	 * Find alignment path through a packed traceback matrix
+	 * @param traceback
+	 * @param linear true if the traceback is for a linear gap penalty
+	 * @param local
+	 * @param xyMax
+	 * @param last
+	 * @param sx
+	 * @param sy
+	 * @return
+	 */
+	public static int[] setSteps(PackedTraceback traceback, boolean linear, boolean local, int[] xyMax, Last last,
+			List<Step> sx, List<Step> sy) {
+		int x = xyMax[0], y = xyMax[1];
+		while (local ? (linear ? last : traceback.get(x, y, last.ordinal())) != null : x > 0 || y > 0) {
+			switch (last) {
+			case DELETION:
+				sx.add(Step.COMPOUND);
+				sy.add(Step.GAP);
+				last = linear ? traceback.get(--x, y, 0) : traceback.get(x--, y, 1);
+				break;
+			case SUBSTITUTION:
+				sx.add(Step.COMPOUND);
+				sy.add(Step.COMPOUND);
+				last = linear ? traceback.get(--x, --y, 0) : traceback.get(x--, y--, 0);
+				break;
+			case INSERTION:
+				sx.add(Step.GAP);
+				sy.add(Step.COMPOUND);
+				last = linear ? traceback.get(x, --y, 0) : traceback.get(x, y--, 2);
+			}
+		}
+		Collections.reverse(sx);
+		Collections.reverse(sy);
+		return new int[] {x, y};
+	}
+
+	/**
+	 * Find global alignment path through a packed traceback matrix
+	 * @param traceback
+	 * @param linear true if the traceback is for a linear gap penalty
+	 * @param scores the scores of the last position in the query
+	 * @param sx
+	 * @param sy
+	 * @return
+	 */
+	public static int[] setSteps(PackedTraceback traceback, boolean linear, int[][][] scores, List<Step> sx,
+			List<Step> sy) {
+		int xMax = scores.length - 1, yMax = scores[xMax].length - 1;
+
+		Last last =
+
+			linear ?
+				traceback.get(xMax, yMax, 0) :
+
+				(scores[xMax][yMax][1] > scores[xMax][yMax][0] &&
+				 scores[xMax][yMax][1] > scores[xMax][yMax][2] ) ?
+
+						Last.DELETION :
+							(scores[xMax][yMax][0] > scores[xMax][yMax][2]) ?
+									Last.SUBSTITUTION :
+									Last.INSERTION;
+
+		return setSteps(traceback, linear, false, new int[] {xMax, yMax}, last, sx, sy);
+	}
+
+	/**
+	 * Find local alignment path through a packed traceback matrix
+	 * @param traceback
+	 * @param linear true if the traceback is for a linear gap penalty
+	 * @param xyMax
+	 * @param sx
+	 * @param sy
+	 * @return
+	 */
+	public static int[] setSteps(PackedTraceback traceback, boolean linear, int[] xyMax, List<Step> sx,
+			List<Step> sy) {
+		return setSteps(traceback, linear, true, xyMax, Last.SUBSTITUTION, sx, sy);
+	}
+
 	public static String tracebackToString(Last[][][] traceback) {
 		StringBuilder sb = new StringBuilder();
 		for (int z = 0; z < 3; z++) {
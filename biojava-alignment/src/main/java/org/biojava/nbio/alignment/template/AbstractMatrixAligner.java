@@ -23,10 +23,12 @@
 
 package org.biojava.nbio.alignment.template;
 
+import org.biojava.nbio.core.alignment.matrices.CompiledSubstitutionMatrix;
 import org.biojava.nbio.core.alignment.template.Profile;
 import org.biojava.nbio.core.alignment.template.SubstitutionMatrix;
+import org.biojava.nbio.alignment.routines.AlignerHelper;
 import org.biojava.nbio.alignment.routines.AlignerHelper.Anchor;
-import org.biojava.nbio.alignment.routines.AlignerHelper.Last;
+import org.biojava.nbio.alignment.routines.AlignerHelper.PackedTraceback;
 import org.biojava.nbio.alignment.routines.AlignerHelper.Subproblem;
 import org.biojava.nbio.core.alignment.template.AlignedSequence.Step;
 import org.biojava.nbio.core.sequence.template.Compound;
@@ -37,7 +39,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import static org.biojava.nbio.alignment.routines.AlignerHelper.setScoreVector;
 import static org.biojava.nbio.alignment.routines.AlignerHelper.setSteps;
 
 /**
@@ -51,12 +52,25 @@ import static org.biojava.nbio.alignment.routines.AlignerHelper.setSteps;
 public abstract class AbstractMatrixAligner<S extends Sequence<C>, C extends Compound> extends AbstractScorer
 		implements MatrixAligner<S, C> {
 
+	private static volatile long defaultMaxTracebackMemory = 1L << 28;
+
+	/**
+	 * Sets the default memory budget of the traceback of new aligners, see {@link #setMaxTracebackMemory(long)}.
+	 *
+	 * @param defaultMaxTracebackMemory the default maximum number of bytes of the traceback
+	 */
+	public static void setDefaultMaxTracebackMemory(long defaultMaxTracebackMemory) {
+		AbstractMatrixAligner.defaultMaxTracebackMemory = defaultMaxTracebackMemory;
+	}
+
 	// input fields
 	protected GapPenalty gapPenalty;
 	private SubstitutionMatrix<C> subMatrix;
+	private CompiledSubstitutionMatrix<C> compiledSubMatrix;
 	private boolean local, storingScoreMatrix;
 	protected List<Anchor> anchors = new ArrayList<Anchor>();
 	protected int cutsPerSection;
+	private long maxTracebackMemory = defaultMaxTracebackMemory;
 
 	// output fields
 	protected Profile<S, C> profile;
@@ -133,6 +147,19 @@ public abstract class AbstractMatrixAligner<S extends Sequence<C>, C extends Com
 		return subMatrix;
 	}
 
+	/**
+	 * Returns the substitution matrix compiled to a table indexed by compound ordinals, for the inner loops of
+	 * the alignment. It is built the first time it is needed after the substitution matrix is set.
+	 *
+	 * @return the compiled form of the substitution matrix or null if there is no substitution matrix
+	 */
+	protected CompiledSubstitutionMatrix<C> getCompiledSubstitutionMatrix() {
+		if (compiledSubMatrix == null && subMatrix != null) {
+			compiledSubMatrix = new CompiledSubstitutionMatrix<C>(subMatrix);
+		}
+		return compiledSubMatrix;
+	}
+
 	/**
 	 * Returns whether alignment finds a region of similarity rather than aligning every compound.
 	 *
@@ -151,6 +178,28 @@ public abstract class AbstractMatrixAligner<S extends Sequence<C>, C extends Com
 		return storingScoreMatrix;
 	}
 
+	/**
+	 * Returns the memory budget of the traceback.
+	 *
+	 * @return the maximum number of bytes of the traceback
+	 */
+	public long getMaxTracebackMemory() {
+		return maxTracebackMemory;
+	}
+
+	/**
+	 * Sets the memory budget of the traceback. The traceback takes one byte for each cell of the score matrix. When
+	 * it takes more than this budget and the score matrix is not stored, only the scores at the end of blocks of
+	 * query positions are kept during the alignment and the traceback of a block is computed again from these
+	 * scores when the alignment path goes through it, which takes about twice the time in a space proportional to
+	 * the square root of the number of cells.
+	 *
+	 * @param maxTracebackMemory the maximum number of bytes of the traceback
+	 */
+	public void setMaxTracebackMemory(long maxTracebackMemory) {
+		this.maxTracebackMemory = maxTracebackMemory;
+	}
+
 	/**
 	 * Sets the gap penalties.
 	 *
@@ -168,6 +217,7 @@ public abstract class AbstractMatrixAligner<S extends Sequence<C>, C extends Com
 	 */
 	public void setSubstitutionMatrix(SubstitutionMatrix<C> subMatrix) {
 		this.subMatrix = subMatrix;
+		compiledSubMatrix = null;
 		reset();
 	}
 
@@ -311,28 +361,30 @@ public abstract class AbstractMatrixAligner<S extends Sequence<C>, C extends Com
 			scores[1] = new int[dim[1]][dim[2]];
 		}
 		boolean linear = (gapPenalty.getType() == GapPenalty.Type.LINEAR);
-		Last[][][] traceback = new Last[dim[0]][][];
 		List<Step> sx = new ArrayList<Step>(), sy = new ArrayList<Step>();
+		List<Subproblem> problems = local ? null : Subproblem.getSubproblems(anchors, dim[0] - 1, dim[1] - 1);
+		CheckpointedTraceback traceback = (!storingScoreMatrix && (long) dim[0] * dim[1] > maxTracebackMemory) ?
+				new CheckpointedTraceback(dim, problems) : null;
+		PackedTraceback packed = (traceback == null) ? new PackedTraceback(dim[0]) : traceback;
 
 		if (!local) {
 			xyMax = new int[] { dim[0] - 1, dim[1] - 1 };
 			xyStart = new int[] { 0, 0 };
 			score = 0;
-			List<Subproblem> problems = Subproblem.getSubproblems(anchors, xyMax[0], xyMax[1]);
 			assert problems.size() == anchors.size() + 1;
 			for (int i = 0; i < problems.size(); i++) {
 				Subproblem subproblem = problems.get(i);
 				for (int x = subproblem.getQueryStartIndex(); x <= subproblem.getQueryEndIndex(); x++) {
-
-					traceback[x] =
-
-					  linear ?
-						setScoreVector(x, subproblem, gapPenalty.getExtensionPenalty(), getSubstitutionScoreVector(x, subproblem), storingScoreMatrix, scores) :
-
-						setScoreVector(x, subproblem, gapPenalty.getOpenPenalty(), gapPenalty.getExtensionPenalty(), getSubstitutionScoreVector(x, subproblem), storingScoreMatrix, scores);
+					byte[] pointers = (traceback == null) ? new byte[dim[1]] : traceback.buffer;
+					setScoreVector(x, subproblem, storingScoreMatrix, scores, null, 0, pointers);
+					if (traceback == null) {
+						packed.setRow(x, pointers);
+					} else {
+						traceback.computed(x, scores[x]);
+					}
 				}
 			}
-			setSteps(traceback, scores, sx, sy);
+			setSteps(packed, linear, scores, sx, sy);
 			score = Integer.MIN_VALUE;
 			int[] finalScore = scores[xyMax[0]][xyMax[1]];
 			for (int z = 0; z < finalScore.length; z++) {
@@ -340,19 +392,19 @@ public abstract class AbstractMatrixAligner<S extends Sequence<C>, C extends Com
 			}
 		} else {
 			for (int x = 0; x < dim[0]; x++) {
-
-				traceback[x] =
-
-				  linear ?
-					setScoreVector(x, gapPenalty.getExtensionPenalty(), getSubstitutionScoreVector(x), storingScoreMatrix, scores, xyMax, score) :
-
-					setScoreVector(x, gapPenalty.getOpenPenalty(), gapPenalty.getExtensionPenalty(), getSubstitutionScoreVector(x), storingScoreMatrix, scores, xyMax, score);
+				byte[] pointers = (traceback == null) ? new byte[dim[1]] : traceback.buffer;
+				setScoreVector(x, null, storingScoreMatrix, scores, xyMax, score, pointers);
+				if (traceback == null) {
+					packed.setRow(x, pointers);
+				} else {
+					traceback.computed(x, scores[x]);
+				}
 
 				if (xyMax[0] == x) {
 					score = scores[x][xyMax[1]][0];
 				}
 			}
-			xyStart = local ? setSteps(traceback, xyMax, sx, sy) : setSteps(traceback, scores, sx, sy);
+			xyStart = setSteps(packed, linear, xyMax, sx, sy);
 		}
 
 		setProfile(sx, sy);
@@ -364,6 +416,136 @@ public abstract class AbstractMatrixAligner<S extends Sequence<C>, C extends Com
 		time = System.nanoTime() - timeStart;
 	}
 
+	/**
+	 * Scores a position in the query sequence and stores its traceback pointers
+	 * @param x position in the query
+	 * @param subproblem the subproblem of the position, for a global alignment
+	 * @param storing true if every row of the score matrix is kept
+	 * @param scores
+	 * @param xyMax position of the best score so far, for a local alignment
+	 * @param score best score so far, for a local alignment
+	 * @param pointers row of packed traceback pointers to fill
+	 */
+	private void setScoreVector(int x, Subproblem subproblem, boolean storing, int[][][] scores, int[] xyMax,
+			int score, byte[] pointers) {
+		int gop = gapPenalty.getOpenPenalty(), gep = gapPenalty.getExtensionPenalty();
+		boolean linear = (gapPenalty.getType() == GapPenalty.Type.LINEAR);
+		if (!local) {
+			int xb = subproblem.getQueryStartIndex(), yb = subproblem.getTargetStartIndex(),
+					ye = subproblem.getTargetEndIndex();
+			int[] subs = getSubstitutionScoreVector(x, subproblem);
+			if (linear) {
+				AlignerHelper.setPackedScoreVector(x, xb, yb, ye, gep, subs, storing, scores,
+						subproblem.isStartAnchored(), pointers);
+			} else {
+				AlignerHelper.setPackedScoreVector(x, xb, yb, ye, gop, gep, subs, storing, scores,
+						subproblem.isStartAnchored(), pointers);
+			}
+		} else {
+			int[] subs = getSubstitutionScoreVector(x);
+			if (linear) {
+				AlignerHelper.setPackedScoreVector(x, 0, 0, pointers.length - 1, gep, subs, storing, scores, xyMax,
+						score, pointers);
+			} else {
+				AlignerHelper.setPackedScoreVector(x, 0, 0, pointers.length - 1, gop, gep, subs, storing, scores,
+						xyMax, score, pointers);
+			}
+		}
+	}
+
+	/**
+	 * A traceback within the memory budget: the scores of the last position of every block of query positions are
+	 * kept during the alignment, and the pointers of a block are computed again from the scores of the previous
+	 * block when they are read. The alignment path is followed from the end, so every block is computed once.
+	 */
+	private class CheckpointedTraceback extends PackedTraceback {
+
+		// row for the pointers computed during the alignment, which are not kept
+		private final byte[] buffer;
+		private final int[] dim;
+		private final List<Subproblem> problems;
+		private final int blockSize;
+		// scores of the last position of every block but the last one, flattened
+		private final int[][] checkpoints;
+		private int block = -1;
+
+		private CheckpointedTraceback(int[] dim, List<Subproblem> problems) {
+			super(dim[0]);
+			this.dim = dim;
+			this.problems = problems;
+			buffer = new byte[dim[1]];
+			// balances the memory of the checkpoints and of the pointers of a block
+			long size = (long) Math.sqrt(4.0 * dim[0] * dim[2]);
+			size = Math.min(size, maxTracebackMemory / dim[1]);
+			blockSize = (int) Math.max(1, Math.min(size, dim[0]));
+			checkpoints = new int[(dim[0] - 1) / blockSize][];
+		}
+
+		/**
+		 * Keeps the scores of a position if it ends a block.
+		 * @param x position in the query
+		 * @param scores the scores of the position
+		 */
+		private void computed(int x, int[][] scores) {
+			if ((x + 1) % blockSize == 0 && x + 1 < dim[0]) {
+				int[] checkpoint = new int[dim[1] * dim[2]];
+				for (int y = 0; y < dim[1]; y++) {
+					System.arraycopy(scores[y], 0, checkpoint, y * dim[2], dim[2]);
+				}
+				checkpoints[x / blockSize] = checkpoint;
+			}
+		}
+
+		@Override
+		public byte[] getRow(int x) {
+			if (x / blockSize != block) {
+				compute(x / blockSize);
+			}
+			return rows[x];
+		}
+
+		private void compute(int b) {
+			if (block >= 0) {
+				for (int x = block * blockSize; x < Math.min((block + 1) * blockSize, dim[0]); x++) {
+					rows[x] = null;
+				}
+			}
+			block = b;
+			int xb = b * blockSize, xe = Math.min(xb + blockSize, dim[0]) - 1;
+
+			// separate score rows, so that the scores of the alignment are not changed
+			int[][][] scores = new int[dim[0]][][];
+			int[][] previous = new int[dim[1]][dim[2]], current = new int[dim[1]][dim[2]];
+			if (xb > 0) {
+				int[] checkpoint = checkpoints[b - 1];
+				for (int y = 0; y < dim[1]; y++) {
+					System.arraycopy(checkpoint, y * dim[2], previous[y], 0, dim[2]);
+				}
+				scores[xb - 1] = previous;
+			}
+			int[] xyMax = new int[2];
+			for (int x = xb; x <= xe; x++) {
+				scores[x] = ((x - xb) % 2 == 0) ? current : previous;
+				rows[x] = new byte[dim[1]];
+				AbstractMatrixAligner.this.setScoreVector(x, local ? null : getSubproblem(x), true, scores, xyMax,
+						Integer.MAX_VALUE, rows[x]);
+			}
+		}
+
+		private Subproblem getSubproblem(int x) {
+			int low = 0, high = problems.size() - 1;
+			while (low < high) {
+				int mid = (low + high + 1) >>> 1;
+				if (problems.get(mid).getQueryStartIndex() <= x) {
+					low = mid;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return problems.get(low);
+		}
+	}
+
 	/**
 	 * Returns score for the alignment of the query column to all target columns
 	 * @param queryColumn
@@ -23,6 +23,8 @@
 
 package org.biojava.nbio.alignment.template;
 
+import org.biojava.nbio.alignment.routines.AlignerHelper.Subproblem;
+import org.biojava.nbio.core.alignment.matrices.CompiledSubstitutionMatrix;
 import org.biojava.nbio.core.alignment.template.SequencePair;
 import org.biojava.nbio.core.alignment.template.SubstitutionMatrix;
 import org.biojava.nbio.core.sequence.template.Compound;
@@ -45,6 +47,9 @@ public abstract class AbstractPairwiseSequenceAligner<S extends Sequence<C>, C e
 	// additional input fields
 	private S query, target;
 
+	// compound ordinals of the query and target in the compiled substitution matrix, set when ready to align
+	private int[] queryOrdinals, targetOrdinals;
+
 	// additional output field
 	protected SequencePair<S, C> pair;
 
@@ -153,9 +158,29 @@ public abstract class AbstractPairwiseSequenceAligner<S extends Sequence<C>, C e
 
 	@Override
 	protected int getSubstitutionScore(int queryColumn, int targetColumn) {
+		if (queryOrdinals != null) {
+			return getCompiledSubstitutionMatrix().getValue(queryOrdinals[queryColumn - 1], targetOrdinals[targetColumn - 1]);
+		}
 		return getSubstitutionMatrix().getValue(query.getCompoundAt(queryColumn), target.getCompoundAt(targetColumn));
 	}
 
+	@Override
+	protected int[] getSubstitutionScoreVector(int queryColumn, Subproblem subproblem) {
+		if (queryOrdinals == null) {
+			return super.getSubstitutionScoreVector(queryColumn, subproblem);
+		}
+		int[] subs = new int[subproblem.getTargetEndIndex() + 1];
+		if (queryColumn > 0) {
+			CompiledSubstitutionMatrix<C> compiled = getCompiledSubstitutionMatrix();
+			int[] table = compiled.getTable();
+			int row = queryOrdinals[queryColumn - 1] * compiled.getStride();
+			for (int y = Math.max(1, subproblem.getTargetStartIndex()); y <= subproblem.getTargetEndIndex(); y++) {
+				subs[y] = table[row + targetOrdinals[y - 1]];
+			}
+		}
+		return subs;
+	}
+
 	@Override
 	protected boolean isReady() {
 		return query != null && target != null && getGapPenalty() != null && getSubstitutionMatrix() != null &&
@@ -166,14 +191,19 @@ public abstract class AbstractPairwiseSequenceAligner<S extends Sequence<C>, C e
 	protected void reset() {
 		super.reset();
 		pair = null;
+		queryOrdinals = targetOrdinals = null;
 		if (query != null && target != null && getGapPenalty() != null && getSubstitutionMatrix() != null &&
 				query.getCompoundSet().equals(target.getCompoundSet())) {
+			// encode the sequences once, so that the alignment only indexes arrays
+			CompiledSubstitutionMatrix<C> compiled = getCompiledSubstitutionMatrix();
+			queryOrdinals = compiled.encode(query);
+			targetOrdinals = compiled.encode(target);
 			int maxq = 0, maxt = 0;
-			for (C c : query) {
-				maxq += getSubstitutionMatrix().getValue(c, c);
+			for (int q : queryOrdinals) {
+				maxq += compiled.getValue(q, q);
 			}
-			for (C c : target) {
-				maxt += getSubstitutionMatrix().getValue(c, c);
+			for (int t : targetOrdinals) {
+				maxt += compiled.getValue(t, t);
 			}
 			max = Math.max(maxq, maxt);
 			score = min = isLocal() ? 0 : (int) (2 * getGapPenalty().getOpenPenalty() + (query.getLength() +
@@ -23,6 +23,7 @@
 
 package org.biojava.nbio.alignment.template;
 
+import org.biojava.nbio.core.alignment.matrices.CompiledSubstitutionMatrix;
 import org.biojava.nbio.core.alignment.template.ProfilePair;
 import org.biojava.nbio.core.alignment.template.Profile;
 import org.biojava.nbio.core.alignment.template.SubstitutionMatrix;
@@ -59,6 +60,8 @@ public abstract class AbstractProfileProfileAligner<S extends Sequence<C>, C ext
 	// cached fields
 	private List<C> cslist;
 	private float[][] qfrac, tfrac;
+	// scores of the pairs of compounds of cslist, flattened
+	private int[] csscores;
 
 	// additional output field
 	protected ProfilePair<S, C> pair;
@@ -237,6 +240,15 @@ public abstract class AbstractProfileProfileAligner<S extends Sequence<C>, C ext
 				query.getCompoundSet().equals(target.getCompoundSet())) {
 			int maxq = 0, maxt = 0;
 			cslist = query.getCompoundSet().getAllCompounds();
+			// the scores of all pairs of compounds, indexed as the compound weights
+			CompiledSubstitutionMatrix<C> compiled = getCompiledSubstitutionMatrix();
+			int[] ordinals = compiled.encode(cslist);
+			csscores = new int[cslist.size() * cslist.size()];
+			for (int q = 0; q < ordinals.length; q++) {
+				for (int t = 0; t < ordinals.length; t++) {
+					csscores[q * ordinals.length + t] = compiled.getValue(ordinals[q], ordinals[t]);
+				}
+			}
 			qfrac = new float[query.getLength()][];
 			for (int i = 0; i < qfrac.length; i++) {
 				qfrac[i] = query.getCompoundWeightsAt(i + 1, cslist);
@@ -260,7 +272,7 @@ public abstract class AbstractProfileProfileAligner<S extends Sequence<C>, C ext
 			if (qv[q] > 0.0f) {
 				for (int t = 0; t < tv.length; t++) {
 					if (tv[t] > 0.0f) {
-						score += qv[q]*tv[t]*getSubstitutionMatrix().getValue(cslist.get(q), cslist.get(t));
+						score += qv[q]*tv[t]*csscores[q * tv.length + t];
 					}
 				}
 			}
@@ -0,0 +1,98 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.alignment;
+
+import org.biojava.nbio.core.alignment.matrices.CompiledSubstitutionMatrix;
+import org.biojava.nbio.core.alignment.matrices.SimpleSubstitutionMatrix;
+import org.biojava.nbio.core.alignment.template.SubstitutionMatrix;
+import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
+import org.biojava.nbio.core.sequence.DNASequence;
+import org.biojava.nbio.core.sequence.compound.AminoAcidCompound;
+import org.biojava.nbio.core.sequence.compound.AminoAcidCompoundSet;
+import org.biojava.nbio.core.sequence.compound.DNACompoundSet;
+import org.biojava.nbio.core.sequence.compound.NucleotideCompound;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompiledSubstitutionMatrixTest {
+
+	@Test
+	public void testSameValues() {
+		SubstitutionMatrix<AminoAcidCompound> matrix = SimpleSubstitutionMatrix.getBlosum62();
+		CompiledSubstitutionMatrix<AminoAcidCompound> compiled = new CompiledSubstitutionMatrix<AminoAcidCompound>(matrix);
+		List<AminoAcidCompound> compounds = AminoAcidCompoundSet.getAminoAcidCompoundSet().getAllCompounds();
+		assertEquals(compounds.size(), compiled.size());
+		for (AminoAcidCompound from : compounds) {
+			for (AminoAcidCompound to : compounds) {
+				assertEquals(matrix.getValue(from, to), compiled.getValue(from, to));
+			}
+		}
+	}
+
+	@Test
+	public void testCompoundsNotInMatrix() {
+		DNACompoundSet dnacs = DNACompoundSet.getDNACompoundSet();
+		SubstitutionMatrix<NucleotideCompound> matrix = new SimpleSubstitutionMatrix<NucleotideCompound>(dnacs,
+				"# Test\nA C G T\nA 5 0 0 0\nC 0 5 0 0\nG 0 0 5 0\nT 0 0 0 1\n", "DNA Test");
+		CompiledSubstitutionMatrix<NucleotideCompound> compiled = new CompiledSubstitutionMatrix<NucleotideCompound>(matrix);
+		NucleotideCompound g = dnacs.getCompoundForString("g");
+		NucleotideCompound a = dnacs.getCompoundForString("A");
+		NucleotideCompound n = dnacs.getCompoundForString("N");
+		assertEquals(5, compiled.getValue(g, dnacs.getCompoundForString("G")));
+		assertEquals(0, compiled.getValue(a, g));
+		assertEquals(matrix.getValue(n, a), compiled.getValue(n, a));
+		assertEquals(matrix.getMinValue(), compiled.getValue(n, n));
+	}
+
+	@Test
+	public void testEncodeAndGrow() throws CompoundNotFoundException {
+		DNACompoundSet dnacs = DNACompoundSet.getDNACompoundSet();
+		SubstitutionMatrix<NucleotideCompound> matrix = new SimpleSubstitutionMatrix<NucleotideCompound>(dnacs,
+				"# Test\nA C G T\nA 5 0 0 0\nC 0 5 0 0\nG 0 0 5 0\nT 0 0 0 1\n", "DNA Test");
+		CompiledSubstitutionMatrix<NucleotideCompound> compiled = new CompiledSubstitutionMatrix<NucleotideCompound>(matrix);
+		int size = compiled.size();
+
+		DNASequence seq = new DNASequence("ACGTTGCAacgtNN");
+		int[] ordinals = compiled.encode(seq);
+		assertEquals(seq.getLength(), ordinals.length);
+		assertEquals(size, compiled.size());
+		for (int i = 1; i <= seq.getLength(); i++) {
+			assertEquals(seq.getCompoundAt(i), compiled.getCompound(ordinals[i - 1]));
+			for (int j = 1; j <= seq.getLength(); j++) {
+				assertEquals(matrix.getValue(seq.getCompoundAt(i), seq.getCompoundAt(j)),
+						compiled.getValue(ordinals[i - 1], ordinals[j - 1]));
+			}
+		}
+
+		// a compound which is not in the compound set gets a new ordinal
+		NucleotideCompound x = new NucleotideCompound("G", dnacs, "C");
+		int ordinal = compiled.getOrdinal(x);
+		assertEquals(size, ordinal);
+		assertEquals(size + 1, compiled.size());
+		assertEquals(5, compiled.getValue(ordinal, ordinal));
+		assertEquals(5, compiled.getValue(ordinal, ordinals[2]));
+		assertEquals(0, compiled.getValue(ordinals[0], ordinal));
+		assertEquals(1, compiled.getValue(ordinals[3], ordinals[3]));
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.alignment;
+
+import org.biojava.nbio.alignment.template.GapPenalty;
+import org.biojava.nbio.core.alignment.matrices.SubstitutionMatrixHelper;
+import org.biojava.nbio.core.alignment.template.SubstitutionMatrix;
+import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
+import org.biojava.nbio.core.sequence.ProteinSequence;
+import org.biojava.nbio.core.sequence.compound.AminoAcidCompound;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the local alignment score of two related proteins with
+ * {@link StripedSmithWaterman}, with and without reusing its
+ * {@link StripedSmithWaterman.QueryProfile}, against {@link SmithWaterman}.
+ * The default length is that of an average UniProt entry.
+ * <p>
+ * It is not run by the unit tests. Run it from the test classpath with
+ * {@link #main(String[])}, or with
+ * <code>org.openjdk.jmh.Main StripedSmithWatermanBenchmark</code>.
+ *
+ * @since 5.1.2
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripedSmithWatermanBenchmark {
+
+	/** length of the proteins */
+	@Param({ "100", "400", "1000" })
+	public int length;
+
+	private ProteinSequence query;
+	private ProteinSequence target;
+	private GapPenalty gaps;
+	private SubstitutionMatrix<AminoAcidCompound> matrix;
+	private StripedSmithWaterman.QueryProfile<ProteinSequence, AminoAcidCompound> profile;
+
+	@Setup
+	public void setup() throws CompoundNotFoundException {
+		String alphabet = "ACDEFGHIKLMNPQRSTVWY";
+		Random random = new Random(0);
+		StringBuilder q = new StringBuilder();
+		StringBuilder t = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			char c = alphabet.charAt(random.nextInt(alphabet.length()));
+			q.append(c);
+			// a third of the residues of the target are substituted, inserted or deleted
+			int r = random.nextInt(30);
+			if (r < 8) {
+				t.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			} else if (r == 8) {
+				t.append(alphabet.charAt(random.nextInt(alphabet.length()))).append(c);
+			} else if (r > 9) {
+				t.append(c);
+			}
+		}
+		query = new ProteinSequence(q.toString());
+		target = new ProteinSequence(t.toString());
+		gaps = new SimpleGapPenalty();
+		matrix = SubstitutionMatrixHelper.getBlosum62();
+		profile = new StripedSmithWaterman.QueryProfile<ProteinSequence, AminoAcidCompound>(query, gaps, matrix);
+	}
+
+	@Benchmark
+	public double smithWaterman() {
+		return new SmithWaterman<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix).getScore();
+	}
+
+	@Benchmark
+	public double striped() {
+		return new StripedSmithWaterman<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix).getScore();
+	}
+
+	/** the profile of the query built once, as when a query is scored against a database */
+	@Benchmark
+	public int stripedProfile() {
+		return profile.score(target);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(StripedSmithWatermanBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
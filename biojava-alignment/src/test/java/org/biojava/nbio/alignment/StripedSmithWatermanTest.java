@@ -0,0 +1,170 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.alignment;
+
+import org.biojava.nbio.alignment.Alignments.PairwiseSequenceScorerType;
+import org.biojava.nbio.alignment.template.GapPenalty;
+import org.biojava.nbio.core.alignment.matrices.SubstitutionMatrixHelper;
+import org.biojava.nbio.core.alignment.template.SubstitutionMatrix;
+import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
+import org.biojava.nbio.core.sequence.DNASequence;
+import org.biojava.nbio.core.sequence.ProteinSequence;
+import org.biojava.nbio.core.sequence.compound.AminoAcidCompound;
+import org.biojava.nbio.core.sequence.compound.NucleotideCompound;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class StripedSmithWatermanTest {
+
+	private static final double PRECISION = 0.00000001;
+
+	private static String randomSequence(Random random, String alphabet, int length) {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			s.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Random mutations of a common ancestor, so that there are long local alignments with gaps
+	 */
+	private static String mutate(Random random, String alphabet, String ancestor) {
+		StringBuilder s = new StringBuilder(randomSequence(random, alphabet, random.nextInt(10)));
+		for (int i = 0; i < ancestor.length(); i++) {
+			int r = random.nextInt(20);
+			if (r == 0) {
+				continue;
+			} else if (r == 1) {
+				s.append(randomSequence(random, alphabet, 1 + random.nextInt(4)));
+			} else if (r < 4) {
+				s.append(alphabet.charAt(random.nextInt(alphabet.length())));
+				continue;
+			}
+			s.append(ancestor.charAt(i));
+		}
+		return s.append(randomSequence(random, alphabet, random.nextInt(10))).toString();
+	}
+
+	private static void assertSameScores(GapPenalty gaps, SubstitutionMatrix<AminoAcidCompound> matrix)
+			throws CompoundNotFoundException {
+		String alphabet = "ACDEFGHIKLMNPQRSTVWY";
+		Random random = new Random(42);
+		for (int n = 0; n < 40; n++) {
+			String ancestor = randomSequence(random, alphabet, 1 + random.nextInt(120));
+			ProteinSequence query = new ProteinSequence(mutate(random, alphabet, ancestor));
+			ProteinSequence target = new ProteinSequence(n % 4 == 0 ? randomSequence(random, alphabet, 1 + random.nextInt(60)) :
+					mutate(random, alphabet, ancestor));
+			SmithWaterman<ProteinSequence, AminoAcidCompound> sw =
+					new SmithWaterman<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix);
+			StripedSmithWaterman<ProteinSequence, AminoAcidCompound> striped =
+					new StripedSmithWaterman<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix);
+			assertEquals(query + " " + target, sw.getScore(), striped.getScore(), PRECISION);
+			assertEquals(sw.getMaxScore(), striped.getMaxScore(), PRECISION);
+			assertEquals(sw.getMinScore(), striped.getMinScore(), PRECISION);
+		}
+	}
+
+	@Test
+	public void testAffine() throws CompoundNotFoundException {
+		assertSameScores(new SimpleGapPenalty(10, 1), SubstitutionMatrixHelper.getBlosum62());
+		assertSameScores(new SimpleGapPenalty(2, 1), SubstitutionMatrixHelper.getBlosum62());
+	}
+
+	/**
+	 * Smith-Waterman with a linear gap penalty, which the local linear routine of {@link SmithWaterman} doesn't support
+	 */
+	private static int linearScore(ProteinSequence query, ProteinSequence target, int gep,
+			SubstitutionMatrix<AminoAcidCompound> matrix) {
+		int[][] h = new int[query.getLength() + 1][target.getLength() + 1];
+		int best = 0;
+		for (int x = 1; x <= query.getLength(); x++) {
+			for (int y = 1; y <= target.getLength(); y++) {
+				int sub = h[x - 1][y - 1] + matrix.getValue(query.getCompoundAt(x), target.getCompoundAt(y));
+				h[x][y] = Math.max(0, Math.max(sub, Math.max(h[x - 1][y], h[x][y - 1]) - gep));
+				best = Math.max(best, h[x][y]);
+			}
+		}
+		return best;
+	}
+
+	@Test
+	public void testLinear() throws CompoundNotFoundException {
+		String alphabet = "ACDEFGHIKLMNPQRSTVWY";
+		Random random = new Random(7);
+		for (int gep = 1; gep <= 3; gep++) {
+			GapPenalty gaps = new SimpleGapPenalty(0, gep);
+			assertEquals(GapPenalty.Type.LINEAR, gaps.getType());
+			for (int n = 0; n < 20; n++) {
+				String ancestor = randomSequence(random, alphabet, 1 + random.nextInt(100));
+				ProteinSequence query = new ProteinSequence(mutate(random, alphabet, ancestor));
+				ProteinSequence target = new ProteinSequence(mutate(random, alphabet, ancestor));
+				SubstitutionMatrix<AminoAcidCompound> matrix = n % 2 == 0 ? SubstitutionMatrixHelper.getBlosum62() :
+						SubstitutionMatrixHelper.getPAM250();
+				assertEquals(linearScore(query, target, gep, matrix),
+						new StripedSmithWaterman<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix).getScore(),
+						PRECISION);
+			}
+		}
+	}
+
+	@Test
+	public void testConstant() throws CompoundNotFoundException {
+		assertSameScores(new SimpleGapPenalty(5, 0), SubstitutionMatrixHelper.getBlosum62());
+	}
+
+	@Test
+	public void testDNA() throws CompoundNotFoundException {
+		DNASequence query = new DNASequence("ACGTTGACNNAGTCAGTACGATGCATGCAGTCGATG");
+		DNASequence target = new DNASequence("TTACGTTGACAGTCAGTTTTTTACGATGCAGTCG");
+		GapPenalty gaps = new SimpleGapPenalty(5, 2);
+		SubstitutionMatrix<NucleotideCompound> matrix = SubstitutionMatrixHelper.getNuc4_4();
+		assertEquals(new SmithWaterman<DNASequence, NucleotideCompound>(query, target, gaps, matrix).getScore(),
+				new StripedSmithWaterman<DNASequence, NucleotideCompound>(query, target, gaps, matrix).getScore(),
+				PRECISION);
+	}
+
+	@Test
+	public void testGetAllPairsScores() throws CompoundNotFoundException {
+		List<ProteinSequence> sequences = new ArrayList<ProteinSequence>();
+		sequences.add(new ProteinSequence("ARNDCEQGHILKMFPSTWYV"));
+		sequences.add(new ProteinSequence("RDCEQGHILKMFPSTWYVARND"));
+		sequences.add(new ProteinSequence("MKTAYIAKQRQISFVKSHFSRQ"));
+		sequences.add(new ProteinSequence("W"));
+		GapPenalty gaps = new SimpleGapPenalty();
+		SubstitutionMatrix<AminoAcidCompound> matrix = SubstitutionMatrixHelper.getBlosum62();
+
+		double[] scores = Alignments.getAllPairsScores(sequences, PairwiseSequenceScorerType.LOCAL, gaps, matrix);
+		int n = 0;
+		for (int i = 0; i < sequences.size(); i++) {
+			for (int j = i + 1; j < sequences.size(); j++) {
+				assertEquals(new SmithWaterman<ProteinSequence, AminoAcidCompound>(sequences.get(i), sequences.get(j),
+						gaps, matrix).getScore(), scores[n++], PRECISION);
+			}
+		}
+		assertEquals(n, scores.length);
+	}
+}
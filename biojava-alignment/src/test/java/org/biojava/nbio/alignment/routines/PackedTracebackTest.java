@@ -0,0 +1,155 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.alignment.routines;
+
+import org.biojava.nbio.alignment.NeedlemanWunsch;
+import org.biojava.nbio.alignment.SimpleGapPenalty;
+import org.biojava.nbio.alignment.SmithWaterman;
+import org.biojava.nbio.alignment.StripedSmithWaterman;
+import org.biojava.nbio.alignment.routines.AlignerHelper.Last;
+import org.biojava.nbio.alignment.routines.AlignerHelper.PackedTraceback;
+import org.biojava.nbio.alignment.template.AbstractPairwiseSequenceAligner;
+import org.biojava.nbio.alignment.template.GapPenalty;
+import org.biojava.nbio.core.alignment.matrices.SubstitutionMatrixHelper;
+import org.biojava.nbio.core.alignment.template.SubstitutionMatrix;
+import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
+import org.biojava.nbio.core.sequence.ProteinSequence;
+import org.biojava.nbio.core.sequence.compound.AminoAcidCompound;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PackedTracebackTest {
+
+	private static final double PRECISION = 0.00000001;
+
+	private static final String ALPHABET = "ACDEFGHIKLMNPQRSTVWY";
+
+	private static String randomSequence(Random random, int length) {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			s.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return s.toString();
+	}
+
+	private static String mutate(Random random, String ancestor) {
+		StringBuilder s = new StringBuilder(randomSequence(random, random.nextInt(8)));
+		for (int i = 0; i < ancestor.length(); i++) {
+			int r = random.nextInt(12);
+			if (r == 0) {
+				continue;
+			} else if (r == 1) {
+				s.append(randomSequence(random, 1 + random.nextInt(3)));
+			} else if (r == 2) {
+				s.append(randomSequence(random, 1));
+				continue;
+			}
+			s.append(ancestor.charAt(i));
+		}
+		return s.append(randomSequence(random, random.nextInt(8))).toString();
+	}
+
+	@Test
+	public void testPack() {
+		Last[] values = { null, Last.SUBSTITUTION, Last.DELETION, Last.INSERTION };
+		for (Last s : values) {
+			for (Last d : values) {
+				for (Last i : values) {
+					byte cell = PackedTraceback.pack(s, d, i);
+					assertEquals(s, PackedTraceback.unpack(cell, 0));
+					assertEquals(d, PackedTraceback.unpack(cell, 1));
+					assertEquals(i, PackedTraceback.unpack(cell, 2));
+				}
+			}
+		}
+		assertNull(PackedTraceback.unpack((byte) 0, 1));
+	}
+
+	/**
+	 * The alignment with the traceback recomputed from checkpoints is the same as with the full traceback
+	 */
+	private static void assertSameAlignment(AbstractPairwiseSequenceAligner<ProteinSequence, AminoAcidCompound> full,
+			AbstractPairwiseSequenceAligner<ProteinSequence, AminoAcidCompound> checkpointed) {
+		full.setStoringScoreMatrix(true);
+		checkpointed.setMaxTracebackMemory(1);
+		assertEquals(full.getScore(), checkpointed.getScore(), PRECISION);
+		assertEquals(full.getPair().toString(), checkpointed.getPair().toString());
+		checkpointed.setMaxTracebackMemory(50);
+		checkpointed.setGapPenalty(checkpointed.getGapPenalty());
+		assertEquals(full.getPair().toString(), checkpointed.getPair().toString());
+	}
+
+	@Test
+	public void testCheckpointed() throws CompoundNotFoundException {
+		SubstitutionMatrix<AminoAcidCompound> matrix = SubstitutionMatrixHelper.getBlosum62();
+		GapPenalty[] penalties = { new SimpleGapPenalty(10, 1), new SimpleGapPenalty(0, 2), new SimpleGapPenalty(4, 0) };
+		Random random = new Random(11);
+		for (int n = 0; n < 30; n++) {
+			String ancestor = randomSequence(random, 1 + random.nextInt(80));
+			ProteinSequence query = new ProteinSequence(mutate(random, ancestor));
+			ProteinSequence target = new ProteinSequence(mutate(random, ancestor));
+			GapPenalty gaps = penalties[n % penalties.length];
+			assertSameAlignment(new NeedlemanWunsch<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix),
+					new NeedlemanWunsch<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix));
+			assertSameAlignment(new SmithWaterman<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix),
+					new SmithWaterman<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix));
+		}
+	}
+
+	@Test
+	public void testCheckpointedAnchors() throws CompoundNotFoundException {
+		SubstitutionMatrix<AminoAcidCompound> matrix = SubstitutionMatrixHelper.getBlosum62();
+		ProteinSequence query = new ProteinSequence("MKTAYIAKQRQISFVKSHFSRQLEERLGLIEVQ");
+		ProteinSequence target = new ProteinSequence("MKTAYIARQRQISFVKSHFSRQLEERLGLIEVQAPILSRVGDGTQDNLSGAEKAVQVKVKALPDAQ");
+		int[] anchors = new int[query.getLength()];
+		for (int i = 0; i < anchors.length; i++) {
+			anchors[i] = -1;
+		}
+		anchors[3] = 3;
+		anchors[20] = 30;
+		for (GapPenalty gaps : new GapPenalty[] { new SimpleGapPenalty(0, 1), new SimpleGapPenalty(0, 3) }) {
+			GuanUberbacher<ProteinSequence, AminoAcidCompound> full =
+					new GuanUberbacher<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix);
+			GuanUberbacher<ProteinSequence, AminoAcidCompound> checkpointed =
+					new GuanUberbacher<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix);
+			full.setAnchors(anchors);
+			checkpointed.setAnchors(anchors);
+			assertSameAlignment(full, checkpointed);
+		}
+	}
+
+	@Test
+	public void testLocalLinear() throws CompoundNotFoundException {
+		SubstitutionMatrix<AminoAcidCompound> matrix = SubstitutionMatrixHelper.getBlosum62();
+		GapPenalty gaps = new SimpleGapPenalty(0, 2);
+		ProteinSequence query = new ProteinSequence("WWWWARNDCEQGHILKMFPSTWYV");
+		ProteinSequence target = new ProteinSequence("PPARNDEQGHILKMFPSTWYVPP");
+		SmithWaterman<ProteinSequence, AminoAcidCompound> sw =
+				new SmithWaterman<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix);
+		assertEquals(new StripedSmithWaterman<ProteinSequence, AminoAcidCompound>(query, target, gaps, matrix).getScore(),
+				sw.getScore(), PRECISION);
+		assertEquals(String.format("ARNDCEQGHILKMFPSTWYV%nARND-EQGHILKMFPSTWYV%n"), sw.getPair().toString());
+	}
+}
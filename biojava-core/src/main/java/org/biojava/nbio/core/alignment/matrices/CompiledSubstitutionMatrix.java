@@ -0,0 +1,188 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.alignment.matrices;
+
+import org.biojava.nbio.core.alignment.template.SubstitutionMatrix;
+import org.biojava.nbio.core.sequence.template.Compound;
+import org.biojava.nbio.core.sequence.template.CompoundSet;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A primitive form of a {@link SubstitutionMatrix} for the inner loops of alignment algorithms.
+ * Every compound gets a small int ordinal and the scores are stored in a flattened table, so that
+ * sequences can be encoded once as arrays of ordinals and the score of a pair of compounds is
+ * read with {@link #getValue(int, int)} instead of looking the compounds up in the matrix.
+ * <p>
+ * The compounds of the {@link CompoundSet} of the matrix get the first ordinals; other compounds
+ * get one the first time they are encoded. The scores are read from {@link SubstitutionMatrix#getValue(Compound, Compound)},
+ * so they are the same as those of the matrix, including the case insensitive matching and the minimum
+ * value for unknown compounds. Compounds are identified by identity, as they are singletons of their compound set.
+ * <p>
+ * The scores are copied when the table is built: later changes of the matrix are not seen.
+ * Instances are not thread-safe, since encoding a new compound grows the table.
+ *
+ * @since 5.1.2
+ * @param <C> the type of the compounds of the matrix
+ */
+public class CompiledSubstitutionMatrix<C extends Compound> {
+
+	private final SubstitutionMatrix<C> matrix;
+	private final Map<C, Integer> ordinals = new IdentityHashMap<C, Integer>();
+	private final List<C> compounds = new ArrayList<C>();
+
+	// the score of the compounds with ordinals i and j is table[i * stride + j]
+	private int stride;
+	private int[] table;
+
+	/**
+	 * Compiles the given matrix for the compounds of its compound set.
+	 * @param matrix
+	 */
+	public CompiledSubstitutionMatrix(SubstitutionMatrix<C> matrix) {
+		this.matrix = matrix;
+		CompoundSet<C> compoundSet = matrix.getCompoundSet();
+		List<C> all = compoundSet == null ? new ArrayList<C>() : compoundSet.getAllCompounds();
+		stride = Math.max(1, all.size());
+		table = new int[stride * stride];
+		for (C c : all) {
+			getOrdinal(c);
+		}
+	}
+
+	public SubstitutionMatrix<C> getSubstitutionMatrix() {
+		return matrix;
+	}
+
+	/**
+	 * Returns the ordinal of the given compound, adding it to the table if it was not seen before.
+	 * @param compound
+	 * @return
+	 */
+	public int getOrdinal(C compound) {
+		Integer ordinal = ordinals.get(compound);
+		if (ordinal == null) {
+			ordinal = add(compound);
+		}
+		return ordinal;
+	}
+
+	/**
+	 * Returns the ordinals of the given compounds.
+	 * @param compounds a sequence or a list of compounds
+	 * @return a new array with the ordinal of every compound
+	 */
+	public int[] encode(Iterable<C> compounds) {
+		int[] encoded = new int[16];
+		int n = 0;
+		for (C c : compounds) {
+			if (n == encoded.length) {
+				int[] newEncoded = new int[n * 2];
+				System.arraycopy(encoded, 0, newEncoded, 0, n);
+				encoded = newEncoded;
+			}
+			encoded[n++] = getOrdinal(c);
+		}
+		if (n == encoded.length) {
+			return encoded;
+		}
+		int[] trimmed = new int[n];
+		System.arraycopy(encoded, 0, trimmed, 0, n);
+		return trimmed;
+	}
+
+	/**
+	 * Returns the score of the compounds with the given ordinals.
+	 * @param from the ordinal of the original compound
+	 * @param to the ordinal of the replacement compound
+	 * @return
+	 */
+	public int getValue(int from, int to) {
+		return table[from * stride + to];
+	}
+
+	/**
+	 * Returns the score of the given compounds, as {@link SubstitutionMatrix#getValue(Compound, Compound)}.
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public int getValue(C from, C to) {
+		int f = getOrdinal(from);
+		return getValue(f, getOrdinal(to));
+	}
+
+	/**
+	 * Returns the flattened table: the score of the compounds with ordinals i and j is at
+	 * <code>i * getStride() + j</code>. The array is replaced when a new compound is added.
+	 * @return
+	 */
+	public int[] getTable() {
+		return table;
+	}
+
+	/**
+	 * @return the length of a row of the flattened table
+	 */
+	public int getStride() {
+		return stride;
+	}
+
+	/**
+	 * @return the number of compounds with an ordinal
+	 */
+	public int size() {
+		return compounds.size();
+	}
+
+	/**
+	 * Returns the compound with the given ordinal.
+	 * @param ordinal
+	 * @return
+	 */
+	public C getCompound(int ordinal) {
+		return compounds.get(ordinal);
+	}
+
+	private int add(C compound) {
+		int ordinal = compounds.size();
+		if (ordinal == stride) {
+			int newStride = stride * 2;
+			int[] newTable = new int[newStride * newStride];
+			for (int i = 0; i < stride; i++) {
+				System.arraycopy(table, i * stride, newTable, i * newStride, stride);
+			}
+			stride = newStride;
+			table = newTable;
+		}
+		ordinals.put(compound, ordinal);
+		compounds.add(compound);
+		for (int i = 0; i <= ordinal; i++) {
+			C other = compounds.get(i);
+			table[ordinal * stride + i] = matrix.getValue(compound, other);
+			table[i * stride + ordinal] = matrix.getValue(other, compound);
+		}
+		return ordinal;
+	}
+}
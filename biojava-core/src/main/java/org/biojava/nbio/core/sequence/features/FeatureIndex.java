@@ -0,0 +1,246 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.sequence.features;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A collection of features ordered by {@link AbstractFeature#LOCATION_LENGTH} (start position,
+ * then longest first) that can be queried for the features overlapping a position or a range.
+ * <p>
+ * Features are appended as they are added and only sorted when the collection is next read,
+ * so that adding n features costs O(n log n) overall instead of a sort for every addition.
+ * The sort is stable, which gives the same order as sorting after every addition.
+ * Overlap queries use an implicit augmented interval tree laid out over the sorted array
+ * (every node holds the maximum end of its subtree, see Li H, cgranges), built lazily on the first
+ * query after a change, and take O(log n + k) for k hits.
+ * <p>
+ * The locations of the features are read when the index is built: they should not be modified
+ * after a feature was added. The methods are synchronized since reading may sort or index the features.
+ *
+ * @since 5.1.2
+ * @param <F> the type of the features
+ */
+public class FeatureIndex<F extends FeatureInterface<?, ?>> {
+
+	/**
+	 * Subtrees of this level or lower are scanned linearly
+	 */
+	private static final int LINEAR_SCAN_LEVEL = 3;
+
+	private final ArrayList<F> features = new ArrayList<F>();
+	private boolean sorted = true;
+
+	// the interval tree: start and (exclusive) end of every feature, and the max end of every subtree
+	private int indexedSize = -1;
+	private int[] starts;
+	private int[] ends;
+	private int[] maxEnds;
+	private int maxLevel;
+
+	/**
+	 * Adds a feature.
+	 * @param feature
+	 */
+	public synchronized void add(F feature) {
+		if (sorted && !features.isEmpty() && AbstractFeature.LOCATION_LENGTH.compare(features.get(features.size() - 1), feature) > 0) {
+			sorted = false;
+		}
+		features.add(feature);
+		indexedSize = -1;
+	}
+
+	/**
+	 * Adds all the given features, in the order of the collection.
+	 * @param features
+	 */
+	public synchronized void addAll(Collection<? extends F> features) {
+		for (F feature : features) {
+			add(feature);
+		}
+	}
+
+	/**
+	 * Removes a feature.
+	 * @param feature
+	 * @return true if the feature was in this collection
+	 */
+	public synchronized boolean remove(F feature) {
+		boolean removed = features.remove(feature);
+		if (removed) {
+			indexedSize = -1;
+		}
+		return removed;
+	}
+
+	public synchronized int size() {
+		return features.size();
+	}
+
+	public synchronized boolean isEmpty() {
+		return features.isEmpty();
+	}
+
+	/**
+	 * Returns the features, sorted by {@link AbstractFeature#LOCATION_LENGTH}.
+	 * The returned list is the backing list of this collection.
+	 * @return
+	 */
+	public synchronized List<F> getFeatures() {
+		sort();
+		return features;
+	}
+
+	/**
+	 * Returns the features overlapping the given range, i.e. with start &lt;= bioEnd and end &gt;= bioStart,
+	 * in the order of {@link #getFeatures()}.
+	 * @param bioStart the first position of the range
+	 * @param bioEnd the last position of the range (inclusive)
+	 * @return a new list with the overlapping features
+	 */
+	public synchronized List<F> getOverlapping(int bioStart, int bioEnd) {
+		List<F> hits = new ArrayList<F>();
+		index();
+		int n = indexedSize;
+		if (n == 0 || bioStart > bioEnd) {
+			return hits;
+		}
+
+		// the query as a half-open interval
+		long qStart = bioStart;
+		long qEnd = (long) bioEnd + 1;
+
+		// a stack of nodes: their index, level and whether the left child was already visited
+		int[] stackX = new int[2 * (maxLevel + 2)];
+		int[] stackK = new int[stackX.length];
+		boolean[] stackW = new boolean[stackX.length];
+		int t = 0;
+		stackX[t] = (1 << maxLevel) - 1;
+		stackK[t] = maxLevel;
+		stackW[t++] = false;
+
+		while (t > 0) {
+			t--;
+			int x = stackX[t];
+			int k = stackK[t];
+			boolean w = stackW[t];
+
+			if (k <= LINEAR_SCAN_LEVEL) {
+				// small subtree: scan all its nodes
+				int i0 = x >> k << k;
+				int i1 = Math.min(i0 + (1 << (k + 1)) - 1, n);
+				for (int i = i0; i < i1 && starts[i] < qEnd; i++) {
+					if (qStart < ends[i]) {
+						hits.add(features.get(i));
+					}
+				}
+			} else if (!w) {
+				// visit the left child first, then come back to this node
+				int y = x - (1 << (k - 1));
+				stackX[t] = x;
+				stackK[t] = k;
+				stackW[t++] = true;
+				if (y >= n || maxEnds[y] > qStart) {
+					stackX[t] = y;
+					stackK[t] = k - 1;
+					stackW[t++] = false;
+				}
+			} else if (x < n && starts[x] < qEnd) {
+				if (qStart < ends[x]) {
+					hits.add(features.get(x));
+				}
+				stackX[t] = x + (1 << (k - 1));
+				stackK[t] = k - 1;
+				stackW[t++] = false;
+			}
+		}
+		return hits;
+	}
+
+	private void sort() {
+		if (!sorted) {
+			Collections.sort(features, AbstractFeature.LOCATION_LENGTH);
+			sorted = true;
+			indexedSize = -1;
+		}
+	}
+
+	/**
+	 * Builds the interval tree over the sorted features if they changed since it was last built.
+	 */
+	private void index() {
+		sort();
+		int n = features.size();
+		if (indexedSize == n) {
+			return;
+		}
+
+		starts = new int[n];
+		ends = new int[n];
+		maxEnds = new int[n];
+		for (int i = 0; i < n; i++) {
+			F feature = features.get(i);
+			starts[i] = feature.getLocations().getStart().getPosition();
+			ends[i] = feature.getLocations().getEnd().getPosition() + 1;
+			if (i > 0 && starts[i] < starts[i - 1]) {
+				// the backing list was modified directly
+				sorted = false;
+				index();
+				return;
+			}
+		}
+
+		indexedSize = n;
+		if (n == 0) {
+			maxLevel = 0;
+			return;
+		}
+
+		// leaves (level 0) are the even indexes
+		int lastI = 0;
+		int last = 0;
+		for (int i = 0; i < n; i += 2) {
+			lastI = i;
+			last = maxEnds[i] = ends[i];
+		}
+		// then every level k has the nodes at indexes with k trailing 1 bits
+		int k;
+		for (k = 1; 1 << k <= n; k++) {
+			int x = 1 << (k - 1);
+			int i0 = (x << 1) - 1;
+			int step = x << 2;
+			for (int i = i0; i < n; i += step) {
+				int endLeft = maxEnds[i - x];
+				// the right child might be missing: use the max of the last node of the lower level
+				int endRight = i + x < n ? maxEnds[i + x] : last;
+				maxEnds[i] = Math.max(ends[i], Math.max(endLeft, endRight));
+			}
+			lastI = (lastI >> k & 1) != 0 ? lastI - x : lastI + x;
+			if (lastI < n && maxEnds[lastI] > last) {
+				last = maxEnds[lastI];
+			}
+		}
+		maxLevel = k - 1;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.sequence.io;
+
+import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
+import org.biojava.nbio.core.sequence.DNASequence;
+import org.biojava.nbio.core.sequence.compound.NucleotideCompound;
+import org.biojava.nbio.core.sequence.io.template.SequenceBufferCreatorInterface;
+import org.biojava.nbio.core.sequence.loader.ArrayListProxySequenceReader;
+import org.biojava.nbio.core.sequence.storage.BitSequenceReader.BitArrayWorker;
+import org.biojava.nbio.core.sequence.storage.FourBitSequenceReader;
+import org.biojava.nbio.core.sequence.storage.FourBitSequenceReader.FourBitArrayWorker;
+import org.biojava.nbio.core.sequence.storage.TwoBitSequenceReader;
+import org.biojava.nbio.core.sequence.storage.TwoBitSequenceReader.TwoBitArrayWorker;
+import org.biojava.nbio.core.sequence.template.AbstractSequence;
+import org.biojava.nbio.core.sequence.template.CompoundSet;
+import org.biojava.nbio.core.sequence.template.ProxySequenceReader;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Creates DNA sequences backed by bit packed storage, encoding the residues directly
+ * from the read buffer. Sequences made only of A, C, G and T are stored with
+ * {@link TwoBitSequenceReader} (2 bits per base), any others with {@link FourBitSequenceReader}
+ * (4 bits per base) if the compound set is small enough, or as a plain {@link DNASequence}
+ * otherwise.
+ * <p>
+ * Note that the bit packed storage is case-insensitive: lower case residues are read back as upper case.
+ *
+ * @since 5.1.2
+ * @see FastaStreamReader
+ */
+public class BitPackedDNASequenceCreator implements SequenceBufferCreatorInterface<NucleotideCompound> {
+
+	/**
+	 * The number of distinct compounds that fit in 4 bits
+	 */
+	private static final int MAX_FOUR_BIT_COMPOUNDS = 16;
+
+	private final CompoundSet<NucleotideCompound> compoundSet;
+
+	/**
+	 * The compound for every ASCII char, null if it is not in the compound set
+	 */
+	private final NucleotideCompound[] compounds = new NucleotideCompound[128];
+
+	private final boolean fitsFourBits;
+
+	/**
+	 *
+	 * @param compoundSet the compound set of the created sequences, its compounds must be single chars
+	 */
+	public BitPackedDNASequenceCreator(CompoundSet<NucleotideCompound> compoundSet) {
+		this.compoundSet = compoundSet;
+
+		Set<String> upperCased = new HashSet<String>();
+		for (NucleotideCompound c : compoundSet.getAllCompounds()) {
+			upperCased.add(compoundSet.getStringForCompound(c).toUpperCase());
+		}
+		fitsFourBits = upperCased.size() <= MAX_FOUR_BIT_COMPOUNDS;
+
+		for (int i = 0; i < compounds.length; i++) {
+			compounds[i] = compoundSet.getCompoundForString(Character.toString((char) i));
+		}
+	}
+
+	@Override
+	public AbstractSequence<NucleotideCompound> getSequence(CharSequence residues, long index) throws CompoundNotFoundException {
+		int length = residues.length();
+
+		boolean twoBit = true;
+		for (int i = 0; i < length; i++) {
+			char c = residues.charAt(i);
+			if (c >= compounds.length || compounds[c] == null) {
+				throw new CompoundNotFoundException("Compound " + c + " not found");
+			}
+			if (twoBit) {
+				twoBit = isTwoBitBase(c);
+			}
+		}
+
+		BitArrayWorker<NucleotideCompound> worker;
+		if (twoBit) {
+			worker = new TwoBitArrayWorker<NucleotideCompound>(compoundSet, length);
+		} else if (fitsFourBits) {
+			worker = new FourBitArrayWorker<NucleotideCompound>(compoundSet, length);
+		} else {
+			return new DNASequence(residues.toString(), compoundSet);
+		}
+
+		for (int i = 0; i < length; i++) {
+			worker.setCompoundAt(compounds[residues.charAt(i)], i + 1);
+		}
+
+		ProxySequenceReader<NucleotideCompound> store;
+		if (twoBit) {
+			store = new TwoBitSequenceReader<NucleotideCompound>((TwoBitArrayWorker<NucleotideCompound>) worker);
+		} else {
+			store = new FourBitSequenceReader<NucleotideCompound>((FourBitArrayWorker<NucleotideCompound>) worker);
+		}
+		return new DNASequence(store, compoundSet);
+	}
+
+	private static boolean isTwoBitBase(char c) {
+		switch (c) {
+		case 'A': case 'C': case 'G': case 'T':
+		case 'a': case 'c': case 'g': case 't':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 *
+	 * @param sequence The Sequence from a String
+	 * @param index Currently not used
+	 * @return
+	 */
+	@Override
+	public AbstractSequence<NucleotideCompound> getSequence(String sequence, long index) throws CompoundNotFoundException {
+		return getSequence((CharSequence) sequence, index);
+	}
+
+	/**
+	 *
+	 * @param proxyLoader The Sequence from a ProxySequenceReader
+	 * @param index Currently not used
+	 * @return
+	 */
+	@Override
+	public AbstractSequence<NucleotideCompound> getSequence(ProxySequenceReader<NucleotideCompound> proxyLoader, long index) {
+		return new DNASequence(proxyLoader, compoundSet);
+	}
+
+	/**
+	 *
+	 * @param list
+	 * @return
+	 */
+	@Override
+	public AbstractSequence<NucleotideCompound> getSequence(List<NucleotideCompound> list) {
+		ArrayListProxySequenceReader<NucleotideCompound> store = new ArrayListProxySequenceReader<NucleotideCompound>();
+		store.setCompoundSet(compoundSet);
+		store.setContents(list);
+		return new DNASequence(store);
+	}
+}
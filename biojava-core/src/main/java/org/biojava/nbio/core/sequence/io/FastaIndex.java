@@ -0,0 +1,347 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.sequence.io;
+
+import org.biojava.nbio.core.exceptions.ParserException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of a fasta file, compatible with the <code>.fai</code> files of samtools faidx.
+ * For every sequence the index stores its name (the header up to the first white space),
+ * its length, the offset of its first residue in the file, the number of residues per line
+ * and the number of bytes per line (including the line terminator). With these the file offset
+ * of any residue can be computed, provided that all lines of a sequence but the last have the
+ * same length, which is checked when building the index.
+ *
+ * @since 5.1.2
+ * @see IndexedFastaFile
+ */
+public class FastaIndex {
+
+	/**
+	 * The suffix of index files, appended to the name of the fasta file
+	 */
+	public static final String INDEX_SUFFIX = ".fai";
+
+	/**
+	 * The index of a single sequence, a line of the <code>.fai</code> file.
+	 */
+	public static class Entry {
+		private final String name;
+		private final int length;
+		private final long offset;
+		private final int lineBases;
+		private final int lineWidth;
+
+		public Entry(String name, int length, long offset, int lineBases, int lineWidth) {
+			this.name = name;
+			this.length = length;
+			this.offset = offset;
+			this.lineBases = lineBases;
+			this.lineWidth = lineWidth;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the number of residues of the sequence
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * @return the file offset of the first residue
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return the number of residues per line
+		 */
+		public int getLineBases() {
+			return lineBases;
+		}
+
+		/**
+		 * @return the number of bytes per line, including the line terminator
+		 */
+		public int getLineWidth() {
+			return lineWidth;
+		}
+
+		/**
+		 * Returns the file offset of the residue at the given biological index
+		 * @param position the biological index, from 1 to the length of the sequence
+		 * @return
+		 */
+		public long getFileOffset(int position) {
+			int index = position - 1;
+			return offset + (long) (index / lineBases) * lineWidth + (index % lineBases);
+		}
+
+		@Override
+		public String toString() {
+			return name + "\t" + length + "\t" + offset + "\t" + lineBases + "\t" + lineWidth;
+		}
+	}
+
+	private final Map<String, Entry> entries;
+
+	private FastaIndex(Map<String, Entry> entries) {
+		this.entries = entries;
+	}
+
+	/**
+	 * @param name
+	 * @return the entry for the sequence with the given name or null if there is none
+	 */
+	public Entry getEntry(String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * @return the entries in the order of the fasta file
+	 */
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(new ArrayList<Entry>(entries.values()));
+	}
+
+	/**
+	 * @return the names of the sequences in the order of the fasta file
+	 */
+	public List<String> getNames() {
+		return Collections.unmodifiableList(new ArrayList<String>(entries.keySet()));
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Reads a <code>.fai</code> index file.
+	 * @param indexFile
+	 * @return
+	 * @throws IOException
+	 * @throws ParserException if the file is not a valid index
+	 */
+	public static FastaIndex read(File indexFile) throws IOException {
+		Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+		BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = br.readLine()) != null) {
+				lineNumber++;
+				if (line.isEmpty()) continue;
+				String[] fields = line.split("\t");
+				if (fields.length < 5) {
+					throw new ParserException("Line " + lineNumber + " of index file " + indexFile + " has less than 5 fields");
+				}
+				try {
+					Entry entry = new Entry(fields[0], Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+							Integer.parseInt(fields[3]), Integer.parseInt(fields[4]));
+					addEntry(entries, entry);
+				} catch (NumberFormatException e) {
+					throw new ParserException("Line " + lineNumber + " of index file " + indexFile + " has non numeric fields: " + line);
+				}
+			}
+		} finally {
+			br.close();
+		}
+		return new FastaIndex(entries);
+	}
+
+	/**
+	 * Writes the index in the <code>.fai</code> format.
+	 * @param indexFile
+	 * @throws IOException
+	 */
+	public void write(File indexFile) throws IOException {
+		Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(indexFile), StandardCharsets.UTF_8));
+		try {
+			for (Entry entry : entries.values()) {
+				w.write(entry.toString());
+				w.write('\n');
+			}
+		} finally {
+			w.close();
+		}
+	}
+
+	/**
+	 * Builds the index of a fasta file, reading it once.
+	 * @param fastaFile
+	 * @return
+	 * @throws IOException
+	 * @throws ParserException if the lines of a sequence don't have the same length,
+	 * or if two sequences have the same name
+	 */
+	public static FastaIndex build(File fastaFile) throws IOException {
+		InputStream is = new BufferedInputStream(new FileInputStream(fastaFile), 64 * 1024);
+		try {
+			return build(is, fastaFile.toString());
+		} finally {
+			is.close();
+		}
+	}
+
+	private static FastaIndex build(InputStream is, String source) throws IOException {
+		Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+		long position = 0;
+		ByteArrayLine line = new ByteArrayLine();
+
+		String name = null;
+		long offset = 0;
+		int length = 0;
+		int lineBases = 0;
+		int lineWidth = 0;
+		// set after a line shorter than the previous ones, which must be the last of the sequence
+		boolean sequenceEnded = false;
+
+		int width;
+		while ((width = line.read(is)) > 0) {
+			position += width;
+
+			if (line.length > 0 && line.bytes[0] == '>') {
+				if (name != null) {
+					addEntry(entries, new Entry(name, length, offset, lineBases, lineWidth));
+				}
+				name = line.getName();
+				offset = position;
+				length = 0;
+				lineBases = 0;
+				lineWidth = 0;
+				sequenceEnded = false;
+				continue;
+			}
+
+			if (name == null) {
+				if (line.length > 0) {
+					throw new ParserException("Sequence without header at the start of " + source);
+				}
+				continue;
+			}
+
+			if (line.length == 0) {
+				// a blank line is only allowed after the end of the sequence
+				sequenceEnded = true;
+				continue;
+			}
+
+			if (sequenceEnded) {
+				throw new ParserException("Different line length in sequence " + name + " of " + source);
+			}
+
+			if (lineBases == 0) {
+				lineBases = line.length;
+				lineWidth = width;
+			} else if (line.length > lineBases || (line.length == lineBases && width != lineWidth && line.terminated)) {
+				throw new ParserException("Different line length in sequence " + name + " of " + source);
+			}
+			if (line.length < lineBases) {
+				sequenceEnded = true;
+			}
+			length += line.length;
+		}
+
+		if (name != null) {
+			addEntry(entries, new Entry(name, length, offset, lineBases, lineWidth));
+		}
+
+		return new FastaIndex(entries);
+	}
+
+	private static void addEntry(Map<String, Entry> entries, Entry entry) {
+		if (entries.put(entry.getName(), entry) != null) {
+			throw new ParserException("Duplicate sequence name " + entry.getName());
+		}
+	}
+
+	/**
+	 * A reusable buffer for the content of a line, without its terminator
+	 */
+	private static class ByteArrayLine {
+		private byte[] bytes = new byte[256];
+		private int length;
+		private boolean terminated;
+
+		/**
+		 * Reads the next line.
+		 * @return the number of bytes read, including the line terminator, or 0 at the end of the input
+		 */
+		private int read(InputStream is) throws IOException {
+			length = 0;
+			terminated = false;
+			int width = 0;
+			int b;
+			while ((b = is.read()) != -1) {
+				width++;
+				if (b == '\n') {
+					terminated = true;
+					break;
+				}
+				if (length == bytes.length) {
+					byte[] newBytes = new byte[bytes.length * 2];
+					System.arraycopy(bytes, 0, newBytes, 0, length);
+					bytes = newBytes;
+				}
+				bytes[length++] = (byte) b;
+			}
+			if (length > 0 && bytes[length - 1] == '\r') {
+				length--;
+			}
+			return width;
+		}
+
+		/**
+		 * @return the header of this line up to the first white space
+		 */
+		private String getName() {
+			int end = 1;
+			while (end < length && (bytes[end] & 0xff) > ' ') {
+				end++;
+			}
+			return new String(bytes, 1, end - 1, StandardCharsets.UTF_8);
+		}
+	}
+}
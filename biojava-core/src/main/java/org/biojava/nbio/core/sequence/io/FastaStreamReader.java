@@ -0,0 +1,440 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.sequence.io;
+
+import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
+import org.biojava.nbio.core.sequence.io.template.SequenceBufferCreatorInterface;
+import org.biojava.nbio.core.sequence.io.template.SequenceCreatorInterface;
+import org.biojava.nbio.core.sequence.io.template.SequenceHeaderParserInterface;
+import org.biojava.nbio.core.sequence.template.Compound;
+import org.biojava.nbio.core.sequence.template.Sequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A pull based reader of fasta files, returning one sequence at a time.
+ * <p>
+ * Contrary to {@link FastaReader#process(int)}, the records are not collected in a map and
+ * the memory used doesn't depend on the size of the file, but only on the length of the longest sequence.
+ * The input is read through a {@link ByteBuffer} and the residues of a record are accumulated in a
+ * single reused byte buffer. If the sequence creator is a {@link SequenceBufferCreatorInterface}
+ * (e.g. {@link BitPackedDNASequenceCreator}) the sequences are created directly from that buffer,
+ * otherwise a String is made from it and passed to the {@link SequenceCreatorInterface}.
+ * <p>
+ * The records are parsed as in {@link FastaReader}: lines are trimmed, blank lines and lines
+ * starting with ';' are ignored, and sequences with unrecognised compounds are skipped with a warning.
+ * The index passed to the sequence creator is the byte offset of the first sequence line of the record.
+ * <p>
+ * Example:
+ * <pre>
+ * FastaStreamReader&lt;DNASequence, NucleotideCompound&gt; reader = new FastaStreamReader&lt;DNASequence, NucleotideCompound&gt;(
+ *         file,
+ *         new GenericFastaHeaderParser&lt;DNASequence, NucleotideCompound&gt;(),
+ *         new BitPackedDNASequenceCreator(DNACompoundSet.getDNACompoundSet()));
+ * try {
+ *     DNASequence seq;
+ *     while ((seq = reader.read()) != null) {
+ *         ...
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ * Instances are not thread-safe.
+ *
+ * @since 5.1.2
+ */
+public class FastaStreamReader<S extends Sequence<?>, C extends Compound> implements Closeable {
+
+	private final static Logger logger = LoggerFactory.getLogger(FastaStreamReader.class);
+
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final SequenceHeaderParserInterface<S,C> headerParser;
+	private final SequenceCreatorInterface<C> sequenceCreator;
+	private final Charset headerCharset = Charset.defaultCharset();
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final byte[] buf;
+	private int pos = 0;
+	private int limit = 0;
+	/** the offset in the input of the first byte of the buffer */
+	private long bufferOffset = 0;
+	private boolean eof = false;
+
+	private final ResidueBuffer residues = new ResidueBuffer();
+	private byte[] headerBytes = new byte[256];
+	private String header = "";
+	private long sequenceIndex = 0;
+
+	/**
+	 * Reads the given stream. Closing this reader closes the stream.
+	 * @param is
+	 * @param headerParser
+	 * @param sequenceCreator
+	 */
+	public FastaStreamReader(InputStream is, SequenceHeaderParserInterface<S,C> headerParser,
+			SequenceCreatorInterface<C> sequenceCreator) {
+		this(Channels.newChannel(is), headerParser, sequenceCreator, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Reads the given file through a {@link FileChannel}.
+	 * @param file
+	 * @param headerParser
+	 * @param sequenceCreator
+	 * @throws IOException if the file can't be opened
+	 */
+	public FastaStreamReader(File file, SequenceHeaderParserInterface<S,C> headerParser,
+			SequenceCreatorInterface<C> sequenceCreator) throws IOException {
+		this(FileChannel.open(file.toPath(), StandardOpenOption.READ), headerParser, sequenceCreator, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Reads the given channel, starting at its current position. Closing this reader closes the channel.
+	 * @param channel
+	 * @param headerParser
+	 * @param sequenceCreator
+	 * @param bufferSize the size of the read buffer in bytes
+	 */
+	public FastaStreamReader(ReadableByteChannel channel, SequenceHeaderParserInterface<S,C> headerParser,
+			SequenceCreatorInterface<C> sequenceCreator, int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be positive, got " + bufferSize);
+		}
+		this.channel = channel;
+		this.headerParser = headerParser;
+		this.sequenceCreator = sequenceCreator;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.buf = buffer.array();
+	}
+
+	/**
+	 * Reads the next fasta record.
+	 * @return the next sequence or null if the end of the input was reached
+	 * @throws IOException if an error occurs reading the input
+	 */
+	public S read() throws IOException {
+
+		while (true) {
+			long lineStart = bufferOffset + pos;
+
+			// skip the leading white space of the line
+			int b;
+			do {
+				b = readByte();
+			} while (b != -1 && b != '\n' && b <= ' ');
+
+			if (b == -1) {
+				return readLastRecord();
+			}
+			if (b == '\n') {
+				continue;
+			}
+
+			if (b == '>') {
+				//start of new fasta record
+				String previousHeader = header;
+				header = readHeaderLine();
+				if (residues.length() > 0) {
+					S sequence = createSequence(previousHeader);
+					residues.clear();
+					if (sequence != null) {
+						return sequence;
+					}
+				}
+			} else if (b == ';') {
+				skipLine();
+			} else {
+				if (residues.length() == 0) {
+					sequenceIndex = lineStart;
+				}
+				pos--; // the first residue of the line is still in the buffer
+				readSequenceLine();
+			}
+		}
+	}
+
+	private S readLastRecord() {
+		S sequence = null;
+		if (residues.length() == 0 && header.length() != 0) {
+			logger.warn("Can't parse sequence {}. Got sequence of length 0!", sequenceIndex);
+			logger.warn("header: {}", header);
+		} else if (residues.length() > 0) {
+			sequence = createSequence(header);
+			residues.clear();
+		}
+		header = "";
+		return sequence;
+	}
+
+	@SuppressWarnings("unchecked")
+	private S createSequence(String header) {
+		try {
+			S sequence;
+			if (sequenceCreator instanceof SequenceBufferCreatorInterface) {
+				sequence = (S) ((SequenceBufferCreatorInterface<C>) sequenceCreator).getSequence(residues, sequenceIndex);
+			} else {
+				sequence = (S) sequenceCreator.getSequence(residues.toString(), sequenceIndex);
+			}
+			headerParser.parseHeader(header, sequence);
+			return sequence;
+		} catch (CompoundNotFoundException e) {
+			logger.warn("Sequence with header '{}' has unrecognised compounds ({}), it will be ignored",
+					header, e.getMessage());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return null;
+	}
+
+	/**
+	 * @return the next byte of the input or -1 at the end of the input
+	 */
+	private int readByte() throws IOException {
+		if (pos >= limit && !fill()) {
+			return -1;
+		}
+		return buf[pos++] & 0xff;
+	}
+
+	/**
+	 * Refills the buffer from the channel.
+	 * @return false if the end of the input was reached
+	 */
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		bufferOffset += limit;
+		pos = 0;
+		limit = 0;
+		buffer.clear();
+		int n;
+		do {
+			n = channel.read(buffer);
+		} while (n == 0);
+		if (n < 0) {
+			eof = true;
+			return false;
+		}
+		limit = n;
+		return true;
+	}
+
+	/**
+	 * Returns the index of the next line feed in the buffer starting at pos, or limit if there is none
+	 */
+	private int findLineEnd() {
+		int i = pos;
+		while (i < limit && buf[i] != '\n') {
+			i++;
+		}
+		return i;
+	}
+
+	private void readSequenceLine() throws IOException {
+		int start = residues.length();
+		while (pos < limit || fill()) {
+			int end = findLineEnd();
+			residues.append(buf, pos, end - pos);
+			if (end < limit) {
+				pos = end + 1;
+				break;
+			}
+			pos = end;
+		}
+		residues.trimEnd(start);
+	}
+
+	private String readHeaderLine() throws IOException {
+		int length = 0;
+		while (pos < limit || fill()) {
+			int end = findLineEnd();
+			int n = end - pos;
+			if (length + n > headerBytes.length) {
+				byte[] newBytes = new byte[Math.max(headerBytes.length * 2, length + n)];
+				System.arraycopy(headerBytes, 0, newBytes, 0, length);
+				headerBytes = newBytes;
+			}
+			System.arraycopy(buf, pos, headerBytes, length, n);
+			length += n;
+			if (end < limit) {
+				pos = end + 1;
+				break;
+			}
+			pos = end;
+		}
+		while (length > 0 && (headerBytes[length - 1] & 0xff) <= ' ') {
+			length--;
+		}
+		return new String(headerBytes, 0, length, headerCharset);
+	}
+
+	private void skipLine() throws IOException {
+		while (pos < limit || fill()) {
+			int end = findLineEnd();
+			if (end < limit) {
+				pos = end + 1;
+				return;
+			}
+			pos = end;
+		}
+	}
+
+	/**
+	 * Returns an iterator over the remaining records. An {@link IOException} while reading
+	 * is thrown as an {@link UncheckedIOException}.
+	 * @return
+	 */
+	public Iterator<S> iterator() {
+		return new Iterator<S>() {
+			private S next = null;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = read();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public S next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				S sequence = next;
+				next = null;
+				return sequence;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Returns a sequential stream of the remaining records. Closing the stream closes this reader.
+	 * An {@link IOException} while reading is thrown as an {@link UncheckedIOException}.
+	 * @return
+	 */
+	public Stream<S> stream() {
+		Stream<S> stream = StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+		return stream.onClose(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * A growable byte buffer holding the residues of the current record, exposed as a {@link CharSequence}
+	 * so that it can be passed to a {@link SequenceBufferCreatorInterface} without copying.
+	 */
+	private static class ResidueBuffer implements CharSequence {
+		private byte[] bytes = new byte[1024];
+		private int length = 0;
+
+		private void append(byte[] src, int offset, int n) {
+			if (length + n > bytes.length) {
+				byte[] newBytes = new byte[Math.max(bytes.length * 2, length + n)];
+				System.arraycopy(bytes, 0, newBytes, 0, length);
+				bytes = newBytes;
+			}
+			System.arraycopy(src, offset, bytes, length, n);
+			length += n;
+		}
+
+		/**
+		 * Removes trailing white space, down to the given length at most
+		 */
+		private void trimEnd(int minLength) {
+			while (length > minLength && (bytes[length - 1] & 0xff) <= ' ') {
+				length--;
+			}
+		}
+
+		private void clear() {
+			length = 0;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+			}
+			return (char) (bytes[index] & 0xff);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
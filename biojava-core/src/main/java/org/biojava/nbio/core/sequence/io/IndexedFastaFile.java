@@ -0,0 +1,199 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.sequence.io;
+
+import org.biojava.nbio.core.sequence.loader.MappedFastaSequenceReader;
+import org.biojava.nbio.core.sequence.template.Compound;
+import org.biojava.nbio.core.sequence.template.CompoundSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Random access to the sequences of a fasta file through its {@link FastaIndex}
+ * (a samtools faidx <code>.fai</code> index) and a read-only memory mapping of the file.
+ * <p>
+ * The file is mapped once and shared by all the {@link MappedFastaSequenceReader}s created from it,
+ * which compute the position of any residue from the index, so that reading a region doesn't need
+ * to parse anything before it. No file handle is kept open after construction.
+ * <p>
+ * Example:
+ * <pre>
+ * IndexedFastaFile fasta = new IndexedFastaFile(new File("hg38.fa"));
+ * DNASequence chr1 = new DNASequence(fasta.getSequenceReader("chr1", DNACompoundSet.getDNACompoundSet()),
+ *         DNACompoundSet.getDNACompoundSet());
+ * String region = chr1.getSubSequence(1000000, 1000100).getSequenceAsString();
+ * </pre>
+ * Instances are thread-safe.
+ *
+ * @since 5.1.2
+ */
+public class IndexedFastaFile {
+
+	/**
+	 * The size of the mapped segments: a single MappedByteBuffer can't be larger than 2GB
+	 */
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	private final File file;
+	private final FastaIndex index;
+	private final MappedByteBuffer[] segments;
+
+	/**
+	 * Maps the given fasta file, reading its index from the file with the same name plus
+	 * {@value FastaIndex#INDEX_SUFFIX} if it exists, or else building it (without writing it).
+	 * @param file
+	 * @throws IOException
+	 */
+	public IndexedFastaFile(File file) throws IOException {
+		this(file, loadIndex(file));
+	}
+
+	/**
+	 * Maps the given fasta file, using the given index.
+	 * @param file
+	 * @param index the index of the file
+	 * @throws IOException
+	 */
+	public IndexedFastaFile(File file, FastaIndex index) throws IOException {
+		this.file = file;
+		this.index = index;
+
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			int nSegments = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			segments = new MappedByteBuffer[nSegments];
+			for (int i = 0; i < nSegments; i++) {
+				long start = i * SEGMENT_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+			}
+		} finally {
+			// the mapping stays valid after closing the channel
+			channel.close();
+		}
+	}
+
+	private static FastaIndex loadIndex(File file) throws IOException {
+		File indexFile = new File(file.getPath() + FastaIndex.INDEX_SUFFIX);
+		if (indexFile.exists()) {
+			return FastaIndex.read(indexFile);
+		}
+		return FastaIndex.build(file);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public FastaIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the names of the sequences in the order of the fasta file
+	 */
+	public List<String> getSequenceNames() {
+		return index.getNames();
+	}
+
+	/**
+	 * Returns a reader for the sequence with the given name, to be used as the storage of a sequence.
+	 * @param name
+	 * @param compoundSet the compound set of the sequence, its compounds must be single chars
+	 * @return the reader or null if there is no sequence with that name
+	 */
+	public <C extends Compound> MappedFastaSequenceReader<C> getSequenceReader(String name, CompoundSet<C> compoundSet) {
+		FastaIndex.Entry entry = index.getEntry(name);
+		if (entry == null) {
+			return null;
+		}
+		return new MappedFastaSequenceReader<C>(this, entry, compoundSet);
+	}
+
+	/**
+	 * Returns readers for all the sequences, keyed by their names in the order of the fasta file.
+	 * @param compoundSet the compound set of the sequences, its compounds must be single chars
+	 * @return
+	 */
+	public <C extends Compound> LinkedHashMap<String, MappedFastaSequenceReader<C>> getSequenceReaders(CompoundSet<C> compoundSet) {
+		LinkedHashMap<String, MappedFastaSequenceReader<C>> readers = new LinkedHashMap<String, MappedFastaSequenceReader<C>>();
+		for (FastaIndex.Entry entry : index.getEntries()) {
+			readers.put(entry.getName(), new MappedFastaSequenceReader<C>(this, entry, compoundSet));
+		}
+		return readers;
+	}
+
+	/**
+	 * Returns the byte at the given file offset.
+	 * @param offset
+	 * @return
+	 */
+	public byte getByte(long offset) {
+		return segments[(int) (offset / SEGMENT_SIZE)].get((int) (offset % SEGMENT_SIZE));
+	}
+
+	/**
+	 * Copies the bytes starting at the given file offset into the given array.
+	 * @param offset the file offset of the first byte
+	 * @param dst
+	 * @param dstOffset
+	 * @param length the number of bytes to copy
+	 */
+	public void getBytes(long offset, byte[] dst, int dstOffset, int length) {
+		while (length > 0) {
+			int segment = (int) (offset / SEGMENT_SIZE);
+			int position = (int) (offset % SEGMENT_SIZE);
+			// a duplicate so that concurrent reads don't share the position
+			ByteBuffer buffer = segments[segment].duplicate();
+			int n = Math.min(length, buffer.limit() - position);
+			buffer.position(position);
+			buffer.get(dst, dstOffset, n);
+			offset += n;
+			dstOffset += n;
+			length -= n;
+		}
+	}
+
+	/**
+	 * Writes the index of the given fasta file next to it, in the file with the same name plus
+	 * {@value FastaIndex#INDEX_SUFFIX}.
+	 * @param file
+	 * @return the index
+	 * @throws IOException
+	 */
+	public static FastaIndex writeIndex(File file) throws IOException {
+		FastaIndex index = FastaIndex.build(file);
+		index.write(new File(file.getPath() + FastaIndex.INDEX_SUFFIX));
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return "IndexedFastaFile [file=" + file + ", sequences=" + index.size() + "]";
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.sequence.io.template;
+
+import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
+import org.biojava.nbio.core.sequence.template.AbstractSequence;
+import org.biojava.nbio.core.sequence.template.Compound;
+
+import java.io.IOException;
+
+/**
+ * A {@link SequenceCreatorInterface} that can create a sequence directly from the
+ * buffer the residues were read into, without first converting it to a String.
+ * The buffer is only valid during the call and is reused by the caller afterwards,
+ * so implementations must copy (or encode) its contents rather than keep a reference to it.
+ *
+ * @since 5.1.2
+ * @see org.biojava.nbio.core.sequence.io.FastaStreamReader
+ */
+public interface SequenceBufferCreatorInterface<C extends Compound> extends SequenceCreatorInterface<C> {
+
+	/**
+	 *
+	 * @param residues the residues of the sequence, only valid during this call
+	 * @param index the offset of the sequence in the input
+	 * @return
+	 * @throws CompoundNotFoundException
+	 * @throws IOException
+	 */
+	public AbstractSequence<C> getSequence(CharSequence residues, long index) throws CompoundNotFoundException, IOException;
+
+}
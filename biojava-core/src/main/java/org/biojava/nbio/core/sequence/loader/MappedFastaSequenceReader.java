@@ -0,0 +1,238 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.sequence.loader;
+
+import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
+import org.biojava.nbio.core.sequence.AccessionID;
+import org.biojava.nbio.core.sequence.io.FastaIndex;
+import org.biojava.nbio.core.sequence.io.IndexedFastaFile;
+import org.biojava.nbio.core.sequence.template.*;
+import org.biojava.nbio.core.util.Equals;
+import org.biojava.nbio.core.util.Hashcoder;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The storage of a sequence of an {@link IndexedFastaFile}, reading the residues directly from the
+ * memory mapped file. The file offset of a residue is computed from the {@link FastaIndex.Entry}
+ * of the sequence, so that {@link #getCompoundAt(int)} reads a single byte and
+ * {@link #getSequenceAsString(int, int)} copies only the lines of the requested region.
+ * <p>
+ * The residues are not checked until they are read: a residue that is not in the compound set
+ * causes an {@link IllegalStateException}.
+ *
+ * @since 5.1.2
+ * @param <C>
+ */
+public class MappedFastaSequenceReader<C extends Compound> implements ProxySequenceReader<C> {
+
+	private final IndexedFastaFile file;
+	private final FastaIndex.Entry entry;
+	private final CompoundSet<C> compoundSet;
+	private final AccessionID accession;
+
+	/**
+	 * The compound for every ASCII byte, null if it is not in the compound set
+	 */
+	private final C[] compounds;
+	/**
+	 * The char of the compound for every ASCII byte
+	 */
+	private final char[] compoundChars = new char[128];
+
+	/**
+	 *
+	 * @param file the mapped fasta file
+	 * @param entry the index of the sequence in the file
+	 * @param compoundSet the compound set of the sequence, its compounds must be single chars
+	 */
+	@SuppressWarnings("unchecked")
+	public MappedFastaSequenceReader(IndexedFastaFile file, FastaIndex.Entry entry, CompoundSet<C> compoundSet) {
+		if (compoundSet.getMaxSingleCompoundStringLength() > 1) {
+			throw new IllegalArgumentException("Only compound sets with single char compounds are supported");
+		}
+		this.file = file;
+		this.entry = entry;
+		this.compoundSet = compoundSet;
+		this.accession = new AccessionID(entry.getName());
+
+		compounds = (C[]) new Compound[128];
+		for (int i = 0; i < compounds.length; i++) {
+			compounds[i] = compoundSet.getCompoundForString(Character.toString((char) i));
+			if (compounds[i] != null) {
+				compoundChars[i] = compoundSet.getStringForCompound(compounds[i]).charAt(0);
+			}
+		}
+	}
+
+	/**
+	 * Class is immutable & so this is unsupported
+	 */
+	@Override
+	public void setCompoundSet(CompoundSet<C> compoundSet) {
+		throw new UnsupportedOperationException("Cannot reset the CompoundSet; object is immutable");
+	}
+
+	/**
+	 * Class is immutable & so this is unsupported
+	 */
+	@Override
+	public void setContents(String sequence) throws CompoundNotFoundException {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " is an immutable data structure; cannot reset contents");
+	}
+
+	public FastaIndex.Entry getIndexEntry() {
+		return entry;
+	}
+
+	@Override
+	public int getLength() {
+		return entry.getLength();
+	}
+
+	@Override
+	public C getCompoundAt(int position) {
+		if (position < 1 || position > getLength()) {
+			throw new IndexOutOfBoundsException("Position " + position + " is not within 1 and " + getLength());
+		}
+		return toCompound(file.getByte(entry.getFileOffset(position)));
+	}
+
+	private C toCompound(byte b) {
+		C compound = b >= 0 ? compounds[b] : null;
+		if (compound == null) {
+			throw new IllegalStateException("Compound " + (char) (b & 0xff) + " of sequence " + entry.getName() + " not found");
+		}
+		return compound;
+	}
+
+	/**
+	 * Returns the residues between the given biological indexes, inclusive.
+	 * Only the lines of the file containing the region are read.
+	 * @param bioBegin
+	 * @param bioEnd
+	 * @return
+	 */
+	public String getSequenceAsString(int bioBegin, int bioEnd) {
+		if (bioBegin < 1 || bioEnd > getLength() || bioBegin > bioEnd + 1) {
+			throw new IndexOutOfBoundsException("Region " + bioBegin + "-" + bioEnd + " is not within 1 and " + getLength());
+		}
+		int length = bioEnd - bioBegin + 1;
+		byte[] bytes = new byte[length];
+		int lineBases = entry.getLineBases();
+		int done = 0;
+		while (done < length) {
+			int position = bioBegin + done;
+			// the residues left on the line of this position
+			int n = Math.min(length - done, lineBases - (position - 1) % lineBases);
+			file.getBytes(entry.getFileOffset(position), bytes, done, n);
+			done += n;
+		}
+
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			toCompound(bytes[i]);
+			chars[i] = compoundChars[bytes[i]];
+		}
+		return new String(chars);
+	}
+
+	@Override
+	public String getSequenceAsString() {
+		return getSequenceAsString(1, getLength());
+	}
+
+	@Override
+	public String toString() {
+		return getSequenceAsString();
+	}
+
+	@Override
+	public List<C> getAsList() {
+		return SequenceMixin.toList(this);
+	}
+
+	@Override
+	public SequenceView<C> getSubSequence(final Integer bioStart, final Integer bioEnd) {
+		return new SequenceProxyView<C>(this, bioStart, bioEnd) {
+			@Override
+			public String getSequenceAsString() {
+				return MappedFastaSequenceReader.this.getSequenceAsString(getBioStart(), getBioEnd());
+			}
+		};
+	}
+
+	@Override
+	public Iterator<C> iterator() {
+		return SequenceMixin.createIterator(this);
+	}
+
+	@Override
+	public CompoundSet<C> getCompoundSet() {
+		return compoundSet;
+	}
+
+	@Override
+	public AccessionID getAccession() {
+		return accession;
+	}
+
+	@Override
+	public int getIndexOf(C compound) {
+		return SequenceMixin.indexOf(this, compound);
+	}
+
+	@Override
+	public int getLastIndexOf(C compound) {
+		return SequenceMixin.lastIndexOf(this, compound);
+	}
+
+	@Override
+	public int countCompounds(C... compounds) {
+		return SequenceMixin.countCompounds(this, compounds);
+	}
+
+	@Override
+	public SequenceView<C> getInverse() {
+		return SequenceMixin.inverse(this);
+	}
+
+	@Override
+	public int hashCode() {
+		int s = Hashcoder.SEED;
+		s = Hashcoder.hash(s, file.getFile());
+		s = Hashcoder.hash(s, entry.getName());
+		return s;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(Equals.classEqual(this, o)) {
+			@SuppressWarnings("unchecked")
+			MappedFastaSequenceReader<C> that = (MappedFastaSequenceReader<C>)o;
+			return  Equals.equal(this.file.getFile(), that.file.getFile()) &&
+					Equals.equal(this.entry.getName(), that.entry.getName()) &&
+					Equals.equal(this.compoundSet, that.compoundSet);
+		}
+		return false;
+	}
+}
@@ -70,10 +70,10 @@ public abstract class AbstractSequence<C extends Compound> implements Sequence<C
 	private FeaturesKeyWordInterface featuresKeyWord = null;
 	private DatabaseReferenceInterface databaseReferences = null;
 	private FeatureRetriever featureRetriever = null;
-	private ArrayList<FeatureInterface<AbstractSequence<C>, C>> features =
-			new ArrayList<FeatureInterface<AbstractSequence<C>, C>>();
-	private LinkedHashMap<String, ArrayList<FeatureInterface<AbstractSequence<C>, C>>> groupedFeatures =
-			new LinkedHashMap<String, ArrayList<FeatureInterface<AbstractSequence<C>, C>>>();
+	private FeatureIndex<FeatureInterface<AbstractSequence<C>, C>> features =
+			new FeatureIndex<FeatureInterface<AbstractSequence<C>, C>>();
+	private LinkedHashMap<String, FeatureIndex<FeatureInterface<AbstractSequence<C>, C>>> groupedFeatures =
+			new LinkedHashMap<String, FeatureIndex<FeatureInterface<AbstractSequence<C>, C>>>();
 	private List<String> comments = new ArrayList<>();
 	private List<AbstractReference> references;
 
@@ -348,17 +348,22 @@ public abstract class AbstractSequence<C extends Compound> implements Sequence<C
 	 * @return
 	 */
 	public List<FeatureInterface<AbstractSequence<C>, C>> getFeatures(String featureType, int bioSequencePosition) {
-		ArrayList<FeatureInterface<AbstractSequence<C>, C>> featureHits =
-				new ArrayList<FeatureInterface<AbstractSequence<C>, C>>();
-		List<FeatureInterface<AbstractSequence<C>, C>> features = getFeaturesByType(featureType);
-		if (features != null) {
-			for (FeatureInterface<AbstractSequence<C>, C> feature : features) {
-				if (bioSequencePosition >= feature.getLocations().getStart().getPosition() && bioSequencePosition <= feature.getLocations().getEnd().getPosition()) {
-					featureHits.add(feature);
-				}
-			}
+		return getFeatures(featureType, bioSequencePosition, bioSequencePosition);
+	}
+
+	/**
+	 * Return features overlapping a range of sequence positions by type
+	 * @param featureType
+	 * @param bioStart
+	 * @param bioEnd
+	 * @return
+	 */
+	public List<FeatureInterface<AbstractSequence<C>, C>> getFeatures(String featureType, int bioStart, int bioEnd) {
+		FeatureIndex<FeatureInterface<AbstractSequence<C>, C>> featureIndex = groupedFeatures.get(featureType);
+		if (featureIndex == null) {
+			return new ArrayList<FeatureInterface<AbstractSequence<C>, C>>();
 		}
-		return featureHits;
+		return featureIndex.getOverlapping(bioStart, bioEnd);
 	}
 
 	/**
@@ -367,16 +372,17 @@ public abstract class AbstractSequence<C extends Compound> implements Sequence<C
 	 * @return
 	 */
 	public List<FeatureInterface<AbstractSequence<C>, C>> getFeatures(int bioSequencePosition) {
-		ArrayList<FeatureInterface<AbstractSequence<C>, C>> featureHits =
-				new ArrayList<FeatureInterface<AbstractSequence<C>, C>>();
-		if (features != null) {
-			for (FeatureInterface<AbstractSequence<C>, C> feature : features) {
-				if (bioSequencePosition >= feature.getLocations().getStart().getPosition() && bioSequencePosition <= feature.getLocations().getEnd().getPosition()) {
-					featureHits.add(feature);
-				}
-			}
-		}
-		return featureHits;
+		return features.getOverlapping(bioSequencePosition, bioSequencePosition);
+	}
+
+	/**
+	 * Return features overlapping a range of sequence positions
+	 * @param bioStart
+	 * @param bioEnd
+	 * @return
+	 */
+	public List<FeatureInterface<AbstractSequence<C>, C>> getFeatures(int bioStart, int bioEnd) {
+		return features.getOverlapping(bioStart, bioEnd);
 	}
 
 	/**
@@ -384,7 +390,7 @@ public abstract class AbstractSequence<C extends Compound> implements Sequence<C
 	 * @return
 	 */
 	public List<FeatureInterface<AbstractSequence<C>, C>> getFeatures() {
-		return features;
+		return features.getFeatures();
 	}
 
 	/**
@@ -409,14 +415,22 @@ public abstract class AbstractSequence<C extends Compound> implements Sequence<C
 	 */
 	public void addFeature(FeatureInterface<AbstractSequence<C>, C> feature) {
 		features.add(feature);
-		ArrayList<FeatureInterface<AbstractSequence<C>, C>> featureList = groupedFeatures.get(feature.getType());
-		if (featureList == null) {
-			featureList = new ArrayList<FeatureInterface<AbstractSequence<C>, C>>();
-			groupedFeatures.put(feature.getType(), featureList);
+		FeatureIndex<FeatureInterface<AbstractSequence<C>, C>> featureIndex = groupedFeatures.get(feature.getType());
+		if (featureIndex == null) {
+			featureIndex = new FeatureIndex<FeatureInterface<AbstractSequence<C>, C>>();
+			groupedFeatures.put(feature.getType(), featureIndex);
+		}
+		featureIndex.add(feature);
+	}
+
+	/**
+	 * Add features to this sequence, as {@link #addFeature(FeatureInterface)} does for each of them.
+	 * @param features
+	 */
+	public void addFeatures(Collection<? extends FeatureInterface<AbstractSequence<C>, C>> features) {
+		for (FeatureInterface<AbstractSequence<C>, C> feature : features) {
+			addFeature(feature);
 		}
-		featureList.add(feature);
-		Collections.sort(features, AbstractFeature.LOCATION_LENGTH);
-		Collections.sort(featureList, AbstractFeature.LOCATION_LENGTH);
 	}
 
 	/**
@@ -425,10 +439,10 @@ public abstract class AbstractSequence<C extends Compound> implements Sequence<C
 	 */
 	public void removeFeature(FeatureInterface<AbstractSequence<C>, C> feature) {
 		features.remove(feature);
-		ArrayList<FeatureInterface<AbstractSequence<C>, C>> featureList = groupedFeatures.get(feature.getType());
-		if (featureList != null) {
-			featureList.remove(feature);
-			if (featureList.isEmpty()) {
+		FeatureIndex<FeatureInterface<AbstractSequence<C>, C>> featureIndex = groupedFeatures.get(feature.getType());
+		if (featureIndex != null) {
+			featureIndex.remove(feature);
+			if (featureIndex.isEmpty()) {
 				groupedFeatures.remove(feature.getType());
 			}
 		}
@@ -440,11 +454,11 @@ public abstract class AbstractSequence<C extends Compound> implements Sequence<C
 	 * @return
 	 */
 	public List<FeatureInterface<AbstractSequence<C>, C>> getFeaturesByType(String type) {
-		List<FeatureInterface<AbstractSequence<C>, C>> features = groupedFeatures.get(type);
-		if (features == null) {
-			features = new ArrayList<FeatureInterface<AbstractSequence<C>, C>>();
+		FeatureIndex<FeatureInterface<AbstractSequence<C>, C>> featureIndex = groupedFeatures.get(type);
+		if (featureIndex == null) {
+			return new ArrayList<FeatureInterface<AbstractSequence<C>, C>>();
 		}
-		return features;
+		return featureIndex.getFeatures();
 	}
 
 	/**
@@ -0,0 +1,154 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Tasks running in a thread pool while their producer goes on, with their results taken in the order
+ * the tasks were submitted. The producer bounds the tasks in flight, and so the memory used when
+ * streaming a large input, by taking the oldest result before submitting a task while the queue
+ * {@link #isFull()}:
+ *
+ * <pre>
+ * BoundedTaskQueue&lt;R&gt; tasks = new BoundedTaskQueue&lt;R&gt;();
+ * try {
+ *     for (each chunk of the input) {
+ *         while (tasks.isFull()) {
+ *             consume(tasks.take());
+ *         }
+ *         tasks.submit(task for the chunk);
+ *     }
+ *     while (!tasks.isEmpty()) {
+ *         consume(tasks.take());
+ *     }
+ * } finally {
+ *     tasks.cancel();
+ * }
+ * </pre>
+ *
+ * A queue is used by a single producer thread.
+ *
+ * @param <T> type returned from the tasks
+ * @since 5.1.2
+ */
+public class BoundedTaskQueue<T> {
+
+	private final ExecutorService executor;
+	private final int maxPending;
+	private final Deque<Future<T>> pending = new ArrayDeque<Future<T>>();
+
+	/**
+	 * Creates a queue of tasks run in the shared thread pool of {@link ConcurrencyTools}, with at most two
+	 * tasks per thread of the pool in flight.
+	 */
+	public BoundedTaskQueue() {
+		this(null, 2 * ConcurrencyTools.getThreadPool().getCorePoolSize());
+	}
+
+	/**
+	 * Creates a queue of tasks run by the given executor.
+	 *
+	 * @param executor the executor of the tasks, or null for the shared thread pool of {@link ConcurrencyTools}
+	 * @param maxPending the number of tasks in flight above which the queue is full
+	 */
+	public BoundedTaskQueue(ExecutorService executor, int maxPending) {
+		if (maxPending < 1) {
+			throw new IllegalArgumentException("maxPending must be at least 1");
+		}
+		this.executor = executor;
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * Submits a task, whether or not the queue is full.
+	 *
+	 * @param task
+	 */
+	public void submit(Callable<T> task) {
+		pending.add(executor == null ? ConcurrencyTools.submit(task) : executor.submit(task));
+	}
+
+	/**
+	 *
+	 * @return true if the result of a task should be taken before another task is submitted
+	 */
+	public boolean isFull() {
+		return pending.size() >= maxPending;
+	}
+
+	/**
+	 *
+	 * @return true if the results of all the submitted tasks were taken
+	 */
+	public boolean isEmpty() {
+		return pending.isEmpty();
+	}
+
+	/**
+	 *
+	 * @return the number of tasks whose result was not taken
+	 */
+	public int size() {
+		return pending.size();
+	}
+
+	/**
+	 * Waits for the oldest task and returns its result, as {@link ConcurrencyTools#get(Future)}.
+	 *
+	 * @return the result of the oldest task
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public T take() throws InterruptedException {
+		return take(RuntimeException.class);
+	}
+
+	/**
+	 * Waits for the oldest task and returns its result, as {@link ConcurrencyTools#get(Future, Class)}.
+	 *
+	 * @param <E> type of the checked exceptions of the tasks
+	 * @param exceptionType class of the checked exceptions to rethrow
+	 * @return the result of the oldest task
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws E if the task threw it
+	 */
+	public <E extends Exception> T take(Class<E> exceptionType) throws InterruptedException, E {
+		if (pending.isEmpty()) {
+			throw new IllegalStateException("No task to take");
+		}
+		return ConcurrencyTools.get(pending.poll(), exceptionType);
+	}
+
+	/**
+	 * Cancels the tasks whose result was not taken, for example in a finally block when the producer stops
+	 * on an error.
+	 */
+	public void cancel() {
+		for (Future<T> future : pending) {
+			future.cancel(true);
+		}
+		pending.clear();
+	}
+}
@@ -26,6 +26,8 @@ package org.biojava.nbio.core.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 
 /**
@@ -166,4 +168,94 @@ public class ConcurrencyTools {
 		return submit(task, "");
 	}
 
+	/**
+	 * Waits for a task and returns its result. An unchecked exception or error thrown by the task is rethrown
+	 * as is, a checked exception is wrapped in an {@link IllegalStateException}.
+	 *
+	 * @param <T> type returned from the task
+	 * @param future future of the task
+	 * @return the result of the task
+	 * @throws InterruptedException if interrupted while waiting
+	 * @since 5.1.2
+	 */
+	public static<T> T get(Future<T> future) throws InterruptedException {
+		return get(future, RuntimeException.class);
+	}
+
+	/**
+	 * Waits for a task and returns its result. An exception of the given type, an unchecked exception or an
+	 * error thrown by the task is rethrown as is, any other exception is wrapped in an
+	 * {@link IllegalStateException}.
+	 *
+	 * @param <T> type returned from the task
+	 * @param <E> type of the checked exceptions of the task
+	 * @param future future of the task
+	 * @param exceptionType class of the checked exceptions to rethrow
+	 * @return the result of the task
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws E if the task threw it
+	 * @since 5.1.2
+	 */
+	public static<T, E extends Exception> T get(Future<T> future, Class<E> exceptionType) throws InterruptedException, E {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (exceptionType.isInstance(cause)) {
+				throw exceptionType.cast(cause);
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Waits for the tasks in order and returns their results, as {@link #get(Future)}. The tasks left are
+	 * cancelled if one fails or if interrupted.
+	 *
+	 * @param <T> type returned from the tasks
+	 * @param futures futures of the tasks
+	 * @return the results of the tasks, in the same order
+	 * @throws InterruptedException if interrupted while waiting
+	 * @since 5.1.2
+	 */
+	public static<T> List<T> getAll(List<? extends Future<T>> futures) throws InterruptedException {
+		return getAll(futures, RuntimeException.class);
+	}
+
+	/**
+	 * Waits for the tasks in order and returns their results, as {@link #get(Future, Class)}. The tasks left
+	 * are cancelled if one fails or if interrupted.
+	 *
+	 * @param <T> type returned from the tasks
+	 * @param <E> type of the checked exceptions of the tasks
+	 * @param futures futures of the tasks
+	 * @param exceptionType class of the checked exceptions to rethrow
+	 * @return the results of the tasks, in the same order
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws E if a task threw it
+	 * @since 5.1.2
+	 */
+	public static<T, E extends Exception> List<T> getAll(List<? extends Future<T>> futures, Class<E> exceptionType)
+			throws InterruptedException, E {
+		List<T> results = new ArrayList<T>(futures.size());
+		try {
+			for (Future<T> future : futures) {
+				results.add(get(future, exceptionType));
+			}
+		} finally {
+			if (results.size() < futures.size()) {
+				for (Future<T> future : futures) {
+					future.cancel(true);
+				}
+			}
+		}
+		return results;
+	}
+
 }
@@ -0,0 +1,112 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.sequence.features;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.biojava.nbio.core.sequence.DNASequence;
+import org.biojava.nbio.core.sequence.compound.NucleotideCompound;
+import org.biojava.nbio.core.sequence.template.AbstractSequence;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FeatureIndex}, against a linear scan
+ */
+public class FeatureIndexTest {
+
+	private static TextFeature<AbstractSequence<NucleotideCompound>, NucleotideCompound> feature(DNASequence seq, String type, int start, int end) {
+		TextFeature<AbstractSequence<NucleotideCompound>, NucleotideCompound> f =
+				new TextFeature<AbstractSequence<NucleotideCompound>, NucleotideCompound>(type, "test", type + start, type + start);
+		seq.addFeature(start, end, f);
+		return f;
+	}
+
+	@Test
+	public void testOverlapAgainstLinearScan() throws Exception {
+		DNASequence seq = new DNASequence("ACGT");
+		Random rand = new Random(42);
+		List<FeatureInterface<AbstractSequence<NucleotideCompound>, NucleotideCompound>> all =
+				new ArrayList<FeatureInterface<AbstractSequence<NucleotideCompound>, NucleotideCompound>>();
+
+		// a feature spanning everything, as the source feature of a GenBank record
+		all.add(feature(seq, "source", 1, 100000));
+		for (int i = 0; i < 1000; i++) {
+			int start = 1 + rand.nextInt(100000);
+			int end = start + rand.nextInt(rand.nextBoolean() ? 50 : 5000);
+			all.add(feature(seq, i % 2 == 0 ? "gene" : "CDS", start, end));
+		}
+
+		// same order as sorting after every addition
+		Collections.sort(all, AbstractFeature.LOCATION_LENGTH);
+		assertEquals(all, seq.getFeatures());
+
+		for (int q = 0; q < 500; q++) {
+			int start = 1 + rand.nextInt(101000);
+			int end = q % 2 == 0 ? start : start + rand.nextInt(3000);
+
+			List<FeatureInterface<AbstractSequence<NucleotideCompound>, NucleotideCompound>> expected =
+					new ArrayList<FeatureInterface<AbstractSequence<NucleotideCompound>, NucleotideCompound>>();
+			List<FeatureInterface<AbstractSequence<NucleotideCompound>, NucleotideCompound>> expectedGenes =
+					new ArrayList<FeatureInterface<AbstractSequence<NucleotideCompound>, NucleotideCompound>>();
+			for (FeatureInterface<AbstractSequence<NucleotideCompound>, NucleotideCompound> f : all) {
+				if (f.getLocations().getStart().getPosition() <= end && f.getLocations().getEnd().getPosition() >= start) {
+					expected.add(f);
+					if (f.getType().equals("gene")) expectedGenes.add(f);
+				}
+			}
+
+			assertEquals(expected, seq.getFeatures(start, end));
+			assertEquals(expectedGenes, seq.getFeatures("gene", start, end));
+			if (start == end) {
+				assertEquals(expected, seq.getFeatures(start));
+			}
+		}
+	}
+
+	@Test
+	public void testAddAndRemove() throws Exception {
+		DNASequence seq = new DNASequence("ACGT");
+		TextFeature<AbstractSequence<NucleotideCompound>, NucleotideCompound> a = feature(seq, "gene", 10, 20);
+		TextFeature<AbstractSequence<NucleotideCompound>, NucleotideCompound> b = feature(seq, "gene", 5, 30);
+		TextFeature<AbstractSequence<NucleotideCompound>, NucleotideCompound> c = feature(seq, "CDS", 10, 40);
+
+		assertEquals(3, seq.getFeatures(15).size());
+		// sorted by start, then longest first
+		assertSame(b, seq.getFeatures().get(0));
+		assertSame(c, seq.getFeatures().get(1));
+		assertSame(a, seq.getFeatures().get(2));
+
+		seq.removeFeature(b);
+		assertEquals(2, seq.getFeatures(15).size());
+		assertEquals(1, seq.getFeatures("gene", 15).size());
+		assertTrue(seq.getFeatures(31, 50).contains(c));
+		assertTrue(seq.getFeatures(41).isEmpty());
+
+		seq.removeFeature(a);
+		assertTrue(seq.getFeaturesByType("gene").isEmpty());
+		assertTrue(seq.getFeatures("gene", 15).isEmpty());
+	}
+}
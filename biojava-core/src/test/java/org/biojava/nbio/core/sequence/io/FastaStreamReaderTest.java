@@ -0,0 +1,145 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.sequence.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.biojava.nbio.core.sequence.DNASequence;
+import org.biojava.nbio.core.sequence.ProteinSequence;
+import org.biojava.nbio.core.sequence.compound.AminoAcidCompound;
+import org.biojava.nbio.core.sequence.compound.AminoAcidCompoundSet;
+import org.biojava.nbio.core.sequence.compound.DNACompoundSet;
+import org.biojava.nbio.core.sequence.compound.NucleotideCompound;
+import org.biojava.nbio.core.sequence.storage.FourBitSequenceReader;
+import org.biojava.nbio.core.sequence.storage.TwoBitSequenceReader;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FastaStreamReader} and {@link BitPackedDNASequenceCreator}
+ */
+public class FastaStreamReaderTest {
+
+	private static final String DNA_FASTA =
+			"; a comment\n" +
+			">seq1\n" +
+			"ACGT\n" +
+			"  acgt  \r\n" +
+			"\n" +
+			">seq2\n" +
+			"ACGN\n" +
+			">seq3\n" +
+			"ACGZ\n" +
+			">seq4\n" +
+			"TTTT";
+
+	private static FastaStreamReader<DNASequence, NucleotideCompound> dnaReader(int bufferSize) {
+		InputStream is = new ByteArrayInputStream(DNA_FASTA.getBytes(StandardCharsets.US_ASCII));
+		return new FastaStreamReader<DNASequence, NucleotideCompound>(
+				Channels.newChannel(is),
+				new GenericFastaHeaderParser<DNASequence, NucleotideCompound>(),
+				new BitPackedDNASequenceCreator(DNACompoundSet.getDNACompoundSet()),
+				bufferSize);
+	}
+
+	@Test
+	public void testSameAsFastaReader() throws Exception {
+		InputStream inStream = this.getClass().getResourceAsStream("/PF00104_small.fasta");
+		FastaReader<ProteinSequence,AminoAcidCompound> fastaReader = new FastaReader<ProteinSequence,AminoAcidCompound>(inStream,
+				new GenericFastaHeaderParser<ProteinSequence,AminoAcidCompound>(),
+				new ProteinSequenceCreator(AminoAcidCompoundSet.getAminoAcidCompoundSet()));
+		LinkedHashMap<String,ProteinSequence> expected = fastaReader.process();
+
+		// a tiny buffer, so that lines span several reads
+		for (int bufferSize : new int[] {7, FastaStreamReader.DEFAULT_BUFFER_SIZE}) {
+			inStream = this.getClass().getResourceAsStream("/PF00104_small.fasta");
+			FastaStreamReader<ProteinSequence,AminoAcidCompound> reader = new FastaStreamReader<ProteinSequence,AminoAcidCompound>(
+					Channels.newChannel(inStream),
+					new GenericFastaHeaderParser<ProteinSequence,AminoAcidCompound>(),
+					new ProteinSequenceCreator(AminoAcidCompoundSet.getAminoAcidCompoundSet()),
+					bufferSize);
+
+			List<ProteinSequence> actual = new ArrayList<ProteinSequence>();
+			ProteinSequence seq;
+			while ((seq = reader.read()) != null) {
+				actual.add(seq);
+			}
+			reader.close();
+
+			assertEquals(283, actual.size());
+			Iterator<ProteinSequence> it = expected.values().iterator();
+			for (ProteinSequence a : actual) {
+				ProteinSequence e = it.next();
+				assertEquals(e.getAccession().getID(), a.getAccession().getID());
+				assertEquals(e.getOriginalHeader(), a.getOriginalHeader());
+				assertEquals(e.getSequenceAsString(), a.getSequenceAsString());
+			}
+		}
+	}
+
+	@Test
+	public void testBitPackedDNA() throws Exception {
+		for (int bufferSize : new int[] {1, 3, FastaStreamReader.DEFAULT_BUFFER_SIZE}) {
+			FastaStreamReader<DNASequence, NucleotideCompound> reader = dnaReader(bufferSize);
+
+			DNASequence seq1 = reader.read();
+			assertEquals("seq1", seq1.getAccession().getID());
+			assertEquals("ACGTACGT", seq1.getSequenceAsString());
+			assertTrue(seq1.getProxySequenceReader() instanceof TwoBitSequenceReader);
+
+			DNASequence seq2 = reader.read();
+			assertEquals("seq2", seq2.getAccession().getID());
+			assertEquals("ACGN", seq2.getSequenceAsString());
+			assertTrue(seq2.getProxySequenceReader() instanceof FourBitSequenceReader);
+
+			// seq3 has an unknown compound and is skipped
+			DNASequence seq4 = reader.read();
+			assertEquals("seq4", seq4.getAccession().getID());
+			assertEquals("TTTT", seq4.getSequenceAsString());
+
+			assertNull(reader.read());
+			assertNull(reader.read());
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		List<String> ids;
+		try (Stream<DNASequence> stream = dnaReader(5).stream()) {
+			ids = stream.map(s -> s.getAccession().getID()).collect(Collectors.toList());
+		}
+		assertEquals(3, ids.size());
+		assertEquals("seq1", ids.get(0));
+		assertEquals("seq2", ids.get(1));
+		assertEquals("seq4", ids.get(2));
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.sequence.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.biojava.nbio.core.exceptions.ParserException;
+import org.biojava.nbio.core.sequence.DNASequence;
+import org.biojava.nbio.core.sequence.compound.DNACompoundSet;
+import org.biojava.nbio.core.sequence.compound.NucleotideCompound;
+import org.biojava.nbio.core.sequence.loader.MappedFastaSequenceReader;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FastaIndex} and {@link IndexedFastaFile}
+ */
+public class IndexedFastaFileTest {
+
+	private static final String FASTA =
+			">chr1 first\n" +
+			"ACGT\n" +
+			"TTGG\n" +
+			"CA\n" +
+			">chr2\r\n" +
+			"NNAC\r\n" +
+			"G\r\n";
+
+	private static File writeFasta(String content) throws IOException {
+		File file = File.createTempFile("IndexedFastaFileTest", ".fa");
+		file.deleteOnExit();
+		new File(file.getPath() + FastaIndex.INDEX_SUFFIX).deleteOnExit();
+		OutputStream os = new FileOutputStream(file);
+		os.write(content.getBytes(StandardCharsets.US_ASCII));
+		os.close();
+		return file;
+	}
+
+	@Test
+	public void testBuildIndex() throws Exception {
+		File file = writeFasta(FASTA);
+		FastaIndex index = FastaIndex.build(file);
+
+		assertEquals(Arrays.asList("chr1", "chr2"), index.getNames());
+		// the same as samtools faidx
+		assertEquals("chr1\t10\t12\t4\t5", index.getEntry("chr1").toString());
+		assertEquals("chr2\t5\t32\t4\t6", index.getEntry("chr2").toString());
+
+		// writing and reading back
+		IndexedFastaFile.writeIndex(file);
+		FastaIndex read = FastaIndex.read(new File(file.getPath() + FastaIndex.INDEX_SUFFIX));
+		assertEquals(index.getEntry("chr2").toString(), read.getEntry("chr2").toString());
+	}
+
+	@Test(expected = ParserException.class)
+	public void testDifferentLineLengths() throws Exception {
+		FastaIndex.build(writeFasta(">chr1\nACG\nACGT\n"));
+	}
+
+	@Test
+	public void testMappedReader() throws Exception {
+		IndexedFastaFile fasta = new IndexedFastaFile(writeFasta(FASTA));
+		DNACompoundSet cs = DNACompoundSet.getDNACompoundSet();
+
+		MappedFastaSequenceReader<NucleotideCompound> chr1 = fasta.getSequenceReader("chr1", cs);
+		assertEquals(10, chr1.getLength());
+		assertEquals("ACGTTTGGCA", chr1.getSequenceAsString());
+		assertEquals("TTTGGC", chr1.getSequenceAsString(4, 9));
+		assertEquals("GGCA", chr1.getSubSequence(7, 10).getSequenceAsString());
+		assertEquals(cs.getCompoundForString("T"), chr1.getCompoundAt(5));
+		assertEquals("chr1", chr1.getAccession().getID());
+
+		MappedFastaSequenceReader<NucleotideCompound> chr2 = fasta.getSequenceReader("chr2", cs);
+		assertEquals("NNACG", chr2.getSequenceAsString());
+		assertEquals("CG", chr2.getSequenceAsString(4, 5));
+
+		DNASequence seq = new DNASequence(chr2, cs);
+		assertEquals("NNACG", seq.getSequenceAsString());
+
+		assertNull(fasta.getSequenceReader("chr3", cs));
+		assertEquals(2, fasta.getSequenceReaders(cs).size());
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Test {@link BoundedTaskQueue} and the waiting methods of {@link ConcurrencyTools}.
+ *
+ * @since 5.1.2
+ *
+ */
+public class BoundedTaskQueueTest {
+
+	private static Callable<Integer> square(final int i) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				// finish the later tasks first
+				Thread.sleep((20 - i % 20) / 5);
+				return i * i;
+			}
+		};
+	}
+
+	private static Callable<Integer> failing(final Exception e) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				throw e;
+			}
+		};
+	}
+
+	@Test
+	public void testOrderAndBound() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			BoundedTaskQueue<Integer> tasks = new BoundedTaskQueue<Integer>(executor, 5);
+			List<Integer> results = new ArrayList<Integer>();
+			for (int i = 0; i < 200; i++) {
+				while (tasks.isFull()) {
+					results.add(tasks.take());
+				}
+				assertTrue(tasks.size() < 5);
+				tasks.submit(square(i));
+			}
+			while (!tasks.isEmpty()) {
+				results.add(tasks.take());
+			}
+			assertEquals(200, results.size());
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(i * i, results.get(i).intValue());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSharedPool() throws Exception {
+		BoundedTaskQueue<Integer> tasks = new BoundedTaskQueue<Integer>();
+		tasks.submit(square(3));
+		tasks.submit(square(4));
+		assertEquals(9, tasks.take().intValue());
+		assertEquals(16, tasks.take().intValue());
+		assertTrue(tasks.isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTakeEmpty() throws Exception {
+		new BoundedTaskQueue<Integer>().take();
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		final CountDownLatch never = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			BoundedTaskQueue<Integer> tasks = new BoundedTaskQueue<Integer>(executor, 2);
+			for (int i = 0; i < 3; i++) {
+				tasks.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						never.await();
+						return 0;
+					}
+				});
+			}
+			tasks.cancel();
+			assertTrue(tasks.isEmpty());
+			// the running task was interrupted and the queued ones never start
+			tasks.submit(square(5));
+			assertEquals(25, tasks.take().intValue());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testUnwrap() throws Exception {
+		IllegalArgumentException unchecked = new IllegalArgumentException();
+		try {
+			ConcurrencyTools.get(ConcurrencyTools.submit(failing(unchecked)));
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertSame(unchecked, e);
+		}
+
+		IOException checked = new IOException();
+		try {
+			ConcurrencyTools.get(ConcurrencyTools.submit(failing(checked)));
+			fail();
+		} catch (IllegalStateException e) {
+			assertSame(checked, e.getCause());
+		}
+
+		BoundedTaskQueue<Integer> tasks = new BoundedTaskQueue<Integer>();
+		tasks.submit(failing(checked));
+		try {
+			tasks.take(IOException.class);
+			fail();
+		} catch (IOException e) {
+			assertSame(checked, e);
+		}
+	}
+
+	@Test
+	public void testGetAll() throws Exception {
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < 50; i++) {
+			futures.add(ConcurrencyTools.submit(square(i)));
+		}
+		List<Integer> results = ConcurrencyTools.getAll(futures);
+		for (int i = 0; i < 50; i++) {
+			assertEquals(i * i, results.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void testGetAllCancels() throws Exception {
+		final CountDownLatch never = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			IOException checked = new IOException();
+			futures.add(executor.submit(failing(checked)));
+			futures.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					never.await();
+					return 0;
+				}
+			}));
+			try {
+				ConcurrencyTools.getAll(futures, IOException.class);
+				fail();
+			} catch (IOException e) {
+				assertSame(checked, e);
+			}
+			assertTrue(futures.get(1).isCancelled());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,521 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.genome.io.fastq;
+
+import org.biojava.nbio.core.util.BoundedTaskQueue;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+
+/**
+ * Reader for FASTQ formatted sequences that decodes records in parallel into reusable
+ * {@link FastqRecord}s.
+ * <p>
+ * The input is read in chunks of bytes that are split on record boundaries; each chunk is then
+ * decoded in the shared thread pool of {@link org.biojava.nbio.core.util.ConcurrencyTools} while the
+ * next chunks are read.  The records of a chunk, and the chunk buffers themselves, are reused once
+ * the listener has been notified of them, so reading allocates little beyond the descriptions.
+ * Records are passed to the listener in the order of the input, from the calling thread.
+ * <p>
+ * The input is parsed as by the other readers of this package, wrapped sequences and qualities
+ * included, except that lines must end with <code>\n</code> or <code>\r\n</code>.
+ *
+ * @since 5.1.2
+ */
+public final class ChunkedFastqReader
+{
+	/** Default chunk size in bytes. */
+	private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	/** FASTQ sequence format variant for this reader. */
+	private final FastqVariant variant;
+
+	/** Chunk size in bytes. */
+	private final int chunkSize;
+
+	/** Quality scores by quality in ASCII format. */
+	private final int[] qualityScores = new int[256];
+
+
+	/**
+	 * Create a new chunked reader for the specified FASTQ sequence format variant.
+	 *
+	 * @param variant FASTQ sequence format variant, must not be null
+	 */
+	public ChunkedFastqReader(final FastqVariant variant)
+	{
+		this(variant, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Create a new chunked reader for the specified FASTQ sequence format variant and chunk size.
+	 * Chunks grow as needed to hold at least one record.
+	 *
+	 * @param variant FASTQ sequence format variant, must not be null
+	 * @param chunkSize chunk size in bytes, must be positive
+	 */
+	public ChunkedFastqReader(final FastqVariant variant, final int chunkSize)
+	{
+		if (variant == null)
+		{
+			throw new IllegalArgumentException("variant must not be null");
+		}
+		if (chunkSize <= 0)
+		{
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+		this.variant = variant;
+		this.chunkSize = chunkSize;
+		for (char c = 0; c < qualityScores.length; c++)
+		{
+			qualityScores[c] = variant.qualityScore(c);
+		}
+	}
+
+
+	/**
+	 * Return the FASTQ sequence format variant for this reader.
+	 *
+	 * @return the FASTQ sequence format variant for this reader
+	 */
+	public FastqVariant getVariant()
+	{
+		return variant;
+	}
+
+	/**
+	 * Stream the specified file.
+	 *
+	 * @param file file to read from, must not be null
+	 * @param listener reader callback, must not be null
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void stream(final File file, final FastqRecordListener listener) throws IOException
+	{
+		if (file == null)
+		{
+			throw new IllegalArgumentException("file must not be null");
+		}
+		InputStream inputStream = new FileInputStream(file);
+		try
+		{
+			stream(inputStream, listener);
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Stream the specified input stream.  The input stream is not closed.
+	 *
+	 * @param inputStream input stream to read from, must not be null
+	 * @param listener reader callback, must not be null
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void stream(final InputStream inputStream, final FastqRecordListener listener) throws IOException
+	{
+		if (inputStream == null)
+		{
+			throw new IllegalArgumentException("inputStream must not be null");
+		}
+		if (listener == null)
+		{
+			throw new IllegalArgumentException("listener must not be null");
+		}
+
+		BoundedTaskQueue<Chunk> tasks = new BoundedTaskQueue<Chunk>();
+		Deque<Chunk> free = new ArrayDeque<Chunk>();
+		try
+		{
+			Chunk chunk = new Chunk(chunkSize);
+			int length = 0;
+			boolean eof = false;
+			while (true)
+			{
+				while (length < chunk.data.length && !eof)
+				{
+					int n = inputStream.read(chunk.data, length, chunk.data.length - length);
+					if (n < 0)
+					{
+						eof = true;
+					}
+					else
+					{
+						length += n;
+					}
+				}
+
+				int consumed;
+				try
+				{
+					consumed = chunk.split(length, eof);
+				}
+				catch (IOException e)
+				{
+					// notify the records before the error, as the streaming parser does
+					while (!tasks.isEmpty())
+					{
+						notify(tasks.take(IOException.class), listener, free);
+					}
+					throw e;
+				}
+				if (consumed == 0 && !eof)
+				{
+					// the chunk does not hold a single record
+					chunk.data = Arrays.copyOf(chunk.data, 2 * chunk.data.length);
+					continue;
+				}
+
+				Chunk next = free.isEmpty() ? new Chunk(chunkSize) : free.poll();
+				length -= consumed;
+				if (next.data.length < length)
+				{
+					next.data = new byte[Math.max(chunkSize, 2 * length)];
+				}
+				System.arraycopy(chunk.data, consumed, next.data, 0, length);
+				if (chunk.size > 0)
+				{
+					while (tasks.isFull())
+					{
+						notify(tasks.take(IOException.class), listener, free);
+					}
+					tasks.submit(decode(chunk));
+				}
+				else
+				{
+					free.add(chunk);
+				}
+				if (eof)
+				{
+					break;
+				}
+				chunk = next;
+			}
+
+			while (!tasks.isEmpty())
+			{
+				notify(tasks.take(IOException.class), listener, free);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while decoding FASTQ formatted sequences");
+		}
+		finally
+		{
+			tasks.cancel();
+		}
+	}
+
+	/**
+	 * Return the decoding of the records of the specified chunk.
+	 */
+	private Callable<Chunk> decode(final Chunk chunk)
+	{
+		return new Callable<Chunk>()
+			{
+				@Override
+				public Chunk call() throws IOException
+				{
+					chunk.decode();
+					return chunk;
+				}
+			};
+	}
+
+	/**
+	 * Notify the listener of the records of the specified decoded chunk, then free the chunk.
+	 */
+	private static void notify(final Chunk chunk, final FastqRecordListener listener, final Deque<Chunk> free)
+	{
+		for (int i = 0; i < chunk.size; i++)
+		{
+			listener.fastq(chunk.records[i]);
+		}
+		free.add(chunk);
+	}
+
+	/**
+	 * Return the end of the line starting at the specified offset, or -1 if the line is not terminated.
+	 */
+	private static int lineEnd(final byte[] data, final int offset, final int length)
+	{
+		for (int i = offset; i < length; i++)
+		{
+			if (data[i] == '\n')
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the start of the specified line with leading whitespace trimmed.
+	 */
+	private static int trimStart(final byte[] data, int start, final int end)
+	{
+		while (start < end && (data[start] & 0xff) <= ' ')
+		{
+			start++;
+		}
+		return start;
+	}
+
+	/**
+	 * Return the end of the specified line with trailing whitespace trimmed.
+	 */
+	private static int trimEnd(final byte[] data, final int start, int end)
+	{
+		while (end > start && (data[end - 1] & 0xff) <= ' ')
+		{
+			end--;
+		}
+		return end;
+	}
+
+	/**
+	 * Return the length of the specified line with whitespace trimmed.
+	 */
+	private static int trimmedLength(final byte[] data, final int start, final int end)
+	{
+		int trimmedStart = trimStart(data, start, end);
+		return trimEnd(data, trimmedStart, end) - trimmedStart;
+	}
+
+	/**
+	 * Chunk of bytes holding whole records.
+	 */
+	private final class Chunk
+	{
+		/** Bytes of the chunk. */
+		private byte[] data;
+
+		/** Offsets of the repeat description lines of the records. */
+		private int[] repeats = new int[64];
+
+		/** End offsets of the records. */
+		private int[] ends = new int[64];
+
+		/** Decoded records. */
+		private FastqRecord[] records = new FastqRecord[0];
+
+		/** Number of records in this chunk. */
+		private int size;
+
+
+		/**
+		 * Create a new chunk with the specified capacity.
+		 *
+		 * @param capacity capacity in bytes
+		 */
+		private Chunk(final int capacity)
+		{
+			data = new byte[capacity];
+		}
+
+
+		/**
+		 * Find the boundaries of the whole records in the first bytes of this chunk.
+		 *
+		 * @param length number of bytes read in this chunk
+		 * @param eof true if the input ends with these bytes
+		 * @return the end of the last whole record
+		 * @throws IOException if the records are not well formed
+		 */
+		private int split(final int length, final boolean eof) throws IOException
+		{
+			size = 0;
+			int start = 0;
+			records:
+			while (start < length)
+			{
+				// description
+				int end = lineEnd(data, start, length);
+				if (end < 0 && !eof)
+				{
+					break;
+				}
+				if (data[start] != '@')
+				{
+					throw new IOException("description must begin with a '@' character");
+				}
+				int offset = end < 0 ? length : end + 1;
+
+				// sequence, then repeat description
+				int sequenceLength = 0;
+				int repeat = -1;
+				for (boolean first = true; repeat < 0; first = false)
+				{
+					if (offset >= length)
+					{
+						if (!eof)
+						{
+							break records;
+						}
+						throw new IOException("truncated sequence");
+					}
+					end = lineEnd(data, offset, length);
+					if (end < 0)
+					{
+						if (!eof)
+						{
+							break records;
+						}
+						end = length;
+					}
+					if (!first && data[offset] == '+')
+					{
+						repeat = offset;
+					}
+					else
+					{
+						sequenceLength += trimmedLength(data, offset, end);
+					}
+					offset = Math.min(end + 1, length);
+				}
+
+				// quality
+				int qualityLength = 0;
+				do
+				{
+					if (offset >= length)
+					{
+						if (!eof)
+						{
+							break records;
+						}
+						throw new IOException("truncated sequence");
+					}
+					end = lineEnd(data, offset, length);
+					if (end < 0)
+					{
+						if (!eof)
+						{
+							break records;
+						}
+						end = length;
+					}
+					qualityLength += trimmedLength(data, offset, end);
+					offset = Math.min(end + 1, length);
+				}
+				while (qualityLength < sequenceLength);
+				if (qualityLength > sequenceLength)
+				{
+					throw new IOException("sequence and quality scores must be the same length");
+				}
+
+				if (size == ends.length)
+				{
+					ends = Arrays.copyOf(ends, 2 * size);
+					repeats = Arrays.copyOf(repeats, 2 * size);
+				}
+				repeats[size] = repeat;
+				ends[size++] = offset;
+				start = offset;
+			}
+			return size == 0 ? 0 : ends[size - 1];
+		}
+
+		/**
+		 * Decode the records of this chunk.
+		 *
+		 * @throws IOException if a quality score is out of range or a repeat description does not match
+		 */
+		private void decode() throws IOException
+		{
+			if (records.length < size)
+			{
+				int length = records.length;
+				records = Arrays.copyOf(records, Math.max(size, 2 * length));
+				for (int i = length; i < records.length; i++)
+				{
+					records[i] = new FastqRecord(variant);
+				}
+			}
+
+			int start = 0;
+			for (int r = 0; r < size; r++)
+			{
+				FastqRecord record = records[r];
+				record.reset(variant);
+
+				int end = lineEnd(data, start, repeats[r]);
+				int descriptionStart = trimStart(data, start + 1, end);
+				record.setDescription(data, descriptionStart, trimEnd(data, descriptionStart, end) - descriptionStart);
+
+				for (int offset = end + 1; offset < repeats[r]; offset = end + 1)
+				{
+					end = lineEnd(data, offset, repeats[r]);
+					int sequenceStart = trimStart(data, offset, end);
+					record.appendSequence(data, sequenceStart, trimEnd(data, sequenceStart, end) - sequenceStart);
+				}
+
+				end = lineEnd(data, repeats[r], ends[r]);
+				if (end < 0)
+				{
+					end = ends[r];
+				}
+				int repeatStart = trimStart(data, repeats[r] + 1, end);
+				int repeatEnd = trimEnd(data, repeatStart, end);
+				if (record.descriptionLength() > 0 && repeatEnd > repeatStart
+					&& !record.descriptionEquals(data, repeatStart, repeatEnd - repeatStart))
+				{
+					throw new IOException("repeat description must match description");
+				}
+
+				byte[] scores = record.getQualityScores();
+				int q = 0;
+				for (int offset = end + 1; offset < ends[r]; offset = end + 1)
+				{
+					end = lineEnd(data, offset, ends[r]);
+					if (end < 0)
+					{
+						end = ends[r];
+					}
+					for (int i = trimStart(data, offset, end), qualityEnd = trimEnd(data, i, end); i < qualityEnd; i++)
+					{
+						int qualityScore = qualityScores[data[i] & 0xff];
+						if (qualityScore < variant.minimumQualityScore() || qualityScore > variant.maximumQualityScore())
+						{
+							throw new IOException("quality score must be between " + variant.minimumQualityScore() +
+												  " and " + variant.maximumQualityScore() + ", was " + qualityScore +
+												  " for ASCII char '" + (char) (data[i] & 0xff) + "'");
+						}
+						scores[q++] = (byte) qualityScore;
+					}
+				}
+				start = ends[r];
+			}
+		}
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.genome.io.fastq;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Mutable FASTQ formatted sequence backed by byte arrays, holding the sequence in ASCII format
+ * and the quality scores of its FASTQ sequence format variant.  Records are reused by
+ * {@link ChunkedFastqReader}, so their arrays are only valid up to {@link #length()}.
+ *
+ * @since 5.1.2
+ */
+public final class FastqRecord
+{
+	/** Charset of the description and sequence. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Description in UTF-8 format. */
+	private byte[] description = new byte[64];
+
+	/** Length of the description. */
+	private int descriptionLength;
+
+	/** Sequence in ASCII format. */
+	private byte[] sequence = new byte[256];
+
+	/** Quality scores. */
+	private byte[] qualityScores = new byte[256];
+
+	/** Length of the sequence and quality scores. */
+	private int length;
+
+	/** FASTQ sequence format variant of the quality scores. */
+	private FastqVariant variant;
+
+
+	/**
+	 * Create a new empty FASTQ formatted sequence record with the specified FASTQ sequence format variant.
+	 *
+	 * @param variant FASTQ sequence format variant, must not be null
+	 */
+	public FastqRecord(final FastqVariant variant)
+	{
+		if (variant == null)
+		{
+			throw new IllegalArgumentException("variant must not be null");
+		}
+		this.variant = variant;
+	}
+
+
+	/**
+	 * Return the description of this FASTQ formatted sequence record.
+	 *
+	 * @return the description of this FASTQ formatted sequence record
+	 */
+	public String getDescription()
+	{
+		return new String(description, 0, descriptionLength, UTF_8);
+	}
+
+	/**
+	 * Return the length of the sequence and of the quality scores of this FASTQ formatted sequence record.
+	 *
+	 * @return the length of the sequence and of the quality scores
+	 */
+	public int length()
+	{
+		return length;
+	}
+
+	/**
+	 * Return the array holding the sequence in ASCII format in its first {@link #length()} bytes.
+	 * The array is shared, not copied.
+	 *
+	 * @return the array holding the sequence
+	 */
+	public byte[] getSequence()
+	{
+		return sequence;
+	}
+
+	/**
+	 * Return the array holding the quality scores in its first {@link #length()} bytes.
+	 * The array is shared, not copied.
+	 *
+	 * @return the array holding the quality scores
+	 */
+	public byte[] getQualityScores()
+	{
+		return qualityScores;
+	}
+
+	/**
+	 * Return the FASTQ sequence format variant of the quality scores of this FASTQ formatted sequence record.
+	 *
+	 * @return the FASTQ sequence format variant of the quality scores
+	 */
+	public FastqVariant getVariant()
+	{
+		return variant;
+	}
+
+	/**
+	 * Convert the quality scores of this FASTQ formatted sequence record in place to the specified
+	 * FASTQ sequence format variant, by table lookup.
+	 *
+	 * @param variant FASTQ sequence format variant, must not be null
+	 * @return this FASTQ formatted sequence record
+	 */
+	public FastqRecord convertTo(final FastqVariant variant)
+	{
+		if (variant == null)
+		{
+			throw new IllegalArgumentException("variant must not be null");
+		}
+		if (variant != this.variant)
+		{
+			byte[] table = FastqTools.qualityScoreConversion(this.variant, variant);
+			int minimumQualityScore = this.variant.minimumQualityScore();
+			for (int i = 0; i < length; i++)
+			{
+				qualityScores[i] = table[qualityScores[i] - minimumQualityScore];
+			}
+			this.variant = variant;
+		}
+		return this;
+	}
+
+	/**
+	 * Create and return a new FASTQ formatted sequence from this record.
+	 *
+	 * @return a new FASTQ formatted sequence from this record
+	 */
+	public Fastq toFastq()
+	{
+		char[] quality = new char[length];
+		for (int i = 0; i < length; i++)
+		{
+			quality[i] = variant.quality(qualityScores[i]);
+		}
+		return new Fastq(getDescription(), new String(sequence, 0, length, UTF_8), new String(quality), variant);
+	}
+
+	/**
+	 * Create and return a copy of this FASTQ formatted sequence record, which is not reused by readers.
+	 *
+	 * @return a copy of this FASTQ formatted sequence record
+	 */
+	public FastqRecord copy()
+	{
+		FastqRecord copy = new FastqRecord(variant);
+		copy.description = Arrays.copyOf(description, descriptionLength);
+		copy.descriptionLength = descriptionLength;
+		copy.sequence = Arrays.copyOf(sequence, length);
+		copy.qualityScores = Arrays.copyOf(qualityScores, length);
+		copy.length = length;
+		return copy;
+	}
+
+	/**
+	 * Clear this record and set its FASTQ sequence format variant.
+	 *
+	 * @param variant FASTQ sequence format variant
+	 */
+	void reset(final FastqVariant variant)
+	{
+		this.variant = variant;
+		descriptionLength = 0;
+		length = 0;
+	}
+
+	/**
+	 * Set the description from the specified bytes in UTF-8 format.
+	 */
+	void setDescription(final byte[] bytes, final int offset, final int count)
+	{
+		if (description.length < count)
+		{
+			description = new byte[Math.max(count, 2 * description.length)];
+		}
+		System.arraycopy(bytes, offset, description, 0, count);
+		descriptionLength = count;
+	}
+
+	/**
+	 * Return true if the description equals the specified bytes.
+	 */
+	boolean descriptionEquals(final byte[] bytes, final int offset, final int count)
+	{
+		if (count != descriptionLength)
+		{
+			return false;
+		}
+		for (int i = 0; i < count; i++)
+		{
+			if (description[i] != bytes[offset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the length of the description.
+	 */
+	int descriptionLength()
+	{
+		return descriptionLength;
+	}
+
+	/**
+	 * Append the specified bytes to the sequence, growing the quality score array with it.
+	 */
+	void appendSequence(final byte[] bytes, final int offset, final int count)
+	{
+		ensureCapacity(length + count);
+		System.arraycopy(bytes, offset, sequence, length, count);
+		length += count;
+	}
+
+	/**
+	 * Grow the sequence and quality score arrays to at least the specified capacity.
+	 */
+	private void ensureCapacity(final int capacity)
+	{
+		if (sequence.length < capacity)
+		{
+			int newCapacity = Math.max(capacity, 2 * sequence.length);
+			sequence = Arrays.copyOf(sequence, newCapacity);
+			qualityScores = Arrays.copyOf(qualityScores, newCapacity);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.genome.io.fastq;
+
+/**
+ * Event based reader callback for reusable FASTQ formatted sequence records.
+ *
+ * @since 5.1.2
+ */
+public interface FastqRecordListener
+{
+	/**
+	 * Notify this listener of a FASTQ formatted sequence record, which is only valid until this method returns.
+	 *
+	 * @param record FASTQ formatted sequence record
+	 */
+	void fastq(FastqRecord record);
+}
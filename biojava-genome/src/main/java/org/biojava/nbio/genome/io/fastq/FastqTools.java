@@ -38,6 +38,42 @@ import java.util.List;
  */
 public final class FastqTools
 {
+	/** Error probabilities by variant ordinal and quality in ASCII format. */
+	private static final double[][] ERROR_PROBABILITIES = new double[FastqVariant.values().length][256];
+
+	/** Qualities in ASCII format converted between variants, by source and target variant ordinals and source quality. */
+	private static final char[][][] QUALITY_CONVERSIONS = new char[FastqVariant.values().length][FastqVariant.values().length][256];
+
+	/**
+	 * Quality scores converted between variants, by source and target variant ordinals and source quality
+	 * score minus the minimum quality score of the source variant.
+	 */
+	private static final byte[][][] QUALITY_SCORE_CONVERSIONS = new byte[FastqVariant.values().length][FastqVariant.values().length][];
+
+	static
+	{
+		for (FastqVariant from : FastqVariant.values())
+		{
+			for (char c = 0; c < 256; c++)
+			{
+				ERROR_PROBABILITIES[from.ordinal()][c] = from.errorProbability(c);
+			}
+			for (FastqVariant to : FastqVariant.values())
+			{
+				for (char c = 0; c < 256; c++)
+				{
+					QUALITY_CONVERSIONS[from.ordinal()][to.ordinal()][c] = to.quality(to.qualityScore(from.errorProbability(c)));
+				}
+				byte[] qualityScores = new byte[from.maximumQualityScore() - from.minimumQualityScore() + 1];
+				for (int i = 0; i < qualityScores.length; i++)
+				{
+					qualityScores[i] = (byte) (from == to ? from.minimumQualityScore() + i
+							: to.qualityScore(from.errorProbability(from.minimumQualityScore() + i)));
+				}
+				QUALITY_SCORE_CONVERSIONS[from.ordinal()][to.ordinal()] = qualityScores;
+			}
+		}
+	}
 
 	/**
 	 * Private no-arg constructor.
@@ -260,10 +296,11 @@ public final class FastqTools
 			throw new IllegalArgumentException("errorProbabilities must be the same length as the FASTQ formatted sequence quality");
 		}
 		FastqVariant variant = fastq.getVariant();
+		double[] table = ERROR_PROBABILITIES[variant.ordinal()];
 		for (int i = 0; i < size; i++)
 		{
 			char c = fastq.getQuality().charAt(i);
-			errorProbabilities[i] = variant.errorProbability(c);
+			errorProbabilities[i] = c < table.length ? table[c] : variant.errorProbability(c);
 		}
 		return errorProbabilities;
 	}
@@ -319,14 +356,31 @@ public final class FastqTools
 		{
 			return fastq.getQuality();
 		}
-		int size = fastq.getQuality().length();
-		double[] errorProbabilities = errorProbabilities(fastq, new double[size]);
-		StringBuilder sb = new StringBuilder(size);
+		String quality = fastq.getQuality();
+		int size = quality.length();
+		FastqVariant from = fastq.getVariant();
+		char[] table = QUALITY_CONVERSIONS[from.ordinal()][variant.ordinal()];
+		char[] converted = new char[size];
 		for (int i = 0; i < size; i++)
 		{
-			sb.append(variant.quality(variant.qualityScore(errorProbabilities[i])));
+			char c = quality.charAt(i);
+			converted[i] = c < table.length ? table[c] : variant.quality(variant.qualityScore(from.errorProbability(c)));
 		}
-		return sb.toString();
+		return new String(converted);
+	}
+
+	/**
+	 * Return the table converting the quality scores of the specified source FASTQ sequence format variant,
+	 * indexed by quality score minus the minimum quality score of the source variant, to the quality
+	 * scores of the specified target variant.
+	 *
+	 * @param from source FASTQ sequence format variant
+	 * @param to target FASTQ sequence format variant
+	 * @return the table converting the quality scores of the source variant to the target variant
+	 */
+	static byte[] qualityScoreConversion(final FastqVariant from, final FastqVariant to)
+	{
+		return QUALITY_SCORE_CONVERSIONS[from.ordinal()][to.ordinal()];
 	}
 
 	/**
@@ -39,6 +39,16 @@
  * writer.write(new File("sanger.fastq"), fastq);
  * </pre>
  *
+ * To decode a large Sanger variant FASTQ sequence file in parallel into reusable records:
+ * <pre>
+ * ChunkedFastqReader reader = new ChunkedFastqReader(FastqVariant.FASTQ_SANGER);
+ * reader.stream(new File("sanger.fastq"), new FastqRecordListener() {
+ *   public void fastq(FastqRecord record) {
+ *     // ...
+ *   }
+ * });
+ * </pre>
+ *
  * For further documentation on the FASTQ sequence format,
  * its variants, and how they are handled in O|B|F projects,
  * see:
@@ -25,6 +25,8 @@ import org.biojava.nbio.core.sequence.DNASequence;
 import java.io.Serializable;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 
@@ -43,6 +45,9 @@ public class FeatureList extends ArrayList<FeatureI> {
 	 Map<String, Map<String,List<FeatureI>>> featindex = new HashMap<String,Map<String,List<FeatureI>>>();
 	Location mLocation;			//genomic location (union of feature locations)
 
+	// indexes built lazily by the queries, dropped whenever the list is modified
+	private transient volatile Indexes indexes;
+
 	/**
 	 * Construct an empty list.
 	 */
@@ -97,6 +102,19 @@ public class FeatureList extends ArrayList<FeatureI> {
 		return super.add(feature);
 	}
 
+	@Override
+	public FeatureI set(int index, FeatureI feature) {
+		clearIndexes();
+		return super.set(index, feature);
+	}
+
+	@Override
+	public Object clone() {
+		FeatureList list = (FeatureList) super.clone();
+		list.clearIndexes();
+		return list;
+	}
+
 	/**
 	 * Add all features in the specified list or collection to this list.
 	 *
@@ -246,14 +264,22 @@ public class FeatureList extends ArrayList<FeatureI> {
 	 * @return A list of features of the specified type.
 	 */
 	public FeatureList selectByType(String type) {
-		FeatureList list = new FeatureList();
-		for (FeatureI f : this) {
-			if (f.type().equals(type)) {
-				list.add(f);
+		Indexes current = indexes();
+		Map<String, List<FeatureI>> typeIndex = current.typeIndex;
+		if (typeIndex == null) {
+			typeIndex = new HashMap<String, List<FeatureI>>();
+			for (FeatureI f : this) {
+				List<FeatureI> features = typeIndex.get(f.type());
+				if (features == null) {
+					features = new ArrayList<FeatureI>();
+					typeIndex.put(f.type(), features);
+				}
+				features.add(f);
 			}
+			current.typeIndex = typeIndex;
 		}
-
-		return list;
+		List<FeatureI> features = typeIndex.get(type);
+		return features == null ? new FeatureList() : new FeatureList(features);
 	}
 
 	/**
@@ -266,22 +292,15 @@ public class FeatureList extends ArrayList<FeatureI> {
 	 * @return A list of features that include the key/value pair.
 	 */
 	public FeatureList selectByAttribute(String key, String value) {
-		if (featindex.containsKey(key)){
-			Map<String,List<FeatureI>> featuresmap = featindex.get(key);
-			if (featuresmap==null) return new FeatureList();
-			List<FeatureI> list = featuresmap.get(value);
-			if (list == null){
-				return new FeatureList();
-			}
-			return  new FeatureList(list);
+		Map<String,List<FeatureI>> featuresmap = featindex.get(key);
+		if (featuresmap == null) {
+			featuresmap = attributeIndex(key);
 		}
-		FeatureList list = new FeatureList();
-		for (FeatureI f : this) {
-			if (f.hasAttribute(key, value)) {
-				list.add(f);
-			}
+		List<FeatureI> list = featuresmap.get(value);
+		if (list == null){
+			return new FeatureList();
 		}
-		return list;
+		return  new FeatureList(list);
 	}
 	/**
 	 * Create a list of all features that include the specified attribute key.
@@ -356,19 +375,8 @@ public class FeatureList extends ArrayList<FeatureI> {
 	public FeatureList selectOverlapping(String seqname, Location location, boolean useBothStrands)
 			throws Exception {
 		FeatureList list = new FeatureList();
-
-		for (FeatureI feature : this) {
-			boolean overlaps = false;
-			if (feature.seqname().equals(seqname)) {
-				if (location.isSameStrand(feature.location())) {
-					overlaps = feature.location().overlaps(location);
-				} else if (useBothStrands) {
-					overlaps = feature.location().overlaps(location.opposite());
-				}
-			}
-			if (overlaps) {
-				list.add(feature);
-			}
+		for (int position : overlapping(seqname, location, useBothStrands)) {
+			list.add(get(position));
 		}
 		return list;
 	}
@@ -384,24 +392,210 @@ public class FeatureList extends ArrayList<FeatureI> {
 	 * @return The new list of features that do not overlap the location.
 	 */
 	public FeatureList omitOverlapping(String seqname, Location location, boolean useBothStrands) {
+		boolean[] overlaps = new boolean[size()];
+		for (int position : overlapping(seqname, location, useBothStrands)) {
+			overlaps[position] = true;
+		}
+
 		FeatureList list = new FeatureList();
+		for (int i = 0; i < overlaps.length; i++) {
+			if (!overlaps[i]) {
+				list.add(get(i));
+			}
+		}
 
-		for (FeatureI feature : this) {
-			boolean overlaps = false;
-			if (feature.seqname().equals(seqname)) {
-				if (location.isSameStrand(feature.location())) {
-					overlaps = feature.location().overlaps(location);
-				} else if (useBothStrands) {
-					overlaps = feature.location().overlaps(location.opposite());
+		return list;
+	}
+
+	/**
+	 * The positions in the list, in increasing order, of the features overlapping the location.
+	 * The interval index of each sequence is built on the first query.
+	 */
+	private List<Integer> overlapping(String seqname, Location location, boolean useBothStrands) {
+		Indexes current = indexes();
+		Map<String, IntervalTree[]> intervalIndex = current.intervalIndex;
+		if (intervalIndex == null) {
+			Map<String, List<Integer>[]> positions = new HashMap<String, List<Integer>[]>();
+			for (int i = 0; i < size(); i++) {
+				FeatureI f = get(i);
+				if (f.location() == null) {
+					continue;
 				}
+				List<Integer>[] strands = positions.get(f.seqname());
+				if (strands == null) {
+					@SuppressWarnings({"unchecked", "rawtypes"})
+					List<Integer>[] lists = new List[] { new ArrayList<Integer>(), new ArrayList<Integer>() };
+					strands = lists;
+					positions.put(f.seqname(), strands);
+				}
+				strands[f.location().isNegative() ? 1 : 0].add(i);
+			}
+			intervalIndex = new HashMap<String, IntervalTree[]>();
+			for (Entry<String, List<Integer>[]> entry : positions.entrySet()) {
+				intervalIndex.put(entry.getKey(), new IntervalTree[] {
+						new IntervalTree(this, entry.getValue()[0]), new IntervalTree(this, entry.getValue()[1]) });
 			}
+			current.intervalIndex = intervalIndex;
+		}
 
-			if (!overlaps) {
-				list.add(feature);
+		List<Integer> result = new ArrayList<Integer>();
+		IntervalTree[] trees = intervalIndex.get(seqname);
+		if (trees != null) {
+			int strand = location.isNegative() ? 1 : 0;
+			trees[strand].overlapping(location.start(), location.end(), result);
+			if (useBothStrands) {
+				Location opposite = location.opposite();
+				trees[1 - strand].overlapping(opposite.start(), opposite.end(), result);
 			}
+			Collections.sort(result);
 		}
+		return result;
+	}
 
-		return list;
+	/**
+	 * The indexes of the current content of the list. Each index is built into a local variable
+	 * and only then published, so that concurrent queries on an unmodified list never see a
+	 * partly built index (at worst they build the same index twice).
+	 */
+	private Indexes indexes() {
+		Indexes current = indexes;
+		if (current == null || current.modCount != modCount) {
+			current = new Indexes(modCount);
+			indexes = current;
+		}
+		return current;
+	}
+
+	private void clearIndexes() {
+		indexes = null;
+	}
+
+	/**
+	 * The indexes of the list as it was at a given modification count.
+	 */
+	private static class Indexes {
+		private final int modCount;
+		private volatile Map<String, IntervalTree[]> intervalIndex;
+		private volatile Map<String, List<FeatureI>> typeIndex;
+		private final ConcurrentMap<String, Map<String, List<FeatureI>>> attributeIndex =
+				new ConcurrentHashMap<String, Map<String, List<FeatureI>>>();
+
+		public Indexes(int modCount) {
+			this.modCount = modCount;
+		}
+	}
+
+	/**
+	 * Interval tree over the features of one strand of one sequence. The locations are sorted by
+	 * start, and each element is a node of an implicit balanced binary tree laid over the array
+	 * that also stores the maximum end of its subtree (the layout of Heng Li's cgranges), so that
+	 * an overlap query takes O(log n + k).
+	 */
+	private static class IntervalTree {
+
+		private final int[] starts;
+		private final int[] ends;
+		private final int[] maxEnds;
+		private final int[] positions;
+		private final int rootLevel;
+
+		IntervalTree(List<FeatureI> features, List<Integer> featurePositions) {
+			int n = featurePositions.size();
+			long[] keys = new long[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = ((long) features.get(featurePositions.get(i)).location().start() << 32) | i;
+			}
+			// sorts on start, then on position
+			Arrays.sort(keys);
+
+			starts = new int[n];
+			ends = new int[n];
+			maxEnds = new int[n];
+			positions = new int[n];
+			for (int i = 0; i < n; i++) {
+				positions[i] = featurePositions.get((int) keys[i]);
+				Location location = features.get(positions[i]).location();
+				starts[i] = location.start();
+				ends[i] = location.end();
+			}
+			rootLevel = index();
+		}
+
+		/**
+		 * Stores the maximum ends of the subtrees, level by level. The leaves are at the even
+		 * positions; a node at level k is at a position ending with k ones followed by a zero.
+		 */
+		private int index() {
+			int n = starts.length;
+			if (n == 0) {
+				return -1;
+			}
+			int lastPosition = 0, last = 0;
+			for (int i = 0; i < n; i += 2) {
+				lastPosition = i;
+				last = maxEnds[i] = ends[i];
+			}
+			int level = 1;
+			for (; 1 << level <= n; level++) {
+				int x = 1 << (level - 1), step = x << 2;
+				for (int i = (x << 1) - 1; i < n; i += step) {
+					int right = i + x < n ? maxEnds[i + x] : last;
+					maxEnds[i] = Math.max(ends[i], Math.max(maxEnds[i - x], right));
+				}
+				// the rightmost node of this level, which may stand for a missing subtree above
+				lastPosition = (lastPosition >> level & 1) != 0 ? lastPosition - x : lastPosition + x;
+				if (lastPosition < n && maxEnds[lastPosition] > last) {
+					last = maxEnds[lastPosition];
+				}
+			}
+			return level - 1;
+		}
+
+		/**
+		 * Adds the positions of the features overlapping [start, end).
+		 */
+		void overlapping(int start, int end, List<Integer> result) {
+			int n = starts.length;
+			if (n == 0) {
+				return;
+			}
+			// the nodes to visit, with their level and whether their left subtree was visited
+			int[] stackNodes = new int[64], stackLevels = new int[64];
+			boolean[] stackVisited = new boolean[64];
+			int top = 0;
+			stackNodes[top] = (1 << rootLevel) - 1;
+			stackLevels[top] = rootLevel;
+			stackVisited[top++] = false;
+			while (top > 0) {
+				top--;
+				int x = stackNodes[top], level = stackLevels[top];
+				if (level <= 3) {
+					// small subtree, scanned linearly
+					int i0 = x >> level << level, i1 = Math.min(i0 + (1 << (level + 1)) - 1, n);
+					for (int i = i0; i < i1 && starts[i] < end; i++) {
+						if (start < ends[i]) {
+							result.add(positions[i]);
+						}
+					}
+				} else if (!stackVisited[top]) {
+					int left = x - (1 << (level - 1));
+					stackVisited[top++] = true;
+					// the left child may be past the end of the array, with part of its subtree present
+					if (left >= n || maxEnds[left] > start) {
+						stackNodes[top] = left;
+						stackLevels[top] = level - 1;
+						stackVisited[top++] = false;
+					}
+				} else if (x < n && starts[x] < end) {
+					if (start < ends[x]) {
+						result.add(positions[x]);
+					}
+					stackNodes[top] = x + (1 << (level - 1));
+					stackLevels[top] = level - 1;
+					stackVisited[top++] = false;
+				}
+			}
+		}
 	}
 
 	/**
@@ -433,20 +627,36 @@ public class FeatureList extends ArrayList<FeatureI> {
 	 * @return True if at least one feature has the key/value pair.
 	 */
 	public boolean hasAttribute(String key, String value) {
-		if (featindex.containsKey(key)){
-			Map<String, List<FeatureI>> mappa = featindex.get(key);
-			if (mappa == null) return false;
-			if (mappa.containsKey(value)) return true;
-			return false;
+		Map<String, List<FeatureI>> mappa = featindex.get(key);
+		if (mappa == null) {
+			mappa = attributeIndex(key);
 		}
+		return mappa.containsKey(value);
+	}
 
-		for (FeatureI f : this) {
-			if (f.hasAttribute(key, value)) {
-				return true;
+	/**
+	 * The features of the list grouped by their value of the attribute key, built on the
+	 * first query for the key.
+	 */
+	private Map<String, List<FeatureI>> attributeIndex(String key) {
+		Map<String, Map<String, List<FeatureI>>> attributeIndex = indexes().attributeIndex;
+		Map<String, List<FeatureI>> index = attributeIndex.get(key);
+		if (index == null) {
+			index = new HashMap<String, List<FeatureI>>();
+			for (FeatureI f : this) {
+				String value = f.getAttributes().get(key);
+				if (value != null) {
+					List<FeatureI> features = index.get(value);
+					if (features == null) {
+						features = new ArrayList<FeatureI>();
+						index.put(value, features);
+					}
+					features.add(f);
+				}
 			}
+			attributeIndex.put(key, index);
 		}
-
-		return false;
+		return index;
 	}
 
 	/**
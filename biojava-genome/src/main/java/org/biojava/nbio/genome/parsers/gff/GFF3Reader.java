@@ -20,14 +20,18 @@
  */
 package org.biojava.nbio.genome.parsers.gff;
 
+import org.biojava.nbio.core.util.BoundedTaskQueue;
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 
@@ -58,6 +62,8 @@ public class GFF3Reader {
 
 	private static final  Pattern p = Pattern.compile("\t");
 
+	private static final int CHUNK_SIZE = 10000;
+
 	/**
 	 * Read a file into a FeatureList. Each line of the file becomes one Feature object.
 	 *
@@ -103,6 +109,90 @@ public class GFF3Reader {
 	   return read(filename,new ArrayList<String>(0));
 	}
 
+	/**
+	 * Read a file into a FeatureList, parsing the lines in parallel. The lines are read in chunks
+	 * that are parsed in the shared thread pool of {@link ConcurrencyTools} while the next chunks
+	 * are read; only a few chunks are pending at any time, so the file is streamed rather than
+	 * loaded as a whole. The features are added to the list in the order of the file.
+	 *
+	 * @param filename The path to the GFF file.
+	 * @param indexes The attributes to index in the FeatureList.
+	 * @return A FeatureList.
+	 * @throws IOException Something went wrong -- check exception detail message.
+	 * @since 5.1.2
+	 */
+	public static FeatureList readParallel(String filename, List<String> indexes) throws IOException {
+		logger.info("Reading: {}", filename);
+
+		FeatureList features = new FeatureList();
+		features.addIndexes(indexes);
+		BoundedTaskQueue<List<Feature>> tasks = new BoundedTaskQueue<List<Feature>>();
+		BufferedReader br = new BufferedReader(new FileReader(filename));
+
+		try {
+			List<String> chunk = new ArrayList<String>(CHUNK_SIZE);
+			String s;
+			for (s = br.readLine(); null != s; s = br.readLine()) {
+				s = s.trim();
+
+				if (s.length() > 0) {
+					if (s.charAt(0) == '#') {
+						//ignore comment lines
+						if(s.startsWith("##fasta"))
+							break;
+					} else {
+						chunk.add(s);
+						if (chunk.size() == CHUNK_SIZE) {
+							while (tasks.isFull()) {
+								addFeatures(features, tasks.take());
+							}
+							tasks.submit(parseLines(chunk));
+							chunk = new ArrayList<String>(CHUNK_SIZE);
+						}
+					}
+				}
+			}
+			tasks.submit(parseLines(chunk));
+
+			while (!tasks.isEmpty()) {
+				addFeatures(features, tasks.take());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while parsing the GFF file");
+		} finally {
+			tasks.cancel();
+			br.close();
+		}
+		return features;
+	}
+
+	public static FeatureList readParallel(String filename) throws IOException {
+		return readParallel(filename, new ArrayList<String>(0));
+	}
+
+	private static Callable<List<Feature>> parseLines(final List<String> lines) {
+		return new Callable<List<Feature>>() {
+			@Override
+			public List<Feature> call() {
+				List<Feature> features = new ArrayList<Feature>(lines.size());
+				for (String line : lines) {
+					Feature f = parseLine(line);
+					if (f != null) {
+						features.add(f);
+					}
+				}
+				return features;
+			}
+		};
+	}
+
+	private static void addFeatures(FeatureList features, List<Feature> parsed) {
+		for (Feature f : parsed) {
+			features.add(f);
+		}
+	}
+
 
 	/**
 	 * create Feature from line of GFF file
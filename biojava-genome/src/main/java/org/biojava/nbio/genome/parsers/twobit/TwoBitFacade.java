@@ -23,12 +23,16 @@ package org.biojava.nbio.genome.parsers.twobit;
 import java.io.File;
 
 /** A facade that makes it easier to work with a 2bit file.
+ *
+ * The sequences are read with a {@link TwoBitReader}, so that {@link #getSequence(String, int, int)}
+ * can be called concurrently.
  *
  * Created by yana on 3/27/17.
  */
 public class TwoBitFacade {
 
     private TwoBitParser twoBitParser = null;
+    private TwoBitReader twoBitReader = null;
 
 
     /**
@@ -38,6 +42,7 @@ public class TwoBitFacade {
      */
     public TwoBitFacade(File file) throws Exception {
         twoBitParser = new TwoBitParser(file);
+        twoBitReader = new TwoBitReader(file);
     }
 
     /**
@@ -76,8 +81,14 @@ public class TwoBitFacade {
      * @throws Exception
      */
     public String getSequence(String chromosomeName, int start, int end) throws Exception {
-        twoBitParser.close();
-        twoBitParser.setCurrentSequence(chromosomeName);
-        return twoBitParser.loadFragment(start,end-start);
+        return twoBitReader.getSequence(chromosomeName, start, end);
+    }
+
+    /** Returns the reader of the 2bit file, which can be shared by concurrent callers.
+     *
+     * @return the reader of the 2bit file
+     */
+    public TwoBitReader getTwoBitReader() {
+        return twoBitReader;
     }
 }
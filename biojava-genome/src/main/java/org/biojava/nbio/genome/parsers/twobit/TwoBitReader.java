@@ -0,0 +1,354 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.genome.parsers.twobit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Random access to the sequences of a UCSC .2bit file through a read-only memory mapping of the file.
+ * <p>
+ * Unlike {@link TwoBitParser}, a reader has no current sequence or position: every call of
+ * {@link #getSequence(String, int, int)} computes the location of the range from the header of its
+ * sequence, which is read once and cached, and decodes the packed bytes 4 bases at a time with a lookup
+ * table. No file handle is kept open after construction.
+ * <p>
+ * Instances are thread-safe and don't lock: they can be shared by concurrent callers.
+ *
+ * @since 5.1.2
+ */
+public class TwoBitReader {
+
+	private static final int SIGNATURE = 0x1A412743;
+
+	/**
+	 * The size of the mapped segments: a single MappedByteBuffer can't be larger than 2GB
+	 */
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	/**
+	 * The 4 bases of every byte of packed DNA, the first one in the 2 most significant bits
+	 */
+	private static final char[] BASES = new char[256 * 4];
+
+	static {
+		char[] bits = { 'T', 'C', 'A', 'G' };
+		for (int b = 0; b < 256; b++) {
+			for (int i = 0; i < 4; i++) {
+				BASES[b * 4 + i] = bits[(b >> (6 - 2 * i)) & 3];
+			}
+		}
+	}
+
+	/**
+	 * The header of a sequence: its length, the blocks of Ns and of lower case bases, and where its
+	 * packed bases start.
+	 */
+	private static class SequenceHeader {
+		private final int length;
+		// start and (exclusive) end of the blocks, in increasing order
+		private final int[] nStarts, nEnds;
+		private final int[] maskStarts, maskEnds;
+		private final long packedOffset;
+
+		private SequenceHeader(int length, int[] nStarts, int[] nEnds, int[] maskStarts, int[] maskEnds, long packedOffset) {
+			this.length = length;
+			this.nStarts = nStarts;
+			this.nEnds = nEnds;
+			this.maskStarts = maskStarts;
+			this.maskEnds = maskEnds;
+			this.packedOffset = packedOffset;
+		}
+	}
+
+	private final File file;
+	private final MappedByteBuffer[] segments;
+	private final ByteOrder order;
+	private final List<String> names;
+	private final Map<String, Long> offsets;
+	private final ConcurrentMap<String, SequenceHeader> headers = new ConcurrentHashMap<String, SequenceHeader>();
+
+	/**
+	 * Maps the given .2bit file and reads its index of sequences.
+	 * @param file
+	 * @throws IOException if the file can't be read or is not a .2bit file
+	 */
+	public TwoBitReader(File file) throws IOException {
+		this.file = file;
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			int nSegments = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			segments = new MappedByteBuffer[nSegments];
+			for (int i = 0; i < nSegments; i++) {
+				long start = i * SEGMENT_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+			}
+		} finally {
+			// the mapping stays valid after closing the channel
+			channel.close();
+		}
+
+		byte[] header = new byte[16];
+		if (segments.length == 0 || segments[0].limit() < header.length) {
+			throw new IOException("Wrong start signature in 2BIT format");
+		}
+		getBytes(0, header, 0, header.length);
+		ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+		int signature = buffer.getInt();
+		if (signature == SIGNATURE) {
+			order = ByteOrder.LITTLE_ENDIAN;
+		} else if (signature == Integer.reverseBytes(SIGNATURE)) {
+			order = ByteOrder.BIG_ENDIAN;
+		} else {
+			throw new IOException("Wrong start signature in 2BIT format");
+		}
+		buffer.order(order);
+		buffer.getInt();
+		int count = buffer.getInt();
+
+		List<String> names = new ArrayList<String>(count);
+		Map<String, Long> offsets = new HashMap<String, Long>();
+		long offset = header.length;
+		for (int i = 0; i < count; i++) {
+			int length = getByte(offset++) & 0xff;
+			byte[] name = new byte[length];
+			getBytes(offset, name, 0, length);
+			offset += length;
+			String s = new String(name, "US-ASCII");
+			names.add(s);
+			offsets.put(s, getInt(offset) & 0xffffffffL);
+			offset += 4;
+		}
+		this.names = Collections.unmodifiableList(names);
+		this.offsets = offsets;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the names of the sequences in the order of the file
+	 */
+	public List<String> getSequenceNames() {
+		return names;
+	}
+
+	/**
+	 * Returns the length of a sequence.
+	 * @param name
+	 * @return
+	 * @throws IllegalArgumentException if there is no sequence with that name
+	 */
+	public int getSequenceLength(String name) {
+		return getHeader(name).length;
+	}
+
+	/**
+	 * Returns a whole sequence.
+	 * @param name
+	 * @return the bases, with N for unknown bases and lower case for masked (repeat) bases
+	 * @throws IllegalArgumentException if there is no sequence with that name
+	 */
+	public String getSequence(String name) {
+		return getSequence(name, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a range of a sequence.
+	 * @param name
+	 * @param start the 0-based position of the first base
+	 * @param end the 0-based position after the last base, or any larger value for the rest of the sequence
+	 * @return the bases, with N for unknown bases and lower case for masked (repeat) bases
+	 * @throws IllegalArgumentException if there is no sequence with that name
+	 */
+	public String getSequence(String name, int start, int end) {
+		SequenceHeader header = getHeader(name);
+		end = Math.min(end, header.length);
+		if (start < 0 || start > end) {
+			throw new IndexOutOfBoundsException("Range [" + start + "," + end + ") is not in sequence [" + name + "]");
+		}
+		char[] bases = new char[end - start];
+		decode(header, start, end, bases, 0);
+		return new String(bases);
+	}
+
+	/**
+	 * Decodes a range of a sequence into the given array.
+	 * @param name
+	 * @param start the 0-based position of the first base
+	 * @param end the 0-based position after the last base
+	 * @param dst
+	 * @param dstOffset the index of the first base in dst
+	 * @throws IllegalArgumentException if there is no sequence with that name
+	 */
+	public void getSequence(String name, int start, int end, char[] dst, int dstOffset) {
+		SequenceHeader header = getHeader(name);
+		if (start < 0 || start > end || end > header.length) {
+			throw new IndexOutOfBoundsException("Range [" + start + "," + end + ") is not in sequence [" + name + "]");
+		}
+		decode(header, start, end, dst, dstOffset);
+	}
+
+	private void decode(SequenceHeader header, int start, int end, char[] dst, int dstOffset) {
+		if (start == end) {
+			return;
+		}
+		int first = start >> 2;
+		byte[] packed = new byte[((end - 1) >> 2) - first + 1];
+		getBytes(header.packedOffset + first, packed, 0, packed.length);
+
+		int p = start, o = dstOffset;
+		// the bases of the first byte before the range, then whole bytes, then the last bases
+		int wholeStart = Math.min((start + 3) & ~3, end), wholeEnd = Math.max(end & ~3, wholeStart);
+		for (; p < wholeStart; p++) {
+			dst[o++] = BASES[((packed[(p >> 2) - first] & 0xff) << 2) | (p & 3)];
+		}
+		for (int i = (p >> 2) - first; p < wholeEnd; p += 4, i++) {
+			int b = (packed[i] & 0xff) << 2;
+			dst[o] = BASES[b];
+			dst[o + 1] = BASES[b + 1];
+			dst[o + 2] = BASES[b + 2];
+			dst[o + 3] = BASES[b + 3];
+			o += 4;
+		}
+		for (; p < end; p++) {
+			dst[o++] = BASES[((packed[(p >> 2) - first] & 0xff) << 2) | (p & 3)];
+		}
+
+		for (int i = firstBlock(header.nEnds, start); i < header.nStarts.length && header.nStarts[i] < end; i++) {
+			int from = Math.max(start, header.nStarts[i]), to = Math.min(end, header.nEnds[i]);
+			for (int j = from; j < to; j++) {
+				dst[dstOffset + j - start] = 'N';
+			}
+		}
+		for (int i = firstBlock(header.maskEnds, start); i < header.maskStarts.length && header.maskStarts[i] < end; i++) {
+			int from = Math.max(start, header.maskStarts[i]), to = Math.min(end, header.maskEnds[i]);
+			for (int j = dstOffset + from - start; j < dstOffset + to - start; j++) {
+				dst[j] = Character.toLowerCase(dst[j]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the first block ending after the given position.
+	 */
+	private static int firstBlock(int[] ends, int position) {
+		int low = 0, high = ends.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (ends[mid] <= position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private SequenceHeader getHeader(String name) {
+		SequenceHeader header = headers.get(name);
+		if (header == null) {
+			Long offset = offsets.get(name);
+			if (offset == null) {
+				throw new IllegalArgumentException("Sequence [" + name + "] was not found in 2bit file");
+			}
+			header = readHeader(offset);
+			// concurrent callers may both read the header, which gives the same values
+			headers.putIfAbsent(name, header);
+		}
+		return header;
+	}
+
+	private SequenceHeader readHeader(long offset) {
+		int length = getInt(offset);
+		offset += 4;
+		int[][] nBlocks = readBlocks(offset);
+		offset += 4 + 8L * nBlocks[0].length;
+		int[][] maskBlocks = readBlocks(offset);
+		offset += 4 + 8L * maskBlocks[0].length;
+		// skips the reserved word
+		offset += 4;
+		return new SequenceHeader(length, nBlocks[0], nBlocks[1], maskBlocks[0], maskBlocks[1], offset);
+	}
+
+	/**
+	 * Reads a count of blocks followed by their starts and their sizes.
+	 * @return the starts and the ends of the blocks
+	 */
+	private int[][] readBlocks(long offset) {
+		int count = getInt(offset);
+		byte[] bytes = new byte[8 * count];
+		getBytes(offset + 4, bytes, 0, bytes.length);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(order);
+		int[] starts = new int[count], ends = new int[count];
+		for (int i = 0; i < count; i++) {
+			starts[i] = buffer.getInt();
+		}
+		for (int i = 0; i < count; i++) {
+			ends[i] = starts[i] + buffer.getInt();
+		}
+		return new int[][] { starts, ends };
+	}
+
+	private byte getByte(long offset) {
+		return segments[(int) (offset / SEGMENT_SIZE)].get((int) (offset % SEGMENT_SIZE));
+	}
+
+	private int getInt(long offset) {
+		byte[] bytes = new byte[4];
+		getBytes(offset, bytes, 0, 4);
+		return ByteBuffer.wrap(bytes).order(order).getInt();
+	}
+
+	private void getBytes(long offset, byte[] dst, int dstOffset, int length) {
+		while (length > 0) {
+			int segment = (int) (offset / SEGMENT_SIZE);
+			int position = (int) (offset % SEGMENT_SIZE);
+			// a duplicate so that concurrent reads don't share the position
+			ByteBuffer buffer = segments[segment].duplicate();
+			int n = Math.min(length, buffer.limit() - position);
+			buffer.position(position);
+			buffer.get(dst, dstOffset, n);
+			offset += n;
+			dstOffset += n;
+			length -= n;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TwoBitReader [file=" + file + ", sequences=" + names.size() + "]";
+	}
+}
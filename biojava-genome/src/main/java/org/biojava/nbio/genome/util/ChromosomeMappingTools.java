@@ -21,18 +21,25 @@
 package org.biojava.nbio.genome.util;
 
 import com.google.common.collect.Range;
+import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
 import org.biojava.nbio.core.sequence.DNASequence;
 import org.biojava.nbio.core.sequence.compound.NucleotideCompound;
 import org.biojava.nbio.core.sequence.template.SequenceView;
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.genome.parsers.genename.ChromPos;
 import org.biojava.nbio.genome.parsers.genename.GeneChromosomePosition;
 import org.biojava.nbio.genome.parsers.twobit.TwoBitFacade;
+import org.biojava.nbio.genome.parsers.twobit.TwoBitReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  *  A class that can map chromosomal positions to mRNA (coding sequence) positions.
@@ -275,6 +282,19 @@ public class ChromosomeMappingTools {
      * @return
      */
     public static ChromPos getChromPosReverse(int cdsPos, List<Integer> exonStarts, List<Integer> exonEnds, int cdsStart, int cdsEnd) {
+        return getChromPosReverse(cdsPos, toIntArray(exonStarts), toIntArray(exonEnds), cdsStart, cdsEnd);
+    }
+
+    /**
+     * Get the CDS position mapped on the chromosome position
+     *
+     * @param exonStarts
+     * @param exonEnds
+     * @param cdsStart
+     * @param cdsEnd
+     * @return
+     */
+    public static ChromPos getChromPosReverse(int cdsPos, int[] exonStarts, int[] exonEnds, int cdsStart, int cdsEnd) {
 
         boolean inCoding = false;
         int codingLength = 0;
@@ -288,11 +308,11 @@ public class ChromosomeMappingTools {
         int lengthExons = 0;
 
         // map reverse
-        for (int i = exonStarts.size() - 1; i >= 0; i--) {
+        for (int i = exonStarts.length - 1; i >= 0; i--) {
 
-            logger.debug("Exon #" + (i+1) + "/" + exonStarts.size());
-            int end = exonStarts.get(i);
-            int start = exonEnds.get(i);
+            logger.debug("Exon #" + (i+1) + "/" + exonStarts.length);
+            int end = exonStarts[i];
+            int start = exonEnds[i];
 
             if (end < start) {
                 int tmp = end;
@@ -413,17 +433,30 @@ public class ChromosomeMappingTools {
      * @return
      */
     public static ChromPos getChromPosForward(int cdsPos, List<Integer> exonStarts, List<Integer> exonEnds, int cdsStart, int cdsEnd) {
+        return getChromPosForward(cdsPos, toIntArray(exonStarts), toIntArray(exonEnds), cdsStart, cdsEnd);
+    }
+
+    /**
+     * Get the CDS position mapped onto the chromosome position
+     *
+     * @param exonStarts
+     * @param exonEnds
+     * @param cdsStart
+     * @param cdsEnd
+     * @return
+     */
+    public static ChromPos getChromPosForward(int cdsPos, int[] exonStarts, int[] exonEnds, int cdsStart, int cdsEnd) {
         boolean inCoding = false;
         int codingLength = 0;
 
         @SuppressWarnings("unused")
 		int lengthExons = 0;
         // map forward
-        for (int i = 0; i < exonStarts.size(); i++) {
+        for (int i = 0; i < exonStarts.length; i++) {
 
             // start can include UTR
-            int start = exonStarts.get(i);
-            int end = exonEnds.get(i);
+            int start = exonStarts[i];
+            int end = exonEnds[i];
 
             lengthExons += end - start;
 
@@ -499,6 +532,19 @@ public class ChromosomeMappingTools {
      * @return
      */
     public static int getCDSLengthReverse(List<Integer> exonStarts, List<Integer> exonEnds, int cdsStart, int cdsEnd) {
+        return getCDSLengthReverse(toIntArray(exonStarts), toIntArray(exonEnds), cdsStart, cdsEnd);
+    }
+
+    /**
+     * Get the length of the coding sequence
+     *
+     * @param exonStarts
+     * @param exonEnds
+     * @param cdsStart
+     * @param cdsEnd
+     * @return
+     */
+    public static int getCDSLengthReverse(int[] exonStarts, int[] exonEnds, int cdsStart, int cdsEnd) {
 
         int codingLength = 0;
 
@@ -510,10 +556,10 @@ public class ChromosomeMappingTools {
         cdsStart = cdsStart + base;
 
         // map reverse
-        for (int i = exonStarts.size() - 1; i >= 0; i--) {
+        for (int i = exonStarts.length - 1; i >= 0; i--) {
 
-            int end = exonStarts.get(i);
-            int start = exonEnds.get(i);
+            int end = exonStarts[i];
+            int start = exonEnds[i];
 
             if (end < start) {
                 int tmp = end;
@@ -546,13 +592,26 @@ public class ChromosomeMappingTools {
      * @return
      */
     public static int getCDSLengthForward(List<Integer> exonStarts, List<Integer> exonEnds, int cdsStart, int cdsEnd) {
+        return getCDSLengthForward(toIntArray(exonStarts), toIntArray(exonEnds), cdsStart, cdsEnd);
+    }
+
+    /**
+     * Get the length of the coding sequence
+     *
+     * @param exonStarts
+     * @param exonEnds
+     * @param cdsStart
+     * @param cdsEnd
+     * @return
+     */
+    public static int getCDSLengthForward(int[] exonStarts, int[] exonEnds, int cdsStart, int cdsEnd) {
 
         int codingLength = 0;
 
-        for (int i = 0; i < exonStarts.size(); i++) {
+        for (int i = 0; i < exonStarts.length; i++) {
 
-            int start = exonStarts.get(i)+base;
-            int end = exonEnds.get(i);
+            int start = exonStarts[i]+base;
+            int end = exonEnds[i];
 
             if ( (start < cdsStart+base && end < cdsStart) || (start > cdsEnd && end > cdsEnd) )
                 continue;
@@ -808,35 +867,49 @@ public class ChromosomeMappingTools {
 	 */
     public static int getCDSPosForward(int chromPos, List<Integer> exonStarts, List<Integer> exonEnds,
             int cdsStart, int cdsEnd) {
-    	
+        return getCDSPosForward(chromPos, toIntArray(exonStarts), toIntArray(exonEnds), cdsStart, cdsEnd);
+    }
+
+    /** 
+	 * Converts the genetic coordinate to the position of the nucleotide on the mRNA sequence for a gene 
+	 * living on the forward DNA strand.
+	 * 
+	 * @param chromPos The genetic coordinate on a chromosome 
+     * @param exonStarts The array holding the genetic coordinates pointing to the start positions of the exons (including UTR regions)  
+     * @param exonEnds The array holding the genetic coordinates pointing to the end positions of the exons (including UTR regions)
+     * @param cdsStart The start position of a coding region
+     * @param cdsEnd The end position of a coding region
+     * 
+     * @return the position of the nucleotide base on the mRNA sequence corresponding to the input genetic coordinate (base 1)
+	 * 
+	 * @see #getCDSPosForward(int, List, List, int, int)
+	 */
+    public static int getCDSPosForward(int chromPos, int[] exonStarts, int[] exonEnds,
+            int cdsStart, int cdsEnd) {
+
     	// the genetic coordinate is not in a coding region
         if ( (chromPos < (cdsStart+base) ) || ( chromPos > (cdsEnd+base) ) ) {
         	logger.debug("The "+format(chromPos)+" position is not in a coding region");
             return -1;
         }
-        
-        logger.debug("looking for CDS position for " +format(chromPos));
-        
-        // map the genetic coordinates of coding region on a stretch of a reverse strand
-        List<Range<Integer>> cdsRegions = getCDSRegions(exonStarts, exonEnds, cdsStart, cdsEnd);
-        
-        int codingLength = 0;
-        int lengthExon = 0;
-        for (Range<Integer> range : cdsRegions) {
-        	
-		    int start = range.lowerEndpoint();
-		    int end = range.upperEndpoint();
-		    
-		    lengthExon = end - start;
-
-		    if (start+base <= chromPos && end >= chromPos ) {
-		    	return codingLength + (chromPos-start);
-		    }
-	        else { 
-	        	codingLength += lengthExon;
-	        }
+
+        int[][] cdsRegions = getCDSRegions(exonStarts, exonEnds, cdsStart, cdsEnd);
+        int[] starts = cdsRegions[0], ends = cdsRegions[1];
+
+        // the first region ending at or after the position
+        int low = 0, high = ends.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] < chromPos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == ends.length || starts[low] + base > chromPos) {
+            return -1;
         }
-        return -1;
+        return getCodingLength(starts, ends, 0, low) + (chromPos - starts[low]);
     }
     
 	/** 
@@ -855,35 +928,58 @@ public class ChromosomeMappingTools {
 	 */
     public static int getCDSPosReverse(int chromPos, List<Integer> exonStarts, List<Integer> exonEnds,
             int cdsStart, int cdsEnd) {
-    	
+        return getCDSPosReverse(chromPos, toIntArray(exonStarts), toIntArray(exonEnds), cdsStart, cdsEnd);
+    }
+
+    /** 
+	 * Converts the genetic coordinate to the position of the nucleotide on the mRNA sequence for a gene 
+	 * living on the reverse DNA strand.
+	 * 
+	 * @param chromPos The genetic coordinate on a chromosome 
+     * @param exonStarts The array holding the genetic coordinates pointing to the start positions of the exons (including UTR regions)  
+     * @param exonEnds The array holding the genetic coordinates pointing to the end positions of the exons (including UTR regions)
+     * @param cdsStart The start position of a coding region
+     * @param cdsEnd The end position of a coding region
+     * 
+     * @return the position of the nucleotide base on the mRNA sequence corresponding to the input genetic coordinate (base 1)
+	 * 
+	 * @see #getCDSPosReverse(int, List, List, int, int)
+	 */
+    public static int getCDSPosReverse(int chromPos, int[] exonStarts, int[] exonEnds,
+            int cdsStart, int cdsEnd) {
+
     	// the genetic coordinate is not in a coding region
         if ( (chromPos < (cdsStart+base)) || ( chromPos > (cdsEnd+base) ) ) {
         	logger.debug("The "+format(chromPos)+" position is not in a coding region");
             return -1;
         }
-        
-        logger.debug("looking for CDS position for " +format(chromPos));
-                
-        // map the genetic coordinate on a stretch of a reverse strand
-        List<Range<Integer>> cdsRegions = getCDSRegions(exonStarts, exonEnds, cdsStart, cdsEnd);
-        
+
+        int[][] cdsRegions = getCDSRegions(exonStarts, exonEnds, cdsStart, cdsEnd);
+        int[] starts = cdsRegions[0], ends = cdsRegions[1];
+
+        // the last region starting at or before the position
+        int low = -1, high = starts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] + base <= chromPos) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (low < 0 || ends[low] < chromPos) {
+            return -1;
+        }
+        // +1 offset to be a base 1
+        return getCodingLength(starts, ends, low + 1, starts.length) + (ends[low] - chromPos + 1);
+    }
+
+    private static int getCodingLength(int[] starts, int[] ends, int from, int to) {
         int codingLength = 0;
-        int lengthExon = 0;
-        for ( int i=cdsRegions.size()-1; i>=0; i-- ) {
-        	
-		    int start = cdsRegions.get(i).lowerEndpoint();
-		    int end = cdsRegions.get(i).upperEndpoint();
-		    
-		    lengthExon = end - start;
-		    // +1 offset to be a base 1
-		    if (start+base <= chromPos && end >= chromPos ) {
-		    	return codingLength + (end-chromPos+1);
-		    }
-	        else { 
-	        	codingLength += lengthExon;
-	        }
+        for (int i = from; i < to; i++) {
+            codingLength += ends[i] - starts[i];
         }
-        return -1;
+        return codingLength;
     }
     
     /** 
@@ -927,6 +1023,52 @@ public class ChromosomeMappingTools {
         }
 		return cdsRegion;
     }
+
+    /**
+     * Extracts the exons boundaries in CDS coordinates corresponding to the forward DNA strand,
+     * as {@link #getCDSRegions(List, List, int, int)}.
+     *
+     * @param exonStarts The array holding the genetic coordinates pointing to the start positions of the exons (including UTR regions)
+     * @param exonEnds The array holding the genetic coordinates pointing to the end positions of the exons (including UTR regions)
+     * @param cdsStart The start position of a coding region
+     * @param cdsEnd The end position of a coding region
+     *
+     * @return the starts and the ends of the exons boundaries in CDS coordinates
+     */
+    public static int[][] getCDSRegions(int[] exonStarts, int[] exonEnds, int cdsStart, int cdsEnd) {
+
+        // remove exons that are fully landed in UTRs
+        int nExons = 0;
+        for (int i = 0; i < exonStarts.length; i++) {
+            if ( ( exonEnds[i] >= cdsStart) && ( exonStarts[i] <= cdsEnd) ) {
+                nExons++;
+            }
+        }
+        int[] starts = new int[nExons];
+        int[] ends = new int[nExons];
+        int j = 0;
+        for (int i = 0; i < exonStarts.length; i++) {
+            if ( ( exonEnds[i] >= cdsStart) && ( exonStarts[i] <= cdsEnd) ) {
+                starts[j] = exonStarts[i];
+                ends[j++] = exonEnds[i];
+            }
+        }
+
+        // remove untranslated regions from exons
+        if (nExons > 0) {
+            starts[0] = cdsStart;
+            ends[nExons - 1] = cdsEnd;
+        }
+        return new int[][] { starts, ends };
+    }
+
+    private static int[] toIntArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
     
     /** 
      * Extracts the DNA sequence transcribed from the input genetic coordinates.
@@ -956,17 +1098,127 @@ public class ChromosomeMappingTools {
 
 		List<Range<Integer>> cdsRegion = getCDSRegions(exonStarts, exonEnds, cdsStart, cdsEnd);
 
-		String dnaSequence = "";
+		StringBuilder dnaSequence = new StringBuilder();
 		for (Range<Integer> range : cdsRegion) {
 			String exonSequence = twoBitFacade.getSequence(chromosome,range.lowerEndpoint(), range.upperEndpoint());
-            dnaSequence += exonSequence;
+            dnaSequence.append(exonSequence);
 		}
+		return getTranscriptDNASequence(dnaSequence, orientation);
+	}
+
+	/**
+	 * Returns the transcript from the concatenated sequences of its CDS regions on the forward strand.
+	 */
+	private static DNASequence getTranscriptDNASequence(StringBuilder dnaSequence, Character orientation) throws CompoundNotFoundException {
+		String transcript = dnaSequence.toString();
 		if (orientation.equals('-')) {
-            dnaSequence = new StringBuilder(dnaSequence).reverse().toString();
-			DNASequence dna = new DNASequence(dnaSequence);
+			DNASequence dna = new DNASequence(dnaSequence.reverse().toString());
 			SequenceView<NucleotideCompound> compliment = dna.getComplement();
-            dnaSequence = compliment.getSequenceAsString();
+			transcript = compliment.getSequenceAsString();
+		}
+		return new DNASequence(transcript.toUpperCase());
+	}
+
+	/**
+	 * Extracts the DNA sequences transcribed from many genetic coordinates, for example all the entries returned by
+	 * {@link org.biojava.nbio.genome.parsers.genename.GeneChromosomePositionParser#getChromosomeMappings()}.
+	 *
+	 * @param twoBitFacade the facade that provide an access to a 2bit file
+	 * @param positions the containers with chromosomal positions
+	 *
+	 * @return the DNA sequences, in the order of the positions
+	 * @see #getTranscriptDNASequences(TwoBitReader, List)
+	 */
+	public static List<DNASequence> getTranscriptDNASequences(TwoBitFacade twoBitFacade, List<GeneChromosomePosition> positions) throws Exception {
+		return getTranscriptDNASequences(twoBitFacade.getTwoBitReader(), positions);
+	}
+
+	/**
+	 * Extracts the DNA sequences transcribed from many genetic coordinates, with the same result as
+	 * {@link #getTranscriptDNASequence(TwoBitFacade, GeneChromosomePosition)} for each of them.
+	 * <p>
+	 * The positions are sorted by chromosome and start, and the transcripts with overlapping coding regions are
+	 * grouped, so that each region of a chromosome is read once for all the transcripts of a group. The groups are
+	 * processed in parallel with the {@link ConcurrencyTools} thread pool. The exons of each transcript must be in
+	 * increasing order, as they are in refFlat files.
+	 *
+	 * @param twoBitReader the reader of a 2bit file
+	 * @param positions the containers with chromosomal positions
+	 *
+	 * @return the DNA sequences, in the order of the positions
+	 */
+	public static List<DNASequence> getTranscriptDNASequences(final TwoBitReader twoBitReader, List<GeneChromosomePosition> positions) throws Exception {
+
+		final int n = positions.size();
+		final String[] chromosomes = new String[n];
+		final int[][][] cdsRegions = new int[n][][];
+		final Character[] orientations = new Character[n];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			GeneChromosomePosition gcp = positions.get(i);
+			chromosomes[i] = gcp.getChromosome();
+			cdsRegions[i] = getCDSRegions(toIntArray(gcp.getExonStarts()), toIntArray(gcp.getExonEnds()), gcp.getCdsStart(), gcp.getCdsEnd());
+			orientations[i] = gcp.getOrientation();
+			order[i] = i;
 		}
-		return new DNASequence(dnaSequence.toUpperCase());
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i, Integer j) {
+				int c = chromosomes[i].compareTo(chromosomes[j]);
+				return c != 0 ? c : Integer.compare(getStart(cdsRegions[i]), getStart(cdsRegions[j]));
+			}
+		});
+
+		final DNASequence[] transcripts = new DNASequence[n];
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		int first = 0;
+		while (first < n) {
+			// the transcripts overlapping the ones before them on the same chromosome
+			String groupChromosome = chromosomes[order[first]];
+			int last = first + 1;
+			int groupEnd = getEnd(cdsRegions[order[first]]);
+			while (last < n && chromosomes[order[last]].equals(groupChromosome) && getStart(cdsRegions[order[last]]) < groupEnd) {
+				groupEnd = Math.max(groupEnd, getEnd(cdsRegions[order[last]]));
+				last++;
+			}
+			final int[] group = new int[last - first];
+			for (int i = 0; i < group.length; i++) {
+				group[i] = order[first + i];
+			}
+			futures.add(ConcurrencyTools.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					String chromosome = chromosomes[group[0]];
+					int start = getStart(cdsRegions[group[0]]), end = start;
+					for (int i : group) {
+						end = Math.max(end, getEnd(cdsRegions[i]));
+					}
+					String region = start < end ? twoBitReader.getSequence(chromosome, start, end) : "";
+					for (int i : group) {
+						int[] starts = cdsRegions[i][0], ends = cdsRegions[i][1];
+						StringBuilder dnaSequence = new StringBuilder();
+						for (int j = 0; j < starts.length; j++) {
+							// as the sequence of the chromosome, the region is cut at the end of the chromosome
+							int from = Math.min(starts[j] - start, region.length());
+							dnaSequence.append(region, from, Math.max(from, Math.min(ends[j] - start, region.length())));
+						}
+						transcripts[i] = getTranscriptDNASequence(dnaSequence, orientations[i]);
+					}
+					return null;
+				}
+			}));
+			first = last;
+		}
+
+		ConcurrencyTools.getAll(futures, Exception.class);
+		return Arrays.asList(transcripts);
+	}
+
+	private static int getStart(int[][] cdsRegions) {
+		return cdsRegions[0].length == 0 ? Integer.MAX_VALUE : cdsRegions[0][0];
+	}
+
+	private static int getEnd(int[][] cdsRegions) {
+		return cdsRegions[1].length == 0 ? Integer.MIN_VALUE : cdsRegions[1][cdsRegions[1].length - 1];
 	}
 }
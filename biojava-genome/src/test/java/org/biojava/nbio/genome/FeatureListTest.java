@@ -26,9 +26,12 @@ package org.biojava.nbio.genome;
 import org.biojava.nbio.genome.parsers.gff.Feature;
 import org.biojava.nbio.genome.parsers.gff.FeatureList;
 import org.biojava.nbio.genome.parsers.gff.Location;
+import org.biojava.nbio.genome.parsers.gff.FeatureI;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Random;
+
 /**
  * @author mckeee1
  *
@@ -48,4 +51,73 @@ public class FeatureListTest {
 		f2.add(new Feature("seqname", "source", "type", new Location(1, 2), (double)0, 0, "gene_id \"gene_id_1\"; transcript_id \"transcript_id_1\";"));
 		Assert.assertEquals(1, f2.selectByAttribute("transcript_id").size());
 	}
+
+	private static FeatureList randomFeatures(Random random, int n) {
+		FeatureList fl = new FeatureList();
+		for (int i = 0; i < n; i++) {
+			int start = 1 + random.nextInt(2000);
+			int end = start + random.nextInt(random.nextInt(10) == 0 ? 1000 : 50);
+			Location location = Location.fromBio(start, end, random.nextBoolean() ? '+' : '-');
+			fl.add(new Feature(random.nextBoolean() ? "chr1" : "chr2", "source", random.nextBoolean() ? "exon" : "CDS",
+					location, (double)0, 0, "gene_id \"gene_" + random.nextInt(20) + "\";"));
+		}
+		return fl;
+	}
+
+	/**
+	 * The overlapping features found by scanning the whole list
+	 */
+	private static FeatureList scanOverlapping(FeatureList fl, String seqname, Location location, boolean useBothStrands) {
+		FeatureList list = new FeatureList();
+		for (FeatureI feature : fl) {
+			if (feature.seqname().equals(seqname)) {
+				if (location.isSameStrand(feature.location()) ? feature.location().overlaps(location)
+						: useBothStrands && feature.location().overlaps(location.opposite())) {
+					list.add(feature);
+				}
+			}
+		}
+		return list;
+	}
+
+	@Test
+	public void testSelectOverlapping() throws Exception {
+		Random random = new Random(7);
+		for (int n : new int[] { 0, 1, 2, 15, 16, 17, 300 }) {
+			FeatureList fl = randomFeatures(random, n);
+			for (int q = 0; q < 200; q++) {
+				int start = 1 + random.nextInt(2100);
+				Location location = Location.fromBio(start, start + random.nextInt(100), random.nextBoolean() ? '+' : '-');
+				boolean useBothStrands = random.nextBoolean();
+				FeatureList expected = scanOverlapping(fl, "chr1", location, useBothStrands);
+				Assert.assertEquals(expected, fl.selectOverlapping("chr1", location, useBothStrands));
+				Assert.assertEquals(fl.size() - expected.size(), fl.omitOverlapping("chr1", location, useBothStrands).size());
+			}
+		}
+		Assert.assertEquals(0, randomFeatures(random, 10).selectOverlapping("chrX", new Location(1, 100), true).size());
+	}
+
+	@Test
+	public void testIndexesFollowChanges() throws Exception {
+		FeatureList fl = randomFeatures(new Random(3), 100);
+		Location location = new Location(0, 10000);
+		int exons = fl.selectByType("exon").size();
+		int overlapping = fl.selectOverlapping("chr1", location, false).size();
+		int gene = fl.selectByAttribute("gene_id", "gene_1").size();
+
+		Feature feature = new Feature("chr1", "source", "exon", new Location(10, 20), (double)0, 0, "gene_id \"gene_1\";");
+		fl.add(feature);
+		Assert.assertEquals(exons + 1, fl.selectByType("exon").size());
+		Assert.assertEquals(overlapping + 1, fl.selectOverlapping("chr1", location, false).size());
+		Assert.assertEquals(gene + 1, fl.selectByAttribute("gene_id", "gene_1").size());
+		Assert.assertTrue(fl.hasAttribute("gene_id", "gene_1"));
+
+		fl.set(fl.size() - 1, new Feature("chr2", "source", "CDS", new Location(10, 20), (double)0, 0, "gene_id \"gene_x\";"));
+		Assert.assertEquals(exons, fl.selectByType("exon").size());
+		Assert.assertEquals(overlapping, fl.selectOverlapping("chr1", location, false).size());
+		Assert.assertTrue(fl.hasAttribute("gene_id", "gene_x"));
+
+		fl.remove(fl.size() - 1);
+		Assert.assertFalse(fl.hasAttribute("gene_id", "gene_x"));
+	}
 }
@@ -20,12 +20,19 @@
  */
 package org.biojava.nbio.genome;
 
+import com.google.common.collect.Range;
+import org.biojava.nbio.core.sequence.DNASequence;
+import org.biojava.nbio.genome.parsers.genename.GeneChromosomePosition;
+import org.biojava.nbio.genome.parsers.twobit.TwoBitFacade;
+import org.biojava.nbio.genome.parsers.twobit.TwoBitReaderTest;
 import org.biojava.nbio.genome.util.ChromosomeMappingTools;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 
@@ -78,4 +85,116 @@ public class TestChromosomeMappingTools {
 
         assertEquals(cdsDesired, cdsTest);
     }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Random exons in increasing order and a coding region starting and ending in exons
+     */
+    private static GeneChromosomePosition randomTranscript(Random random, String chromosome, int offset) {
+        List<Integer> exonStarts = new ArrayList<>(), exonEnds = new ArrayList<>();
+        int position = offset + random.nextInt(50);
+        int nExons = 1 + random.nextInt(6);
+        for (int i = 0; i < nExons; i++) {
+            exonStarts.add(position);
+            position += 1 + random.nextInt(40);
+            exonEnds.add(position);
+            position += 1 + random.nextInt(60);
+        }
+        int first = random.nextInt(nExons), last = first + random.nextInt(nExons - first);
+        GeneChromosomePosition gcp = new GeneChromosomePosition();
+        gcp.setChromosome(chromosome);
+        gcp.setOrientation(random.nextBoolean() ? '+' : '-');
+        gcp.setExonStarts(exonStarts);
+        gcp.setExonEnds(exonEnds);
+        gcp.setExonCount(nExons);
+        int cdsStart = exonStarts.get(first) + random.nextInt(exonEnds.get(first) - exonStarts.get(first));
+        int cdsEnd = Math.max(cdsStart, exonStarts.get(last) + random.nextInt(exonEnds.get(last) - exonStarts.get(last) + 1));
+        gcp.setCdsStart(cdsStart);
+        gcp.setCdsEnd(cdsEnd);
+        return gcp;
+    }
+
+    @Test
+    public void testGetCDSPosArrays() {
+        Random random = new Random(17);
+        for (int base = 0; base <= 1; base++) {
+            ChromosomeMappingTools.setCoordinateSystem(base);
+            for (int n = 0; n < 200; n++) {
+                GeneChromosomePosition gcp = randomTranscript(random, "chr1", 0);
+                int cdsStart = gcp.getCdsStart(), cdsEnd = gcp.getCdsEnd();
+                List<Range<Integer>> regions = ChromosomeMappingTools.getCDSRegions(gcp.getExonStarts(), gcp.getExonEnds(), cdsStart, cdsEnd);
+                int[][] arrays = ChromosomeMappingTools.getCDSRegions(toArray(gcp.getExonStarts()), toArray(gcp.getExonEnds()), cdsStart, cdsEnd);
+                assertEquals(regions.size(), arrays[0].length);
+                for (int i = 0; i < regions.size(); i++) {
+                    assertEquals(regions.get(i).lowerEndpoint().intValue(), arrays[0][i]);
+                    assertEquals(regions.get(i).upperEndpoint().intValue(), arrays[1][i]);
+                }
+
+                for (int pos = cdsStart - 3; pos <= cdsEnd + 3; pos++) {
+                    // the linear search over the regions
+                    int forward = -1, reverse = -1;
+                    if (pos >= cdsStart + base && pos <= cdsEnd + base) {
+                        int codingLength = 0;
+                        for (Range<Integer> range : regions) {
+                            if (range.lowerEndpoint() + base <= pos && range.upperEndpoint() >= pos) {
+                                forward = codingLength + pos - range.lowerEndpoint();
+                                break;
+                            }
+                            codingLength += range.upperEndpoint() - range.lowerEndpoint();
+                        }
+                        codingLength = 0;
+                        for (int i = regions.size() - 1; i >= 0; i--) {
+                            Range<Integer> range = regions.get(i);
+                            if (range.lowerEndpoint() + base <= pos && range.upperEndpoint() >= pos) {
+                                reverse = codingLength + range.upperEndpoint() - pos + 1;
+                                break;
+                            }
+                            codingLength += range.upperEndpoint() - range.lowerEndpoint();
+                        }
+                    }
+                    assertEquals(forward, ChromosomeMappingTools.getCDSPosForward(pos, gcp.getExonStarts(), gcp.getExonEnds(), cdsStart, cdsEnd));
+                    assertEquals(reverse, ChromosomeMappingTools.getCDSPosReverse(pos, gcp.getExonStarts(), gcp.getExonEnds(), cdsStart, cdsEnd));
+                }
+            }
+        }
+        ChromosomeMappingTools.setCoordinateSystem(1);
+    }
+
+    @Test
+    public void testGetTranscriptDNASequences() throws Exception {
+        Random random = new Random(23);
+        String[] names = { "chr1", "chr2" };
+        String[] sequences = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            StringBuilder s = new StringBuilder();
+            for (int j = 0; j < 3000; j++) {
+                s.append(random.nextInt(20) == 0 ? "acgt".charAt(random.nextInt(4)) : "ACGT".charAt(random.nextInt(4)));
+            }
+            sequences[i] = s.toString();
+        }
+        File file = File.createTempFile("transcripts", ".2bit");
+        file.deleteOnExit();
+        TwoBitReaderTest.write(file, names, sequences);
+
+        List<GeneChromosomePosition> positions = new ArrayList<>();
+        for (int n = 0; n < 100; n++) {
+            positions.add(randomTranscript(random, names[random.nextInt(names.length)], random.nextInt(2400)));
+        }
+
+        TwoBitFacade facade = new TwoBitFacade(file);
+        List<DNASequence> transcripts = ChromosomeMappingTools.getTranscriptDNASequences(facade, positions);
+        assertEquals(positions.size(), transcripts.size());
+        for (int i = 0; i < positions.size(); i++) {
+            assertEquals(ChromosomeMappingTools.getTranscriptDNASequence(facade, positions.get(i)).getSequenceAsString(),
+                    transcripts.get(i).getSequenceAsString());
+        }
+        facade.close();
+    }
 }
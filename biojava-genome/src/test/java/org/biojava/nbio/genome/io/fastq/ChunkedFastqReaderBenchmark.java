@@ -0,0 +1,144 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.genome.io.fastq;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of reading FASTQ formatted records in the Sanger variant with
+ * {@link ChunkedFastqReader}, against {@link SangerFastqReader}.
+ * <p>
+ * It is not run by the unit tests. Run it from the test classpath with
+ * {@link #main(String[])}, or with
+ * <code>org.openjdk.jmh.Main ChunkedFastqReaderBenchmark</code>.
+ *
+ * @since 5.1.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkedFastqReaderBenchmark
+{
+	/** Number of records of the input. */
+	@Param({ "10000", "100000" })
+	public int records;
+
+	/** Length of the sequence of each record. */
+	@Param({ "100", "250" })
+	public int length;
+
+	/** Input in FASTQ format. */
+	private byte[] input;
+
+	private SangerFastqReader sangerReader;
+	private ChunkedFastqReader chunkedReader;
+
+
+	@Setup
+	public void setup()
+	{
+		Random rnd = new Random(0);
+		String bases = "ACGT";
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < records; i++)
+		{
+			sb.append("@read").append(i).append(" length=").append(length).append('\n');
+			for (int j = 0; j < length; j++)
+			{
+				sb.append(bases.charAt(rnd.nextInt(4)));
+			}
+			sb.append("\n+\n");
+			for (int j = 0; j < length; j++)
+			{
+				sb.append((char) ('!' + rnd.nextInt(42)));
+			}
+			sb.append('\n');
+		}
+		input = sb.toString().getBytes(StandardCharsets.US_ASCII);
+
+		sangerReader = new SangerFastqReader();
+		chunkedReader = new ChunkedFastqReader(FastqVariant.FASTQ_SANGER);
+	}
+
+	/** Counts the bases of the records read by {@link SangerFastqReader}. */
+	@Benchmark
+	public long sanger() throws IOException
+	{
+		final long[] bases = new long[1];
+		sangerReader.stream(new InputStreamReader(new ByteArrayInputStream(input), StandardCharsets.US_ASCII), new StreamListener()
+			{
+				@Override
+				public void fastq(final Fastq fastq)
+				{
+					bases[0] += fastq.getSequence().length();
+				}
+			});
+		return bases[0];
+	}
+
+	/** Counts the bases of the records read by {@link ChunkedFastqReader}. */
+	@Benchmark
+	public long chunked() throws IOException
+	{
+		final long[] bases = new long[1];
+		chunkedReader.stream(new ByteArrayInputStream(input), new FastqRecordListener()
+			{
+				@Override
+				public void fastq(final FastqRecord record)
+				{
+					bases[0] += record.length();
+				}
+			});
+		return bases[0];
+	}
+
+	public static void main(final String[] args) throws RunnerException
+	{
+		Options options = new OptionsBuilder()
+				.include(ChunkedFastqReaderBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.genome.io.fastq;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for ChunkedFastqReader.
+ */
+public final class ChunkedFastqReaderTest
+{
+	private static final String[] FILE_NAMES = {
+		"bug2335.fastq", "empty.fastq", "error_diff_ids.fastq", "error_double_qual.fastq", "error_double_seq.fastq",
+		"error_long_qual.fastq", "error_no_qual.fastq", "error_qual_del.fastq", "error_qual_escape.fastq",
+		"error_qual_null.fastq", "error_qual_space.fastq", "error_qual_tab.fastq", "error_qual_unit_sep.fastq",
+		"error_qual_vtab.fastq", "error_short_qual.fastq", "error_spaces.fastq", "error_tabs.fastq",
+		"error_trunc_at_plus.fastq", "error_trunc_at_qual.fastq", "error_trunc_at_seq.fastq",
+		"error_trunc_in_plus.fastq", "error_trunc_in_qual.fastq", "error_trunc_in_seq.fastq",
+		"error_trunc_in_title.fastq", "evil_wrapping.fastq", "example.fastq", "illumina_full_range_as_illumina.fastq",
+		"longreads_as_sanger.fastq", "misc_dna_as_sanger.fastq", "misc_rna_as_illumina.fastq",
+		"multiple-wrapped-quality.fastq", "sanger-invalid-repeat-description.fastq", "sanger_93.fastq",
+		"sanger_full_range_as_sanger.fastq", "solexa_full_range_as_solexa.fastq", "tricky.fastq",
+		"wrapped-quality.fastq", "wrapped-sequence.fastq", "wrapping_issues.fastq", "wrapping_original_sanger.fastq"
+	};
+
+	private static FastqReader createFastqReader(final FastqVariant variant)
+	{
+		switch (variant)
+		{
+		case FASTQ_SOLEXA:
+			return new SolexaFastqReader();
+		case FASTQ_ILLUMINA:
+			return new IlluminaFastqReader();
+		default:
+			return new SangerFastqReader();
+		}
+	}
+
+	private static byte[] readResource(final String fileName) throws IOException
+	{
+		InputStream inputStream = ChunkedFastqReaderTest.class.getResourceAsStream(fileName);
+		try
+		{
+			List<Byte> bytes = new ArrayList<Byte>();
+			for (int b = inputStream.read(); b >= 0; b = inputStream.read())
+			{
+				bytes.add((byte) b);
+			}
+			byte[] data = new byte[bytes.size()];
+			for (int i = 0; i < data.length; i++)
+			{
+				data[i] = bytes.get(i);
+			}
+			return data;
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	private static List<Fastq> readChunked(final byte[] data, final FastqVariant variant, final int chunkSize)
+		throws IOException
+	{
+		final List<Fastq> result = new ArrayList<Fastq>();
+		new ChunkedFastqReader(variant, chunkSize).stream(new ByteArrayInputStream(data), new FastqRecordListener()
+			{
+				@Override
+				public void fastq(final FastqRecord record)
+				{
+					result.add(record.toFastq());
+				}
+			});
+		return result;
+	}
+
+	private static void assertFastqEquals(final Fastq expected, final Fastq actual)
+	{
+		assertEquals(expected.getDescription(), actual.getDescription());
+		assertEquals(expected.getSequence(), actual.getSequence());
+		assertEquals(expected.getQuality(), actual.getQuality());
+		assertEquals(expected.getVariant(), actual.getVariant());
+	}
+
+	@Test
+	public void testSameAsFastqReader() throws Exception
+	{
+		for (String fileName : FILE_NAMES)
+		{
+			byte[] data = readResource(fileName);
+			for (FastqVariant variant : FastqVariant.values())
+			{
+				List<Fastq> expected = new ArrayList<Fastq>();
+				try
+				{
+					for (Fastq fastq : createFastqReader(variant).read(new ByteArrayInputStream(data)))
+					{
+						expected.add(fastq);
+					}
+				}
+				catch (IOException e)
+				{
+					expected = null;
+				}
+
+				for (int chunkSize : new int[] { 1, 7, 100, 1 << 20 })
+				{
+					List<Fastq> actual;
+					try
+					{
+						actual = readChunked(data, variant, chunkSize);
+					}
+					catch (IOException e)
+					{
+						actual = null;
+					}
+					String message = fileName + " as " + variant + " in chunks of " + chunkSize;
+					if (expected == null)
+					{
+						assertNull(message, actual);
+					}
+					else
+					{
+						assertNotNull(message, actual);
+						assertEquals(message, expected.size(), actual.size());
+						for (int i = 0; i < expected.size(); i++)
+						{
+							assertFastqEquals(expected.get(i), actual.get(i));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testConvertTo() throws Exception
+	{
+		for (FastqVariant from : FastqVariant.values())
+		{
+			final List<FastqRecord> records = new ArrayList<FastqRecord>();
+			new ChunkedFastqReader(from).stream(new ByteArrayInputStream(readResource("misc_dna_as_illumina.fastq")),
+				new FastqRecordListener()
+				{
+					@Override
+					public void fastq(final FastqRecord record)
+					{
+						records.add(record.copy());
+					}
+				});
+			assertFalse(records.isEmpty());
+			for (FastqVariant to : FastqVariant.values())
+			{
+				for (FastqRecord record : records)
+				{
+					Fastq expected = FastqTools.convert(record.toFastq(), to);
+					assertFastqEquals(expected, record.copy().convertTo(to).toFastq());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.genome.parsers.gff;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class GFF3ReaderTest {
+
+	private static void assertSameFeatures(FeatureList expected, FeatureList actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			FeatureI e = expected.get(i), a = actual.get(i);
+			assertEquals(e.seqname(), a.seqname());
+			assertEquals(e.type(), a.type());
+			assertEquals(e.location(), a.location());
+			assertEquals(e.getAttributes(), a.getAttributes());
+		}
+	}
+
+	@Test
+	public void testReadParallel() throws IOException {
+		String filename = "src/test/resources/volvox.gff3";
+		assertSameFeatures(GFF3Reader.read(filename), GFF3Reader.readParallel(filename));
+	}
+
+	@Test
+	public void testReadParallelChunks() throws IOException {
+		File file = File.createTempFile("features", ".gff3");
+		file.deleteOnExit();
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		try {
+			out.println("##gff-version 3");
+			for (int i = 0; i < 25000; i++) {
+				out.println("ctgA\ttest\t" + (i % 3 == 0 ? "gene" : "exon") + "\t" + (i + 1) + "\t" + (i + 100)
+						+ "\t.\t" + (i % 2 == 0 ? '+' : '-') + "\t.\tID=f" + i + ";Parent=g" + (i / 10));
+			}
+			out.println("##fasta");
+			out.println(">ctgA");
+		} finally {
+			out.close();
+		}
+
+		FeatureList features = GFF3Reader.readParallel(file.getPath(), Arrays.asList("Parent"));
+		assertSameFeatures(GFF3Reader.read(file.getPath()), features);
+		assertEquals(10, features.selectByAttribute("Parent", "g42").size());
+	}
+}
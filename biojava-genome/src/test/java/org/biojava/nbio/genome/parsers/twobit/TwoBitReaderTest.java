@@ -0,0 +1,220 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.genome.parsers.twobit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class TwoBitReaderTest {
+
+	private static final String[] NAMES = { "chr1", "chr2", "chrM" };
+	private static String[] sequences;
+	private static File file;
+
+	/**
+	 * Writes the given sequences in the .2bit format, with blocks of N and of lower case bases
+	 */
+	public static void write(File file, String[] names, String[] sequences) throws IOException {
+		List<byte[]> records = new ArrayList<byte[]>();
+		for (String s : sequences) {
+			List<int[]> nBlocks = blocks(s, true), maskBlocks = blocks(s, false);
+			ByteBuffer record = ByteBuffer.allocate(16 + 8 * (nBlocks.size() + maskBlocks.size()) + (s.length() + 3) / 4)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			record.putInt(s.length());
+			putBlocks(record, nBlocks);
+			putBlocks(record, maskBlocks);
+			record.putInt(0);
+			for (int i = 0; i < s.length(); i += 4) {
+				int b = 0;
+				for (int j = i; j < i + 4; j++) {
+					b <<= 2;
+					if (j < s.length()) {
+						b |= "TCAG".indexOf(Character.toUpperCase(s.charAt(j) == 'N' || s.charAt(j) == 'n' ? 'T' : s.charAt(j)));
+					}
+				}
+				record.put((byte) b);
+			}
+			records.add(record.array());
+		}
+
+		int indexSize = 16;
+		for (String name : names) {
+			indexSize += 1 + name.length() + 4;
+		}
+		ByteBuffer index = ByteBuffer.allocate(indexSize).order(ByteOrder.LITTLE_ENDIAN);
+		index.putInt(0x1A412743).putInt(0).putInt(names.length).putInt(0);
+		int offset = indexSize;
+		for (int i = 0; i < names.length; i++) {
+			index.put((byte) names[i].length()).put(names[i].getBytes("US-ASCII")).putInt(offset);
+			offset += records.get(i).length;
+		}
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(index.array());
+			for (byte[] record : records) {
+				out.write(record);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static List<int[]> blocks(String s, boolean n) {
+		List<int[]> blocks = new ArrayList<int[]>();
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (n ? Character.toUpperCase(c) == 'N' : Character.isLowerCase(c)) {
+				if (!blocks.isEmpty() && blocks.get(blocks.size() - 1)[1] == i) {
+					blocks.get(blocks.size() - 1)[1]++;
+				} else {
+					blocks.add(new int[] { i, i + 1 });
+				}
+			}
+		}
+		return blocks;
+	}
+
+	private static void putBlocks(ByteBuffer buffer, List<int[]> blocks) {
+		buffer.putInt(blocks.size());
+		for (int[] block : blocks) {
+			buffer.putInt(block[0]);
+		}
+		for (int[] block : blocks) {
+			buffer.putInt(block[1] - block[0]);
+		}
+	}
+
+	private static String randomSequence(Random random, int length) {
+		StringBuilder s = new StringBuilder();
+		while (s.length() < length) {
+			String chars = random.nextInt(10) == 0 ? "Nn" : random.nextInt(4) == 0 ? "acgt" : "ACGT";
+			char c = chars.charAt(random.nextInt(chars.length()));
+			int run = 1 + random.nextInt(12);
+			for (int i = 0; i < run && s.length() < length; i++) {
+				s.append(chars.length() == 2 ? c : chars.charAt(random.nextInt(4)));
+			}
+		}
+		return s.toString();
+	}
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		Random random = new Random(5);
+		sequences = new String[] { randomSequence(random, 1003), randomSequence(random, 4000), "acgTN" };
+		file = File.createTempFile("test", ".2bit");
+		file.deleteOnExit();
+		write(file, NAMES, sequences);
+	}
+
+	@Test
+	public void testGetSequence() throws IOException {
+		TwoBitReader reader = new TwoBitReader(file);
+		assertEquals(Arrays.asList(NAMES), reader.getSequenceNames());
+		for (int i = 0; i < NAMES.length; i++) {
+			assertEquals(sequences[i].length(), reader.getSequenceLength(NAMES[i]));
+			assertEquals(sequences[i], reader.getSequence(NAMES[i]));
+		}
+		assertEquals(sequences[0].substring(5, 6), reader.getSequence("chr1", 5, 6));
+		assertEquals(sequences[0].substring(998), reader.getSequence("chr1", 998, 2000));
+		assertEquals("", reader.getSequence("chr1", 10, 10));
+
+		char[] dst = new char[10];
+		reader.getSequence("chr2", 17, 24, dst, 2);
+		assertEquals(sequences[1].substring(17, 24), new String(dst, 2, 7));
+	}
+
+	@Test
+	public void testSameAsParser() throws Exception {
+		TwoBitReader reader = new TwoBitReader(file);
+		TwoBitParser parser = new TwoBitParser(file);
+		Random random = new Random(3);
+		for (int n = 0; n < 200; n++) {
+			String name = NAMES[random.nextInt(2)];
+			int length = reader.getSequenceLength(name);
+			int start = random.nextInt(length);
+			int end = start + random.nextInt(Math.min(300, length - start) + 1);
+			parser.setCurrentSequence(name);
+			assertEquals(parser.loadFragment(start, end - start), reader.getSequence(name, start, end));
+			parser.close();
+		}
+		parser.closeParser();
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		final TwoBitReader reader = new TwoBitReader(file);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 8; t++) {
+				final Random random = new Random(t);
+				results.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						for (int n = 0; n < 500; n++) {
+							int s = random.nextInt(NAMES.length);
+							int start = random.nextInt(sequences[s].length());
+							int end = start + random.nextInt(sequences[s].length() - start + 1);
+							if (!sequences[s].substring(start, end).equals(reader.getSequence(NAMES[s], start, end))) {
+								return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertEquals(true, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFacade() throws Exception {
+		TwoBitFacade facade = new TwoBitFacade(file);
+		assertEquals(sequences[1].substring(100, 250), facade.getSequence("chr2", 100, 250));
+		facade.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownSequence() throws IOException {
+		new TwoBitReader(file).getSequence("chrX", 0, 10);
+	}
+}
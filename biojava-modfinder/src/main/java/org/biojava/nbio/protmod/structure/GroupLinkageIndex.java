@@ -0,0 +1,205 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.protmod.structure;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Bond;
+import org.biojava.nbio.structure.Group;
+import org.biojava.nbio.structure.contact.Contact;
+import org.biojava.nbio.structure.contact.Grid;
+import org.biojava.nbio.structure.io.mmcif.MetalBondParser;
+import org.biojava.nbio.structure.io.mmcif.chem.MetalBondDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The pairs of groups that {@link StructureUtil#findAtomLinkages} may find linked: the groups
+ * with atoms closer than the longest bond that it accepts, found with a {@link Grid}, and the
+ * groups with bonded atoms. Groups of other pairs have no linkage, so they need not be compared.
+ * <p/>
+ * The groups are numbered by their position in the list given to the constructor.
+ *
+ * @since 5.1.2
+ */
+final class GroupLinkageIndex {
+
+	/** Added to the cutoff so that rounding does not lose a pair at the limit */
+	private static final double MARGIN = 0.1;
+
+	private static double maxMetalBondLength = -1;
+
+	private final List<Group> groups;
+	private final Map<Group, Integer> positions = new IdentityHashMap<Group, Integer>();
+	/** neighbors of group i are flat[offsets[i]] to flat[offsets[i+1]-1], in increasing order */
+	private final int[] offsets;
+	private final int[] flat;
+
+	/**
+	 * @param groups the groups to index, a group may be listed more than once
+	 * @param bondLengthTolerance the tolerance given to {@link StructureUtil#findAtomLinkages}
+	 */
+	GroupLinkageIndex(List<Group> groups, double bondLengthTolerance) {
+		this.groups = groups;
+		int n = groups.size();
+		List<Atom> atoms = new ArrayList<Atom>();
+		List<Integer> atomGroups = new ArrayList<Integer>();
+		float maxRadius = 0;
+		for (int i = 0; i < n; i++) {
+			Group group = groups.get(i);
+			if (!positions.containsKey(group)) {
+				positions.put(group, i);
+			}
+			for (Atom atom : group.getAtoms()) {
+				atoms.add(atom);
+				atomGroups.add(i);
+				if (atom.getElement() != null) {
+					maxRadius = Math.max(maxRadius, atom.getElement().getCovalentRadius());
+				}
+			}
+		}
+
+		long[] pairs = new long[16];
+		int numPairs = 0;
+		if (!atoms.isEmpty()) {
+			double cutoff = Math.max(2 * maxRadius + bondLengthTolerance, getMaxMetalBondLength()) + MARGIN;
+			Grid grid = new Grid(cutoff);
+			grid.addAtoms(atoms.toArray(new Atom[atoms.size()]));
+			for (Contact contact : grid.getIndicesContacts()) {
+				int group1 = atomGroups.get(contact.getI());
+				int group2 = atomGroups.get(contact.getJ());
+				if (group1 != group2) {
+					if (numPairs == pairs.length) {
+						pairs = Arrays.copyOf(pairs, 2 * numPairs);
+					}
+					pairs[numPairs++] = pair(group1, group2);
+				}
+			}
+		}
+
+		// bonded atoms are linked whatever their distance
+		Map<Group, List<Integer>> allPositions = new IdentityHashMap<Group, List<Integer>>();
+		for (int i = 0; i < n; i++) {
+			List<Integer> list = allPositions.get(groups.get(i));
+			if (list == null) {
+				list = new ArrayList<Integer>(1);
+				allPositions.put(groups.get(i), list);
+			}
+			list.add(i);
+		}
+		for (int i = 0; i < n; i++) {
+			for (Atom atom : groups.get(i).getAtoms()) {
+				if (atom.getBonds() == null) {
+					continue;
+				}
+				for (Bond bond : atom.getBonds()) {
+					for (Atom other : new Atom[] {bond.getAtomA(), bond.getAtomB()}) {
+						List<Integer> others = allPositions.get(other.getGroup());
+						if (others == null) {
+							continue;
+						}
+						for (int j : others) {
+							if (j != i) {
+								if (numPairs == pairs.length) {
+									pairs = Arrays.copyOf(pairs, 2 * numPairs);
+								}
+								pairs[numPairs++] = pair(i, j);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		// both directions of the distinct pairs, sorted by first group then second group
+		long[] directed = new long[2 * numPairs];
+		for (int p = 0; p < numPairs; p++) {
+			directed[2 * p] = pairs[p];
+			directed[2 * p + 1] = pair((int) pairs[p], (int) (pairs[p] >>> 32));
+		}
+		Arrays.sort(directed);
+		offsets = new int[n + 1];
+		int[] neighbors = new int[directed.length];
+		int size = 0;
+		for (int p = 0; p < directed.length; p++) {
+			if (p > 0 && directed[p] == directed[p - 1]) {
+				continue;
+			}
+			offsets[(int) (directed[p] >>> 32) + 1]++;
+			neighbors[size++] = (int) directed[p];
+		}
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		flat = Arrays.copyOf(neighbors, size);
+	}
+
+	private static long pair(int group1, int group2) {
+		return ((long) group1 << 32) | group2;
+	}
+
+	private static synchronized double getMaxMetalBondLength() {
+		if (maxMetalBondLength < 0) {
+			double max = 0;
+			for (List<MetalBondDistance> distances : MetalBondParser.getMetalBondDefinitions().values()) {
+				for (MetalBondDistance distance : distances) {
+					max = Math.max(max, distance.getUpperLimit());
+				}
+			}
+			maxMetalBondLength = max;
+		}
+		return maxMetalBondLength;
+	}
+
+	/**
+	 * @return the number of groups indexed, counting repeated groups
+	 */
+	int size() {
+		return groups.size();
+	}
+
+	/**
+	 * @param i the position of a group
+	 * @return the positions of the groups that may be linked to it, in increasing order
+	 */
+	int[] getNeighbors(int i) {
+		return Arrays.copyOfRange(flat, offsets[i], offsets[i + 1]);
+	}
+
+	/**
+	 * @return false if the groups are both indexed and cannot be linked; true otherwise
+	 */
+	boolean mayBeLinked(Group group1, Group group2) {
+		Integer i = positions.get(group1);
+		Integer j = positions.get(group2);
+		if (i == null || j == null) {
+			return true;
+		}
+		if (i.intValue() == j.intValue()) {
+			// the same group, or the group listed twice
+			return true;
+		}
+		return Arrays.binarySearch(flat, offsets[i], offsets[i + 1], j) >= 0;
+	}
+}
@@ -24,12 +24,15 @@
 
 package org.biojava.nbio.protmod.structure;
 
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.protmod.*;
 import org.biojava.nbio.structure.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * Identify attachment modification in a 3-D structure.
@@ -44,6 +47,7 @@ public class ProteinModificationIdentifier {
 	private double bondLengthTolerance ;
 	private boolean recordUnidentifiableModifiedCompounds ;
 	private boolean recordAdditionalAttachments ;
+	private boolean parallel ;
 
 	private Set<ModifiedCompound> identifiedModifiedCompounds = null;
 	private Set<StructureAtomLinkage> unidentifiableAtomLinkages = null;
@@ -54,12 +58,24 @@ public class ProteinModificationIdentifier {
 	 */
 	private List<Group> residues;
 
+	/**
+	 * The residues of each call of identify(), for fast query.
+	 */
+	private Set<Group> residueSet;
+
+	/**
+	 * The residues then the ligands of each call of identify(), indexed by
+	 * the groups that may be linked.
+	 */
+	private GroupLinkageIndex linkageIndex;
+
 
 	public ProteinModificationIdentifier(){
 
 		bondLengthTolerance =  0.4;
 		recordUnidentifiableModifiedCompounds = false;
 		recordAdditionalAttachments = true;
+		parallel = false;
 
 		reset();
 	}
@@ -137,6 +153,27 @@ public class ProteinModificationIdentifier {
 		return recordAdditionalAttachments;
 	}
 
+	/**
+	 *
+	 * @param parallel true if choosing to match the linkages of the modifications
+	 *  in parallel, using {@link ConcurrencyTools}. The identified modifications
+	 *  are the same, in the same order.
+	 * @see #getParallel
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 *
+	 * @return true if choosing to match the linkages of the modifications
+	 *  in parallel.
+	 * @see #setParallel
+	 */
+	public boolean getParallel() {
+		return parallel;
+	}
+
 	/**
 	 *
 	 * @return a set of identified {@link ModifiedCompound}s from
@@ -292,24 +329,19 @@ public class ProteinModificationIdentifier {
 			}
 			logger.warn("No amino acids found for {}. Either you did not parse the PDB file with alignSEQRES records, or this record does not contain any amino acids.", pdbId);
 		}
-		List<ModifiedCompound> modComps = new ArrayList<ModifiedCompound>();
-
-		for (ProteinModification mod : potentialModifications) {
-			ModificationCondition condition = mod.getCondition();
-			List<Component> components = condition.getComponents();
-			if (!mapCompGroups.keySet().containsAll(components)) {
-				// not all components exist for this mod.
-				continue;
-			}
-
-			int sizeComps = components.size();
-			if (sizeComps==1) {
 
-				processCrosslink1(mapCompGroups, modComps, mod, components);
+		residueSet = new HashSet<Group>(residues);
+		List<Group> groups = new ArrayList<Group>(residues);
+		groups.addAll(ligands);
+		linkageIndex = new GroupLinkageIndex(groups, bondLengthTolerance);
 
-			} else {
-
-				processMultiCrosslink(mapCompGroups, modComps, mod, condition);
+		List<ModifiedCompound> modComps;
+		if (parallel) {
+			modComps = identifyInParallel(potentialModifications, mapCompGroups);
+		} else {
+			modComps = new ArrayList<ModifiedCompound>();
+			for (ProteinModification mod : potentialModifications) {
+				identify(mod, mapCompGroups, modComps);
 			}
 		}
 
@@ -332,6 +364,62 @@ public class ProteinModificationIdentifier {
 		}
 	}
 
+	/**
+	 * Identify one modification, adding the modified compounds to modComps.
+	 */
+	private void identify(ProteinModification mod,
+			Map<Component, Set<Group>> mapCompGroups,
+			List<ModifiedCompound> modComps) {
+		ModificationCondition condition = mod.getCondition();
+		List<Component> components = condition.getComponents();
+		if (!mapCompGroups.keySet().containsAll(components)) {
+			// not all components exist for this mod.
+			return;
+		}
+
+		int sizeComps = components.size();
+		if (sizeComps==1) {
+
+			processCrosslink1(mapCompGroups, modComps, mod, components);
+
+		} else {
+
+			processMultiCrosslink(mapCompGroups, modComps, mod, condition);
+		}
+	}
+
+	/**
+	 * Identify each modification in a task of {@link ConcurrencyTools},
+	 * collecting the modified compounds in the order of the modifications.
+	 */
+	private List<ModifiedCompound> identifyInParallel(
+			Set<ProteinModification> potentialModifications,
+			final Map<Component, Set<Group>> mapCompGroups) {
+		List<Future<List<ModifiedCompound>>> futures =
+				new ArrayList<Future<List<ModifiedCompound>>>(potentialModifications.size());
+		for (final ProteinModification mod : potentialModifications) {
+			futures.add(ConcurrencyTools.submit(new Callable<List<ModifiedCompound>>() {
+				@Override
+				public List<ModifiedCompound> call() {
+					List<ModifiedCompound> modComps = new ArrayList<ModifiedCompound>();
+					identify(mod, mapCompGroups, modComps);
+					return modComps;
+				}
+			}));
+		}
+
+		List<ModifiedCompound> modComps = new ArrayList<ModifiedCompound>();
+		try {
+			for (List<ModifiedCompound> identified : ConcurrencyTools.getAll(futures)) {
+				modComps.addAll(identified);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while identifying modifications.", e);
+		}
+		return modComps;
+	}
+
 	private void reset() {
 		identifiedModifiedCompounds = new LinkedHashSet<ModifiedCompound>();
 		if (recordUnidentifiableModifiedCompounds) {
@@ -423,7 +511,8 @@ public class ProteinModificationIdentifier {
 			for (Group group1 : ligands) {
 				for (int i=start; i<n; i++) {
 					Group group2 = identifiedGroups.get(i);
-					if (!identifiedGroups.contains(group1)) {
+					if (!identifiedGroups.contains(group1)
+							&& linkageIndex.mayBeLinked(group1, group2)) {
 						List<Atom[]> linkedAtoms = StructureUtil.findAtomLinkages(
 								group1, group2, false, bondLengthTolerance);
 						if (!linkedAtoms.isEmpty()) {
@@ -518,11 +607,15 @@ public class ProteinModificationIdentifier {
 		}
 
 		// record
-		// cross link
+		// cross link, only between the groups that may be linked, in the same
+		// order as comparing all the pairs
 		int nRes = residues.size();
 		for (int i=0; i<nRes-1; i++) {
 			Group group1 = residues.get(i);
-			for (int j=i+1; j<nRes; j++) {
+			for (int j : linkageIndex.getNeighbors(i)) {
+				if (j<=i || j>=nRes) {
+					continue;
+				}
 				Group group2 = residues.get(j);
 				List<Atom[]> linkages = StructureUtil.findAtomLinkages(
 						group1, group2, true, bondLengthTolerance);
@@ -535,11 +628,13 @@ public class ProteinModificationIdentifier {
 		}
 
 		// attachment
-		int nLig = ligands.size();
 		for (int i=0; i<nRes; i++) {
 			Group group1 = residues.get(i);
-			for (int j=0; j<nLig; j++) {
-				Group group2 = ligands.get(j);
+			for (int j : linkageIndex.getNeighbors(i)) {
+				if (j<nRes) {
+					continue;
+				}
+				Group group2 = ligands.get(j-nRes);
 				if (group1.equals(group2)) { // overlap between residues and ligands
 					continue;
 				}
@@ -763,7 +858,7 @@ public class ProteinModificationIdentifier {
 
 			for (Group g1 : groups1) {
 				for (Group g2 : groups2) {
-					if (g1.equals(g2)) {
+					if (g1.equals(g2) || !linkageIndex.mayBeLinked(g1, g2)) {
 						continue;
 					}
 
@@ -771,8 +866,8 @@ public class ProteinModificationIdentifier {
 					boolean ignoreNCLinkage =
 						potentialNamesOfAtomOnGroup1 == null &&
 						potentialNamesOfAtomOnGroup2 == null &&
-						residues.contains(g1) &&
-						residues.contains(g2);
+						residueSet.contains(g1) &&
+						residueSet.contains(g2);
 
 					Atom[] atoms = StructureUtil.findNearestAtomLinkage(
 							g1, g2,
@@ -825,8 +920,8 @@ public class ProteinModificationIdentifier {
 				for (int i=0; i<n; i++) {
 					Atom[] linkage = atomLinkages.get(i);
 					StructureAtomLinkage link = StructureUtil.getStructureAtomLinkage(
-							linkage[0], residues.contains(linkage[0].getGroup()),
-							linkage[1], residues.contains(linkage[1].getGroup()));
+							linkage[0], residueSet.contains(linkage[0].getGroup()),
+							linkage[1], residueSet.contains(linkage[1].getGroup()));
 					linkages.add(link);
 				}
 
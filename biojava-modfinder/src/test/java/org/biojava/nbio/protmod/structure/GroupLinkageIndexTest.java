@@ -0,0 +1,107 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.protmod.structure;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.AtomImpl;
+import org.biojava.nbio.structure.BondImpl;
+import org.biojava.nbio.structure.Element;
+import org.biojava.nbio.structure.Group;
+import org.biojava.nbio.structure.HetatomImpl;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GroupLinkageIndexTest {
+
+	private static final Element[] ELEMENTS = { Element.C, Element.N, Element.O, Element.S, Element.Fe, Element.Zn };
+
+	private static Atom addAtom(Group group, String name, Element element, double x, double y, double z) {
+		Atom atom = new AtomImpl();
+		atom.setName(name);
+		atom.setElement(element);
+		atom.setCoords(new double[] {x, y, z});
+		group.addAtom(atom);
+		return atom;
+	}
+
+	@Test
+	public void testNeighbors() {
+		List<Group> groups = new ArrayList<Group>();
+		for (int i = 0; i < 4; i++) {
+			groups.add(new HetatomImpl());
+		}
+		addAtom(groups.get(0), "C", Element.C, 0, 0, 0);
+		addAtom(groups.get(1), "C", Element.C, 1.5, 0, 0);
+		Atom far = addAtom(groups.get(2), "C", Element.C, 20, 0, 0);
+		Atom bonded = addAtom(groups.get(3), "C", Element.C, 50, 0, 0);
+		new BondImpl(far, bonded, 1);
+
+		GroupLinkageIndex index = new GroupLinkageIndex(groups, 0.4);
+		assertEquals(4, index.size());
+		assertTrue(Arrays.equals(new int[] {1}, index.getNeighbors(0)));
+		assertTrue(Arrays.equals(new int[] {3}, index.getNeighbors(2)));
+		assertTrue(index.mayBeLinked(groups.get(1), groups.get(0)));
+		assertTrue(index.mayBeLinked(groups.get(2), groups.get(3)));
+		assertFalse(index.mayBeLinked(groups.get(0), groups.get(2)));
+		// groups that are not indexed are compared
+		assertTrue(index.mayBeLinked(groups.get(0), new HetatomImpl()));
+	}
+
+	@Test
+	public void testSameAsAllPairs() {
+		Random random = new Random(42);
+		List<Group> groups = new ArrayList<Group>();
+		for (int i = 0; i < 150; i++) {
+			Group group = new HetatomImpl();
+			double x = 30 * random.nextDouble();
+			double y = 30 * random.nextDouble();
+			double z = 30 * random.nextDouble();
+			for (int j = 0; j < 3; j++) {
+				addAtom(group, "A" + j, ELEMENTS[random.nextInt(ELEMENTS.length)],
+						x + 2 * random.nextDouble(), y + 2 * random.nextDouble(), z + 2 * random.nextDouble());
+			}
+			groups.add(group);
+		}
+
+		for (double tolerance : new double[] {0.0, 0.4, 1.5}) {
+			GroupLinkageIndex index = new GroupLinkageIndex(groups, tolerance);
+			for (int i = 0; i < groups.size(); i++) {
+				for (int j = 0; j < groups.size(); j++) {
+					if (i == j) {
+						continue;
+					}
+					boolean linked = !StructureUtil.findAtomLinkages(groups.get(i), groups.get(j),
+							false, tolerance).isEmpty();
+					if (linked) {
+						assertTrue(index.mayBeLinked(groups.get(i), groups.get(j)));
+						assertTrue(Arrays.binarySearch(index.getNeighbors(i), j) >= 0);
+					}
+				}
+			}
+		}
+	}
+}
@@ -23,6 +23,7 @@ import org.biojava.nbio.core.sequence.ProteinSequence;
 import org.biojava.nbio.core.sequence.compound.AminoAcidCompound;
 import org.biojava.nbio.data.sequence.FastaSequence;
 import org.biojava.nbio.data.sequence.SequenceUtil;
+import org.biojava.nbio.ronn.ORonn.ResultLayout;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -54,16 +55,7 @@ public class Jronn implements Serializable {
 	 */
 	private static final long serialVersionUID = 8104272449130849946L;
 	// Load models
-	private static final ModelLoader loader = new ModelLoader();
-	static {
-		try {
-			loader.loadModels();
-		} catch (NumberFormatException e) {
-			throw new RuntimeException("Fails to load models!" + e.getMessage(), e);
-		} catch (IOException e) {
-			throw new RuntimeException("Fails to load models!" + e.getMessage(), e);
-		}
-	}
+	private static final RonnPredictor predictor = RonnPredictor.getInstance();
 
 
 	/**
@@ -177,7 +169,7 @@ public class Jronn implements Serializable {
 		ORonn ronn;
 		float[] disorder = null;
 		try {
-			ronn = new ORonn(fsequence, loader);
+			ronn = new ORonn(fsequence, predictor);
 			disorder = ronn.call().getMeanScores();
 		} catch (NumberFormatException e) {
 			throw new RuntimeException("Jronn fails to load models " + e.getLocalizedMessage(), e);
@@ -239,16 +231,28 @@ public class Jronn implements Serializable {
 
 	/**
 	 * Calculates the probability of disorder scores for each residue in the sequence for
-	 * many sequences in the input.
+	 * many sequences in the input. The sequences are predicted in parallel.
 	 *
 	 * @param sequences the list of the FastaSequence objects
 	 * @return the Map with key->FastaSequence, value->probability of disorder for each residue
 	 * @see #getDisorder(FastaSequence)
 	 */
 	public static Map<FastaSequence,float[]> getDisorderScores(List<FastaSequence> sequences) {
-		Map<FastaSequence,float[]> results = new TreeMap<FastaSequence, float[]>();
+		List<String> residues = new ArrayList<String>(sequences.size());
 		for(FastaSequence fsequence : sequences) {
-			results.put(fsequence, predictSerial(fsequence));
+			ORonn.validateSequenceForRonn(fsequence);
+			residues.add(fsequence.getSequence());
+		}
+		List<float[]> scores;
+		try {
+			scores = predictor.predict(residues);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Jronn was interrupted", e);
+		}
+		Map<FastaSequence,float[]> results = new TreeMap<FastaSequence, float[]>();
+		for (int i = 0; i < sequences.size(); i++) {
+			results.put(sequences.get(i), scores.get(i));
 		}
 		return results;
 	}
@@ -262,8 +266,8 @@ public class Jronn implements Serializable {
 	 */
 	public static Map<FastaSequence,Range[]> getDisorder(List<FastaSequence> sequences) {
 		Map<FastaSequence,Range[]> disorderRanges = new TreeMap<FastaSequence,Range[]>();
-		for(FastaSequence fs: sequences) {
-			disorderRanges.put(fs, getDisorder(fs));
+		for(Map.Entry<FastaSequence,float[]> entry : getDisorderScores(sequences).entrySet()) {
+			disorderRanges.put(entry.getKey(), scoresToRanges(entry.getValue(), RonnConstraint.DEFAULT_RANGE_PROBABILITY_THRESHOLD));
 		}
 		return disorderRanges;
 	}
@@ -283,25 +287,29 @@ public class Jronn implements Serializable {
 	}
 
 	/**
-	 * TODO
-	 *
 	 * High performance method for calculating disorder. Use multiple threads to achieve the speedup.
+	 * The results are written in the order of the input file while the next sequences are predicted.
 	 *
 	 * @param fastaFile  fully qualified path to the input FASTA file
 	 * @param outputFile file name of the file for the results
-	 * @param threadNumber the number of threads to use, default
-	 * @param controls the format of the result file
+	 * @param threadNumber the number of threads to use, between 1 and twice the number of cores
+	 * @param layout controls the format of the result file
 	 * @throws FileNotFoundException if input file in not found
 	 * @throws IOException if the input or the output files cannot be accessed
 	 * @see ORonn.ResultLayout
-
+	 * @since 5.1.2
+	 */
 	public static void calculateDisorder(String fastaFile, String outputFile, int threadNumber, ResultLayout layout) throws FileNotFoundException, IOException {
 		final List<FastaSequence> sequences = SequenceUtil.readFasta(new FileInputStream(fastaFile));
 		InputParameters in = new InputParameters();
-		in.setFilePrm(fastaFile, InputParameters.inputKey);
-		in.setFilePrm(outputFile, InputParameters.outputKey);
-		//in.setThreadNum(Integer.toString(threadNumber));
-		ORonn.predictParallel(sequences, in, loader);
+		in.setFilePrm(InputParameters.inputKey + fastaFile, InputParameters.inputKey);
+		in.setFilePrm(InputParameters.outputKey + outputFile, InputParameters.outputKey);
+		in.setThreadNum(InputParameters.threadKey + threadNumber);
+		in.setFormat(InputParameters.formatKey + (layout == ResultLayout.VERTICAL ? "V" : "H"));
+		try {
+			ORonn.predictParallel(sequences, in, predictor);
+		} finally {
+			in.getOutputWriter().close();
+		}
 	}
-	*/
 }
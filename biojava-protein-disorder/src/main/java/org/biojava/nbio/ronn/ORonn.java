@@ -24,9 +24,9 @@
  */
 package org.biojava.nbio.ronn;
 
+import org.biojava.nbio.core.util.BoundedTaskQueue;
 import org.biojava.nbio.data.sequence.FastaSequence;
 import org.biojava.nbio.data.sequence.SequenceUtil;
-import org.biojava.nbio.ronn.ModelLoader.Model;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,7 +67,7 @@ public final class ORonn implements Callable<ORonn> {
 
 	static final byte NUMBER_OF_MODELS = 10;
 	private final FastaSequence sequence;
-	private final ModelLoader mloader;
+	private final RonnPredictor predictor;
 	private final PrintWriter out;
 	private final ResultLayout layout;
 	private final PrintWriter stat;
@@ -75,14 +75,14 @@ public final class ORonn implements Callable<ORonn> {
 	private final float disorder;
 
 	// This gets initialized after calling a call method!
-	private float[] cummulativeScore;
+	private float[] meanScores;
 
 
-	ORonn(final FastaSequence sequence, final ModelLoader mloader,
+	ORonn(final FastaSequence sequence, final RonnPredictor predictor,
 			final InputParameters params) throws NumberFormatException,
 			IOException {
 		this.sequence = sequence;
-		this.mloader = mloader;
+		this.predictor = predictor;
 		out = params.getOutputWriter();
 		assert out != null;
 		layout = params.getFormat();
@@ -91,10 +91,10 @@ public final class ORonn implements Callable<ORonn> {
 		timer = new Timer(TimeUnit.MILLISECONDS);
 	}
 	//This constructor is for API calls where the caller collects the results directly
-	ORonn(final FastaSequence sequence, final ModelLoader mloader) throws NumberFormatException,
+	ORonn(final FastaSequence sequence, final RonnPredictor predictor) throws NumberFormatException,
 	IOException {
 		this.sequence = sequence;
-		this.mloader = mloader;
+		this.predictor = predictor;
 		out = new PrintWriter(new NullOutputStream());
 		layout = ResultLayout.HORIZONTAL;
 		stat = new PrintWriter(new NullOutputStream());
@@ -102,32 +102,30 @@ public final class ORonn implements Callable<ORonn> {
 		timer = new Timer(TimeUnit.MILLISECONDS);
 	}
 
+	// Called by one thread at a time, the parallel predictions are written in order by the caller
 	void writeResults(final float[] meanScores, final char[] seqs) {
 
-		synchronized (out)
-		{
-			out.println(">" + sequence.getId());
-			if (layout == ResultLayout.VERTICAL) {
-				for (int i = 0; i < meanScores.length; i++) {
-					out.printf("%c\t%.2f%n", seqs[i], meanScores[i]);
-					//out.printf("%c\t%f%n", seqs[i], meanScores[i]);
-				}
-			} else {
-				final StringBuilder seqLine = new StringBuilder();
-				final StringBuilder resultLine = new StringBuilder();
-				final String spacer = "\t";
-				for (int i = 0; i < meanScores.length; i++) {
-					seqLine.append(seqs[i]);
-					seqLine.append(spacer);
-					resultLine.append(ORonn.nformat.format(meanScores[i]));
-					resultLine.append(spacer);
-				}
-				out.println(seqLine.toString());
-				out.println(resultLine.toString());
+		out.println(">" + sequence.getId());
+		if (layout == ResultLayout.VERTICAL) {
+			for (int i = 0; i < meanScores.length; i++) {
+				out.printf("%c\t%.2f%n", seqs[i], meanScores[i]);
+				//out.printf("%c\t%f%n", seqs[i], meanScores[i]);
+			}
+		} else {
+			final StringBuilder seqLine = new StringBuilder();
+			final StringBuilder resultLine = new StringBuilder();
+			final String spacer = "\t";
+			for (int i = 0; i < meanScores.length; i++) {
+				seqLine.append(seqs[i]);
+				seqLine.append(spacer);
+				resultLine.append(ORonn.nformat.format(meanScores[i]));
+				resultLine.append(spacer);
 			}
-			out.println();
-			out.flush();
+			out.println(seqLine.toString());
+			out.println(resultLine.toString());
 		}
+		out.println();
+		out.flush();
 	}
 
 	static boolean isValidSequence(final FastaSequence fsequence) {
@@ -137,45 +135,29 @@ public final class ORonn implements Callable<ORonn> {
 
 	@Override
 	public ORonn call() throws NumberFormatException, IOException {
-		final String seq = sequence.getSequence();
-		// Calculate for each model
-		for (int m = 0; m < ORonn.NUMBER_OF_MODELS; m++) {
-			final Model model = mloader.getModel(m);
-			final ORonnModel rmodel = new ORonnModel(seq, model, disorder);
-			final float[] scores = rmodel.detect();
-			addScore(scores);
-		}
+		predict();
+		write();
+		return this;
+	}
+
+	/**
+	 * Calculates the mean scores of the models without writing them.
+	 */
+	ORonn predict() {
+		meanScores = predictor.predict(sequence.getSequence(), disorder);
+		return this;
+	}
 
-		final char[] ch = seq.toCharArray();
-		final float[] meanScores = getMeanScores();
-		assert meanScores.length == seq.length() : "Scores are not calculated for "
+	void write() {
+		final char[] ch = sequence.getSequence().toCharArray();
+		assert meanScores.length == ch.length : "Scores are not calculated for "
 				+ "all residues!";
 		writeResults(meanScores, ch);
 		stat.println(timer.getTotalTime() + "ms prediction completed for "
 				+ sequence.getId());
-		return this;
-	}
-
-	private void addScore(final float[] scores) {
-		// For the first time just add all elements
-		if (cummulativeScore == null) {
-			cummulativeScore = scores;
-			return;
-		}
-		if (cummulativeScore.length != scores.length) {
-			throw new IllegalArgumentException("Expected "
-					+ cummulativeScore.length + " but get " + scores.length);
-		}
-		for (int i = 0; i < scores.length; i++) {
-			cummulativeScore[i] += scores[i];
-		}
 	}
 
 	float[] getMeanScores() {
-		final float[] meanScores = new float[cummulativeScore.length];
-		for (int i = 0; i < cummulativeScore.length; i++) {
-			meanScores[i] = cummulativeScore[i] / ORonn.NUMBER_OF_MODELS;
-		}
 		return meanScores;
 	}
 
@@ -190,7 +172,7 @@ public final class ORonn implements Callable<ORonn> {
 	 * sequence. Letters and values separated by tabulation in	this case.
 	 *
 	 */
-	static enum ResultLayout {
+	public static enum ResultLayout {
 		VERTICAL, HORIZONTAL
 	}
 
@@ -307,8 +289,7 @@ public final class ORonn implements Callable<ORonn> {
 				+ "ms input file loaded");
 		stat.println("Input file has " + sequences.size() + " sequences");
 
-		final ModelLoader mloader = new ModelLoader();
-		mloader.loadModels();
+		final RonnPredictor predictor = RonnPredictor.getInstance();
 
 		final PrintWriter out = prms.getOutputWriter();
 		assert out != null;
@@ -316,12 +297,12 @@ public final class ORonn implements Callable<ORonn> {
 		// do serial execution
 		if (prms.getThreadNum() == 1) {
 			stat.println("Running predictions serially");
-			ORonn.predictSerial(sequences, prms, mloader);
+			ORonn.predictSerial(sequences, prms, predictor);
 		} else {
 			// Run predictions in parallel
 			stat.print("Running preditions in parallel - ");
 			stat.println("Using " + prms.getThreadNum() + " threads");
-			ORonn.predictParallel(sequences, prms, mloader);
+			ORonn.predictParallel(sequences, prms, predictor);
 		}
 
 		stat.println("Total calculation time: " + timer.getTotalTime() + "s ");
@@ -333,53 +314,54 @@ public final class ORonn implements Callable<ORonn> {
 	}
 
 	static void predictSerial(final List<FastaSequence> fsequences,
-			final InputParameters prms, final ModelLoader mloader)
+			final InputParameters prms, final RonnPredictor predictor)
 					throws NumberFormatException, IOException {
 		for (final FastaSequence sequence : fsequences) {
 			if (!ORonn.isValidSequenceForRonn(sequence, prms.getStatWriter())) {
 				continue;
 			}
-			final ORonn ronn = new ORonn(sequence, mloader, prms);
+			final ORonn ronn = new ORonn(sequence, predictor, prms);
 			ronn.call();
 		}
 	}
 
 
+	/**
+	 * Predicts the sequences on a pool of {@link InputParameters#getThreadNum()} threads. A bounded
+	 * number of predictions run ahead of the output, which is written by the calling thread in the
+	 * order of the sequences.
+	 */
 	static void predictParallel(final List<FastaSequence> fsequences,
-			final InputParameters prms, final ModelLoader mloader)
+			final InputParameters prms, final RonnPredictor predictor)
 					throws NumberFormatException, IOException {
 		final PrintWriter stat = prms.getStatWriter();
 
-		// Do parallel execution
-		final ExecutorService executor = new ThreadPoolExecutor(prms
-				.getThreadNum(), prms.getThreadNum(), 0L, TimeUnit.SECONDS,
-				new SynchronousQueue<Runnable>(),
-				new ThreadPoolExecutor.CallerRunsPolicy());
+		final ExecutorService executor = Executors.newFixedThreadPool(prms.getThreadNum());
+		final BoundedTaskQueue<ORonn> tasks = new BoundedTaskQueue<ORonn>(executor, 2 * prms.getThreadNum());
 		try {
 			for (final FastaSequence sequence : fsequences) {
 				if (!ORonn.isValidSequenceForRonn(sequence, stat)) {
 					continue;
 				}
-				final ORonn ronn = new ORonn(sequence, mloader, prms);
-				/*
-				 * To get stack traces from tasks one need to obtain a Future
-				 * from this method and call its get() method. Otherwise some
-				 * task may end up with exception but unnoticed
-				 */
-				executor.submit(ronn);
+				final ORonn ronn = new ORonn(sequence, predictor, prms);
+				while (tasks.isFull()) {
+					tasks.take().write();
+				}
+				tasks.submit(new Callable<ORonn>() {
+					@Override
+					public ORonn call() {
+						return ronn.predict();
+					}
+				});
+			}
+			stat.println("All task submitted. Waiting for completion");
+			while (!tasks.isEmpty()) {
+				tasks.take().write();
 			}
-			executor.shutdown();
-			final int timeOut = (fsequences.size() < 60) ? 60 : fsequences
-					.size();
-			stat.println("All task submitted. Waiting for complition for "
-					+ "maximum of " + timeOut + " minutes");
-			executor.awaitTermination(timeOut, TimeUnit.MINUTES);
 		} catch (final InterruptedException e) {
 			logger.error("Execution is terminated! "
-					+ "Terminated by either by the system or the timeout. "
-					+ "Maximum of 1 minute is allowed for one sequence analisys! "
-					+ "If it took longer to complite this analysis "
-					+ "the program is terminated.", e);
+					+ "Terminated by either by the system or the timeout. ", e);
+			Thread.currentThread().interrupt();
 		} finally {
 			executor.shutdownNow();
 		}
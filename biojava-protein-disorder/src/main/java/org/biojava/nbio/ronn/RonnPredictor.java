@@ -0,0 +1,296 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.ronn;
+
+import org.biojava.nbio.core.sequence.ProteinSequence;
+import org.biojava.nbio.core.util.ConcurrencyTools;
+import org.biojava.nbio.data.sequence.FastaSequence;
+import org.biojava.nbio.ronn.ModelLoader.Model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * The ten RONN models held in flat primitive arrays, shared by all the threads predicting disorder.
+ * The predictions are the same as those of {@link ORonnModel} averaged over the models, but every
+ * window of the query is aligned to every window of a model sequence by sliding along the diagonals,
+ * which updates the score of the previous window instead of summing the 19 residues again, and no
+ * object is created per window.
+ * <p/>
+ * Instances are immutable and thread safe.
+ *
+ * @since 5.1.2
+ * @see Jronn
+ */
+public final class RonnPredictor {
+
+	/** Length of the window aligned to the model sequences */
+	private static final int WINDOW = 19;
+
+	private static final int ALPHABET = 20;
+
+	private static RonnPredictor instance;
+
+	/** Encoded residues of all the sequences of all the models */
+	private final byte[] residues;
+	/** Start of each sequence in residues, plus the end of the last one */
+	private final int[] starts;
+	/** Score of each window of each sequence aligned to itself, indexed as residues */
+	private final int[] selfScores;
+	private final float[] weights;
+	/** First sequence of each model, plus the end of the last model */
+	private final int[] modelStarts;
+	/** mu0, mu1, sigma0 and sigma1 of each model */
+	private final float[][] thresholds;
+	/** Blosum62 flattened, indexed by 20 * query residue + model residue */
+	private final int[] blosum;
+
+	private RonnPredictor(ModelLoader loader) {
+		int sequences = 0;
+		int length = 0;
+		for (int m = 0; m < ORonn.NUMBER_OF_MODELS; m++) {
+			Model model = loader.getModel(m);
+			sequences += model.numOfDBAAseq;
+			for (int k = 0; k < model.numOfDBAAseq; k++) {
+				length += model.Length[k];
+			}
+		}
+		residues = new byte[length];
+		selfScores = new int[length];
+		starts = new int[sequences + 1];
+		weights = new float[sequences];
+		modelStarts = new int[ORonn.NUMBER_OF_MODELS + 1];
+		thresholds = new float[ORonn.NUMBER_OF_MODELS][];
+		blosum = new int[ALPHABET * ALPHABET];
+		for (int i = 0; i < ALPHABET; i++) {
+			for (int j = 0; j < ALPHABET; j++) {
+				blosum[i * ALPHABET + j] = RonnConstraint.Blosum62[i][j];
+			}
+		}
+
+		int sequence = 0;
+		int position = 0;
+		for (int m = 0; m < ORonn.NUMBER_OF_MODELS; m++) {
+			Model model = loader.getModel(m);
+			modelStarts[m] = sequence;
+			thresholds[m] = RonnConstraint.Threshold.getTreshold(m);
+			for (int k = 0; k < model.numOfDBAAseq; k++) {
+				starts[sequence] = position;
+				weights[sequence] = model.W[k];
+				for (int r = 0; r < model.Length[k]; r++) {
+					residues[position + r] = (byte) model.dbAA[k][r];
+				}
+				for (int d = 0; d + WINDOW <= model.Length[k]; d++) {
+					int score = 0;
+					for (int r = 0; r < WINDOW; r++) {
+						int aa = residues[position + d + r];
+						score += blosum[aa * ALPHABET + aa];
+					}
+					selfScores[position + d] = score;
+				}
+				position += model.Length[k];
+				sequence++;
+			}
+		}
+		starts[sequence] = position;
+		modelStarts[ORonn.NUMBER_OF_MODELS] = sequence;
+	}
+
+	/**
+	 * Returns the models, loading them the first time.
+	 *
+	 * @return the predictor shared by all the callers
+	 */
+	public static synchronized RonnPredictor getInstance() {
+		if (instance == null) {
+			ModelLoader loader = new ModelLoader();
+			try {
+				loader.loadModels();
+			} catch (IOException e) {
+				throw new RuntimeException("Fails to load models!" + e.getMessage(), e);
+			}
+			instance = new RonnPredictor(loader);
+		}
+		return instance;
+	}
+
+	/**
+	 * Calculates the probability of disorder of each residue with the default disorder weight.
+	 *
+	 * @param sequence the residues, upper case, at least 19 of them
+	 * @return the probability of disorder of each residue
+	 * @see #predict(String, float)
+	 */
+	public float[] predict(String sequence) {
+		return predict(sequence, RonnConstraint.DEFAULT_DISORDER);
+	}
+
+	/**
+	 * Calculates the probability of disorder of each residue, the mean of the ten models.
+	 *
+	 * @param sequence the residues, upper case, at least 19 of them
+	 * @param disorder the prior probability of disorder
+	 * @return the probability of disorder of each residue
+	 * @throws IllegalArgumentException if the sequence is too short or has a character that is not
+	 * an upper case letter up to Y
+	 */
+	public float[] predict(String sequence, float disorder) {
+		int n = sequence.length();
+		if (n < WINDOW) {
+			throw new IllegalArgumentException("Sequence of " + n + " residues is shorter than the window of " + WINDOW);
+		}
+		byte[] query = new byte[n];
+		for (int i = 0; i < n; i++) {
+			int c = sequence.charAt(i) - 'A';
+			if (c < 0 || c >= RonnConstraint.INDEX.length) {
+				throw new IllegalArgumentException("Unexpected character '" + sequence.charAt(i) + "' at position " + (i + 1));
+			}
+			query[i] = (byte) RonnConstraint.INDEX[c];
+		}
+
+		int windows = n - WINDOW + 1;
+		float[] est = new float[windows];
+		int[] best = new int[windows];
+		int[] bestIdx = new int[windows];
+		float[] windowScores = new float[windows];
+		float[] scores = new float[n];
+
+		for (int m = 0; m < ORonn.NUMBER_OF_MODELS; m++) {
+			Arrays.fill(est, 0.0f);
+			for (int k = modelStarts[m]; k < modelStarts[m + 1]; k++) {
+				align(query, k, best, bestIdx);
+				float w = weights[k];
+				int start = starts[k];
+				for (int s = 0; s < windows; s++) {
+					// same arithmetic as ORonnModel
+					float rho0 = selfScores[start + bestIdx[s]];
+					float maxScore = best[s];
+					est[s] += w * Math.exp((maxScore - rho0) / rho0);
+				}
+			}
+
+			float[] thold = thresholds[m];
+			for (int s = 0; s < windows; s++) {
+				float fOrder = (float) (Math.exp(-0.5 * Math.pow(est[s] - thold[0], 2.0)
+						/ thold[2]) / (Math.sqrt(6.28) * thold[2]));
+				float fDisor = (float) (Math.exp(-0.5 * Math.pow(est[s] - thold[1], 2.0)
+						/ thold[3]) / (Math.sqrt(6.28) * thold[3]));
+				windowScores[s] = (float) (disorder * fDisor / ((1.0 - disorder)
+						* fOrder + disorder * fDisor));
+			}
+
+			// mean over the windows covering each residue, summed in the order of the windows
+			for (int r = 0; r < n; r++) {
+				int from = Math.max(0, r - WINDOW + 1);
+				int to = Math.min(r, windows - 1);
+				float sum = 0.0f;
+				for (int s = from; s <= to; s++) {
+					sum += windowScores[s];
+				}
+				float score = sum / (to - from + 1);
+				if (m == 0) {
+					scores[r] = score;
+				} else {
+					scores[r] += score;
+				}
+			}
+		}
+		for (int r = 0; r < n; r++) {
+			scores[r] = scores[r] / ORonn.NUMBER_OF_MODELS;
+		}
+		return scores;
+	}
+
+	/**
+	 * Finds for each window of the query the first window of model sequence k with the best score.
+	 */
+	private void align(byte[] query, int k, int[] best, int[] bestIdx) {
+		int windows = best.length;
+		int start = starts[k];
+		int modelWindows = starts[k + 1] - start - WINDOW + 1;
+		Arrays.fill(best, Integer.MIN_VALUE);
+		// the diagonals in increasing order visit the model windows of a query window in increasing order,
+		// so keeping the strictly better scores keeps the first best as ORonnModel does
+		for (int diagonal = 1 - windows; diagonal < modelWindows; diagonal++) {
+			int s = Math.max(0, -diagonal);
+			int d = s + diagonal;
+			int score = 0;
+			for (int r = 0; r < WINDOW; r++) {
+				score += blosum[query[s + r] * ALPHABET + residues[start + d + r]];
+			}
+			while (true) {
+				if (score > best[s]) {
+					best[s] = score;
+					bestIdx[s] = d;
+				}
+				if (s + 1 >= windows || d + 1 >= modelWindows) {
+					break;
+				}
+				score += blosum[query[s + WINDOW] * ALPHABET + residues[start + d + WINDOW]]
+						- blosum[query[s] * ALPHABET + residues[start + d]];
+				s++;
+				d++;
+			}
+		}
+	}
+
+	/**
+	 * Calculates the probability of disorder of the sequences in parallel.
+	 *
+	 * @param sequences the residues of each sequence, upper case, at least 19 of them
+	 * @return the probability of disorder of each residue of each sequence, in the order of the sequences
+	 * @throws InterruptedException if interrupted while waiting for the predictions
+	 */
+	public List<float[]> predict(List<String> sequences) throws InterruptedException {
+		List<Future<float[]>> futures = new ArrayList<Future<float[]>>(sequences.size());
+		for (final String sequence : sequences) {
+			futures.add(ConcurrencyTools.submit(new Callable<float[]>() {
+				@Override
+				public float[] call() {
+					return predict(sequence);
+				}
+			}));
+		}
+		return ConcurrencyTools.getAll(futures);
+	}
+
+	/**
+	 * Calculates the probability of disorder of the protein sequences in parallel. Ambiguous
+	 * residues are treated as by {@link Jronn#getDisorderScores(ProteinSequence)}.
+	 *
+	 * @param sequences the protein sequences, at least 20 residues long
+	 * @return the probability of disorder of each residue of each sequence, in the order of the sequences
+	 * @throws InterruptedException if interrupted while waiting for the predictions
+	 */
+	public List<float[]> getDisorderScores(List<ProteinSequence> sequences) throws InterruptedException {
+		List<String> residues = new ArrayList<String>(sequences.size());
+		for (ProteinSequence sequence : sequences) {
+			FastaSequence fsequence = Jronn.convertProteinSequencetoFasta(sequence);
+			ORonn.validateSequenceForRonn(fsequence);
+			residues.add(fsequence.getSequence());
+		}
+		return predict(residues);
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.ronn;
+
+import org.biojava.nbio.data.sequence.FastaSequence;
+import org.biojava.nbio.data.sequence.SequenceUtil;
+import org.biojava.nbio.ronn.ORonn.ResultLayout;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RonnPredictorTest {
+
+	private static final String RESIDUES = "ACDEFGHIKLMNPQRSTVWYX";
+
+	private static List<String> randomSequences(int count) {
+		Random random = new Random(42);
+		List<String> sequences = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = 20 + random.nextInt(300);
+			for (int j = 0; j < length; j++) {
+				sb.append(RESIDUES.charAt(random.nextInt(RESIDUES.length())));
+			}
+			sequences.add(sb.toString());
+		}
+		return sequences;
+	}
+
+	/**
+	 * The mean of the scores of {@link ORonnModel}, as ORonn computed them.
+	 */
+	private static float[] predictWithModels(String sequence) throws Exception {
+		ModelLoader loader = new ModelLoader();
+		loader.loadModels();
+		float[] cummulativeScore = null;
+		for (int m = 0; m < ORonn.NUMBER_OF_MODELS; m++) {
+			float[] scores = new ORonnModel(sequence, loader.getModel(m), RonnConstraint.DEFAULT_DISORDER).detect();
+			if (cummulativeScore == null) {
+				cummulativeScore = scores;
+			} else {
+				for (int i = 0; i < scores.length; i++) {
+					cummulativeScore[i] += scores[i];
+				}
+			}
+		}
+		for (int i = 0; i < cummulativeScore.length; i++) {
+			cummulativeScore[i] = cummulativeScore[i] / ORonn.NUMBER_OF_MODELS;
+		}
+		return cummulativeScore;
+	}
+
+	@Test
+	public void testSameAsModels() throws Exception {
+		for (String sequence : randomSequences(5)) {
+			assertTrue(sequence, Arrays.equals(predictWithModels(sequence), RonnPredictor.getInstance().predict(sequence)));
+		}
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		List<String> sequences = randomSequences(20);
+		List<float[]> scores = RonnPredictor.getInstance().predict(sequences);
+		assertEquals(sequences.size(), scores.size());
+		for (int i = 0; i < sequences.size(); i++) {
+			assertTrue(Arrays.equals(RonnPredictor.getInstance().predict(sequences.get(i)), scores.get(i)));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCharacter() {
+		RonnPredictor.getInstance().predict("MTADGPCRELLCQLRAAVRHRWWC1");
+	}
+
+	@Test
+	public void testCalculateDisorder() throws Exception {
+		List<String> residues = randomSequences(12);
+		List<FastaSequence> sequences = new ArrayList<FastaSequence>();
+		StringWriter expected = new StringWriter();
+		PrintWriter out = new PrintWriter(expected);
+		for (int i = 0; i < residues.size(); i++) {
+			FastaSequence sequence = new FastaSequence("seq" + i, residues.get(i));
+			sequences.add(sequence);
+			out.println(">" + sequence.getId());
+			for (float score : Jronn.getDisorderScores(sequence)) {
+				out.printf("%.2f%n", score);
+			}
+		}
+		out.close();
+
+		File fasta = File.createTempFile("ronn", ".fasta");
+		File output = File.createTempFile("ronn", ".txt");
+		fasta.deleteOnExit();
+		output.deleteOnExit();
+		OutputStream os = new FileOutputStream(fasta);
+		SequenceUtil.writeFasta(os, sequences);
+		os.close();
+		Jronn.calculateDisorder(fasta.getPath(), output.getPath(), 2, ResultLayout.VERTICAL);
+
+		StringWriter actual = new StringWriter();
+		out = new PrintWriter(actual);
+		for (String line : Files.readAllLines(output.toPath())) {
+			if (line.startsWith(">")) {
+				out.println(line);
+			} else if (!line.isEmpty()) {
+				out.println(line.substring(line.indexOf('\t') + 1));
+			}
+		}
+		out.close();
+		assertEquals(expected.toString(), actual.toString());
+	}
+}
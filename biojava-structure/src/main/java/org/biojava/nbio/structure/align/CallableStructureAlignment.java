@@ -171,7 +171,7 @@ public class CallableStructureAlignment implements  Callable<AFPChain> {
 		this.ca1 = ca1;
 	}
 
-	private void writeXML(File outFileF, String name1, String name2, String xml)
+	static void writeXML(File outFileF, String name1, String name2, String xml)
 	{
 		try{
 			// Create file
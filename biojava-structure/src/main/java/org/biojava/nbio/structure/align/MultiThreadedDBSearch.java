@@ -31,11 +31,13 @@ import org.biojava.nbio.structure.StructureTools;
 import org.biojava.nbio.structure.align.ce.*;
 import org.biojava.nbio.structure.align.client.FarmJobParameters;
 import org.biojava.nbio.structure.align.client.JFatCatClient;
-import org.biojava.nbio.structure.align.client.PdbPair;
 import org.biojava.nbio.structure.align.client.StructureName;
 import org.biojava.nbio.structure.align.model.AFPChain;
 import org.biojava.nbio.structure.align.util.AtomCache;
+import org.biojava.nbio.structure.align.util.DBSearchCheckpoint;
+import org.biojava.nbio.structure.align.util.DBSearchStatistics;
 import org.biojava.nbio.structure.align.util.SynchronizedOutFile;
+import org.biojava.nbio.structure.align.xml.AFPChainXMLConverter;
 import org.biojava.nbio.structure.domain.DomainProvider;
 import org.biojava.nbio.structure.domain.DomainProviderFactory;
 import org.biojava.nbio.structure.domain.RemoteDomainProvider;
@@ -46,14 +48,41 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /** Performs a multi threaded database search for an input protein structure
+ * <p>
+ * The structures of the targets are fetched and loaded from the {@link AtomCache}
+ * by background threads ahead of their alignment, and each alignment is submitted
+ * to the {@link ConcurrencyTools} thread pool once its structure is loaded. At most {@link #getMaxInFlight()} targets
+ * are loaded or aligned at any time, which bounds the memory used by the search.
+ * The results are written as they complete.
+ * <p>
+ * The names of the targets whose results are written are recorded in a
+ * checkpoint file next to the result file. A search that was interrupted can be
+ * resumed with {@link #setResume(boolean)}: the recorded targets are then skipped.
+ * The results written after the last checkpoint of the interrupted run are
+ * removed from the result file and their targets are aligned again.
+ * The throughput and the latencies of the alignments are available from
+ * {@link #getStatistics()}.
  *
  * @author Andreas Prlic
  *
@@ -84,10 +113,30 @@ public class MultiThreadedDBSearch {
 	String customFile1;
 	String customChain1;
 
+	/** number of results written between two checkpoints */
+	private static final int CHECKPOINT_INTERVAL = 50;
+
+	boolean resume;
+	int maxInFlight;
+	private volatile DBSearchStatistics statistics;
+	private volatile ExecutorService prefetcher;
+
 	public MultiThreadedDBSearch(String name, Structure structure,
 			String outFile,
 			StructureAlignment algorithm,
 			int nrCPUs, boolean domainSplit){
+		this(name, structure, outFile, algorithm, nrCPUs, domainSplit, null);
+	}
+
+	/**
+	 * @param representatives the names of the structures to search, or null
+	 *            to fetch the representatives from the server
+	 */
+	public MultiThreadedDBSearch(String name, Structure structure,
+			String outFile,
+			StructureAlignment algorithm,
+			int nrCPUs, boolean domainSplit,
+			SortedSet<String> representatives){
 
 		interrupted = new AtomicBoolean(false);
 		this.name1= name;
@@ -96,13 +145,15 @@ public class MultiThreadedDBSearch {
 		this.algorithm = algorithm;
 		this.nrCPUs = nrCPUs;
 		this.domainSplit = domainSplit;
+		this.representatives = representatives;
+		maxInFlight = 4 * nrCPUs;
 		cache  = new AtomCache();
 
 		String serverLocation = FarmJobParameters.DEFAULT_SERVER_URL;
 		if ( representatives == null){
 			SortedSet<String> repre = JFatCatClient.getRepresentatives(serverLocation,40);
 			logger.info("got {} representatives for comparison", repre.size());
-			representatives = repre;
+			this.representatives = repre;
 		}
 	}
 
@@ -180,6 +231,43 @@ public class MultiThreadedDBSearch {
 
 
 
+	public boolean isResume() {
+		return resume;
+	}
+
+	/** sets whether the targets recorded in the checkpoint file of a previous run
+	 * are skipped. If false, the checkpoint is reset and all the targets are aligned.
+	 *
+	 * @param resume
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/** sets the maximum number of targets that are loaded or aligned at the same time,
+	 * 4 times the number of CPUs by default.
+	 *
+	 * @param maxInFlight
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+
+
+	/** the throughput and latencies of the current or last run
+	 *
+	 * @return the statistics, or null if the search has not started
+	 */
+	public DBSearchStatistics getStatistics() {
+		return statistics;
+	}
+
+
 	public File getResultFile() {
 		return resultList;
 	}
@@ -194,6 +282,7 @@ public class MultiThreadedDBSearch {
 
 		File outFileF = null;
 		SynchronizedOutFile out ;
+		DBSearchCheckpoint checkpoint;
 
 		try {
 			checkLocalFiles();
@@ -221,39 +310,21 @@ public class MultiThreadedDBSearch {
 
 			logger.info("writing results to {}", resultList.getAbsolutePath());
 
+			boolean resuming = resume && resultList.exists();
 
+			checkpoint = new DBSearchCheckpoint(new File(outFileF,"checkpoint_" + name1 + ".txt"), resuming);
+			if ( checkpoint.getNrCompleted() > 0)
+				logger.info("resuming after {} completed targets", checkpoint.getNrCompleted());
+			if ( resuming)
+				truncateResults(resultList, checkpoint);
+			else if ( resultList.exists())
+				// SynchronizedOutFile appends, the results of a previous search are replaced
+				new FileOutputStream(resultList).close();
 
 			out = new SynchronizedOutFile(resultList);
 
-			out.write(header);
-			out.write(AFPChain.newline);
-			out.write(legend);
-			out.write(AFPChain.newline);
-
-			if ( name1.equals("CUSTOM")) {
-
-				String config1 = "#param:file1=" + customFile1;
-				out.write(config1);
-				out.write(AFPChain.newline);
-
-				if ( customChain1 != null) {
-				String config2 = "#param:chain1=" + customChain1;
-				out.write(config2);
-				out.write(AFPChain.newline);
-				}
-
-			}
-
-			if ( algorithm.getAlgorithmName().startsWith("jCE")){
-				ConfigStrucAligParams params = algorithm.getParameters();
-				if ( params instanceof CeParameters){
-					CeParameters ceParams = (CeParameters) params;
-					if ( ceParams.getScoringStrategy() != CeParameters.ScoringStrategy.DEFAULT_SCORING_STRATEGY) {
-						String scoring = "#param:scoring=" + ceParams.getScoringStrategy();
-						out.write(scoring);
-						out.write(AFPChain.newline);
-					}
-				}
+			if ( ! resuming) {
+				writeHeader(out, header, legend);
 			}
 
 			out.flush();
@@ -270,37 +341,12 @@ public class MultiThreadedDBSearch {
 		}
 
 
-		int nrJobs = 0;
-		DomainProvider domainProvider;
+		DomainProvider domainProvider = null;
+		List<String> targets;
 		try {
-			domainProvider = DomainProviderFactory.getDomainProvider();
-
-			ConcurrencyTools.setThreadPoolSize(nrCPUs);
-
-			Atom[] ca1 = StructureTools.getRepresentativeAtomArray(structure1);
-
-			for (String repre : representatives){
-
-				if( domainSplit ) {
-					SortedSet<String> domainNames = domainProvider.getDomainNames(repre);
-					//logger.debug(repre +" got domains: " +domainNames);
-					if( domainNames == null || domainNames.size()==0){
-						// no domains found, use whole chain.
-						submit(name1, repre, ca1, algorithm, outFileF, out, cache);
-						nrJobs++;
-						continue;
-					}
-					//logger.debug("got " + domainNames.size() + " for " + repre);
-					for( String domain : domainNames){
-						submit(name1, domain, ca1, algorithm, outFileF, out, cache);
-						nrJobs++;
-					}
-				} else {
-					submit(name1, repre, ca1, algorithm, outFileF, out, cache);
-					nrJobs++;
-				}
-
-			}
+			if ( domainSplit )
+				domainProvider = DomainProviderFactory.getDomainProvider();
+			targets = getTargets(domainProvider);
 		} catch(IOException e) {
 			logger.error("Error while fetching representative domains", e);
 			interrupt();
@@ -313,34 +359,26 @@ public class MultiThreadedDBSearch {
 			return;
 		}
 
-
-		ThreadPoolExecutor  pool = ConcurrencyTools.getThreadPool();
+		ConcurrencyTools.setThreadPoolSize(nrCPUs);
+		ThreadPoolExecutor pool = ConcurrencyTools.getThreadPool();
 		logger.info("{}", pool.getPoolSize());
 
 		long startTime = System.currentTimeMillis();
 
 		try {
-			while ( pool.getCompletedTaskCount() < nrJobs-1  ) {
-				//long now = System.currentTimeMillis();
-				//logger.debug( pool.getCompletedTaskCount() + " " + (now-startTime)/1000 + " " + pool.getPoolSize() + " " + pool.getActiveCount()  + " " + pool.getTaskCount()  );
-				//				if ((now-startTime)/1000 > 60) {
-				//
-				//					interrupt();
-				//					logger.debug("completed: " + pool.getCompletedTaskCount());
-				//				}
-
-				if ( interrupted.get())
-					break;
-
-				Thread.sleep(2000);
-
-			}
-			out.close();
+			Atom[] ca1 = StructureTools.getRepresentativeAtomArray(structure1);
+			search(targets, ca1, outFileF, out, checkpoint, pool);
 		}
 		catch (Exception e){
 			logger.error("Exception: ", e);
 			interrupt();
 			cleanup();
+		} finally {
+			try {
+				checkpoint.close();
+			} catch (IOException e) {
+				logger.error("Could not close the checkpoint file", e);
+			}
 		}
 
 		if (domainProvider instanceof RemoteDomainProvider){
@@ -349,60 +387,218 @@ public class MultiThreadedDBSearch {
 		}
 		long now = System.currentTimeMillis();
 		logger.info("Calculation took : {} sec.", (now-startTime)/1000);
-		logger.info("{} {} {} {}", pool.getCompletedTaskCount(), pool.getPoolSize(), pool.getActiveCount(), pool.getTaskCount());
+		logger.info("{}", statistics);
 	}
 
 
+	private void writeHeader(SynchronizedOutFile out, String header, String legend) throws IOException {
+		out.write(header);
+		out.write(AFPChain.newline);
+		out.write(legend);
+		out.write(AFPChain.newline);
 
-	private void checkLocalFiles() throws IOException, StructureException {
+		if ( name1.equals("CUSTOM")) {
 
-		logger.info("Checking local PDB installation in directory: {}", cache.getPath());
+			String config1 = "#param:file1=" + customFile1;
+			out.write(config1);
+			out.write(AFPChain.newline);
 
-		File f = new File(cache.getPath());
-		if ( ! f.isDirectory()) {
-			logger.error("The path {} should point to a directory!", f.getAbsolutePath());
-		}
+			if ( customChain1 != null) {
+			String config2 = "#param:chain1=" + customChain1;
+			out.write(config2);
+			out.write(AFPChain.newline);
+			}
 
-		if ( ! f.canWrite()) {
-			logger.error("You do not have permission to write to {}. There could be a problem if the PDB installation is not up-to-date with fetching missing PDB files.", f.getAbsolutePath());
 		}
 
-		DomainProvider domainProvider = DomainProviderFactory.getDomainProvider();
-
+		if ( algorithm.getAlgorithmName().startsWith("jCE")){
+			ConfigStrucAligParams params = algorithm.getParameters();
+			if ( params instanceof CeParameters){
+				CeParameters ceParams = (CeParameters) params;
+				if ( ceParams.getScoringStrategy() != CeParameters.ScoringStrategy.DEFAULT_SCORING_STRATEGY) {
+					String scoring = "#param:scoring=" + ceParams.getScoringStrategy();
+					out.write(scoring);
+					out.write(AFPChain.newline);
+				}
+			}
+		}
+	}
 
 
+	/** the names of the representatives, or of their domains if the search is split in domains
+	 *
+	 * @param domainProvider the provider of the domains, only used to split in domains
+	 */
+	private List<String> getTargets(DomainProvider domainProvider) throws IOException, StructureException {
+		List<String> targets = new ArrayList<String>();
 		for (String repre : representatives){
 
-			if ( interrupted.get())
-				return;
-
 			if( domainSplit ) {
 				SortedSet<String> domainNames = domainProvider.getDomainNames(repre);
 				//logger.debug(repre +" got domains: " +domainNames);
 				if( domainNames == null || domainNames.size()==0){
 					// no domains found, use whole chain.
-					//submit(name1, repre, ca1, algorithm, outFileF, out, cache);
-					checkFile(repre);
+					targets.add(repre);
 					continue;
 				}
 				//logger.debug("got " + domainNames.size() + " for " + repre);
-				for( String domain : domainNames){
-					//submit(name1, domain, ca1, algorithm, outFileF, out, cache);
-					checkFile(domain);
-				}
+				targets.addAll(domainNames);
 			} else {
-				//submit(name1, repre, ca1, algorithm, outFileF, out, cache);
-				checkFile(repre);
+				targets.add(repre);
+			}
+
+		}
+		return targets;
+	}
+
+
+	/** aligns the structure to all targets that are not completed yet, keeping at most
+	 * maxInFlight of them loaded or aligned at the same time, and writes the results as
+	 * they complete.
+	 */
+	private void search(List<String> targets, Atom[] ca1, File outFileF, SynchronizedOutFile out,
+			DBSearchCheckpoint checkpoint, ExecutorService pool) throws IOException, InterruptedException {
+
+		CompletionService<SearchResult> completion = new ExecutorCompletionService<SearchResult>(pool);
+		ExecutorService loader = Executors.newFixedThreadPool(Math.max(1, nrCPUs / 2), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "DBSearch-prefetch");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		prefetcher = loader;
+		DBSearchStatistics stats = new DBSearchStatistics();
+		statistics = stats;
+
+		List<String> written = new ArrayList<String>();
+		int next = 0;
+		int inFlight = 0;
+		int skipped = 0;
+		try {
+			while ( ! interrupted.get()) {
+
+				// keep the structures of the upcoming targets loading
+				while ( next < targets.size() && inFlight < Math.max(1, maxInFlight)) {
+					String target = targets.get(next++);
+					if ( checkpoint.isCompleted(target)) {
+						skipped++;
+						continue;
+					}
+					loader.execute(new StructureLoader(target, ca1, outFileF, completion));
+					inFlight++;
+				}
+
+				if ( inFlight == 0)
+					break;
+
+				Future<SearchResult> done = completion.poll(1, TimeUnit.SECONDS);
+				if ( done == null)
+					continue;
+				inFlight--;
+
+				SearchResult result = getResult(done);
+				if ( result.afpChain == null)
+					continue;
+
+				stats.record(result.latency);
+				String line = result.afpChain.toDBSearchResult();
+				logger.info("{}", line);
+				out.write(line);
+				written.add(result.target);
+
+				if ( written.size() >= CHECKPOINT_INTERVAL) {
+					checkpoint(out, checkpoint, written);
+					logger.info("{} of {} targets done: {}", checkpoint.getNrCompleted(), targets.size(), stats);
+				}
 			}
+		} catch (RejectedExecutionException e) {
+			// the pool was shut down by interrupt()
+			logger.info("Database search interrupted");
+		} finally {
+			loader.shutdownNow();
+			stats.stop();
+		}
+		// not after a failed write: the results since the last checkpoint are aligned again on resume
+		checkpoint(out, checkpoint, written);
+		if ( skipped > 0)
+			logger.info("skipped {} targets completed in a previous run", skipped);
+	}
+
+
+	/** removes the lines of the result file that follow the last result recorded in the
+	 * checkpoint, i.e. the results written after the last checkpoint of an interrupted run
+	 * and a last line that was only partly written. Their targets are aligned again.
+	 */
+	private static void truncateResults(File resultFile, DBSearchCheckpoint checkpoint) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(resultFile, "rw");
+		try {
+			byte[] data = new byte[(int) file.length()];
+			file.readFully(data);
+			String content = new String(data, "UTF-8");
+
+			int keep = 0;
+			int end;
+			while ( (end = content.indexOf('\n', keep)) >= 0) {
+				String line = content.substring(keep, end);
+				if ( ! line.startsWith("#")) {
+					String[] fields = line.split("\t");
+					if ( fields.length < 2 || ! checkpoint.isCompleted(fields[1]))
+						break;
+				}
+				keep = end + 1;
+			}
+
+			long length = content.substring(0, keep).getBytes("UTF-8").length;
+			if ( length < data.length) {
+				logger.info("removing the results written after the last checkpoint from {}", resultFile);
+				file.setLength(length);
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+
+	/** the results are flushed before the targets are recorded in the checkpoint,
+	 * so that a target can not be recorded without its result
+	 *
+	 * @throws IOException if the results could not be written, in which case nothing is recorded
+	 */
+	private static void checkpoint(SynchronizedOutFile out, DBSearchCheckpoint checkpoint, List<String> written) throws IOException {
+		out.flush();
+		checkpoint.markCompleted(written);
+		written.clear();
+	}
+
 
+	private SearchResult getResult(Future<SearchResult> done) throws InterruptedException {
+		try {
+			return done.get();
+		} catch (ExecutionException e) {
+			// SearchTask catches its exceptions, this should not happen
+			logger.error("Exception: ", e.getCause());
+			return new SearchResult(null, null, 0);
 		}
+	}
 
-		if ( domainProvider instanceof RemoteDomainProvider ) {
-			RemoteDomainProvider remoteP = (RemoteDomainProvider) domainProvider;
-			remoteP.flushCache();
+
+
+	private void checkLocalFiles() throws IOException, StructureException {
+
+		logger.info("Checking local PDB installation in directory: {}", cache.getPath());
+
+		File f = new File(cache.getPath());
+		if ( ! f.isDirectory()) {
+			logger.error("The path {} should point to a directory!", f.getAbsolutePath());
 		}
 
-		logger.info("done checking local files...");
+		if ( ! f.canWrite()) {
+			logger.error("You do not have permission to write to {}. There could be a problem if the PDB installation is not up-to-date with fetching missing PDB files.", f.getAbsolutePath());
+		}
+
+		// the files of the targets are fetched by the prefetch threads during the search
 
 	}
 
@@ -419,26 +615,105 @@ public class MultiThreadedDBSearch {
 	}
 
 
-	private void submit(String name12, String repre, Atom[] ca1, StructureAlignment algorithm , File outFileF , SynchronizedOutFile out , AtomCache cache ) {
-		CallableStructureAlignment ali = new CallableStructureAlignment();
+	/** fetches the file of a target if needed, loads its structure from the cache and then
+	 * submits its alignment, so that the alignment threads do not wait for the loading
+	 */
+	private class StructureLoader implements Runnable {
+
+		private final String target;
+		private final Atom[] ca1;
+		private final File outFileF;
+		private final CompletionService<SearchResult> completion;
+
+		StructureLoader(String target, Atom[] ca1, File outFileF, CompletionService<SearchResult> completion) {
+			this.target = target;
+			this.ca1 = ca1;
+			this.outFileF = outFileF;
+			this.completion = completion;
+		}
+
+		@Override
+		public void run() {
+			Structure structure2 = null;
+			try {
+				checkFile(target);
+				structure2 = cache.getStructure(target);
+			} catch (Exception e) {
+				logger.error("Could not load structure {}", target, e);
+			}
+			try {
+				completion.submit(new SearchTask(target, ca1, structure2, outFileF));
+			} catch (RejectedExecutionException e) {
+				// the pool was shut down by interrupt()
+			}
+		}
+	}
+
+
+	private static class SearchResult {
 
-		PdbPair pair = new PdbPair(name1, repre);
-		try {
-			ali.setCa1(ca1);
-		} catch (Exception e){
-			logger.error("Exception: ", e);
-			ConcurrencyTools.shutdown();
-			return;
+		final String target;
+		/** null if the alignment failed */
+		final AFPChain afpChain;
+		/** nanoseconds from the start of the task to the end of the alignment */
+		final long latency;
+
+		SearchResult(String target, AFPChain afpChain, long latency) {
+			this.target = target;
+			this.afpChain = afpChain;
+			this.latency = latency;
 		}
-		ali.setAlgorithmName(algorithm.getAlgorithmName());
-		ali.setParameters(algorithm.getParameters());
-		ali.setPair(pair);
-		ali.setOutFile(out);
-		ali.setOutputDir(outFileF);
-		ali.setCache(cache);
+	}
+
+
+	/** aligns the structure to a loaded target structure */
+	private class SearchTask implements Callable<SearchResult> {
 
-		ConcurrencyTools.submit(ali);
+		private final String target;
+		private final Atom[] ca1;
+		/** null if the structure could not be loaded */
+		private final Structure structure2;
+		private final File outFileF;
 
+		SearchTask(String target, Atom[] ca1, Structure structure2, File outFileF) {
+			this.target = target;
+			this.ca1 = ca1;
+			this.structure2 = structure2;
+			this.outFileF = outFileF;
+		}
+
+		@Override
+		public SearchResult call() {
+			long start = System.nanoTime();
+			if ( structure2 == null)
+				return new SearchResult(target, null, 0);
+			try {
+				Structure s2 = structure2;
+				Atom[] ca2 = StructureTools.getRepresentativeAtomArray(s2);
+				Atom[] ca1Clone = StructureTools.cloneAtomArray(ca1);
+
+				StructureAlignment aligner = StructureAlignmentFactory.getAlgorithm(algorithm.getAlgorithmName());
+				if ( algorithm.getParameters() != null)
+					aligner.setParameters(algorithm.getParameters());
+				AFPChain afpChain = aligner.align(ca1Clone, ca2);
+				afpChain.setName1(name1);
+				afpChain.setName2(target);
+
+				String desc2 = s2.getPDBHeader().getDescription();
+				if ( desc2 == null)
+					desc2="";
+				afpChain.setDescription2(desc2);
+				long latency = System.nanoTime() - start;
+
+				String xml = AFPChainXMLConverter.toXML(afpChain, ca1Clone, ca2);
+				CallableStructureAlignment.writeXML(outFileF, name1, target, xml);
+
+				return new SearchResult(target, afpChain, latency);
+			} catch (Exception e) {
+				logger.error("Could not align {} to {}", name1, target, e);
+			}
+			return new SearchResult(target, null, System.nanoTime() - start);
+		}
 	}
 
 
@@ -450,6 +725,9 @@ public class MultiThreadedDBSearch {
 		interrupted.set(true);
 		ExecutorService pool = ConcurrencyTools.getThreadPool();
 		pool.shutdownNow();
+		ExecutorService loader = prefetcher;
+		if ( loader != null)
+			loader.shutdownNow();
 		try {
 			DomainProvider domainProvider = DomainProviderFactory.getDomainProvider();
 			if (domainProvider instanceof RemoteDomainProvider){
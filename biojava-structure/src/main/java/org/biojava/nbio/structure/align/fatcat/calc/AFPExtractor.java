@@ -0,0 +1,244 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.fatcat.calc;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.align.model.AFP;
+import org.biojava.nbio.structure.geometry.PackedSuperPositions;
+import org.biojava.nbio.structure.jama.Matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the aligned fragment pairs (AFPs) of two chains of CA atoms, as
+ * {@link AFPCalculator#extractAFPChains(FatCatParameters, org.biojava.nbio.structure.align.model.AFPChain, Atom[], Atom[])}
+ * always did, without creating any object for the fragment pairs that are rejected.
+ * <p/>
+ * The coordinates are copied once into flat arrays, and the centered coordinates and the end to
+ * end distance of every fragment are computed beforehand. The RMSD of a fragment pair is then found
+ * with the QCP method of {@link PackedSuperPositions}, without superposing the fragments.
+ * <p/>
+ * The rows of fragments of the first chain are split between the threads of the common
+ * {@link ForkJoinPool}, and the AFPs are returned in the order of the sequential loop.
+ *
+ * @since 5.1.2
+ */
+public class AFPExtractor {
+
+	/** Minimum number of fragment pairs compared by one task */
+	private static final int MIN_PAIRS_PER_TASK = 1 << 14;
+
+	private final int fragLen;
+	private final int add;
+	private final double disFilter;
+	private final double rmsdCut;
+	private final double badRmsd;
+	private final double fragScore;
+
+	private final int length1;
+	private final int length2;
+	private final int minLen;
+
+	/** coordinates of each fragment, centered on its centroid, 3 * fragLen values per fragment */
+	private final double[] centered1;
+	private final double[] centered2;
+	/** number of fragments of each chain */
+	private final int fragments1;
+	private final int fragments2;
+	/** distance between the first and last atoms of each fragment */
+	private final double[] ends1;
+	private final double[] ends2;
+
+	/**
+	 * @param params the parameters of the fragments: length, sparse sampling, filters and cutoffs
+	 * @param ca1 the CA atoms of the first chain
+	 * @param ca2 the CA atoms of the second chain
+	 */
+	public AFPExtractor(FatCatParameters params, Atom[] ca1, Atom[] ca2) {
+		fragLen = params.getFragLen();
+		add = params.getSparse() + 1;
+		disFilter = params.getDisFilter();
+		rmsdCut = params.getRmsdCut();
+		badRmsd = params.getBadRmsd();
+		fragScore = params.getFragScore();
+
+		length1 = ca1.length;
+		length2 = ca2.length;
+		minLen = Math.min(length1, length2);
+
+		fragments1 = Math.max(0, length1 - fragLen);
+		fragments2 = Math.max(0, length2 - fragLen);
+		centered1 = new double[3 * fragLen * fragments1];
+		centered2 = new double[3 * fragLen * fragments2];
+		ends1 = new double[fragments1];
+		ends2 = new double[fragments2];
+		initFragments(ca1, centered1, ends1);
+		initFragments(ca2, centered2, ends2);
+	}
+
+	private void initFragments(Atom[] ca, double[] centered, double[] ends) {
+		double[] coords = new double[3 * ca.length];
+		for (int i = 0; i < ca.length; i++) {
+			coords[3 * i] = ca[i].getX();
+			coords[3 * i + 1] = ca[i].getY();
+			coords[3 * i + 2] = ca[i].getZ();
+		}
+		for (int p = 0; p < ends.length; p++) {
+			double cx = 0, cy = 0, cz = 0;
+			for (int k = 0; k < fragLen; k++) {
+				cx += coords[3 * (p + k)];
+				cy += coords[3 * (p + k) + 1];
+				cz += coords[3 * (p + k) + 2];
+			}
+			cx /= fragLen;
+			cy /= fragLen;
+			cz /= fragLen;
+
+			int offset = 3 * fragLen * p;
+			for (int k = 0; k < fragLen; k++) {
+				double x = coords[3 * (p + k)] - cx;
+				double y = coords[3 * (p + k) + 1] - cy;
+				double z = coords[3 * (p + k) + 2] - cz;
+				centered[offset + 3 * k] = x;
+				centered[offset + 3 * k + 1] = y;
+				centered[offset + 3 * k + 2] = z;
+			}
+
+			int e = p + fragLen - 1;
+			double dx = coords[3 * p] - coords[3 * e];
+			double dy = coords[3 * p + 1] - coords[3 * e + 1];
+			double dz = coords[3 * p + 2] - coords[3 * e + 2];
+			ends[p] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		}
+	}
+
+	/**
+	 * Finds the AFPs, comparing the fragments in parallel if there are enough of them.
+	 *
+	 * @return the AFPs ordered by the position of the first fragment then of the second one
+	 */
+	public List<AFP> extract() {
+		int rows = (fragments1 + add - 1) / add;
+		int columns = (fragments2 + add - 1) / add;
+		int rowsPerTask = Math.max(1, MIN_PAIRS_PER_TASK / Math.max(1, columns));
+		if (rows <= rowsPerTask) {
+			return extract(0, fragments1);
+		}
+		return ForkJoinPool.commonPool().invoke(new ExtractTask(0, rows, rowsPerTask));
+	}
+
+	/**
+	 * Finds the AFPs of the rows of the sparse sampling from (inclusive) to to (exclusive),
+	 * splitting them in halves until there are few enough.
+	 */
+	private class ExtractTask extends RecursiveTask<List<AFP>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final int rowsPerTask;
+
+		ExtractTask(int from, int to, int rowsPerTask) {
+			this.from = from;
+			this.to = to;
+			this.rowsPerTask = rowsPerTask;
+		}
+
+		@Override
+		protected List<AFP> compute() {
+			if (to - from <= rowsPerTask) {
+				return extract(from * add, Math.min(to * add, fragments1));
+			}
+			int mid = (from + to) >>> 1;
+			ExtractTask second = new ExtractTask(mid, to, rowsPerTask);
+			second.fork();
+			List<AFP> afps = new ExtractTask(from, mid, rowsPerTask).compute();
+			afps.addAll(second.join());
+			return afps;
+		}
+	}
+
+	/**
+	 * Finds the AFPs of the fragments of the first chain starting from p1Start (inclusive)
+	 * to p1End (exclusive).
+	 */
+	private List<AFP> extract(int p1Start, int p1End) {
+		List<AFP> afps = new ArrayList<AFP>();
+		// AFPCalculator never filled the matrix and translation of the AFPs
+		Matrix r = new Matrix(3, 3);
+		for (int p1 = p1Start; p1 < p1End; p1 += add) {
+			for (int p2 = 0; p2 < fragments2; p2 += add) {
+				// difference between end-to-end distances
+				if (Math.abs(ends1[p1] - ends2[p2]) > disFilter) {
+					continue;
+				}
+				if (filterTerminal(p1, p2)) {
+					continue;
+				}
+				double rmsd = getRmsd(p1, p2);
+				if (rmsd < rmsdCut) {
+					AFP afp = new AFP();
+					afp.setP1(p1);
+					afp.setP2(p2);
+					afp.setFragLen(fragLen);
+					afp.setRmsd(rmsd);
+					afp.setM(r);
+					afp.setT(new double[3]);
+					afp.setScore(AFPCalculator.scoreAfp(afp, badRmsd, fragScore));
+					afps.add(afp);
+				}
+			}
+		}
+		return afps;
+	}
+
+	/**
+	 * Filter 2 for AFP extraction: the context. True if the longest alignment
+	 * containing the fragment pair is shorter than 30% of the shortest chain.
+	 */
+	private boolean filterTerminal(int p1b, int p2b) {
+		int p1e = p1b + fragLen - 1;
+		int p2e = p2b + fragLen - 1;
+		int d1 = (p1b < p2b) ? p1b : p2b;
+		int d2 = (length1 - p1e) < (length2 - p2e) ? (length1 - p1e) : (length2 - p2e);
+		int d3 = d1 + d2 + fragLen; // maximum alignment length from current AFP
+
+		/// DO NOT DO Math.round() this will give different results to FATCAT....
+		int d4 = (int) (0.3 * minLen);
+
+		return d3 < d4;
+	}
+
+	/**
+	 * Calculates the RMSD of the optimal superposition of two fragments.
+	 *
+	 * @param p1 the start of the fragment of the first chain
+	 * @param p2 the start of the fragment of the second chain
+	 * @return the RMSD
+	 */
+	public double getRmsd(int p1, int p2) {
+		return PackedSuperPositions.getRmsdAtOrigin(centered1, 3 * fragLen * p1, centered2, 3 * fragLen * p2, fragLen);
+	}
+}
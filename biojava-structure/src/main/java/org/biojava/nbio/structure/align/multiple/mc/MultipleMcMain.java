@@ -47,6 +47,7 @@ import org.biojava.nbio.structure.align.multiple.MultipleAlignment;
 import org.biojava.nbio.structure.align.multiple.MultipleAlignmentEnsemble;
 import org.biojava.nbio.structure.align.multiple.MultipleAlignmentEnsembleImpl;
 import org.biojava.nbio.structure.align.multiple.MultipleAlignmentImpl;
+import org.biojava.nbio.structure.align.multiple.util.MultipleAlignmentScorer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +65,10 @@ import org.slf4j.LoggerFactory;
  * or flexible alignment. The seed can also directly be the input for the
  * optimization. For that, look at {@link MultipleMcOptimizer}.
  * <p>
+ * The optimization runs as many chains in parallel as the number of threads
+ * in the parameters, each one from a consecutive random seed starting at the
+ * one in the parameters, and returns the alignment with the best MC score.
+ * <p>
  * A Demo on how to use the algorithm can be found in the demo package.
  *
  * @author Aleix Lafita
@@ -341,49 +346,58 @@ public class MultipleMcMain implements MultipleStructureAligner {
 			logger.warn("Seed generation failed.",e);
 		}
 
-		//Repeat the optimization in parallel - DISALLOWED
-		/*int threads = params.getNrThreads();
-			ExecutorService executor = Executors.newFixedThreadPool(threads);
-			List<Future<MultipleAlignment>> msaFuture =
-					new ArrayList<Future<MultipleAlignment>>();
-
-			for (int i=0; i<params.getNrThreads(); i++){
-				//Change the random seed for each parallelization
-				MultipleMcParameters paramsMC = (MultipleMcParameters) params;
-				paramsMC.setRandomSeed(paramsMC.getRandomSeed()+i);
+		//Repeat the optimization in parallel, each from a different seed
+		int threads = Math.max(params.getNrThreads(), 1);
+		List<MultipleMcOptimizer> optimizers =
+				new ArrayList<MultipleMcOptimizer>(threads);
 
-				Callable<MultipleAlignment> worker =
-						new MultipleMcOptimizer(
-								result, paramsMC, reference);
-
-	  			Future<MultipleAlignment> submit = executor.submit(worker);
-	  			msaFuture.add(submit);
-			}
+		for (int i=0; i<threads; i++){
+			//Change the random seed for each parallelization
+			MultipleMcParameters paramsMC = params.clone();
+			paramsMC.setRandomSeed(params.getRandomSeed()+i);
+			optimizers.add(new MultipleMcOptimizer(result, paramsMC, reference));
+		}
 
-			double maxScore = Double.NEGATIVE_INFINITY;
-			//Take the one with the best result (best MC-Score)
-			for (int i=0; i<msaFuture.size(); i++){
-				MultipleAlignment align = msaFuture.get(i).get();
-				double s = align.getScore(MultipleAlignmentScorer.MC_SCORE);
-				if (s > maxScore){
-					result = align;
-					maxScore = s;
+		if (threads == 1) {
+			result = optimizers.get(0).optimize();
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<MultipleAlignment>> msaFuture =
+						new ArrayList<Future<MultipleAlignment>>();
+				for (MultipleMcOptimizer worker : optimizers)
+					msaFuture.add(executor.submit(worker));
+
+				double maxScore = Double.NEGATIVE_INFINITY;
+				//Take the one with the best result (best MC-Score)
+				for (int i=0; i<msaFuture.size(); i++){
+					MultipleAlignment align = msaFuture.get(i).get();
+					double s = align.getScore(MultipleAlignmentScorer.MC_SCORE);
+					if (s > maxScore){
+						result = align;
+						maxScore = s;
+					}
 				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new StructureException("MC optimization interrupted.", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof StructureException)
+					throw (StructureException) cause;
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new StructureException("MC optimization failed.", cause);
+			} finally {
+				executor.shutdownNow();
 			}
-			Long runtime = System.currentTimeMillis()-ensemble.getIoTime();
-			ensemble.setCalculationTime(runtime);
-
-			result.setEnsemble(ensemble);
-			ensemble.addMultipleAlignment(result);
-			executor.shutdown();*/
-
-		MultipleMcOptimizer optimizer = new MultipleMcOptimizer(
-				result, params, reference);
+		}
 
 		Long runtime = System.currentTimeMillis()-ensemble.getIoTime();
 		ensemble.setCalculationTime(runtime);
 
-		result = optimizer.optimize();
 		result.setEnsemble(ensemble);
 		ensemble.addMultipleAlignment(result);
 
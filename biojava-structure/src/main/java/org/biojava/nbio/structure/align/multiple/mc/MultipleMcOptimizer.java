@@ -23,13 +23,15 @@ package org.biojava.nbio.structure.align.multiple.mc;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.Callable;
 
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.StructureException;
 import org.biojava.nbio.structure.align.multiple.Block;
@@ -38,9 +40,8 @@ import org.biojava.nbio.structure.align.multiple.MultipleAlignment;
 import org.biojava.nbio.structure.align.multiple.MultipleAlignmentEnsemble;
 import org.biojava.nbio.structure.align.multiple.util.CoreSuperimposer;
 import org.biojava.nbio.structure.align.multiple.util.MultipleAlignmentScorer;
-import org.biojava.nbio.structure.align.multiple.util.MultipleAlignmentTools;
 import org.biojava.nbio.structure.align.multiple.util.MultipleSuperimposer;
-import org.biojava.nbio.structure.jama.Matrix;
+import org.biojava.nbio.structure.geometry.SuperPositions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,6 +56,15 @@ import org.slf4j.LoggerFactory;
  * depend exclusively on the pairwise alignment (or user alignment) used to
  * generate the seed multiple alignment.
  * <p>
+ * During the optimization the alignment is kept as arrays of residue indices,
+ * together with the transformed coordinates, the pairwise distances and the
+ * scores of every aligned residue. The moves are applied in place and recorded
+ * in an undo log, so that a rejected move is reverted without copying the
+ * alignment, and only the columns and structures changed by a move are scored
+ * again. The result is the same as scoring the whole alignment after every
+ * move with {@link CoreSuperimposer} and
+ * {@link MultipleAlignmentScorer#getMCScore(MultipleAlignment, double, double, double)}.
+ * <p>
  * This class implements Callable, because multiple instances of the
  * optimization can be run in parallel.
  *
@@ -67,8 +77,18 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 	private static final Logger logger = LoggerFactory
 			.getLogger(MultipleMcOptimizer.class);
 
+	private static final int GAP = -1; // residue index of a gap
+
+	// Operations of the undo log
+	private static final int SET_RESIDUE = 0;
+	private static final int MOVE_RESIDUE = 1;
+	private static final int INSERT_COLUMN = 2;
+	private static final int REMOVE_COLUMN = 3;
+	private static final int SET_FREE = 4;
+
 	private Random rnd;
 	private MultipleSuperimposer imposer;
+	private int reference;
 
 	// Optimization parameters
 	private int Rmin; // number of aligned structures without a gap
@@ -80,10 +100,11 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 	private double Gopen; // Penalty for opening gap
 	private double Gextend; // Penalty for extending gaps
 	private double dCutoff; // max allowed residue distance
+	private double d0; // half-score distance, as in the TM score
+	private double A; // distance cutoff penalization
 
 	// Alignment Information
 	private MultipleAlignment msa; // Alignment to optimize
-	private List<SortedSet<Integer>> freePool; // unaligned residues
 	private List<Atom[]> atomArrays;
 
 	// Alignment Properties
@@ -91,6 +112,34 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 	private int blockNr; // the number of Blocks in the alignment
 	private double mcScore; // Optimization score, objective function
 
+	// Alignment state, indexed by Block, structure and position
+	private int[] blockSet; // BlockSet index of each Block
+	private int[] blockLength; // number of columns of each Block
+	private int[][][] residues; // aligned residues, GAP for a gap
+	private double[][][] coords; // transformed coordinates, 3 per position
+	private double[][][] distances; // average residue distances, -1 if none
+	private double[][][] scores; // residue scores
+	private double[][][] pairDistances; // [block][position][str1*size+str2]
+	private boolean[][] dirty; // columns to score again
+
+	private boolean[][] free; // unaligned residues of each structure
+	private double[][] atomCoords; // original coordinates of each structure
+
+	// Superposition of each BlockSet and structure, and its core residues
+	private Matrix4d[][] transforms;
+	private int[][][] coreResidues;
+	private int[][] coreResiduesLength;
+
+	// Reversible record of the changes made by the current move
+	private int[] undoLog = new int[64];
+	private int undoSize = 0;
+
+	// Buffers reused during the optimization
+	private int[] column;
+	private int[] coreBuffer = new int[64];
+	private boolean[] changed;
+	private Point3d point = new Point3d();
+
 	// Variables that store the history of the optimization - slower if on
 	private static final boolean history = false;
 	private static final String pathToHistory = "McOptHistory.csv";
@@ -123,6 +172,7 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 		Gextend = params.getGapExtension();
 		dCutoff = params.getDistanceCutoff();
 		imposer = new CoreSuperimposer(reference);
+		this.reference = reference;
 
 		if (params.getConvergenceSteps() == 0) {
 			List<Integer> lens = new ArrayList<Integer>();
@@ -141,6 +191,14 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 		C = 20 * size;
 		Lmin = params.getMinBlockLen();
 
+		// Same d0 and cutoff penalization as MultipleAlignmentScorer
+		int minLen = Integer.MAX_VALUE;
+		for (Atom[] atoms : atomArrays)
+			if (atoms.length < minLen)
+				minLen = atoms.length;
+		d0 = 1.24 * Math.cbrt((minLen) - 15.) - 1.8;
+		A = 20.0 / (1 + (dCutoff * dCutoff) / (d0 * d0));
+
 		// Delete all shorter than Lmin blocks, and empty blocksets
 		List<Block> toDelete = new ArrayList<Block>();
 		List<BlockSet> emptyBs = new ArrayList<BlockSet>();
@@ -175,47 +233,86 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 	}
 
 	/**
-	 * Initialize the freePool and all the variables needed for the
-	 * optimization.
+	 * Initialize the alignment state, the free residues and all the variables
+	 * needed for the optimization.
 	 *
 	 * @throws StructureException
 	 */
 	private void initialize() throws StructureException {
 
-		// Initialize alignment variables
-		freePool = new ArrayList<SortedSet<Integer>>();
-		List<List<Integer>> aligned = new ArrayList<List<Integer>>();
-
-		// Generate freePool residues from the ones not aligned
-		for (int i = 0; i < size; i++) {
-			List<Integer> residues = new ArrayList<Integer>();
-			for (BlockSet bs : msa.getBlockSets()) {
-				for (Block b : bs.getBlocks()) {
-					for (int l = 0; l < b.length(); l++) {
-						Integer residue = b.getAlignRes().get(i).get(l);
-						if (residue != null)
-							residues.add(residue);
+		List<BlockSet> blockSets = msa.getBlockSets();
+		blockSet = new int[blockNr];
+		blockLength = new int[blockNr];
+		residues = new int[blockNr][size][];
+		coords = new double[blockNr][size][];
+		distances = new double[blockNr][size][];
+		scores = new double[blockNr][size][];
+		pairDistances = new double[blockNr][][];
+		dirty = new boolean[blockNr][];
+
+		// Copy the Blocks, all their columns need a score
+		int b = 0;
+		for (int bs = 0; bs < blockSets.size(); bs++) {
+			for (Block block : blockSets.get(bs).getBlocks()) {
+				int length = block.length();
+				int capacity = length + 16;
+				blockSet[b] = bs;
+				blockLength[b] = length;
+				for (int str = 0; str < size; str++) {
+					residues[b][str] = new int[capacity];
+					coords[b][str] = new double[3 * capacity];
+					distances[b][str] = new double[capacity];
+					scores[b][str] = new double[capacity];
+					for (int pos = 0; pos < length; pos++) {
+						Integer residue = block.getAlignRes().get(str).get(pos);
+						residues[b][str][pos] = residue == null ? GAP : residue;
 					}
 				}
+				pairDistances[b] = new double[capacity][];
+				for (int pos = 0; pos < length; pos++)
+					pairDistances[b][pos] = new double[size * size];
+				dirty[b] = new boolean[capacity];
+				Arrays.fill(dirty[b], 0, length, true);
+				b++;
 			}
-			aligned.add(residues);
-			freePool.add(new TreeSet<Integer>());
 		}
 
-		// Add any residue not aligned to the free pool for every structure
-		for (int i = 0; i < size; i++) {
-			for (int k = 0; k < atomArrays.get(i).length; k++) {
-				if (!aligned.get(i).contains(k))
-					freePool.get(i).add(k);
+		// Any residue not aligned is free for every structure
+		free = new boolean[size][];
+		atomCoords = new double[size][];
+		for (int str = 0; str < size; str++) {
+			Atom[] atoms = atomArrays.get(str);
+			free[str] = new boolean[atoms.length];
+			Arrays.fill(free[str], true);
+			for (b = 0; b < blockNr; b++) {
+				for (int pos = 0; pos < blockLength[b]; pos++) {
+					if (residues[b][str][pos] != GAP)
+						free[str][residues[b][str][pos]] = false;
+				}
+			}
+			atomCoords[str] = new double[3 * atoms.length];
+			for (int i = 0; i < atoms.length; i++) {
+				atomCoords[str][3 * i] = atoms[i].getX();
+				atomCoords[str][3 * i + 1] = atoms[i].getY();
+				atomCoords[str][3 * i + 2] = atoms[i].getZ();
 			}
 		}
 
+		transforms = new Matrix4d[blockSets.size()][size];
+		coreResidues = new int[blockSets.size()][size][0];
+		coreResiduesLength = new int[blockSets.size()][size];
+		for (int bs = 0; bs < blockSets.size(); bs++) {
+			Matrix4d ident = new Matrix4d();
+			ident.setIdentity();
+			transforms[bs][reference] = ident;
+		}
+		column = new int[size];
+		changed = new boolean[size];
+
 		// Set the superposition and score for the seed aligment
 		checkGaps();
-		msa.clear();
-		imposer.superimpose(msa);
-		mcScore = MultipleAlignmentScorer.getMCScore(msa, Gopen, Gextend,
-				dCutoff);
+		undoSize = 0;
+		updateScore();
 
 		// Initialize the history variables
 		if (history) {
@@ -247,15 +344,8 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 
 		while (i < maxIter && conv < convergenceSteps) {
 
-			// Save the state of the system
-			MultipleAlignment lastMSA = msa.clone();
-			List<SortedSet<Integer>> lastFreePool = new ArrayList<SortedSet<Integer>>();
-			for (int k = 0; k < size; k++) {
-				SortedSet<Integer> p = new TreeSet<Integer>();
-				for (Integer l : freePool.get(k))
-					p.add(l);
-				lastFreePool.add(p);
-			}
+			// The state of the system is restored from the undo log
+			undoSize = 0;
 			double lastScore = mcScore;
 
 			boolean moved = false;
@@ -279,10 +369,7 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 			}
 
 			// Get the score of the new alignment
-			msa.clear();
-			imposer.superimpose(msa);
-			mcScore = MultipleAlignmentScorer.getMCScore(msa, Gopen, Gextend,
-					dCutoff);
+			updateScore();
 
 			double AS = mcScore - lastScore;
 			double prob = 1.0;
@@ -294,8 +381,8 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 				double p = rnd.nextDouble();
 				// Reject the move
 				if (p > prob) {
-					msa = lastMSA;
-					freePool = lastFreePool;
+					undo();
+					updateScore();
 					mcScore = lastScore;
 					conv++;
 
@@ -310,6 +397,7 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 
 			if (history) {
 				if (i % 100 == 1) {
+					updateAlignment();
 					lengthHistory.add(msa.length());
 					rmsdHistory.add(MultipleAlignmentScorer.getRMSD(msa));
 					scoreHistory.add(mcScore);
@@ -320,7 +408,7 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 		}
 
 		// Return Multiple Alignment
-		imposer.superimpose(msa);
+		updateAlignment();
 		MultipleAlignmentScorer.calculateScores(msa);
 		msa.putScore(MultipleAlignmentScorer.MC_SCORE, mcScore);
 
@@ -335,6 +423,456 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 		return msa;
 	}
 
+	/**
+	 * Copies the alignment state back to the Blocks of the MultipleAlignment
+	 * and superimposes it.
+	 *
+	 * @throws StructureException
+	 */
+	private void updateAlignment() throws StructureException {
+
+		List<Block> blocks = msa.getBlocks();
+		for (int b = 0; b < blockNr; b++) {
+			for (int str = 0; str < size; str++) {
+				List<Integer> aligned = blocks.get(b).getAlignRes().get(str);
+				aligned.clear();
+				for (int pos = 0; pos < blockLength[b]; pos++) {
+					int residue = residues[b][str][pos];
+					aligned.add(residue == GAP ? null : residue);
+				}
+			}
+		}
+		msa.clear();
+		imposer.superimpose(msa);
+	}
+
+	/**
+	 * Brings the superpositions, the residue distances and the MC score up to
+	 * date with the alignment state, with the same superposition as
+	 * {@link CoreSuperimposer} and the same score as
+	 * {@link MultipleAlignmentScorer}.
+	 * <p>
+	 * A structure is only superimposed again if its core residues or the ones
+	 * of the reference changed, and only the columns changed by a move or
+	 * containing a structure with a new superposition are scored again.
+	 */
+	private void updateScore() {
+
+		int totalCore = 0;
+		for (int bs = 0; bs < transforms.length; bs++) {
+
+			// Core positions of the BlockSet, as pairs of Block and position
+			int cores = 0;
+			for (int b = 0; b < blockNr; b++) {
+				if (blockSet[b] != bs)
+					continue;
+				for (int pos = 0; pos < blockLength[b]; pos++) {
+					if (isCore(b, pos)) {
+						if (2 * cores + 2 > coreBuffer.length)
+							coreBuffer = Arrays.copyOf(coreBuffer,
+									2 * coreBuffer.length);
+						coreBuffer[2 * cores] = b;
+						coreBuffer[2 * cores + 1] = pos;
+						cores++;
+					}
+				}
+			}
+			totalCore += cores;
+
+			boolean anyChanged = false;
+			Arrays.fill(changed, false);
+			for (int str = 0; str < size; str++) {
+				if (str != reference && superimpose(bs, str, cores)) {
+					changed[str] = true;
+					anyChanged = true;
+				}
+			}
+
+			for (int b = 0; b < blockNr; b++) {
+				if (blockSet[b] != bs)
+					continue;
+				for (int pos = 0; pos < blockLength[b]; pos++) {
+					if (dirty[b][pos]) {
+						updateColumn(b, pos, null);
+						dirty[b][pos] = false;
+					} else if (anyChanged)
+						updateColumn(b, pos, changed);
+				}
+			}
+		}
+		if (totalCore < 1) {
+			throw new IndexOutOfBoundsException(
+					"Alignment too short, core alignment length < 1.");
+		}
+
+		// Sum all the aligned residue scores and apply the gap penalty
+		double scoreMC = 0.0;
+		int openGaps = 0;
+		int extensionGaps = 0;
+		for (int str = 0; str < size; str++) {
+			boolean gapped = false;
+			for (int b = 0; b < blockNr; b++) {
+				for (int pos = 0; pos < blockLength[b]; pos++) {
+					if (residues[b][str][pos] == GAP) {
+						if (gapped)
+							extensionGaps++;
+						else {
+							gapped = true;
+							openGaps++;
+						}
+						continue;
+					} else
+						gapped = false;
+
+					if (distances[b][str][pos] == -1)
+						continue;
+					scoreMC += scores[b][str][pos] - A;
+				}
+			}
+		}
+		mcScore = scoreMC - (openGaps * Gopen + extensionGaps * Gextend);
+	}
+
+	/**
+	 * Superimposes the core residues of a structure in a BlockSet onto the
+	 * reference, if they changed since the last superposition.
+	 *
+	 * @param bs
+	 *            the BlockSet index
+	 * @param str
+	 *            the structure index
+	 * @param cores
+	 *            number of core positions in the buffer
+	 * @return true if the transformation of the structure changed
+	 */
+	private boolean superimpose(int bs, int str, int cores) {
+
+		int[] last = coreResidues[bs][str];
+		boolean same = transforms[bs][str] != null
+				&& coreResiduesLength[bs][str] == 2 * cores;
+		for (int c = 0; same && c < cores; c++) {
+			int b = coreBuffer[2 * c];
+			int pos = coreBuffer[2 * c + 1];
+			same = last[2 * c] == residues[b][reference][pos]
+					&& last[2 * c + 1] == residues[b][str][pos];
+		}
+		if (same)
+			return false;
+
+		if (last.length < 2 * cores) {
+			last = new int[2 * cores];
+			coreResidues[bs][str] = last;
+		}
+		Point3d[] fixed = new Point3d[cores];
+		Point3d[] moved = new Point3d[cores];
+		for (int c = 0; c < cores; c++) {
+			int b = coreBuffer[2 * c];
+			int pos = coreBuffer[2 * c + 1];
+			last[2 * c] = residues[b][reference][pos];
+			last[2 * c + 1] = residues[b][str][pos];
+			fixed[c] = atomPoint(reference, last[2 * c]);
+			moved[c] = atomPoint(str, last[2 * c + 1]);
+		}
+		coreResiduesLength[bs][str] = 2 * cores;
+
+		Matrix4d trans = SuperPositions.superpose(fixed, moved);
+		if (trans.equals(transforms[bs][str]))
+			return false;
+		transforms[bs][str] = trans;
+		return true;
+	}
+
+	private Point3d atomPoint(int str, int residue) {
+		double[] xyz = atomCoords[str];
+		return new Point3d(xyz[3 * residue], xyz[3 * residue + 1],
+				xyz[3 * residue + 2]);
+	}
+
+	/**
+	 * Transforms the residues of a column and updates their pairwise and
+	 * average distances and their scores.
+	 *
+	 * @param b
+	 *            the Block index
+	 * @param pos
+	 *            the position in the Block
+	 * @param rows
+	 *            the structures whose transformation changed, or null to
+	 *            update all of them
+	 */
+	private void updateColumn(int b, int pos, boolean[] rows) {
+
+		Matrix4d[] trans = transforms[blockSet[b]];
+		for (int str = 0; str < size; str++) {
+			int residue = residues[b][str][pos];
+			if (residue == GAP || (rows != null && !rows[str]))
+				continue;
+			double[] xyz = atomCoords[str];
+			point.set(xyz[3 * residue], xyz[3 * residue + 1],
+					xyz[3 * residue + 2]);
+			trans[str].transform(point);
+			coords[b][str][3 * pos] = point.x;
+			coords[b][str][3 * pos + 1] = point.y;
+			coords[b][str][3 * pos + 2] = point.z;
+		}
+
+		double[] pairs = pairDistances[b][pos];
+		for (int r1 = 0; r1 < size; r1++) {
+			if (residues[b][r1][pos] == GAP)
+				continue;
+			double[] c1 = coords[b][r1];
+			for (int r2 = r1 + 1; r2 < size; r2++) {
+				if (residues[b][r2][pos] == GAP
+						|| (rows != null && !rows[r1] && !rows[r2]))
+					continue;
+				double[] c2 = coords[b][r2];
+				double x = c1[3 * pos] - c2[3 * pos];
+				double y = c1[3 * pos + 1] - c2[3 * pos + 1];
+				double z = c1[3 * pos + 2] - c2[3 * pos + 2];
+				pairs[r1 * size + r2] = Math.sqrt(x * x + y * y + z * z);
+			}
+		}
+
+		// Average distances, accumulated in the order of the structures
+		int nonNullRes = 0;
+		for (int r1 = 0; r1 < size; r1++) {
+			double dist = -1;
+			if (residues[b][r1][pos] != GAP) {
+				for (int r2 = 0; r2 < size; r2++) {
+					if (r2 == r1 || residues[b][r2][pos] == GAP)
+						continue;
+					double distance = r1 < r2 ? pairs[r1 * size + r2]
+							: pairs[r2 * size + r1];
+					if (dist == -1)
+						dist = 1 + distance;
+					else
+						dist += distance;
+				}
+			}
+			distances[b][r1][pos] = dist;
+			if (dist != -1)
+				nonNullRes++;
+		}
+		for (int r = 0; r < size; r++) {
+			double d1 = distances[b][r][pos];
+			if (d1 != -1) {
+				d1 /= nonNullRes;
+				distances[b][r][pos] = d1;
+				scores[b][r][pos] = 20.0 / (1 + (d1 * d1) / (d0 * d0));
+			}
+		}
+	}
+
+	private boolean isCore(int b, int pos) {
+		for (int str = 0; str < size; str++) {
+			if (residues[b][str][pos] == GAP)
+				return false;
+		}
+		return true;
+	}
+
+	private int getCoreLength(int b) {
+		int core = 0;
+		for (int pos = 0; pos < blockLength[b]; pos++) {
+			if (isCore(b, pos))
+				core++;
+		}
+		return core;
+	}
+
+	private boolean isFree(int str, int residue) {
+		return residue >= 0 && residue < free[str].length
+				&& free[str][residue];
+	}
+
+	private void log(int value) {
+		if (undoSize == undoLog.length)
+			undoLog = Arrays.copyOf(undoLog, 2 * undoLog.length);
+		undoLog[undoSize++] = value;
+	}
+
+	/**
+	 * Sets the residue of a structure at a Block position.
+	 */
+	private void setResidue(int b, int str, int pos, int residue) {
+		log(residues[b][str][pos]);
+		log(b);
+		log(str);
+		log(pos);
+		log(SET_RESIDUE);
+		residues[b][str][pos] = residue;
+		dirty[b][pos] = true;
+	}
+
+	/**
+	 * Removes the residue of a structure at one Block position and inserts
+	 * another one at a second position, shifting the residues in between.
+	 */
+	private void moveResidue(int b, int str, int from, int to, int residue) {
+		int removed = shiftResidues(b, str, from, to, residue);
+		log(removed);
+		log(b);
+		log(str);
+		log(from);
+		log(to);
+		log(MOVE_RESIDUE);
+	}
+
+	private int shiftResidues(int b, int str, int from, int to, int residue) {
+		int[] row = residues[b][str];
+		int removed = row[from];
+		if (from < to)
+			System.arraycopy(row, from + 1, row, from, to - from);
+		else
+			System.arraycopy(row, to, row, to + 1, from - to);
+		row[to] = residue;
+		Arrays.fill(dirty[b], Math.min(from, to), Math.max(from, to) + 1, true);
+		return removed;
+	}
+
+	/**
+	 * Inserts an alignment column in a Block.
+	 */
+	private void insertColumn(int b, int pos, int[] col) {
+		addColumn(b, pos, col);
+		log(b);
+		log(pos);
+		log(INSERT_COLUMN);
+	}
+
+	/**
+	 * Removes an alignment column from a Block.
+	 */
+	private void removeColumn(int b, int pos) {
+		deleteColumn(b, pos, column);
+		for (int str = 0; str < size; str++)
+			log(column[str]);
+		log(b);
+		log(pos);
+		log(REMOVE_COLUMN);
+	}
+
+	private void setFree(int str, int residue, boolean value) {
+		log(free[str][residue] ? 1 : 0);
+		log(str);
+		log(residue);
+		log(SET_FREE);
+		free[str][residue] = value;
+	}
+
+	private void addColumn(int b, int pos, int[] col) {
+
+		int length = blockLength[b];
+		if (length == dirty[b].length)
+			grow(b);
+		for (int str = 0; str < size; str++) {
+			int[] row = residues[b][str];
+			System.arraycopy(row, pos, row, pos + 1, length - pos);
+			row[pos] = col[str];
+			System.arraycopy(coords[b][str], 3 * pos, coords[b][str],
+					3 * pos + 3, 3 * (length - pos));
+			System.arraycopy(distances[b][str], pos, distances[b][str],
+					pos + 1, length - pos);
+			System.arraycopy(scores[b][str], pos, scores[b][str], pos + 1,
+					length - pos);
+		}
+		// Reuse the distances of a removed column if there is one
+		double[] pairs = pairDistances[b][length];
+		if (pairs == null)
+			pairs = new double[size * size];
+		System.arraycopy(pairDistances[b], pos, pairDistances[b], pos + 1,
+				length - pos);
+		pairDistances[b][pos] = pairs;
+		System.arraycopy(dirty[b], pos, dirty[b], pos + 1, length - pos);
+		dirty[b][pos] = true;
+		blockLength[b]++;
+	}
+
+	private void deleteColumn(int b, int pos, int[] col) {
+
+		int length = blockLength[b];
+		for (int str = 0; str < size; str++) {
+			int[] row = residues[b][str];
+			col[str] = row[pos];
+			System.arraycopy(row, pos + 1, row, pos, length - pos - 1);
+			System.arraycopy(coords[b][str], 3 * pos + 3, coords[b][str],
+					3 * pos, 3 * (length - pos - 1));
+			System.arraycopy(distances[b][str], pos + 1, distances[b][str],
+					pos, length - pos - 1);
+			System.arraycopy(scores[b][str], pos + 1, scores[b][str], pos,
+					length - pos - 1);
+		}
+		double[] pairs = pairDistances[b][pos];
+		System.arraycopy(pairDistances[b], pos + 1, pairDistances[b], pos,
+				length - pos - 1);
+		pairDistances[b][length - 1] = pairs;
+		System.arraycopy(dirty[b], pos + 1, dirty[b], pos, length - pos - 1);
+		dirty[b][length - 1] = false;
+		blockLength[b]--;
+	}
+
+	private void grow(int b) {
+		int capacity = 2 * dirty[b].length + 1;
+		for (int str = 0; str < size; str++) {
+			residues[b][str] = Arrays.copyOf(residues[b][str], capacity);
+			coords[b][str] = Arrays.copyOf(coords[b][str], 3 * capacity);
+			distances[b][str] = Arrays.copyOf(distances[b][str], capacity);
+			scores[b][str] = Arrays.copyOf(scores[b][str], capacity);
+		}
+		pairDistances[b] = Arrays.copyOf(pairDistances[b], capacity);
+		dirty[b] = Arrays.copyOf(dirty[b], capacity);
+	}
+
+	/**
+	 * Reverts all the changes recorded in the undo log, in reverse order.
+	 */
+	private void undo() {
+
+		while (undoSize > 0) {
+			int op = undoLog[--undoSize];
+			switch (op) {
+			case SET_RESIDUE: {
+				int pos = undoLog[--undoSize];
+				int str = undoLog[--undoSize];
+				int b = undoLog[--undoSize];
+				residues[b][str][pos] = undoLog[--undoSize];
+				dirty[b][pos] = true;
+				break;
+			}
+			case MOVE_RESIDUE: {
+				int to = undoLog[--undoSize];
+				int from = undoLog[--undoSize];
+				int str = undoLog[--undoSize];
+				int b = undoLog[--undoSize];
+				shiftResidues(b, str, to, from, undoLog[--undoSize]);
+				break;
+			}
+			case INSERT_COLUMN: {
+				int pos = undoLog[--undoSize];
+				int b = undoLog[--undoSize];
+				deleteColumn(b, pos, column);
+				break;
+			}
+			case REMOVE_COLUMN: {
+				int pos = undoLog[--undoSize];
+				int b = undoLog[--undoSize];
+				for (int str = size - 1; str >= 0; str--)
+					column[str] = undoLog[--undoSize];
+				addColumn(b, pos, column);
+				break;
+			}
+			case SET_FREE: {
+				int residue = undoLog[--undoSize];
+				int str = undoLog[--undoSize];
+				free[str][residue] = undoLog[--undoSize] == 1;
+				break;
+			}
+			default:
+				throw new IllegalStateException("Unknown operation " + op);
+			}
+		}
+	}
+
 	/**
 	 * Method that loops through all the alignment columns and checks that there
 	 * are no more gaps than the maximum allowed, Rmin.
@@ -349,39 +887,25 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 
 		boolean shrinkedAny = false;
 
-		List<List<Integer>> shrinkColumns = new ArrayList<List<Integer>>();
-		// Loop for each Block
-		for (Block b : msa.getBlocks()) {
-			List<Integer> shrinkCol = new ArrayList<Integer>();
-			// Loop for each column in the Block
-			for (int res = 0; res < b.length(); res++) {
+		// Loop for each Block, removing the columns from the end
+		for (int b = 0; b < blockNr; b++) {
+			for (int res = blockLength[b] - 1; res >= 0; res--) {
 				int gapCount = 0;
 				// count the gaps in the column
 				for (int su = 0; su < size; su++) {
-					if (b.getAlignRes().get(su).get(res) == null)
+					if (residues[b][su][res] == GAP)
 						gapCount++;
 				}
 				if ((size - gapCount) < Rmin) {
-					// Add the column to the shrink list
-					shrinkCol.add(res);
-				}
-			}
-			shrinkColumns.add(shrinkCol);
-		}
-		// Shrink columns that have more gaps than allowed
-		for (int b = 0; b < blockNr; b++) {
-			for (int col = shrinkColumns.get(b).size() - 1; col >= 0; col--) {
-				for (int str = 0; str < size; str++) {
-					Block bk = msa.getBlock(b);
-					Integer residue = bk.getAlignRes().get(str)
-							.get(shrinkColumns.get(b).get(col));
-					bk.getAlignRes().get(str)
-							.remove((int) shrinkColumns.get(b).get(col));
-					if (residue != null) {
-						freePool.get(str).add(residue);
+					// Shrink the column
+					for (int str = 0; str < size; str++) {
+						int residue = residues[b][str][res];
+						if (residue != GAP)
+							setFree(str, residue, true);
 					}
+					removeColumn(b, res);
+					shrinkedAny = true;
 				}
-				shrinkedAny = true;
 			}
 		}
 		return shrinkedAny;
@@ -401,43 +925,39 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 	private boolean insertGap() {
 
 		// Select residue by maximum distance
-		Matrix residueDistances = MultipleAlignmentTools
-				.getAverageResidueDistances(msa);
 		double maxDist = Double.MIN_VALUE;
 		int structure = 0;
 		int block = 0;
 		int position = 0;
-		int column = 0;
 		for (int b = 0; b < blockNr; b++) {
-			for (int col = 0; col < msa.getBlock(b).length(); col++) {
+			for (int col = 0; col < blockLength[b]; col++) {
 				for (int str = 0; str < size; str++) {
-					if (residueDistances.get(str, column) != -1) {
-						if (residueDistances.get(str, column) > maxDist) {
+					double dist = distances[b][str][col];
+					if (residues[b][str][col] != GAP && dist != -1) {
+						if (dist > maxDist) {
 							// Geometric distribution
 							if (rnd.nextDouble() > 0.5) {
 								structure = str;
 								block = b;
 								position = col;
-								maxDist = residueDistances.get(str, column);
+								maxDist = dist;
 							}
 						}
 					}
 				}
-				column++;
 			}
 		}
-		Block bk = msa.getBlock(block);
-		if (bk.getCoreLength() <= Lmin)
+		if (getCoreLength(block) <= Lmin)
 			return false;
 
 		// Insert the gap at the position
-		Integer residueL = bk.getAlignRes().get(structure).get(position);
-		if (residueL != null) {
-			freePool.get(structure).add(residueL);
+		int residueL = residues[block][structure][position];
+		if (residueL != GAP) {
+			setFree(structure, residueL, true);
 		} else
 			return false; // If there was a gap already in the position.
 
-		bk.getAlignRes().get(structure).set(position, null);
+		setResidue(block, structure, position, GAP);
 		checkGaps();
 		return true;
 	}
@@ -457,190 +977,130 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 		int str = rnd.nextInt(size); // Select randomly the subunit
 		int rl = rnd.nextInt(2); // Select between moving right (0) or left (1)
 		int bk = rnd.nextInt(blockNr); // Select randomly the Block
-		int res = rnd.nextInt(msa.getBlock(bk).length());
+		int res = rnd.nextInt(blockLength[bk]);
 
-		Block block = msa.getBlock(bk);
-		if (block.getCoreLength() <= Lmin)
+		if (getCoreLength(bk) <= Lmin)
 			return false;
 
+		int[] row = residues[bk][str];
+		int length = blockLength[bk];
+
 		// When the pivot residue is null try to add a residue from the freePool
-		if (block.getAlignRes().get(str).get(res) == null) {
+		if (row[res] == GAP) {
 			// Residues not null at the right and left of the pivot null residue
 			int rightRes = res;
 			int leftRes = res;
 			// Find the boundary to the right abd left
-			while (block.getAlignRes().get(str).get(rightRes) == null
-					&& rightRes < block.length() - 1) {
+			while (row[rightRes] == GAP && rightRes < length - 1) {
 				rightRes++;
 			}
-			while (block.getAlignRes().get(str).get(leftRes) == null
-					&& leftRes > 0) {
+			while (row[leftRes] == GAP && leftRes > 0) {
 				leftRes--;
 			}
 
 			// If both are null return because the block is empty
-			if (block.getAlignRes().get(str).get(leftRes) == null
-					&& block.getAlignRes().get(str).get(rightRes) == null) {
+			if (row[leftRes] == GAP && row[rightRes] == GAP) {
 				return false;
-			} else if (block.getAlignRes().get(str).get(leftRes) == null) {
+			} else if (row[leftRes] == GAP) {
 				// Choose the sequentially previous residue of the known one
-				Integer residue = block.getAlignRes().get(str).get(rightRes) - 1;
-				if (freePool.get(str).contains(residue)) {
-					block.getAlignRes().get(str).set(res, residue);
-					freePool.get(str).remove(residue);
+				int residue = row[rightRes] - 1;
+				if (isFree(str, residue)) {
+					setResidue(bk, str, res, residue);
+					setFree(str, residue, false);
 				} else
 					return false;
-			} else if (block.getAlignRes().get(str).get(rightRes) == null) {
+			} else if (row[rightRes] == GAP) {
 				// Choose the sequentially next residue of the known one
-				Integer residue = block.getAlignRes().get(str).get(leftRes) + 1;
-				if (freePool.get(str).contains(residue)) {
-					block.getAlignRes().get(str).set(res, residue);
-					freePool.get(str).remove(residue);
+				int residue = row[leftRes] + 1;
+				if (isFree(str, residue)) {
+					setResidue(bk, str, res, residue);
+					setFree(str, residue, false);
 				} else
 					return false;
 			} else {
 				// If boundaries are consecutive no residue can be added
-				if (block.getAlignRes().get(str).get(rightRes) == block
-						.getAlignRes().get(str).get(leftRes) + 1) {
+				if (row[rightRes] == row[leftRes] + 1) {
 					return false;
 				} else {
 					// Choose randomly a residue in between left and right
-					Integer residue = rnd.nextInt(block.getAlignRes().get(str)
-							.get(rightRes)
-							- block.getAlignRes().get(str).get(leftRes) - 1)
-							+ block.getAlignRes().get(str).get(leftRes) + 1;
-
-					if (freePool.get(str).contains(residue)) {
-						block.getAlignRes().get(str).set(res, residue);
-						freePool.get(str).remove(residue);
+					int residue = rnd.nextInt(row[rightRes] - row[leftRes] - 1)
+							+ row[leftRes] + 1;
+
+					if (isFree(str, residue)) {
+						setResidue(bk, str, res, residue);
+						setFree(str, residue, false);
 					}
 				}
 			}
 			return true;
 		}
 
-		// When residue different than null shift the whole block
-		switch (rl) {
-		case 0: // Move to the right
-
-			// Find the nearest boundary to the left of the pivot
-			int leftBoundary = res - 1;
-			int leftPrevRes = res;
-			while (true) {
-				if (leftBoundary < 0)
-					break;
-				else {
-					if (block.getAlignRes().get(str).get(leftBoundary) == null)
-						break; // Break if there is a gap (this is the boundary)
-					else if (block.getAlignRes().get(str).get(leftPrevRes) > block
-							.getAlignRes().get(str).get(leftBoundary) + 1)
-						break; // Break if there is a discontinuity
-				}
-				leftPrevRes = leftBoundary;
-				leftBoundary--;
+		// Find the nearest boundary to the left of the pivot
+		int leftBoundary = res - 1;
+		int leftPrevRes = res;
+		while (true) {
+			if (leftBoundary < 0)
+				break;
+			else {
+				if (row[leftBoundary] == GAP)
+					break; // Break if there is a gap (this is the boundary)
+				else if (row[leftPrevRes] > row[leftBoundary] + 1)
+					break; // Break if there is a discontinuity
 			}
-			leftBoundary++;
-
-			// Find the nearest boundary to the right of the pivot
-			int rightBoundary = res + 1;
-			int rightPrevRes = res;
-			while (true) {
-				if (rightBoundary == block.length())
-					break;
-				else {
-					if (block.getAlignRes().get(str).get(rightBoundary) == null)
-						break; // Break if there is a gap
-					else if (block.getAlignRes().get(str).get(rightPrevRes) + 1 < block
-							.getAlignRes().get(str).get(rightBoundary))
-						break; // Discontinuity
-				}
-				rightPrevRes = rightBoundary;
-				rightBoundary++;
+			leftPrevRes = leftBoundary;
+			leftBoundary--;
+		}
+		leftBoundary++;
+
+		// Find the nearest boundary to the right of the pivot
+		int rightBoundary = res + 1;
+		int rightPrevRes = res;
+		while (true) {
+			if (rightBoundary == length)
+				break;
+			else {
+				if (row[rightBoundary] == GAP)
+					break; // Break if there is a gap
+				else if (row[rightPrevRes] + 1 < row[rightBoundary])
+					break; // Discontinuity
 			}
-			rightBoundary--;
+			rightPrevRes = rightBoundary;
+			rightBoundary++;
+		}
+		rightBoundary--;
+
+		// Residues at the boundary
+		int resR = row[rightBoundary];
+		int resL = row[leftBoundary];
 
-			// Residues at the boundary
-			Integer resR0 = block.getAlignRes().get(str).get(rightBoundary);
-			Integer resL0 = block.getAlignRes().get(str).get(leftBoundary);
+		// When residue different than null shift the whole block
+		switch (rl) {
+		case 0: // Move to the right
 
 			// Remove the residue at the right of the block
-			block.getAlignRes().get(str).remove(rightBoundary);
-			if (resR0 != null)
-				freePool.get(str).add(resR0);
+			setFree(str, resR, true);
 
 			// Add the residue at the left of the block
-			if (resL0 != null)
-				resL0 -= 1;
-
-			if (freePool.get(str).contains(resL0)) {
-				block.getAlignRes().get(str).add(leftBoundary, resL0);
-				freePool.get(str).remove(resL0);
-			} else
-				block.getAlignRes().get(str).add(leftBoundary, null);
-
+			int added = GAP;
+			if (isFree(str, resL - 1)) {
+				added = resL - 1;
+				setFree(str, added, false);
+			}
+			moveResidue(bk, str, rightBoundary, leftBoundary, added);
 			break;
 
 		case 1: // Move to the left
 
-			// Find the nearest boundary to the left of the pivot
-			int leftBoundary1 = res - 1;
-			int leftPrevRes1 = res;
-			while (true) {
-				if (leftBoundary1 < 0)
-					break;
-				else {
-					if (block.getAlignRes().get(str).get(leftBoundary1) == null)
-						break; // Break if there is a gap (this is the boundary)
-					else if (block.getAlignRes().get(str).get(leftPrevRes1) > block
-							.getAlignRes().get(str).get(leftBoundary1) + 1)
-						break; // Break if there is a discontinuity
-				}
-				leftPrevRes1 = leftBoundary1;
-				leftBoundary1--;
-			}
-			leftBoundary1++;
-
-			// Find the nearest boundary to the right of the pivot
-			int rightBoundary1 = res + 1;
-			int rightPrevRes1 = res;
-			while (true) {
-				if (rightBoundary1 == block.length())
-					break;
-				else {
-					if (block.getAlignRes().get(str).get(rightBoundary1) == null)
-						break; // Break if there is a gap
-					else if (block.getAlignRes().get(str).get(rightPrevRes1) + 1 < block
-							.getAlignRes().get(str).get(rightBoundary1))
-						break; // Discontinuity
-				}
-				rightPrevRes1 = rightBoundary1;
-				rightBoundary1++;
-			}
-			rightBoundary1--;
-
-			// Residues at the boundary
-			Integer resR1 = block.getAlignRes().get(str).get(rightBoundary1);
-			Integer resL1 = block.getAlignRes().get(str).get(leftBoundary1);
-
 			// Add the residue at the right of the block
-			if (resR1 != null)
-				resR1 += 1;
-
-			if (freePool.get(str).contains(resR1)) {
-				if (rightBoundary1 == block.length() - 1) {
-					block.getAlignRes().get(str).add(resR1);
-				} else
-					block.getAlignRes().get(str).add(rightBoundary1 + 1, resR1);
-
-				freePool.get(str).remove(resR1);
-			} else
-				block.getAlignRes().get(str).add(rightBoundary1 + 1, null);
+			int added1 = GAP;
+			if (isFree(str, resR + 1)) {
+				added1 = resR + 1;
+				setFree(str, added1, false);
+			}
 
 			// Remove the residue at the left of the block
-			block.getAlignRes().get(str).remove(leftBoundary1);
-			if (resL1 != null)
-				freePool.get(str).add(resL1);
-
+			moveResidue(bk, str, leftBoundary, rightBoundary, added1);
+			setFree(str, resL, true);
 			break;
 		}
 		checkGaps();
@@ -658,9 +1118,9 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 
 		int rl = rnd.nextInt(2); // Select expanding right (0) or left (1)
 		int bk = rnd.nextInt(blockNr); // Select randomly the Block
-		int res = rnd.nextInt(msa.getBlock(bk).length());
+		int res = rnd.nextInt(blockLength[bk]);
 
-		Block block = msa.getBlock(bk);
+		int[][] block = residues[bk];
 		int gaps = 0; // store the number of gaps in the expansion
 
 		switch (rl) {
@@ -672,15 +1132,14 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 				previousPos[str] = -1;
 
 			// Search t the right for >Rmin non consecutive residues
-			while (block.length() - 1 > rightBound) {
+			while (blockLength[bk] - 1 > rightBound) {
 				int noncontinuous = 0;
 				for (int str = 0; str < size; str++) {
-					if (block.getAlignRes().get(str).get(rightBound) == null) {
+					if (block[str][rightBound] == GAP) {
 						continue;
 					} else if (previousPos[str] == -1) {
-						previousPos[str] = block.getAlignRes().get(str)
-								.get(rightBound);
-					} else if (block.getAlignRes().get(str).get(rightBound) > previousPos[str] + 1) {
+						previousPos[str] = block[str][rightBound];
+					} else if (block[str][rightBound] > previousPos[str] + 1) {
 						noncontinuous++;
 					}
 				}
@@ -694,30 +1153,16 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 
 			// Expand the block with the residues at the subunit boundaries
 			for (int str = 0; str < size; str++) {
-				Integer residueR = block.getAlignRes().get(str).get(rightBound);
-				if (residueR == null) {
-					if (rightBound == block.length() - 1) {
-						block.getAlignRes().get(str).add(null);
-					} else
-						block.getAlignRes().get(str).add(rightBound + 1, null);
-					gaps++;
-				} else if (freePool.get(str).contains(residueR + 1)) {
-					Integer residueAdd = residueR + 1;
-					if (rightBound == block.length() - 1) {
-						block.getAlignRes().get(str).add(residueAdd);
-					} else {
-						block.getAlignRes().get(str)
-								.add(rightBound + 1, residueAdd);
-					}
-					freePool.get(str).remove(residueAdd);
+				int residueR = block[str][rightBound];
+				if (residueR != GAP && isFree(str, residueR + 1)) {
+					column[str] = residueR + 1;
+					setFree(str, residueR + 1, false);
 				} else {
-					if (rightBound == block.length() - 1)
-						block.getAlignRes().get(str).add(null);
-					else
-						block.getAlignRes().get(str).add(rightBound + 1, null);
+					column[str] = GAP;
 					gaps++;
 				}
 			}
+			insertColumn(bk, rightBound + 1, column);
 			break;
 
 		case 1:
@@ -731,12 +1176,11 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 			while (leftBoundary > 0) {
 				int noncontinuous = 0;
 				for (int str = 0; str < size; str++) {
-					if (block.getAlignRes().get(str).get(leftBoundary) == null)
+					if (block[str][leftBoundary] == GAP)
 						continue;
 					else if (nextPos[str] == -1) {
-						nextPos[str] = block.getAlignRes().get(str)
-								.get(leftBoundary);
-					} else if (block.getAlignRes().get(str).get(leftBoundary) < nextPos[str] - 1) {
+						nextPos[str] = block[str][leftBoundary];
+					} else if (block[str][leftBoundary] < nextPos[str] - 1) {
 						noncontinuous++;
 					}
 				}
@@ -748,20 +1192,16 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 
 			// Expand the block with the residues at the subunit boundaries
 			for (int str = 0; str < size; str++) {
-				Integer residueL = block.getAlignRes().get(str)
-						.get(leftBoundary);
-				if (residueL == null) {
-					block.getAlignRes().get(str).add(leftBoundary, null);
-					gaps++;
-				} else if (freePool.get(str).contains(residueL - 1)) {
-					Integer residueAdd = residueL - 1;
-					block.getAlignRes().get(str).add(leftBoundary, residueAdd);
-					freePool.get(str).remove(residueAdd);
+				int residueL = block[str][leftBoundary];
+				if (residueL != GAP && isFree(str, residueL - 1)) {
+					column[str] = residueL - 1;
+					setFree(str, residueL - 1, false);
 				} else {
-					block.getAlignRes().get(str).add(leftBoundary, null);
+					column[str] = GAP;
 					gaps++;
 				}
 			}
+			insertColumn(bk, leftBoundary, column);
 			break;
 		}
 		if (size - gaps >= Rmin)
@@ -777,44 +1217,39 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 	private boolean shrinkBlock() {
 
 		// Select column by maximum distance
-		Matrix residueDistances = MultipleAlignmentTools
-				.getAverageResidueDistances(msa);
-		double[] colDistances = new double[msa.length()];
 		double maxDist = Double.MIN_VALUE;
 		int position = 0;
 		int block = 0;
-		int column = 0;
-		for (int b = 0; b < msa.getBlocks().size(); b++) {
-			for (int col = 0; col < msa.getBlock(b).length(); col++) {
+		for (int b = 0; b < blockNr; b++) {
+			for (int col = 0; col < blockLength[b]; col++) {
+				double colDistance = 0;
 				int normalize = 0;
 				for (int s = 0; s < size; s++) {
-					if (residueDistances.get(s, column) != -1) {
-						colDistances[column] += residueDistances.get(s, column);
+					if (residues[b][s][col] != GAP
+							&& distances[b][s][col] != -1) {
+						colDistance += distances[b][s][col];
 						normalize++;
 					}
 				}
-				colDistances[column] /= normalize;
-				if (colDistances[column] > maxDist) {
+				colDistance /= normalize;
+				if (colDistance > maxDist) {
 					if (rnd.nextDouble() > 0.5) {
-						maxDist = colDistances[column];
+						maxDist = colDistance;
 						position = col;
 						block = b;
 					}
 				}
-				column++;
 			}
 		}
-		Block currentBlock = msa.getBlock(block);
-		if (currentBlock.getCoreLength() <= Lmin)
+		if (getCoreLength(block) <= Lmin)
 			return false;
 
 		for (int str = 0; str < size; str++) {
-			Integer residue = currentBlock.getAlignRes().get(str).get(position);
-
-			currentBlock.getAlignRes().get(str).remove(position);
-			if (residue != null)
-				freePool.get(str).add(residue);
+			int residue = residues[block][str][position];
+			if (residue != GAP)
+				setFree(str, residue, true);
 		}
+		removeColumn(block, position);
 		return true;
 	}
 
@@ -51,6 +51,29 @@ public class MultipleMcParameters implements ConfigStrucAligParams {
 		reset();
 	}
 
+	/**
+	 * Copy constructor.
+	 *
+	 * @param o
+	 *            the parameters to copy
+	 * @since 5.1.2
+	 */
+	public MultipleMcParameters(MultipleMcParameters o) {
+		this.randomSeed = o.randomSeed;
+		this.minBlockLen = o.minBlockLen;
+		this.minAlignedStructures = o.minAlignedStructures;
+		this.gapOpen = o.gapOpen;
+		this.gapExtension = o.gapExtension;
+		this.distanceCutoff = o.distanceCutoff;
+		this.convergenceSteps = o.convergenceSteps;
+		this.nrThreads = o.nrThreads;
+	}
+
+	@Override
+	public MultipleMcParameters clone() {
+		return new MultipleMcParameters(this);
+	}
+
 	@Override
 	public List<String> getUserConfigParameters() {
 
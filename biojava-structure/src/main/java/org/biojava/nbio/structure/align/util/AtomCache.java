@@ -22,10 +22,9 @@ package org.biojava.nbio.structure.align.util;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 import org.biojava.nbio.core.util.InputStreamProvider;
 import org.biojava.nbio.structure.*;
@@ -54,9 +53,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A utility class that provides easy access to Structure objects. If you are running a script that is frequently
- * re-using the same PDB structures, the AtomCache keeps an in-memory cache of the files for quicker access. The cache
- * is a soft-cache, this means it won't cause out of memory exceptions, but garbage collects the data if the Java
- * virtual machine needs to free up space. The AtomCache is thread-safe.
+ * re-using the same PDB structures, the AtomCache can keep an in-memory cache of the parsed structures for quicker access,
+ * see {@link #setStructureCacheSize(long)}. The cache is a soft-cache, this means it won't cause out of memory exceptions,
+ * but garbage collects the data if the Java virtual machine needs to free up space. The AtomCache is thread-safe.
  *
  * @author Andreas Prlic
  * @author Spencer Bliven
@@ -91,8 +90,12 @@ public class AtomCache {
 
 	private String cachePath;
 
-	// make sure IDs are loaded uniquely
-	private Collection<String> currentlyLoading = Collections.synchronizedCollection(new TreeSet<String>());
+	/**
+	 * The default maximum number of atoms kept in the in-memory structure cache: 0, i.e. no caching
+	 */
+	public static final long DEFAULT_STRUCTURE_CACHE_SIZE = 0;
+
+	private volatile StructureCache structureCache;
 
 	private String path;
 
@@ -147,9 +150,10 @@ public class AtomCache {
 		fetchBehavior = FetchBehavior.DEFAULT;
 		obsoleteBehavior = ObsoleteBehavior.DEFAULT;
 
-		currentlyLoading.clear();
 		params = new FileParsingParameters();
 
+		setStructureCacheSize(DEFAULT_STRUCTURE_CACHE_SIZE);
+
 		setUseMmCif(false);
 		setUseMmtf(true);
 
@@ -805,9 +809,27 @@ public class AtomCache {
 		return this.useMmtf;
 	}
 
-	private boolean checkLoading(String name) {
-		return currentlyLoading.contains(name);
+	/**
+	 * Sets the size of the in-memory cache of parsed structures used by {@link #getStructureForPdbId(String)}
+	 * and thus by all methods loading structures by PDB ID. The cache is bounded by the total number
+	 * of atoms of the cached structures, evicting the least recently used ones when full.
+	 * Every request returns a copy of the cached structure, see {@link StructureCache}.
+	 * Setting a new size discards all structures currently cached.
+	 * @param maxAtoms the maximum sum of the number of atoms of all cached structures, if 0 or negative no caching is done
+	 * @since 5.1.2
+	 */
+	public void setStructureCacheSize(long maxAtoms) {
+		structureCache = new StructureCache(Math.max(0, maxAtoms));
+	}
 
+	/**
+	 * Returns the in-memory cache of parsed structures, e.g. to get its hit/miss statistics.
+	 * @return
+	 * @see #setStructureCacheSize(long)
+	 * @since 5.1.2
+	 */
+	public StructureCache getStructureCache() {
+		return structureCache;
 	}
 
 	/**
@@ -845,16 +867,22 @@ public class AtomCache {
 		return n;
 	}
 
+	/**
+	 * Does nothing: concurrent loading of the same structure is handled by the {@link StructureCache}.
+	 * @param name
+	 * @deprecated no longer called when loading a structure
+	 */
+	@Deprecated
 	protected void flagLoading(String name) {
-		if (!currentlyLoading.contains(name)) {
-
-			currentlyLoading.add(name);
-		}
 	}
 
+	/**
+	 * Does nothing: concurrent loading of the same structure is handled by the {@link StructureCache}.
+	 * @param name
+	 * @deprecated no longer called when loading a structure
+	 */
+	@Deprecated
 	protected void flagLoadingFinished(String name) {
-
-		currentlyLoading.remove(name);
 	}
 
 	/**
@@ -870,17 +898,49 @@ public class AtomCache {
 		if(pdbId.length() != 4) {
 			throw new StructureException("Unrecognized PDB ID: "+pdbId);
 		}
-		while (checkLoading(pdbId)) {
-			// waiting for loading to be finished...
 
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				logger.error(e.getMessage());
+		final String id = pdbId;
+		Callable<Structure> loader = new Callable<Structure>() {
+			@Override
+			public Structure call() throws IOException, StructureException {
+				return loadStructureByPdbId(id);
 			}
-
+		};
+
+		// even if nothing is cached, concurrent requests of the same ID are loaded only once
+		return structureCache.get(getStructureCacheKey(pdbId), loader);
+	}
+
+	/**
+	 * Returns the key identifying a structure in the in-memory cache: the PDB ID
+	 * plus everything that affects how it is loaded and parsed.
+	 */
+	private String getStructureCacheKey(String pdbId) {
+		String format = useMmtf ? "mmtf" : (useMmCif ? "cif" : "pdb");
+		StringBuilder sb = new StringBuilder();
+		sb.append(pdbId.toLowerCase()).append('|')
+			.append(format).append('|')
+			.append(path).append('|')
+			.append(fetchBehavior).append('|')
+			.append(obsoleteBehavior);
+		if (!useMmtf) {
+			// parsing parameters are not used for mmtf
+			sb.append('|')
+				.append(params.isParseSecStruc()).append(',')
+				.append(params.isAlignSeqRes()).append(',')
+				.append(params.isParseCAOnly()).append(',')
+				.append(params.isHeaderOnly()).append(',')
+				.append(Arrays.toString(params.getAcceptedAtomNames())).append(',')
+				.append(params.getMaxAtoms()).append(',')
+				.append(params.getAtomCaThreshold()).append(',')
+				.append(params.isParseBioAssembly()).append(',')
+				.append(params.shouldCreateAtomBonds()).append(',')
+				.append(params.shouldCreateAtomCharges());
 		}
+		return sb.toString();
+	}
 
+	private Structure loadStructureByPdbId(String pdbId) throws IOException, StructureException {
 		Structure s;
 		if (useMmtf) {
 			logger.debug("loading from mmtf");
@@ -915,17 +975,11 @@ public class AtomCache {
 
 		logger.debug("Loading structure {} from mmCIF file {}.", pdbId, path);
 		Structure s;
-		flagLoading(pdbId);
-		try {
-			MMCIFFileReader reader = new MMCIFFileReader(path);
-			reader.setFetchBehavior(fetchBehavior);
-			reader.setObsoleteBehavior(obsoleteBehavior);
-			reader.setFileParsingParameters(params);
-			s = reader.getStructureById(pdbId.toLowerCase());
-
-		} finally {
-			flagLoadingFinished(pdbId);
-		}
+		MMCIFFileReader reader = new MMCIFFileReader(path);
+		reader.setFetchBehavior(fetchBehavior);
+		reader.setObsoleteBehavior(obsoleteBehavior);
+		reader.setFileParsingParameters(params);
+		s = reader.getStructureById(pdbId.toLowerCase());
 
 		return s;
 	}
@@ -934,19 +988,13 @@ public class AtomCache {
 
 		logger.debug("Loading structure {} from PDB file {}.", pdbId, path);
 		Structure s;
-		flagLoading(pdbId);
-		try {
-			PDBFileReader reader = new PDBFileReader(path);
-			reader.setFetchBehavior(fetchBehavior);
-			reader.setObsoleteBehavior(obsoleteBehavior);
-
-			reader.setFileParsingParameters(params);
+		PDBFileReader reader = new PDBFileReader(path);
+		reader.setFetchBehavior(fetchBehavior);
+		reader.setObsoleteBehavior(obsoleteBehavior);
 
-			s = reader.getStructureById(pdbId.toLowerCase());
+		reader.setFileParsingParameters(params);
 
-		} finally {
-			flagLoadingFinished(pdbId);
-		}
+		s = reader.getStructureById(pdbId.toLowerCase());
 
 		return s;
 	}
@@ -0,0 +1,171 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The names of the targets of a database search whose results are already
+ * written, one per line in a file, so that an interrupted search can be
+ * resumed without aligning them again.
+ * <p>
+ * The names are appended and flushed in batches by
+ * {@link #markCompleted(Collection)}, which should only be called once the
+ * corresponding results are flushed to the result file. A line that was only
+ * partly written when the search was interrupted is discarded when the
+ * checkpoint is read back. The names kept from a previous run are written to a
+ * temporary file that then replaces the checkpoint, so that they are not lost
+ * if the search is interrupted while they are written.
+ *
+ * @since 5.1.2
+ */
+public class DBSearchCheckpoint implements Closeable {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private final Set<String> completed;
+	private final Writer writer;
+
+	/**
+	 * Opens a checkpoint file, creating it if needed.
+	 *
+	 * @param file the checkpoint file
+	 * @param resume true to keep the targets recorded by a previous run,
+	 *            false to start again from an empty checkpoint
+	 * @throws IOException if the file can not be read or written
+	 */
+	public DBSearchCheckpoint(File file, boolean resume) throws IOException {
+		this.file = file;
+		completed = new HashSet<String>();
+		StringBuilder complete = new StringBuilder();
+		if (resume && file.exists()) {
+			String content = read(file);
+			int start = 0;
+			int end;
+			// only the lines terminated by a new line were completely written
+			while ((end = content.indexOf('\n', start)) >= 0) {
+				String name = content.substring(start, end).trim();
+				if (!name.isEmpty() && completed.add(name)) {
+					complete.append(name).append('\n');
+				}
+				start = end + 1;
+			}
+		}
+		replace(file, complete.toString());
+		writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF8);
+	}
+
+	/**
+	 * Replaces the content of a file by writing it to a temporary file first.
+	 */
+	private static void replace(File file, String content) throws IOException {
+		File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmp);
+		try {
+			out.write(content.getBytes(UTF8));
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] data = new byte[(int) file.length()];
+			int length = 0;
+			int n;
+			while (length < data.length && (n = in.read(data, length, data.length - length)) > 0) {
+				length += n;
+			}
+			return new String(data, 0, length, UTF8);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return the checkpoint file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @param name the name of a target
+	 * @return true if the target is recorded as completed
+	 */
+	public synchronized boolean isCompleted(String name) {
+		return completed.contains(name);
+	}
+
+	/**
+	 * @return the number of targets recorded as completed
+	 */
+	public synchronized int getNrCompleted() {
+		return completed.size();
+	}
+
+	/**
+	 * Records targets as completed and flushes them to the checkpoint file.
+	 *
+	 * @param names the names of the targets whose results are written
+	 * @throws IOException if the checkpoint can not be written
+	 */
+	public synchronized void markCompleted(Collection<String> names) throws IOException {
+		StringBuilder lines = new StringBuilder();
+		for (String name : names) {
+			if (completed.add(name)) {
+				lines.append(name).append('\n');
+			}
+		}
+		if (lines.length() > 0) {
+			writer.write(lines.toString());
+			writer.flush();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+}
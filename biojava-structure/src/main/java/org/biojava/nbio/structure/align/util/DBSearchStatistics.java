@@ -0,0 +1,117 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.util;
+
+import java.util.Arrays;
+
+/**
+ * The throughput and the latencies of the alignments of a database search.
+ * The methods can be called from any thread while the search is running.
+ *
+ * @since 5.1.2
+ */
+public class DBSearchStatistics {
+
+	private final long startTime;
+	private long endTime = -1;
+
+	private long[] latencies = new long[64];
+	private int count = 0;
+
+	/**
+	 * Starts measuring the throughput from now.
+	 */
+	public DBSearchStatistics() {
+		startTime = System.nanoTime();
+	}
+
+	/**
+	 * Records one completed alignment.
+	 *
+	 * @param latency the time taken by the alignment of the target, in nanoseconds
+	 */
+	public synchronized void record(long latency) {
+		if (count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, 2 * count);
+		}
+		latencies[count++] = latency;
+	}
+
+	/**
+	 * Stops the clock of the throughput.
+	 */
+	public synchronized void stop() {
+		if (endTime < 0) {
+			endTime = System.nanoTime();
+		}
+	}
+
+	/**
+	 * @return the number of recorded alignments
+	 */
+	public synchronized int getNrAlignments() {
+		return count;
+	}
+
+	/**
+	 * @return the time since the start, or until {@link #stop()}, in seconds
+	 */
+	public synchronized double getElapsedSeconds() {
+		long end = endTime < 0 ? System.nanoTime() : endTime;
+		return (end - startTime) / 1e9;
+	}
+
+	/**
+	 * @return the number of alignments per second
+	 */
+	public synchronized double getAlignmentsPerSecond() {
+		double seconds = getElapsedSeconds();
+		return seconds > 0 ? count / seconds : 0;
+	}
+
+	/**
+	 * Returns a percentile of the latencies of the alignments, with the
+	 * nearest rank method.
+	 *
+	 * @param percentile between 0 (the fastest alignment) and 100 (the slowest)
+	 * @return the latency in milliseconds, 0 if nothing was recorded
+	 */
+	public synchronized double getLatencyPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Not a percentile: " + percentile);
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(latencies, count);
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(percentile / 100 * count);
+		return sorted[Math.max(0, rank - 1)] / 1e6;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d alignments in %.1f s (%.2f alignments/s), latency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+				count, getElapsedSeconds(), getAlignmentsPerSecond(),
+				getLatencyPercentile(50), getLatencyPercentile(90), getLatencyPercentile(99),
+				getLatencyPercentile(100));
+	}
+}
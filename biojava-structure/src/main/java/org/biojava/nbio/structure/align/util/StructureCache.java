@@ -0,0 +1,319 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.util;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.StructureTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory cache of parsed {@link Structure} objects, bounded by the total number of atoms
+ * of the cached structures. When the bound is exceeded the least recently used structures are evicted.
+ * Structures are additionally held through soft references, so that the garbage collector can
+ * reclaim them if memory gets low.
+ * <p>
+ * Concurrent requests for the same key are loaded only once: the first caller loads the structure
+ * and the others wait for it to finish.
+ * <p>
+ * A structure that is shared is never handed out: callers get a copy made with {@link Structure#clone()}
+ * of a cached structure, and threads waiting for another thread's load each get a copy made before the
+ * loading thread returns. The loading thread gets the loaded instance itself when it is not cached, so that
+ * without caching a structure is neither copied nor shared.
+ * Note that, as for any cloned structure, bonds between different groups are not copied.
+ * <p>
+ * The cache is thread-safe.
+ *
+ * @since 5.1.2
+ * @see AtomCache#setStructureCacheSize(long)
+ */
+public class StructureCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(StructureCache.class);
+
+	private static class CacheEntry {
+		private final SoftReference<Structure> structure;
+		private final long weight;
+
+		public CacheEntry(Structure structure, long weight) {
+			this.structure = new SoftReference<Structure>(structure);
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * A load in progress, which other threads can join until the loading thread has loaded the structure.
+	 */
+	private static class Load {
+		private final FutureTask<Structure> task;
+		private final CountDownLatch done = new CountDownLatch(1);
+		// copies of the uncached structure for the threads that joined
+		private final ConcurrentLinkedQueue<Structure> copies = new ConcurrentLinkedQueue<Structure>();
+		private volatile boolean cached;
+		private int waiting;
+		private boolean closed;
+
+		public Load(Callable<Structure> loader) {
+			task = new FutureTask<Structure>(loader);
+		}
+
+		/**
+		 * @return false if the loading thread does not make a copy for this thread any more
+		 */
+		public synchronized boolean join() {
+			if (closed) return false;
+			waiting++;
+			return true;
+		}
+
+		/**
+		 * @return the number of threads that joined
+		 */
+		public synchronized int close() {
+			closed = true;
+			return waiting;
+		}
+	}
+
+	private final long maxAtoms;
+
+	// access-ordered, so that iteration starts at the least recently used entry
+	private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+	private long totalAtoms;
+
+	private final ConcurrentHashMap<String, Load> currentlyLoading = new ConcurrentHashMap<String, Load>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Constructs a new cache holding at most the given total number of atoms.
+	 * @param maxAtoms the maximum sum of the number of atoms of all cached structures.
+	 * A single structure with more atoms than this is never cached.
+	 */
+	public StructureCache(long maxAtoms) {
+		this.maxAtoms = maxAtoms;
+	}
+
+	/**
+	 * Returns the structure for the given key. If it is not cached, it is loaded with the given loader,
+	 * which is called only once for concurrent requests of the same key.
+	 * @param key the key identifying the structure, including anything that affects how it is parsed
+	 * @param loader the loader to call if the structure is not cached
+	 * @return a copy of the cached structure or of the structure loaded by another thread, the loaded
+	 * structure itself if this thread loaded it and it was not cached, or null if the loader returned null
+	 * @throws IOException if the loader throws it
+	 * @throws StructureException if the loader throws it
+	 */
+	public Structure get(String key, Callable<Structure> loader) throws IOException, StructureException {
+
+		while (true) {
+			Structure s = getCached(key);
+			if (s != null) {
+				hits.incrementAndGet();
+				return s.clone();
+			}
+
+			Load load = new Load(loader);
+			Load running = currentlyLoading.putIfAbsent(key, load);
+
+			if (running == null) {
+				// we are the loading thread
+				misses.incrementAndGet();
+				return load(key, load);
+			}
+			if (running.join()) {
+				// another thread is loading the same structure, we wait for it
+				hits.incrementAndGet();
+				return waitFor(running);
+			}
+			// the other thread has just finished loading, look again
+		}
+	}
+
+	private Structure load(String key, Load load) throws IOException, StructureException {
+		// the task keeps the exceptions of the loader for getResult
+		load.task.run();
+		// from now on no thread joins the load, so we know how many copies to make
+		int waiting = load.close();
+		currentlyLoading.remove(key, load);
+		Structure s;
+		try {
+			s = getResult(load.task);
+			if (s != null) {
+				load.cached = put(key, s);
+				if (!load.cached) {
+					for (int i=0;i<waiting;i++) {
+						load.copies.add(s.clone());
+					}
+				}
+			}
+		} finally {
+			load.done.countDown();
+		}
+		if (s == null) return null;
+		return load.cached ? s.clone() : s;
+	}
+
+	private static Structure waitFor(Load load) throws IOException, StructureException {
+		try {
+			load.done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StructureException("Interrupted while waiting for structure to load", e);
+		}
+		Structure s = getResult(load.task);
+		if (s == null) return null;
+		if (load.cached) return s.clone();
+		Structure copy = load.copies.poll();
+		if (copy == null) {
+			throw new StructureException("Could not copy the structure loaded by another thread");
+		}
+		return copy;
+	}
+
+	private static Structure getResult(FutureTask<Structure> task) throws IOException, StructureException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StructureException("Interrupted while waiting for structure to load", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof StructureException) throw (StructureException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new StructureException(cause);
+		}
+	}
+
+	private synchronized Structure getCached(String key) {
+		CacheEntry entry = entries.get(key);
+		if (entry == null) return null;
+
+		Structure s = entry.structure.get();
+		if (s == null) {
+			// garbage collected
+			entries.remove(key);
+			totalAtoms -= entry.weight;
+		}
+		return s;
+	}
+
+	/**
+	 * Puts the structure in the cache, evicting the least recently used ones if needed.
+	 * @return true if the structure was cached, false if it is too large for the cache
+	 */
+	private synchronized boolean put(String key, Structure s) {
+		long weight = StructureTools.getNrAtoms(s);
+		if (maxAtoms <= 0) return false;
+		if (weight > maxAtoms) {
+			logger.debug("Structure {} with {} atoms is larger than the cache size, not caching it", key, weight);
+			return false;
+		}
+
+		CacheEntry old = entries.put(key, new CacheEntry(s, weight));
+		if (old != null) totalAtoms -= old.weight;
+		totalAtoms += weight;
+
+		Iterator<Map.Entry<String, CacheEntry>> it = entries.entrySet().iterator();
+		while (totalAtoms > maxAtoms && it.hasNext()) {
+			Map.Entry<String, CacheEntry> eldest = it.next();
+			it.remove();
+			totalAtoms -= eldest.getValue().weight;
+			evictions.incrementAndGet();
+			logger.debug("Evicted structure {} from cache", eldest.getKey());
+		}
+		return true;
+	}
+
+	/**
+	 * Removes all structures from the cache. The statistics are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		totalAtoms = 0;
+	}
+
+	/**
+	 * @return the number of structures currently in the cache
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the sum of the number of atoms of all structures currently in the cache
+	 */
+	public synchronized long getTotalAtoms() {
+		return totalAtoms;
+	}
+
+	/**
+	 * @return the maximum sum of the number of atoms of all cached structures
+	 */
+	public long getMaxAtoms() {
+		return maxAtoms;
+	}
+
+	/**
+	 * @return the number of requests that were served from the cache or by waiting for another thread loading the same key
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requests that needed loading the structure
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of structures that were removed from the cache to keep it within its size
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("StructureCache [%d structures, %d/%d atoms, %d hits, %d misses, %d evictions]",
+				size(), getTotalAtoms(), maxAtoms, getHits(), getMisses(), getEvictions());
+	}
+}
@@ -74,8 +74,11 @@ public class SynchronizedOutFile {
 			counter++;
 			tmp[counter] = message;
 			if (counter >= ARR_SIZE - 1 ) {
-				writeArr();
-				counter = -1;
+				try {
+					writeArr();
+				} finally {
+					counter = -1;
+				}
 			}
 		}
 
@@ -84,8 +87,11 @@ public class SynchronizedOutFile {
 
 	public synchronized void flush() throws IOException {
 		synchronized (counter){
-			writeArr();
-			counter = -1;
+			try {
+				writeArr();
+			} finally {
+				counter = -1;
+			}
 		}
 	}
 
@@ -94,6 +100,10 @@ public class SynchronizedOutFile {
 		tmp = new String[ARR_SIZE];
 	}
 
+	/** appends the buffered messages to the file
+	 *
+	 * @throws IOException if the file can not be written, in which case the messages are not all written
+	 */
 	private void writeArr() throws IOException{
 
 
@@ -112,12 +122,12 @@ public class SynchronizedOutFile {
 				out.write(data, 0, data.length);
 			}
 
-		} catch (Exception x) {
-			System.err.println(x);
 		} finally {
 			if (out != null) {
 				out.flush();
 				out.close();
+			} else if (fileOutputStream != null) {
+				fileOutputStream.close();
 			}
 		}
 	}
@@ -21,14 +21,21 @@
 package org.biojava.nbio.structure.asa;
 
 import org.biojava.nbio.structure.*;
+import org.biojava.nbio.structure.contact.Contact;
+import org.biojava.nbio.structure.contact.Grid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.vecmath.Point3d;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 
 
 
@@ -58,6 +65,10 @@ public class AsaCalculator {
 	public static final double DEFAULT_PROBE_SIZE = 1.4;
 	public static final int DEFAULT_NTHREADS = 1;
 
+	/**
+	 * The number of atoms calculated as a single unit of work in the parallel calculation
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64;
 
 
 	// Chothia's amino acid atoms vdw radii
@@ -77,19 +88,32 @@ public class AsaCalculator {
 
 
 
-	private class AsaCalcWorker implements Runnable {
+	/**
+	 * Calculates the ASAs of a range of atoms, splitting it in halves until
+	 * it is not larger than the block size, so that idle threads of the pool can steal work.
+	 */
+	private class AsaCalcTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
 
-		private int i;
+		private int from;
+		private int to;
 		private double[] asas;
 
-		public AsaCalcWorker(int i, double[] asas) {
-			this.i = i;
+		public AsaCalcTask(int from, int to, double[] asas) {
+			this.from = from;
+			this.to = to;
 			this.asas = asas;
 		}
 
 		@Override
-		public void run() {
-			asas[i] = calcSingleAsa(i);
+		protected void compute() {
+			if (to - from <= blockSize) {
+				calcAsaBlock(from, to, asas);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new AsaCalcTask(from, mid, asas), new AsaCalcTask(mid, to, asas));
 		}
 	}
 
@@ -99,9 +123,20 @@ public class AsaCalculator {
 	private double[] radii;
 	private double probe;
 	private int nThreads;
-	private Point3d[] spherePoints;
 	private double cons;
 
+	private ExecutorService executor;
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+	private long lastCalcTime;
+
+	// flat x,y,z arrays, 3 consecutive values per atom/point, so that the inner loop doesn't need Point3d objects
+	private double[] coords;
+	private double[] spherePoints;
+
+	// neighbor lists in compressed form: the neighbors of atom i are neighbors[neighborStarts[i]] to neighbors[neighborStarts[i+1]-1]
+	private int[] neighborStarts;
+	private int[] neighbors;
+
 	/**
 	 * Constructs a new AsaCalculator. Subsequently call {@link #calculateAsas()}
 	 * or {@link #getGroupAsas()} to calculate the ASAs
@@ -126,6 +161,8 @@ public class AsaCalculator {
 			radii[i] = getRadius(atoms[i]);
 		}
 
+		coords = toFlatCoords(atomCoords);
+
 		// initialising the sphere points to sample
 		spherePoints = generateSpherePoints(nSpherePoints);
 
@@ -139,7 +176,9 @@ public class AsaCalculator {
 	 * @param probe the probe size
 	 * @param nSpherePoints the number of points to be used in generating the spherical
 	 * dot-density, the more points the more accurate (and slower) calculation
-	 * @param nThreads the number of parallel threads to use for the calculation
+	 * @param nThreads the number of parallel threads to use for the calculation: more than 1 to
+	 * calculate in parallel on the common fork-join pool, see {@link #setExecutor(ExecutorService)}
+	 * to use a given number of threads
 	 * @throws IllegalArgumentException if any atom in the array is a Hydrogen atom
 	 */
 	public AsaCalculator(Atom[] atoms, double probe, int nSpherePoints, int nThreads) {
@@ -159,6 +198,8 @@ public class AsaCalculator {
 			radii[i] = getRadius(atoms[i]);
 		}
 
+		coords = toFlatCoords(atomCoords);
+
 		// initialising the sphere points to sample
 		spherePoints = generateSpherePoints(nSpherePoints);
 
@@ -194,6 +235,8 @@ public class AsaCalculator {
 			radii[i] = radius;
 		}
 
+		coords = toFlatCoords(atomCoords);
+
 		// initialising the sphere points to sample
 		spherePoints = generateSpherePoints(nSpherePoints);
 
@@ -230,24 +273,29 @@ public class AsaCalculator {
 
 	/**
 	 * Calculates the Accessible Surface Areas for the atoms given in constructor and with parameters given.
-	 * Beware that the parallel implementation is quite memory hungry. It scales well as long as there is
-	 * enough memory available.
+	 * If more than 1 thread was requested (or an executor was set with {@link #setExecutor(ExecutorService)})
+	 * the atoms are split in blocks of {@link #getBlockSize()} atoms that are calculated in parallel,
+	 * on the common fork-join pool unless an executor was set.
+	 * The time taken can be retrieved afterwards with {@link #getLastCalcTime()}.
 	 * @return an array with asa values corresponding to each atom of the input array
 	 */
 	public double[] calculateAsas() {
 
+		long start = System.nanoTime();
+
 		double[] asas = new double[atomCoords.length];
 
-		if (nThreads<=1) { // (i.e. it will also be 1 thread if 0 or negative number specified)
-			for (int i=0;i<atomCoords.length;i++) {
-				asas[i] = calcSingleAsa(i);
-			}
+		if (neighborStarts==null) {
+			findNeighborIndices();
+		}
 
-		} else {
-			// NOTE the multithreaded calculation does not scale up well in some systems,
-			// why? I guess some memory/garbage collect problem? I tried increasing Xmx in pc8201 but didn't help
+		if (executor==null && nThreads<=1) { // (i.e. it will also be 1 thread if 0 or negative number specified)
+			calcAsaBlock(0, atomCoords.length, asas);
 
-			// Following scaling tests are for 3hbx, calculating ASA of full asym unit (6 chains):
+		} else {
+			// NOTE the older implementation (one task per atom on a new fixed thread pool for every call)
+			// didn't scale well in some systems. Following scaling tests were done with it
+			// for 3hbx, calculating ASA of full asym unit (6 chains):
 
 			// SCALING test done in merlinl01 (12 cores, Xeon X5670  @ 2.93GHz, 24GB RAM)
 			//1 threads, time:  8.8s -- x1.0
@@ -279,102 +327,253 @@ public class AsaCalculator {
 			//11 threads, time:  1.0s -- x10.9
 			//12 threads, time:  0.9s -- x11.4
 
+			// Now the atoms are calculated in blocks on the common fork-join pool, or on the executor
+			// set by the caller to use a given number of threads, and the calling thread waits for
+			// the results instead of spinning on isTerminated()
 
+			if (executor==null) {
+				ForkJoinPool.commonPool().invoke(new AsaCalcTask(0, atomCoords.length, asas));
+			} else if (executor instanceof ForkJoinPool) {
+				((ForkJoinPool) executor).invoke(new AsaCalcTask(0, atomCoords.length, asas));
+			} else {
+				calcAsasWithExecutor(asas);
+			}
+		}
 
-			ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+		lastCalcTime = (System.nanoTime() - start) / 1000000;
 
+		logger.debug("Calculated ASA for {} atoms. Time: {} s", atomCoords.length, lastCalcTime/1000.0);
 
-			for (int i=0;i<atomCoords.length;i++) {
-				threadPool.submit(new AsaCalcWorker(i,asas));
-			}
+		return asas;
+	}
 
-			threadPool.shutdown();
+	/**
+	 * Calculates the ASAs by submitting blocks of atoms to the executor given in
+	 * {@link #setExecutor(ExecutorService)} and waiting for all of them to finish.
+	 * @param asas
+	 */
+	private void calcAsasWithExecutor(final double[] asas) {
+
+		List<Future<Void>> futures = new ArrayList<>();
+
+		for (int from=0;from<atomCoords.length;from+=blockSize) {
+			final int blockStart = from;
+			final int blockEnd = Math.min(from+blockSize, atomCoords.length);
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					calcAsaBlock(blockStart, blockEnd, asas);
+					return null;
+				}
+			}));
+		}
 
-			while (!threadPool.isTerminated());
+		try {
+			for (Future<Void> future:futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			for (Future<Void> future:futures) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for ASA calculation", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
 
+	/**
+	 * Calculates the ASAs of atoms from (inclusive) to to (exclusive), storing them in asas
+	 */
+	private void calcAsaBlock(int from, int to, double[] asas) {
+		for (int i=from;i<to;i++) {
+			asas[i] = calcSingleAsa(i);
 		}
+	}
 
-		return asas;
+	/**
+	 * Sets an executor to run the calculation on, overriding the number of threads given in
+	 * the constructor. If it is a {@link ForkJoinPool} the work is split recursively, otherwise
+	 * blocks of {@link #getBlockSize()} atoms are submitted to it. The executor is owned by the
+	 * caller, who can reuse it for several calculations, for instance a <code>new ForkJoinPool(n)</code>
+	 * to use n threads.
+	 * Passing null reverts to using the number of threads given in constructor.
+	 * @param executor
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
 	}
 
 	/**
-	 * Returns list of 3d coordinates of points on a sphere using the
-	 * Golden Section Spiral algorithm.
+	 * Returns the number of atoms calculated as a single unit of work in parallel calculations.
+	 * @return
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Sets the number of atoms calculated as a single unit of work in parallel calculations.
+	 * Default is {@value #DEFAULT_BLOCK_SIZE}
+	 * @param blockSize
+	 * @throws IllegalArgumentException if blockSize is smaller than 1
+	 */
+	public void setBlockSize(int blockSize) {
+		if (blockSize<1)
+			throw new IllegalArgumentException("Block size must be at least 1");
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Returns the wall time in milliseconds that the last call to {@link #calculateAsas()} took,
+	 * including the neighbor search if it was done within that call.
+	 * @return
+	 */
+	public long getLastCalcTime() {
+		return lastCalcTime;
+	}
+
+	/**
+	 * Returns the 3d coordinates of points on a sphere using the
+	 * Golden Section Spiral algorithm, as a flat array with 3 consecutive x,y,z values per point.
 	 * @param nSpherePoints the number of points to be used in generating the spherical dot-density
 	 * @return
 	 */
-	private Point3d[] generateSpherePoints(int nSpherePoints) {
-		Point3d[] points = new Point3d[nSpherePoints];
+	private double[] generateSpherePoints(int nSpherePoints) {
+		double[] points = new double[3*nSpherePoints];
 		double inc = Math.PI * (3.0 - Math.sqrt(5.0));
 		double offset = 2.0 / nSpherePoints;
 		for (int k=0;k<nSpherePoints;k++) {
 			double y = k * offset - 1.0 + (offset / 2.0);
 			double r = Math.sqrt(1.0 - y*y);
 			double phi = k * inc;
-			points[k] = new Point3d(Math.cos(phi)*r, y, Math.sin(phi)*r);
+			points[3*k]   = Math.cos(phi)*r;
+			points[3*k+1] = y;
+			points[3*k+2] = Math.sin(phi)*r;
 		}
 		return points;
 	}
 
 	/**
-	 * Returns list of indices of atoms within probe distance to atom k.
-	 * @param k index of atom for which we want neighbor indices
+	 * Copies the given points into a flat array with 3 consecutive x,y,z values per point.
+	 * @param points
+	 * @return
 	 */
-	private Integer[] findNeighborIndices(int k) {
-		// looking at a typical protein case, number of neighbours are from ~10 to ~50, with an average of ~30
-		// Thus 40 seems to be a good compromise for the starting capacity
-		ArrayList<Integer> neighbor_indices = new ArrayList<>(40);
+	private static double[] toFlatCoords(Point3d[] points) {
+		double[] flat = new double[3*points.length];
+		for (int i=0;i<points.length;i++) {
+			flat[3*i]   = points[i].x;
+			flat[3*i+1] = points[i].y;
+			flat[3*i+2] = points[i].z;
+		}
+		return flat;
+	}
 
-		double radius = radii[k] + probe + probe;
+	/**
+	 * Finds for every atom the indices of the atoms within probe distance to it, i.e.
+	 * all atoms j for which the distance to atom i is below radius(i) + radius(j) + 2*probe.
+	 * The candidate pairs are found with a {@link Grid} using as cutoff the largest
+	 * possible such distance, so that the search is linear in the number of atoms.
+	 * The neighbors are stored in {@link #neighborStarts} and {@link #neighbors}.
+	 */
+	private void findNeighborIndices() {
 
-		for (int i=0;i<atomCoords.length;i++) {
-			if (i==k) continue;
+		int n = atomCoords.length;
 
-			double dist = atomCoords[i].distance(atomCoords[k]);
+		int[] counts = new int[n];
+		List<Contact> contacts = null;
 
-			if (dist < radius + radii[i]) {
-				neighbor_indices.add(i);
+		if (n>0) {
+			double maxRadius = 0;
+			for (double radius:radii) {
+				maxRadius = Math.max(maxRadius, radius);
 			}
 
+			// the grid works at a precision of 0.01A, we round the cutoff up so that no neighbor can be missed
+			double cutoff = Math.ceil((2.0*maxRadius + 2.0*probe) * 100.0) / 100.0 + 0.01;
+
+			Grid grid = new Grid(cutoff);
+			grid.addCoords(atomCoords);
+			contacts = grid.getIndicesContacts();
+
+			for (Contact contact:contacts) {
+				if (isNeighbor(contact.getI(), contact.getJ(), contact.getDistance())) {
+					counts[contact.getI()]++;
+				}
+				if (isNeighbor(contact.getJ(), contact.getI(), contact.getDistance())) {
+					counts[contact.getJ()]++;
+				}
+			}
+		}
+
+		neighborStarts = new int[n+1];
+		for (int i=0;i<n;i++) {
+			neighborStarts[i+1] = neighborStarts[i] + counts[i];
+		}
+
+		neighbors = new int[neighborStarts[n]];
+
+		if (contacts==null) return;
+
+		// we reuse counts as the next free position for each atom
+		for (int i=0;i<n;i++) {
+			counts[i] = neighborStarts[i];
+		}
+		for (Contact contact:contacts) {
+			if (isNeighbor(contact.getI(), contact.getJ(), contact.getDistance())) {
+				neighbors[counts[contact.getI()]++] = contact.getJ();
+			}
+			if (isNeighbor(contact.getJ(), contact.getI(), contact.getDistance())) {
+				neighbors[counts[contact.getJ()]++] = contact.getI();
+			}
 		}
+	}
 
-		Integer[] indicesArray = new Integer[neighbor_indices.size()];
-		indicesArray = neighbor_indices.toArray(indicesArray);
-		return indicesArray;
+	/**
+	 * Tells whether atom j is a neighbor of atom k given their distance.
+	 * The sum is done in the same order for both atoms of a pair as in the original brute-force search,
+	 * so that exactly the same neighbors are found.
+	 */
+	private boolean isNeighbor(int k, int j, double dist) {
+		double radius = radii[k] + probe + probe;
+		return dist < radius + radii[j];
 	}
 
 	private double calcSingleAsa(int i) {
-		Point3d atom_i = atomCoords[i];
-		Integer[] neighbor_indices = findNeighborIndices(i);
-		int n_neighbor = neighbor_indices.length;
+		int start = neighborStarts[i];
+		int n_neighbor = neighborStarts[i+1] - start;
 		int j_closest_neighbor = 0;
 		double radius = probe + radii[i];
 
+		double atom_i_x = coords[3*i];
+		double atom_i_y = coords[3*i+1];
+		double atom_i_z = coords[3*i+2];
+
 		int n_accessible_point = 0;
 
-		for (Point3d point: spherePoints){
+		for (int k=0;k<spherePoints.length;k+=3) {
 			boolean is_accessible = true;
-			Point3d test_point = new Point3d(point.x*radius + atom_i.x,
-					point.y*radius + atom_i.y,
-					point.z*radius + atom_i.z);
-
-			int[] cycled_indices = new int[n_neighbor];
-			int arind = 0;
-			for (int ind=j_closest_neighbor;ind<n_neighbor;ind++) {
-				cycled_indices[arind] = ind;
-				arind++;
-			}
-			for (int ind=0;ind<j_closest_neighbor;ind++){
-				cycled_indices[arind] = ind;
-				arind++;
-			}
-
-			for (int j: cycled_indices) {
-				Point3d atom_j = atomCoords[neighbor_indices[j]];
-				double r = radii[neighbor_indices[j]] + probe;
-				double diff_sq = test_point.distanceSquared(atom_j);
-				if (diff_sq < r*r) {
-					j_closest_neighbor = j;
+			double test_point_x = spherePoints[k]*radius + atom_i_x;
+			double test_point_y = spherePoints[k+1]*radius + atom_i_y;
+			double test_point_z = spherePoints[k+2]*radius + atom_i_z;
+
+			// we cycle through the neighbors starting at the one that occluded the previous point:
+			// neighboring sphere points are likely to be occluded by the same atom
+			for (int c=0;c<n_neighbor;c++) {
+				int ind = j_closest_neighbor + c;
+				if (ind>=n_neighbor) ind -= n_neighbor;
+
+				int j = neighbors[start+ind];
+				double r = radii[j] + probe;
+				double dx = test_point_x - coords[3*j];
+				double dy = test_point_y - coords[3*j+1];
+				double dz = test_point_z - coords[3*j+2];
+				if (dx*dx + dy*dy + dz*dz < r*r) {
+					j_closest_neighbor = ind;
 					is_accessible = false;
 					break;
 				}
@@ -139,6 +139,7 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 		}
 
 		long start = System.currentTimeMillis();
+		long maxCalcTime = 0;
 
 		// we only need to calculate ASA for that subset (any translation of those will have same values)
 		for (String molecId:uniqAsaChains.keySet()) {
@@ -147,6 +148,7 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 					AsaCalculator.DEFAULT_PROBE_SIZE, nSpherePoints, nThreads);
 
 			double[] atomAsas = asaCalc.calculateAsas();
+			maxCalcTime = Math.max(maxCalcTime, asaCalc.getLastCalcTime());
 
 			chainAsas.put(molecId, atomAsas);
 
@@ -154,7 +156,7 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 		long end = System.currentTimeMillis();
 
 		logger.debug("Calculated uncomplexed ASA for "+uniqAsaChains.size()+" orientation-unique chains. "
-					+ "Time: "+((end-start)/1000.0)+" s");
+					+ "Time: "+((end-start)/1000.0)+" s. Slowest chain: "+(maxCalcTime/1000.0)+" s");
 
 		start = System.currentTimeMillis();
 
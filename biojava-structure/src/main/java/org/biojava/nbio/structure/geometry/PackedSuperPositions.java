@@ -0,0 +1,696 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.geometry;
+
+import javax.vecmath.Matrix4d;
+
+/**
+ * Reentrant superposition of coordinates packed in flat arrays, with the
+ * Quaternion-Based Characteristic Polynomial method of {@link SuperPositionQCP}.
+ * <p>
+ * A block of coordinates is given by an array, the offset of its first
+ * value and the number of points: the point i of the block is at
+ * <code>offset + 3*i</code> (x), <code>offset + 3*i + 1</code> (y) and
+ * <code>offset + 3*i + 2</code> (z). Both <code>double[]</code> and
+ * <code>float[]</code> arrays are accepted.
+ * <p>
+ * Unlike the {@link SuperPosition} implementations, no state is kept between
+ * calls: the RMSD is returned and the transformation is written into a
+ * {@link Matrix4d} given by the caller, so that the methods can be called
+ * from several threads at the same time without synchronization.
+ * <p>
+ * To superpose many coordinate blocks onto the same fixed block, create a
+ * {@link Reference} of the fixed block once: its centroid and centered
+ * coordinates are then not computed again for every moved block.
+ *
+ * @since 5.1.2
+ *
+ */
+public final class PackedSuperPositions {
+
+	private static final double EVAL_PREC = 1E-11;
+	private static final double EVEC_PREC = 1E-6;
+
+	/** Prevent instantiation */
+	private PackedSuperPositions() {
+	}
+
+	/**
+	 * Calculates the RMSD of the optimal superposition of the moved block of
+	 * coordinates onto the fixed one.
+	 *
+	 * @param fixed
+	 *            coordinates of the fixed block
+	 * @param fixedOffset
+	 *            index of the x coordinate of the first fixed point
+	 * @param moved
+	 *            coordinates of the moved block
+	 * @param movedOffset
+	 *            index of the x coordinate of the first moved point
+	 * @param length
+	 *            number of points of each block
+	 * @return the RMSD
+	 */
+	public static double getRmsd(double[] fixed, int fixedOffset, double[] moved, int movedOffset, int length) {
+		checkBlock(fixed, null, fixedOffset, length);
+		checkBlock(moved, null, movedOffset, length);
+		return superpose(fixed, null, fixedOffset, moved, null, movedOffset, length, false, null);
+	}
+
+	/**
+	 * Calculates the RMSD of the optimal superposition of the moved block of
+	 * coordinates onto the fixed one.
+	 *
+	 * @see #getRmsd(double[], int, double[], int, int)
+	 */
+	public static double getRmsd(float[] fixed, int fixedOffset, float[] moved, int movedOffset, int length) {
+		checkBlock(null, fixed, fixedOffset, length);
+		checkBlock(null, moved, movedOffset, length);
+		return superpose(null, fixed, fixedOffset, null, moved, movedOffset, length, false, null);
+	}
+
+	/**
+	 * Calculates the RMSD of the optimal superposition of the moved block of
+	 * coordinates onto the fixed one, assuming that both blocks are centered
+	 * at the origin.
+	 *
+	 * @see #getRmsd(double[], int, double[], int, int)
+	 */
+	public static double getRmsdAtOrigin(double[] fixed, int fixedOffset, double[] moved, int movedOffset,
+			int length) {
+		checkBlock(fixed, null, fixedOffset, length);
+		checkBlock(moved, null, movedOffset, length);
+		return superpose(fixed, null, fixedOffset, moved, null, movedOffset, length, true, null);
+	}
+
+	/**
+	 * Calculates the RMSD of the optimal superposition of the moved block of
+	 * coordinates onto the fixed one, assuming that both blocks are centered
+	 * at the origin.
+	 *
+	 * @see #getRmsd(double[], int, double[], int, int)
+	 */
+	public static double getRmsdAtOrigin(float[] fixed, int fixedOffset, float[] moved, int movedOffset,
+			int length) {
+		checkBlock(null, fixed, fixedOffset, length);
+		checkBlock(null, moved, movedOffset, length);
+		return superpose(null, fixed, fixedOffset, null, moved, movedOffset, length, true, null);
+	}
+
+	/**
+	 * Superposes the moved block of coordinates onto the fixed one. The
+	 * coordinates are not modified.
+	 *
+	 * @param fixed
+	 *            coordinates of the fixed block
+	 * @param fixedOffset
+	 *            index of the x coordinate of the first fixed point
+	 * @param moved
+	 *            coordinates of the moved block
+	 * @param movedOffset
+	 *            index of the x coordinate of the first moved point
+	 * @param length
+	 *            number of points of each block
+	 * @param transformation
+	 *            set to the rotation and translation that superpose the
+	 *            moved block onto the fixed one
+	 * @return the RMSD of the superposition
+	 */
+	public static double superpose(double[] fixed, int fixedOffset, double[] moved, int movedOffset, int length,
+			Matrix4d transformation) {
+		checkBlock(fixed, null, fixedOffset, length);
+		checkBlock(moved, null, movedOffset, length);
+		checkTransformation(transformation);
+		return superpose(fixed, null, fixedOffset, moved, null, movedOffset, length, false, transformation);
+	}
+
+	/**
+	 * Superposes the moved block of coordinates onto the fixed one. The
+	 * coordinates are not modified.
+	 *
+	 * @see #superpose(double[], int, double[], int, int, Matrix4d)
+	 */
+	public static double superpose(float[] fixed, int fixedOffset, float[] moved, int movedOffset, int length,
+			Matrix4d transformation) {
+		checkBlock(null, fixed, fixedOffset, length);
+		checkBlock(null, moved, movedOffset, length);
+		checkTransformation(transformation);
+		return superpose(null, fixed, fixedOffset, null, moved, movedOffset, length, false, transformation);
+	}
+
+	/**
+	 * Superposes the moved block of coordinates onto the fixed one, assuming
+	 * that both blocks are centered at the origin: the transformation is a
+	 * pure rotation.
+	 *
+	 * @see #superpose(double[], int, double[], int, int, Matrix4d)
+	 */
+	public static double superposeAtOrigin(double[] fixed, int fixedOffset, double[] moved, int movedOffset,
+			int length, Matrix4d transformation) {
+		checkBlock(fixed, null, fixedOffset, length);
+		checkBlock(moved, null, movedOffset, length);
+		checkTransformation(transformation);
+		return superpose(fixed, null, fixedOffset, moved, null, movedOffset, length, true, transformation);
+	}
+
+	/**
+	 * Superposes the moved block of coordinates onto the fixed one, assuming
+	 * that both blocks are centered at the origin: the transformation is a
+	 * pure rotation.
+	 *
+	 * @see #superpose(double[], int, double[], int, int, Matrix4d)
+	 */
+	public static double superposeAtOrigin(float[] fixed, int fixedOffset, float[] moved, int movedOffset,
+			int length, Matrix4d transformation) {
+		checkBlock(null, fixed, fixedOffset, length);
+		checkBlock(null, moved, movedOffset, length);
+		checkTransformation(transformation);
+		return superpose(null, fixed, fixedOffset, null, moved, movedOffset, length, true, transformation);
+	}
+
+	/**
+	 * A fixed block of coordinates, centered once, onto which other blocks of
+	 * the same length can be superposed. It is immutable and can be shared
+	 * between threads.
+	 */
+	public static final class Reference {
+
+		private final int length;
+		/** the fixed coordinates, centered at the origin */
+		private final double[] centered;
+		private final double cx, cy, cz;
+		/** sum of the squared distances of the fixed points to their centroid */
+		private final double g;
+
+		/**
+		 * @param fixed
+		 *            coordinates of the fixed block, copied
+		 * @param offset
+		 *            index of the x coordinate of the first point
+		 * @param length
+		 *            number of points
+		 */
+		public Reference(double[] fixed, int offset, int length) {
+			this(fixed, null, offset, length);
+		}
+
+		/**
+		 * @param fixed
+		 *            coordinates of the fixed block, copied
+		 * @param offset
+		 *            index of the x coordinate of the first point
+		 * @param length
+		 *            number of points
+		 */
+		public Reference(float[] fixed, int offset, int length) {
+			this(null, fixed, offset, length);
+		}
+
+		private Reference(double[] d, float[] f, int offset, int length) {
+			checkBlock(d, f, offset, length);
+			this.length = length;
+			double x = 0, y = 0, z = 0;
+			for (int i = offset; i < offset + 3 * length; i += 3) {
+				x += get(d, f, i);
+				y += get(d, f, i + 1);
+				z += get(d, f, i + 2);
+			}
+			cx = x / length;
+			cy = y / length;
+			cz = z / length;
+
+			centered = new double[3 * length];
+			double sum = 0;
+			for (int k = 0; k < 3 * length; k += 3) {
+				x = get(d, f, offset + k) - cx;
+				y = get(d, f, offset + k + 1) - cy;
+				z = get(d, f, offset + k + 2) - cz;
+				centered[k] = x;
+				centered[k + 1] = y;
+				centered[k + 2] = z;
+				sum += x * x + y * y + z * z;
+			}
+			g = sum;
+		}
+
+		/**
+		 * @return the number of points of the fixed block
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * Calculates the RMSD of the optimal superposition of a moved block
+		 * of coordinates onto this fixed block.
+		 *
+		 * @param moved
+		 *            coordinates of the moved block
+		 * @param offset
+		 *            index of the x coordinate of the first moved point
+		 * @return the RMSD
+		 */
+		public double getRmsd(double[] moved, int offset) {
+			checkBlock(moved, null, offset, length);
+			return superpose(moved, null, offset, null);
+		}
+
+		/**
+		 * @see #getRmsd(double[], int)
+		 */
+		public double getRmsd(float[] moved, int offset) {
+			checkBlock(null, moved, offset, length);
+			return superpose(null, moved, offset, null);
+		}
+
+		/**
+		 * Superposes a moved block of coordinates onto this fixed block.
+		 *
+		 * @param moved
+		 *            coordinates of the moved block
+		 * @param offset
+		 *            index of the x coordinate of the first moved point
+		 * @param transformation
+		 *            set to the rotation and translation that superpose the
+		 *            moved block onto the fixed one
+		 * @return the RMSD of the superposition
+		 */
+		public double superpose(double[] moved, int offset, Matrix4d transformation) {
+			checkBlock(moved, null, offset, length);
+			checkTransformation(transformation);
+			return superpose(moved, null, offset, transformation);
+		}
+
+		/**
+		 * @see #superpose(double[], int, Matrix4d)
+		 */
+		public double superpose(float[] moved, int offset, Matrix4d transformation) {
+			checkBlock(null, moved, offset, length);
+			checkTransformation(transformation);
+			return superpose(null, moved, offset, transformation);
+		}
+
+		/**
+		 * Calculates the RMSDs of the optimal superpositions of many moved
+		 * blocks of coordinates onto this fixed block.
+		 *
+		 * @param moved
+		 *            coordinates of the moved blocks
+		 * @param offsets
+		 *            index of the x coordinate of the first point of each
+		 *            moved block
+		 * @param rmsds
+		 *            set to the RMSD of each moved block, at least as long
+		 *            as offsets
+		 */
+		public void getRmsds(double[] moved, int[] offsets, double[] rmsds) {
+			checkBatch(moved, null, offsets, rmsds, null);
+			for (int i = 0; i < offsets.length; i++) {
+				rmsds[i] = superpose(moved, null, offsets[i], null);
+			}
+		}
+
+		/**
+		 * @see #getRmsds(double[], int[], double[])
+		 */
+		public void getRmsds(float[] moved, int[] offsets, double[] rmsds) {
+			checkBatch(null, moved, offsets, rmsds, null);
+			for (int i = 0; i < offsets.length; i++) {
+				rmsds[i] = superpose(null, moved, offsets[i], null);
+			}
+		}
+
+		/**
+		 * Superposes many moved blocks of coordinates onto this fixed block.
+		 *
+		 * @param moved
+		 *            coordinates of the moved blocks
+		 * @param offsets
+		 *            index of the x coordinate of the first point of each
+		 *            moved block
+		 * @param rmsds
+		 *            set to the RMSD of each moved block, at least as long
+		 *            as offsets
+		 * @param transformations
+		 *            each set to the transformation of the corresponding
+		 *            moved block, at least as long as offsets
+		 */
+		public void superpose(double[] moved, int[] offsets, double[] rmsds, Matrix4d[] transformations) {
+			checkBatch(moved, null, offsets, rmsds, transformations);
+			for (int i = 0; i < offsets.length; i++) {
+				rmsds[i] = superpose(moved, null, offsets[i], transformations[i]);
+			}
+		}
+
+		/**
+		 * @see #superpose(double[], int[], double[], Matrix4d[])
+		 */
+		public void superpose(float[] moved, int[] offsets, double[] rmsds, Matrix4d[] transformations) {
+			checkBatch(null, moved, offsets, rmsds, transformations);
+			for (int i = 0; i < offsets.length; i++) {
+				rmsds[i] = superpose(null, moved, offsets[i], transformations[i]);
+			}
+		}
+
+		private void checkBatch(double[] d, float[] f, int[] offsets, double[] rmsds, Matrix4d[] transformations) {
+			if (rmsds.length < offsets.length) {
+				throw new IllegalArgumentException("Not enough space for " + offsets.length + " RMSDs");
+			}
+			if (transformations != null && transformations.length < offsets.length) {
+				throw new IllegalArgumentException("Not enough transformations for " + offsets.length + " blocks");
+			}
+			for (int i = 0; i < offsets.length; i++) {
+				checkBlock(d, f, offsets[i], length);
+				if (transformations != null) {
+					checkTransformation(transformations[i]);
+				}
+			}
+		}
+
+		private double superpose(double[] d, float[] f, int offset, Matrix4d transformation) {
+			double mx = 0, my = 0, mz = 0;
+			for (int i = offset; i < offset + 3 * length; i += 3) {
+				mx += get(d, f, i);
+				my += get(d, f, i + 1);
+				mz += get(d, f, i + 2);
+			}
+			mx /= length;
+			my /= length;
+			mz /= length;
+
+			// the fixed points are centered, so that the moved centroid
+			// vanishes from the inner product
+			double g2 = 0;
+			double sxx = 0, sxy = 0, sxz = 0;
+			double syx = 0, syy = 0, syz = 0;
+			double szx = 0, szy = 0, szz = 0;
+			for (int k = 0; k < 3 * length; k += 3) {
+				double x1 = centered[k];
+				double y1 = centered[k + 1];
+				double z1 = centered[k + 2];
+				double x2 = get(d, f, offset + k) - mx;
+				double y2 = get(d, f, offset + k + 1) - my;
+				double z2 = get(d, f, offset + k + 2) - mz;
+				g2 += x2 * x2 + y2 * y2 + z2 * z2;
+				sxx += x1 * x2;
+				sxy += x1 * y2;
+				sxz += x1 * z2;
+				syx += y1 * x2;
+				syy += y1 * y2;
+				syz += y1 * z2;
+				szx += z1 * x2;
+				szy += z1 * y2;
+				szz += z1 * z2;
+			}
+			return qcp((g + g2) * 0.5, length, sxx, sxy, sxz, syx, syy, syz, szx, szy, szz,
+					cx, cy, cz, mx, my, mz, transformation);
+		}
+	}
+
+	private static double get(double[] d, float[] f, int i) {
+		return d != null ? d[i] : f[i];
+	}
+
+	private static void checkBlock(double[] d, float[] f, int offset, int length) {
+		int size = d != null ? d.length : f.length;
+		if (length < 1) {
+			throw new IllegalArgumentException("A block needs at least one point, not " + length);
+		}
+		if (offset < 0 || offset + 3L * length > size) {
+			throw new IllegalArgumentException("A block of " + length + " points at offset " + offset
+					+ " does not fit in an array of " + size + " coordinates");
+		}
+	}
+
+	private static void checkTransformation(Matrix4d transformation) {
+		if (transformation == null) {
+			throw new NullPointerException("The transformation to set is null");
+		}
+	}
+
+	private static double superpose(double[] fd, float[] ff, int fixedOffset, double[] md, float[] mf,
+			int movedOffset, int length, boolean atOrigin, Matrix4d transformation) {
+		double fx = 0, fy = 0, fz = 0;
+		double mx = 0, my = 0, mz = 0;
+		if (!atOrigin) {
+			for (int k = 0; k < 3 * length; k += 3) {
+				fx += get(fd, ff, fixedOffset + k);
+				fy += get(fd, ff, fixedOffset + k + 1);
+				fz += get(fd, ff, fixedOffset + k + 2);
+				mx += get(md, mf, movedOffset + k);
+				my += get(md, mf, movedOffset + k + 1);
+				mz += get(md, mf, movedOffset + k + 2);
+			}
+			fx /= length;
+			fy /= length;
+			fz /= length;
+			mx /= length;
+			my /= length;
+			mz /= length;
+		}
+
+		double g1 = 0, g2 = 0;
+		double sxx = 0, sxy = 0, sxz = 0;
+		double syx = 0, syy = 0, syz = 0;
+		double szx = 0, szy = 0, szz = 0;
+		for (int k = 0; k < 3 * length; k += 3) {
+			double x1 = get(fd, ff, fixedOffset + k) - fx;
+			double y1 = get(fd, ff, fixedOffset + k + 1) - fy;
+			double z1 = get(fd, ff, fixedOffset + k + 2) - fz;
+			double x2 = get(md, mf, movedOffset + k) - mx;
+			double y2 = get(md, mf, movedOffset + k + 1) - my;
+			double z2 = get(md, mf, movedOffset + k + 2) - mz;
+			g1 += x1 * x1 + y1 * y1 + z1 * z1;
+			g2 += x2 * x2 + y2 * y2 + z2 * z2;
+			sxx += x1 * x2;
+			sxy += x1 * y2;
+			sxz += x1 * z2;
+			syx += y1 * x2;
+			syy += y1 * y2;
+			syz += y1 * z2;
+			szx += z1 * x2;
+			szy += z1 * y2;
+			szz += z1 * z2;
+		}
+		return qcp((g1 + g2) * 0.5, length, sxx, sxy, sxz, syx, syy, syz, szx, szy, szz,
+				fx, fy, fz, mx, my, mz, transformation);
+	}
+
+	/**
+	 * The QCP calculation of {@link SuperPositionQCP} from the inner product
+	 * of the centered fixed (rows) and moved (columns) coordinates. The RMSD
+	 * is found from the largest eigenvalue of the key matrix, by
+	 * Newton-Raphson on its characteristic polynomial starting from e0. If a
+	 * transformation is given, it is set to the rotation from the
+	 * corresponding eigenvector combined with the translation of the moved
+	 * centroid m onto the fixed centroid f.
+	 */
+	private static double qcp(double e0, int len,
+			double sxx, double sxy, double sxz,
+			double syx, double syy, double syz,
+			double szx, double szy, double szz,
+			double fx, double fy, double fz,
+			double mx, double my, double mz,
+			Matrix4d transformation) {
+		double sxx2 = sxx * sxx;
+		double syy2 = syy * syy;
+		double szz2 = szz * szz;
+
+		double sxy2 = sxy * sxy;
+		double syz2 = syz * syz;
+		double sxz2 = sxz * sxz;
+
+		double syx2 = syx * syx;
+		double szy2 = szy * szy;
+		double szx2 = szx * szx;
+
+		double syzSzymSyySzz2 = 2.0 * (syz * szy - syy * szz);
+		double sxx2Syy2Szz2Syz2Szy2 = syy2 + szz2 - sxx2 + syz2 + szy2;
+
+		double c2 = -2.0 * (sxx2 + syy2 + szz2 + sxy2 + syx2 + sxz2 + szx2 + syz2 + szy2);
+		double c1 = 8.0 * (sxx * syz * szy + syy * szx * sxz + szz * sxy * syx - sxx * syy * szz - syz * szx * sxy
+				- szy * syx * sxz);
+
+		double sxzpSzx = sxz + szx;
+		double syzpSzy = syz + szy;
+		double sxypSyx = sxy + syx;
+		double syzmSzy = syz - szy;
+		double sxzmSzx = sxz - szx;
+		double sxymSyx = sxy - syx;
+		double sxxpSyy = sxx + syy;
+		double sxxmSyy = sxx - syy;
+
+		double sxy2Sxz2Syx2Szx2 = sxy2 + sxz2 - syx2 - szx2;
+
+		double c0 = sxy2Sxz2Syx2Szx2 * sxy2Sxz2Syx2Szx2
+				+ (sxx2Syy2Szz2Syz2Szy2 + syzSzymSyySzz2) * (sxx2Syy2Szz2Syz2Szy2 - syzSzymSyySzz2)
+				+ (-(sxzpSzx) * (syzmSzy) + (sxymSyx) * (sxxmSyy - szz))
+						* (-(sxzmSzx) * (syzpSzy) + (sxymSyx) * (sxxmSyy + szz))
+				+ (-(sxzpSzx) * (syzpSzy) - (sxypSyx) * (sxxpSyy - szz))
+						* (-(sxzmSzx) * (syzmSzy) - (sxypSyx) * (sxxpSyy + szz))
+				+ (+(sxypSyx) * (syzpSzy) + (sxzpSzx) * (sxxmSyy + szz))
+						* (-(sxymSyx) * (syzmSzy) + (sxzpSzx) * (sxxpSyy + szz))
+				+ (+(sxypSyx) * (syzmSzy) + (sxzmSzx) * (sxxmSyy - szz))
+						* (-(sxymSyx) * (syzpSzy) + (sxzmSzx) * (sxxpSyy - szz));
+
+		double mxEigenV = e0;
+		for (int i = 1; i < 51; ++i) {
+			double oldg = mxEigenV;
+			double x2 = mxEigenV * mxEigenV;
+			double b = (x2 + c2) * mxEigenV;
+			double a = b + c1;
+			double delta = ((a * mxEigenV + c0) / (2.0 * x2 * mxEigenV + b + a));
+			mxEigenV -= delta;
+
+			if (Math.abs(mxEigenV - oldg) < Math.abs(EVAL_PREC * mxEigenV))
+				break;
+		}
+
+		// the abs guards against extremely small, but negative numbers due to floating point error
+		double rmsd = Math.sqrt(Math.abs(2.0 * (e0 - mxEigenV) / len));
+
+		if (transformation != null) {
+			setRotation(transformation, mxEigenV, sxx, syy, szz,
+					sxzpSzx, syzpSzy, sxypSyx, syzmSzy, sxzmSzx, sxymSyx, sxxpSyy, sxxmSyy);
+			// moved centroid onto fixed centroid: t = f - R m
+			transformation.m03 = fx - (transformation.m00 * mx + transformation.m01 * my + transformation.m02 * mz);
+			transformation.m13 = fy - (transformation.m10 * mx + transformation.m11 * my + transformation.m12 * mz);
+			transformation.m23 = fz - (transformation.m20 * mx + transformation.m21 * my + transformation.m22 * mz);
+			transformation.m30 = 0;
+			transformation.m31 = 0;
+			transformation.m32 = 0;
+			transformation.m33 = 1;
+		}
+		return rmsd;
+	}
+
+	/**
+	 * Sets the rotation part of the transformation from the column of the
+	 * adjoint of the key matrix, as in {@link SuperPositionQCP}.
+	 */
+	private static void setRotation(Matrix4d rot, double mxEigenV, double sxx, double syy, double szz,
+			double sxzpSzx, double syzpSzy, double sxypSyx,
+			double syzmSzy, double sxzmSzx, double sxymSyx,
+			double sxxpSyy, double sxxmSyy) {
+		double a11 = sxxpSyy + szz - mxEigenV;
+		double a12 = syzmSzy;
+		double a13 = -sxzmSzx;
+		double a14 = sxymSyx;
+		double a21 = syzmSzy;
+		double a22 = sxxmSyy - szz - mxEigenV;
+		double a23 = sxypSyx;
+		double a24 = sxzpSzx;
+		double a31 = a13;
+		double a32 = a23;
+		double a33 = syy - sxx - szz - mxEigenV;
+		double a34 = syzpSzy;
+		double a41 = a14;
+		double a42 = a24;
+		double a43 = a34;
+		double a44 = szz - sxxpSyy - mxEigenV;
+		double a3344_4334 = a33 * a44 - a43 * a34;
+		double a3244_4234 = a32 * a44 - a42 * a34;
+		double a3243_4233 = a32 * a43 - a42 * a33;
+		double a3143_4133 = a31 * a43 - a41 * a33;
+		double a3144_4134 = a31 * a44 - a41 * a34;
+		double a3142_4132 = a31 * a42 - a41 * a32;
+		double q1 = a22 * a3344_4334 - a23 * a3244_4234 + a24 * a3243_4233;
+		double q2 = -a21 * a3344_4334 + a23 * a3144_4134 - a24 * a3143_4133;
+		double q3 = a21 * a3244_4234 - a22 * a3144_4134 + a24 * a3142_4132;
+		double q4 = -a21 * a3243_4233 + a22 * a3143_4133 - a23 * a3142_4132;
+
+		double qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+		// try another column of the adjoint matrix when the norm of the
+		// current one is too small
+		if (qsqr < EVEC_PREC) {
+			q1 = a12 * a3344_4334 - a13 * a3244_4234 + a14 * a3243_4233;
+			q2 = -a11 * a3344_4334 + a13 * a3144_4134 - a14 * a3143_4133;
+			q3 = a11 * a3244_4234 - a12 * a3144_4134 + a14 * a3142_4132;
+			q4 = -a11 * a3243_4233 + a12 * a3143_4133 - a13 * a3142_4132;
+			qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+			if (qsqr < EVEC_PREC) {
+				double a1324_1423 = a13 * a24 - a14 * a23, a1224_1422 = a12 * a24 - a14 * a22;
+				double a1223_1322 = a12 * a23 - a13 * a22, a1124_1421 = a11 * a24 - a14 * a21;
+				double a1123_1321 = a11 * a23 - a13 * a21, a1122_1221 = a11 * a22 - a12 * a21;
+
+				q1 = a42 * a1324_1423 - a43 * a1224_1422 + a44 * a1223_1322;
+				q2 = -a41 * a1324_1423 + a43 * a1124_1421 - a44 * a1123_1321;
+				q3 = a41 * a1224_1422 - a42 * a1124_1421 + a44 * a1122_1221;
+				q4 = -a41 * a1223_1322 + a42 * a1123_1321 - a43 * a1122_1221;
+				qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+				if (qsqr < EVEC_PREC) {
+					q1 = a32 * a1324_1423 - a33 * a1224_1422 + a34 * a1223_1322;
+					q2 = -a31 * a1324_1423 + a33 * a1124_1421 - a34 * a1123_1321;
+					q3 = a31 * a1224_1422 - a32 * a1124_1421 + a34 * a1122_1221;
+					q4 = -a31 * a1223_1322 + a32 * a1123_1321 - a33 * a1122_1221;
+					qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+					if (qsqr < EVEC_PREC) {
+						// if qsqr is still too small, use the identity
+						rot.m00 = 1;
+						rot.m01 = 0;
+						rot.m02 = 0;
+						rot.m10 = 0;
+						rot.m11 = 1;
+						rot.m12 = 0;
+						rot.m20 = 0;
+						rot.m21 = 0;
+						rot.m22 = 1;
+						return;
+					}
+				}
+			}
+		}
+
+		double normq = Math.sqrt(qsqr);
+		q1 /= normq;
+		q2 /= normq;
+		q3 /= normq;
+		q4 /= normq;
+
+		double a2 = q1 * q1;
+		double x2 = q2 * q2;
+		double y2 = q3 * q3;
+		double z2 = q4 * q4;
+
+		double xy = q2 * q3;
+		double az = q1 * q4;
+		double zx = q4 * q2;
+		double ay = q1 * q3;
+		double yz = q3 * q4;
+		double ax = q1 * q2;
+
+		rot.m00 = a2 + x2 - y2 - z2;
+		rot.m01 = 2 * (xy + az);
+		rot.m02 = 2 * (zx - ay);
+
+		rot.m10 = 2 * (xy - az);
+		rot.m11 = a2 - x2 + y2 - z2;
+		rot.m12 = 2 * (yz + ax);
+
+		rot.m20 = 2 * (zx + ay);
+		rot.m21 = 2 * (yz - ax);
+		rot.m22 = a2 - x2 - y2 + z2;
+	}
+}
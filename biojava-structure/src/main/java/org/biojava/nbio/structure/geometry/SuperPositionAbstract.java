@@ -67,4 +67,17 @@ public abstract class SuperPositionAbstract implements SuperPosition {
 		this.centered = centered;
 	}
 
+	/**
+	 * Creates a new instance of this algorithm with the same settings, which
+	 * another thread can use at the same time as this one. The default
+	 * implementation returns null, for algorithms that can not be copied.
+	 * 
+	 * @return a copy of this algorithm of the same class, or null if it can not
+	 *         be copied
+	 * @since 5.1.2
+	 */
+	public SuperPositionAbstract newInstance() {
+		return null;
+	}
+
 }
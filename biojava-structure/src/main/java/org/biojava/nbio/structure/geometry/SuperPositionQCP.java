@@ -571,6 +571,11 @@ public final class SuperPositionQCP extends SuperPositionAbstract {
 		return getRmsd();
 	}
 
+	@Override
+	public SuperPositionAbstract newInstance() {
+		return new SuperPositionQCP(super.centered, evec_prec, eval_prec);
+	}
+
 	@Override
 	public Matrix4d superpose(Point3d[] fixed, Point3d[] moved) {
 		set(moved, fixed);
@@ -43,6 +43,11 @@ public final class SuperPositionQuat extends SuperPositionAbstract {
 		super(centered);
 	}
 
+	@Override
+	public SuperPositionAbstract newInstance() {
+		return new SuperPositionQuat(centered);
+	}
+
 	@Override
 	public Matrix4d superpose(Point3d[] fixed, Point3d[] moved) {
 
@@ -54,6 +54,11 @@ public class SuperPositionSVD extends SuperPositionAbstract {
 		super(centered);
 	}
 
+	@Override
+	public SuperPositionAbstract newInstance() {
+		return new SuperPositionSVD(centered);
+	}
+
 	@Override
 	public Matrix4d superpose(Point3d[] fixed, Point3d[] moved) {
 
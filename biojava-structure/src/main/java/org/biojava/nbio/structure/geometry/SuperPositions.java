@@ -27,7 +27,12 @@ import javax.vecmath.Point3d;
  * SuperPositions is a Class that provides static helper methods and an easy
  * access to the whole family of {@link SuperPosition} algorithms.
  * <p>
- * It defines a static SuperPosition object and uses it for calculation.
+ * It defines a static default SuperPosition algorithm and uses it for
+ * calculation. Every thread calls its own copy of the default algorithm, made
+ * with {@link SuperPositionAbstract#newInstance()}, so that the methods can be
+ * called from several threads without any lock. Algorithms that can not be
+ * copied are called by one thread at a time. The returned transformations are
+ * copies. For coordinates packed in arrays, see {@link PackedSuperPositions}.
  * 
  * @author Aleix Lafita
  * @since 5.0.0
@@ -35,19 +40,79 @@ import javax.vecmath.Point3d;
  */
 public class SuperPositions {
 
-	private static SuperPositionAbstract superposer = new SuperPositionQuat(
+	private static volatile SuperPositionAbstract superposer = new SuperPositionQuat(
 			false);
+
+	/**
+	 * The default algorithm seen by each thread the last time it used it, and
+	 * the copy of it owned by that thread, null if it can not be copied
+	 */
+	private static final ThreadLocal<SuperPositionAbstract[]> threadSuperposer = new ThreadLocal<SuperPositionAbstract[]>() {
+		@Override
+		protected SuperPositionAbstract[] initialValue() {
+			return new SuperPositionAbstract[2];
+		}
+	};
 	
 	/** Prevent instantiation */
 	private SuperPositions(){}
 
+	/**
+	 * Returns the copy of the default algorithm owned by the calling thread, or
+	 * null if the algorithm can not be copied.
+	 */
+	private static SuperPositionAbstract getCopy(SuperPositionAbstract defaultAlgorithm) {
+		SuperPositionAbstract[] local = threadSuperposer.get();
+		if (local[0] != defaultAlgorithm) {
+			SuperPositionAbstract copy = defaultAlgorithm.newInstance();
+			// a subclass that does not override newInstance() can not be copied
+			if (copy != null && copy.getClass() != defaultAlgorithm.getClass())
+				copy = null;
+			local[1] = copy;
+			local[0] = defaultAlgorithm;
+		}
+		return local[1];
+	}
+
+	private static Matrix4d superpose(Point3d[] fixed, Point3d[] moved,
+			boolean centered, boolean transform) {
+		SuperPositionAbstract defaultAlgorithm = superposer;
+		SuperPositionAbstract copy = getCopy(defaultAlgorithm);
+		if (copy != null)
+			return superpose(copy, fixed, moved, centered, transform);
+		synchronized (defaultAlgorithm) {
+			return superpose(defaultAlgorithm, fixed, moved, centered, transform);
+		}
+	}
+
+	private static Matrix4d superpose(SuperPositionAbstract algorithm,
+			Point3d[] fixed, Point3d[] moved, boolean centered, boolean transform) {
+		algorithm.setCentered(centered);
+		if (transform)
+			return new Matrix4d(algorithm.superposeAndTransform(fixed, moved));
+		return new Matrix4d(algorithm.superpose(fixed, moved));
+	}
+
+	private static double getRmsd(Point3d[] fixed, Point3d[] moved,
+			boolean centered) {
+		SuperPositionAbstract defaultAlgorithm = superposer;
+		SuperPositionAbstract copy = getCopy(defaultAlgorithm);
+		if (copy != null) {
+			copy.setCentered(centered);
+			return copy.getRmsd(fixed, moved);
+		}
+		synchronized (defaultAlgorithm) {
+			defaultAlgorithm.setCentered(centered);
+			return defaultAlgorithm.getRmsd(fixed, moved);
+		}
+	}
+
 	/**
 	 * Use the {@link SuperPosition#superpose(Point3d[], Point3d[])} method of
 	 * the default static SuperPosition algorithm contained in this Class.
 	 */
 	public static Matrix4d superpose(Point3d[] fixed, Point3d[] moved) {
-		superposer.setCentered(false);
-		return superposer.superpose(fixed, moved);
+		return superpose(fixed, moved, false, false);
 	}
 
 	/**
@@ -56,8 +121,7 @@ public class SuperPositions {
 	 * assuming that the point arrays are centered at the origin.
 	 */
 	public static Matrix4d superposeAtOrigin(Point3d[] fixed, Point3d[] moved) {
-		superposer.setCentered(true);
-		return superposer.superpose(fixed, moved);
+		return superpose(fixed, moved, true, false);
 	}
 
 	/**
@@ -67,8 +131,7 @@ public class SuperPositions {
 	 */
 	public static Matrix4d superposeAndTransform(Point3d[] fixed,
 			Point3d[] moved) {
-		superposer.setCentered(false);
-		return superposer.superposeAndTransform(fixed, moved);
+		return superpose(fixed, moved, false, true);
 	}
 
 	/**
@@ -78,8 +141,7 @@ public class SuperPositions {
 	 */
 	public static Matrix4d superposeAndTransformAtOrigin(Point3d[] fixed,
 			Point3d[] moved) {
-		superposer.setCentered(true);
-		return superposer.superposeAndTransform(fixed, moved);
+		return superpose(fixed, moved, true, true);
 	}
 
 	/**
@@ -87,8 +149,7 @@ public class SuperPositions {
 	 * default static SuperPosition algorithm contained in this Class.
 	 */
 	public static double getRmsd(Point3d[] fixed, Point3d[] moved) {
-		superposer.setCentered(false);
-		return superposer.getRmsd(fixed, moved);
+		return getRmsd(fixed, moved, false);
 	}
 
 	/**
@@ -97,10 +158,16 @@ public class SuperPositions {
 	 * that the point arrays are centered at the origin.
 	 */
 	public static double getRmsdAtOrigin(Point3d[] fixed, Point3d[] moved) {
-		superposer.setCentered(true);
-		return superposer.getRmsd(fixed, moved);
+		return getRmsd(fixed, moved, true);
 	}
 	
+	/**
+	 * Sets the default SuperPosition algorithm. Each thread uses its own copy
+	 * of the algorithm, made with {@link SuperPositionAbstract#newInstance()},
+	 * or the algorithm itself under a lock if it can not be copied.
+	 * 
+	 * @param defaultAlgorithm
+	 */
 	public static void setDefaultSuperPosition(SuperPositionAbstract defaultAlgorithm) {
 		superposer = defaultAlgorithm;
 	}
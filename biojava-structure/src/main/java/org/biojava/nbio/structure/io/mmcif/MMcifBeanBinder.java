@@ -0,0 +1,217 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.io.mmcif;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.biojava.nbio.structure.io.mmcif.model.CIFLabel;
+import org.biojava.nbio.structure.io.mmcif.model.IgnoreField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binds the values of rows of a CIF category to the setters of a bean from the
+ * {@link org.biojava.nbio.structure.io.mmcif.model} package.
+ * <p>
+ * The reflection needed to find the setters is done only once per bean class: the setters are
+ * looked up as method handles keyed by their CIF names (the field names or their {@link CIFLabel},
+ * excluding fields tagged with {@link IgnoreField}). Then for each loop a {@link Layout} is built
+ * once, holding the setter for every column, so that every row is bound by index.
+ *
+ * @since 5.1.2
+ */
+class MMcifBeanBinder<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(MMcifBeanBinder.class);
+
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private static final ConcurrentHashMap<Class<?>, MMcifBeanBinder<?>> binders = new ConcurrentHashMap<>();
+
+	/**
+	 * A setter of a bean property, taking a String or an Integer value.
+	 */
+	static class Setter {
+		private final String name;
+		private final MethodHandle handle;
+		private final boolean integer;
+
+		private Setter(String name, MethodHandle handle, boolean integer) {
+			this.name = name;
+			this.handle = handle;
+			this.integer = integer;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	/**
+	 * The setters corresponding to a particular list of loop fields, in the same order as the fields.
+	 * A null setter means that the bean has no property for that field.
+	 */
+	static class Layout {
+		private final List<String> fields;
+		private final Setter[] setters;
+
+		private Layout(List<String> fields, Setter[] setters) {
+			this.fields = fields;
+			this.setters = setters;
+		}
+
+		/**
+		 * @param loopFields
+		 * @return true if this layout was built for the given fields
+		 */
+		public boolean matches(List<String> loopFields) {
+			return fields.equals(loopFields);
+		}
+
+		public Setter getSetter(int column) {
+			return setters[column];
+		}
+	}
+
+	private final Class<T> beanClass;
+	private final Map<String, Setter> settersByCifName;
+
+	private MMcifBeanBinder(Class<T> beanClass) {
+		this.beanClass = beanClass;
+		this.settersByCifName = new HashMap<>();
+
+		// these methods get the fields but also looking at the IgnoreField and CIFLabel annotations
+		Field[] fields = MMCIFFileTools.getFields(beanClass);
+		String[] names = MMCIFFileTools.getFieldNames(fields);
+
+		// let's build a map of all methods so that we can look up the setter methods
+		Map<String,Method> methodMap = new HashMap<>();
+		for (Method m : beanClass.getMethods()) {
+			methodMap.put(m.getName(),m);
+		}
+
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+		for (int i=0;i<fields.length;i++) {
+			// note that we can't use the field directly and then call Field.set() because many setters
+			// have more functionality than just setting the value (e.g. some setters in ChemComp)
+
+			// building up the setter method name: need to upper case the first letter, leave the rest untouched
+			String fieldName = fields[i].getName();
+			String setterMethodName = "set" + fieldName.substring(0,1).toUpperCase() + fieldName.substring(1);
+
+			Method setter = methodMap.get(setterMethodName);
+			// note that all of the mmCif container classes have only one argument (they are beans)
+			if (setter==null || setter.getParameterTypes().length!=1) continue;
+
+			try {
+				MethodHandle handle = lookup.unreflect(setter).asType(SETTER_TYPE);
+				boolean integer = setter.getParameterTypes()[0].equals(Integer.class);
+				settersByCifName.put(names[i], new Setter(setterMethodName, handle, integer));
+			} catch (IllegalAccessException e) {
+				logger.error("Could not access setter {} for class {}", setterMethodName, beanClass.getName());
+			}
+		}
+	}
+
+	/**
+	 * Returns the binder for the given bean class, creating it the first time it is requested.
+	 * @param beanClass
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> MMcifBeanBinder<T> getBinder(Class<T> beanClass) {
+		MMcifBeanBinder<?> binder = binders.get(beanClass);
+		if (binder==null) {
+			binder = new MMcifBeanBinder<T>(beanClass);
+			MMcifBeanBinder<?> previous = binders.putIfAbsent(beanClass, binder);
+			if (previous!=null) binder = previous;
+		}
+		return (MMcifBeanBinder<T>) binder;
+	}
+
+	public Class<T> getBeanClass() {
+		return beanClass;
+	}
+
+	/**
+	 * Builds the layout for the given loop fields, to be passed to {@link #bind(Layout, List)} for every row.
+	 * @param loopFields
+	 * @return
+	 */
+	public Layout getLayout(List<String> loopFields) {
+		Setter[] setters = new Setter[loopFields.size()];
+		for (int i=0;i<setters.length;i++) {
+			setters[i] = settersByCifName.get(loopFields.get(i));
+		}
+		return new Layout(new ArrayList<>(loopFields), setters);
+	}
+
+	/**
+	 * Creates a new bean and populates it with the values of the given row.
+	 * Values of columns without a setter in the layout are ignored.
+	 * @param layout the layout for the fields of the row
+	 * @param lineData the values of the row
+	 * @return the new bean or null if it couldn't be instantiated
+	 */
+	public T bind(Layout layout, List<String> lineData) {
+		T o;
+		try {
+			o = beanClass.newInstance();
+		} catch (InstantiationException|IllegalAccessException e){
+			logger.error( "Error while constructing {}: {}", beanClass.getName(), e.getMessage());
+			return null;
+		}
+
+		for (int pos=0;pos<layout.setters.length;pos++) {
+			Setter setter = layout.setters[pos];
+			if (setter==null) continue;
+
+			String val = lineData.get(pos);
+
+			Object value;
+			if (setter.integer) {
+				if ( val == null || val.equals("?") || val.equals(".")) continue;
+				value = Integer.parseInt(val);
+			} else {
+				// default val is a String
+				value = val;
+			}
+
+			try {
+				setter.handle.invokeExact((Object) o, value);
+			} catch (Throwable e) {
+				logger.error("Could not invoke setter {} with value {} for class {}", setter.name, val, beanClass.getName());
+			}
+		}
+
+		return o;
+	}
+}
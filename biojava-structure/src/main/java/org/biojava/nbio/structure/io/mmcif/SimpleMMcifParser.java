@@ -25,15 +25,11 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 
 import org.biojava.nbio.structure.Structure;
@@ -137,11 +133,17 @@ public class SimpleMMcifParser implements MMcifParser {
 	 */
 	public static final String STRING_LIMIT = ";";
 
+	private static final Pattern FIELD_LINE_PATTERN = Pattern.compile("\\s*"+FIELD_LINE+"\\w+.*");
+
 
 	private List<MMcifConsumer> consumers ;
 
 	private Struct struct ;
 
+	// setters for the columns of the current loop, built for its first row and reset whenever its fields change
+	private MMcifBeanBinder.Layout loopLayout;
+	private Class<?> loopLayoutClass;
+
 	private static final Logger logger = LoggerFactory.getLogger(SimpleMMcifParser.class);
 
 	public SimpleMMcifParser(){
@@ -229,7 +231,7 @@ public class SimpleMMcifParser implements MMcifParser {
 				}
 			}
 
-			logger.debug(inLoop + " " + line);
+			logger.debug("{} {}", inLoop, line);
 
 			if (line.startsWith(MMCIF_TOP_HEADER)){
 				// either first line in file, or beginning of new section (data block in CIF parlance)
@@ -239,6 +241,7 @@ public class SimpleMMcifParser implements MMcifParser {
 					inLoopData = false;
 					lineData.clear();
 					loopFields.clear();
+					loopLayout = null;
 				}
 
 			}
@@ -249,18 +252,20 @@ public class SimpleMMcifParser implements MMcifParser {
 
 				if ( line.startsWith(LOOP_START)){
 					loopFields.clear();
+					loopLayout = null;
 					inLoop = true;
 					inLoopData = false;
 					continue;
 				}
 
-				if ( line.matches("\\s*"+FIELD_LINE+"\\w+.*")) {
+				if ( FIELD_LINE_PATTERN.matcher(line).matches()) {
 
 					if (inLoopData && line.startsWith(FIELD_LINE)) {
 						logger.debug("Found a field line after reading loop data. Toggling to inLoop=false");
 						inLoop = false;
 						inLoopData = false;
 						loopFields.clear();
+						loopLayout = null;
 
 
 						// a boring normal line
@@ -289,6 +294,7 @@ public class SimpleMMcifParser implements MMcifParser {
 						category = key.substring(0,pos);
 						String value = data.get(1);
 						loopFields.add(key.substring(pos+1,key.length()));
+						loopLayout = null;
 						lineData.add(value);
 
 						logger.debug("Found data for category {}: {}", key, value);
@@ -303,6 +309,7 @@ public class SimpleMMcifParser implements MMcifParser {
 						category = spl[0];
 						String attribute = spl[1];
 						loopFields.add(attribute);
+						loopLayout = null;
 						logger.debug("Found category: {}, attribute: {}",category, attribute);
 						if ( spl.length > 2){
 							logger.warn("Found nested attribute in {}, not supported yet!",txt);
@@ -317,9 +324,10 @@ public class SimpleMMcifParser implements MMcifParser {
 				} else {
 
 					// in loop and we found a data line
-					lineData = processLine(line, buf, loopFields.size());
+					// the same list is reused for every row: consumers can't keep references to it
+					processLine(line, buf, loopFields.size(), lineData);
 					logger.debug("Found a loop data line with {} data fields", lineData.size());
-					logger.debug("Data fields: {}", lineData.toString());
+					logger.debug("Data fields: {}", lineData);
 					if ( lineData.size() != loopFields.size()){
 						logger.warn("Expected {} data fields, but found {} in line: {}",loopFields.size(),lineData.size(),line);
 
@@ -383,6 +391,7 @@ public class SimpleMMcifParser implements MMcifParser {
 
 					String value = data.get(1);
 					loopFields.add(key.substring(pos+1,key.length()));
+					loopLayout = null;
 					lineData.add(value);
 
 					logger.debug("Found data for category {}: {}", key, value);
@@ -407,88 +416,57 @@ public class SimpleMMcifParser implements MMcifParser {
 
 	private void resetBuffers(List<String> loopFields, List<String> lineData, Set<String> loopWarnings) {
 		loopFields.clear();
+		loopLayout = null;
 		lineData.clear();
 		loopWarnings.clear();
 	}
 
-	private List<String> processSingleLine(String line){
-
-		List<String> data = new ArrayList<String>();
+	/**
+	 * Splits a single line into its words, adding them to the given list.
+	 * @param line
+	 * @param data the list to add the words to
+	 */
+	private void processSingleLine(String line, List<String> data){
 
 		if ( line.trim().length() == 0){
-			return data;
+			return;
 		}
 
 		if ( line.trim().length() == 1){
 			if ( line.startsWith(STRING_LIMIT))
-				return data;
+				return;
 		}
 		boolean inString = false; // semicolon (;) quoting
 		boolean inS1     = false; // single quote (') quoting
 		boolean inS2     = false; // double quote (") quoting
-		String word 	 = "";
-
-		for (int i=0; i< line.length(); i++ ){
+		StringBuilder word = new StringBuilder();
 
-			Character c = line.charAt(i);
+		int length = line.length();
 
-			Character nextC = null;
-			if (i < line.length() - 1)
-				nextC = line.charAt(i+1);
+		for (int i=0; i< length; i++ ){
 
-			Character prevC = null;
-			if (i>0)
-				prevC = line.charAt(i-1);
+			char c = line.charAt(i);
 
 			if  (c == ' ') {
 
 				if ( ! inString){
-					if ( ! word.equals(""))
-						data.add(word.trim());
-					word = "";
+					if ( word.length() > 0)
+						data.add(word.toString().trim());
+					word.setLength(0);
 				} else {
 					// we are in a string, add the space
-					word += c;
+					word.append(c);
 				}
 
-			} else if (c == S1 )  {
-
-				if ( inString){
-
-					boolean wordEnd = false;
-					if (! inS2) {
-						if (nextC==null || Character.isWhitespace(nextC)){
-							i++;
-							wordEnd = true;
-						}
-					}
+			} else if (c == S1 || c == S2)  {
 
+				boolean otherQuote = (c == S1) ? inS2 : inS1;
 
-					if ( wordEnd ) {
-
-						// at end of string
-						if ( ! word.equals(""))
-							data.add(word.trim());
-						word     = "";
-						inString = false;
-						inS1     = false;
-					} else {
-						word += c;
-					}
-
-				} else if (prevC==null || prevC==' ') {
-					// the beginning of a new string
-					inString = true;
-					inS1     = true;
-				} else {
-					word += c;
-				}
-			} else if ( c == S2 ){
 				if ( inString){
 
 					boolean wordEnd = false;
-					if (! inS1) {
-						if (nextC==null || Character.isWhitespace(nextC)){
+					if (! otherQuote) {
+						if (i == length - 1 || Character.isWhitespace(line.charAt(i+1))){
 							i++;
 							wordEnd = true;
 						}
@@ -497,31 +475,34 @@ public class SimpleMMcifParser implements MMcifParser {
 					if ( wordEnd ) {
 
 						// at end of string
-						if ( ! word.equals(""))
-							data.add(word.trim());
-						word     = "";
+						if ( word.length() > 0)
+							data.add(word.toString().trim());
+						word.setLength(0);
 						inString = false;
-						inS2     = false;
+						if (c == S1) inS1 = false;
+						else inS2 = false;
 					} else {
-						word += c;
+						word.append(c);
 					}
-				}  else if (prevC==null || prevC==' ') {
+
+				} else if (i == 0 || line.charAt(i-1) == ' ') {
 					// the beginning of a new string
 					inString = true;
-					inS2     = true;
+					if (c == S1) inS1 = true;
+					else inS2 = true;
 				} else {
-					word += c;
+					word.append(c);
 				}
 			} else {
-				word += c;
+				word.append(c);
 			}
 
 		}
-		if ( ! word.trim().equals(""))
-			data.add(word);
-
-
-		return data;
+		if ( word.length() > 0 ) {
+			String lastWord = word.toString();
+			if (! lastWord.trim().isEmpty())
+				data.add(lastWord);
+		}
 
 	}
 
@@ -536,10 +517,29 @@ public class SimpleMMcifParser implements MMcifParser {
 			BufferedReader buf,
 			int fieldLength)
 					throws IOException{
+		List<String> lineData = new ArrayList<String>();
+		processLine(line, buf, fieldLength, lineData);
+		return lineData;
+	}
+
+	/**
+	 * Get the content of a cif entry, reading more lines from buf if needed,
+	 * into the given list, which is cleared first. This way the same list can
+	 * be reused for all rows of a loop.
+	 *
+	 * @param line
+	 * @param buf
+	 * @param fieldLength
+	 * @param lineData
+	 */
+	private void processLine(String line,
+			BufferedReader buf,
+			int fieldLength,
+			List<String> lineData)
+					throws IOException{
 
-		//System.out.println("XX processLine " + fieldLength + " " + line);
 		// go through the line and process each character
-		List<String> lineData = new ArrayList<String>();
+		lineData.clear();
 
 		boolean inString = false;
 
@@ -568,38 +568,28 @@ public class SimpleMMcifParser implements MMcifParser {
 				if ( inString )
 					bigWord.append(line);
 				else {
-
-					List<String> dat = processSingleLine(line);
-
-					for (String d : dat){
-						lineData.add(d);
-					}
+					processSingleLine(line, lineData);
 				}
 			}
 
-			//System.out.println("in process line : " + lineData.size() + " " + fieldLength);
-
 			if ( lineData.size() > fieldLength){
 
 				logger.warn("wrong data length ("+lineData.size()+
 						") should be ("+fieldLength+") at line " + line + " got lineData: " + lineData);
-				return lineData;
+				return;
 			}
 
 			if ( lineData.size() == fieldLength)
-				return lineData;
+				return;
 
 
 			line = buf.readLine();
 			if ( line == null)
 				break;
 		}
-		return lineData;
 
 	}
 
-
-
 	private void endLineChecks(String category,List<String> loopFields, List<String> lineData, Set<String> loopWarnings ) throws IOException{
 
 		logger.debug("Processing category {}, with fields: {}",category,loopFields.toString());
@@ -619,37 +609,37 @@ public class SimpleMMcifParser implements MMcifParser {
 		if ( category.equals("_entity")){
 
 			Entity e =  (Entity) buildObject(
-					Entity.class.getName(),
+					Entity.class,
 					loopFields,lineData, loopWarnings);
 			triggerNewEntity(e);
 
 		} else if (category.equals("_entity_poly")) {
-			EntityPoly ep = (EntityPoly) buildObject(EntityPoly.class.getName(), loopFields, lineData, loopWarnings);
+			EntityPoly ep = (EntityPoly) buildObject(EntityPoly.class, loopFields, lineData, loopWarnings);
 			triggerNewEntityPoly(ep);
 			
 		} else if ( category.equals("_struct")){
 
 			struct =  (Struct) buildObject(
-					Struct.class.getName(),
+					Struct.class,
 					loopFields, lineData, loopWarnings);
 
 		} else if ( category.equals("_atom_site")){
 
 			AtomSite a = (AtomSite) buildObject(
-					AtomSite.class.getName(),
+					AtomSite.class,
 					loopFields, lineData, loopWarnings);
 			triggerNewAtomSite(a);
 
 		} else if ( category.equals("_database_PDB_rev")){
 			DatabasePDBrev dbrev = (DatabasePDBrev) buildObject(
-					DatabasePDBrev.class.getName(),
+					DatabasePDBrev.class,
 					loopFields, lineData, loopWarnings);
 
 			triggerNewDatabasePDBrev(dbrev);
 
 		} else if ( category.equals("_database_PDB_rev_record")) {
 			DatabasePdbrevRecord dbrev = (DatabasePdbrevRecord) buildObject(
-					DatabasePdbrevRecord.class.getName(),
+					DatabasePdbrevRecord.class,
 					loopFields, lineData, loopWarnings);
 
 			triggerNewDatabasePDBrevRecord(dbrev);
@@ -657,7 +647,7 @@ public class SimpleMMcifParser implements MMcifParser {
     // MMCIF version 5 dates  
 		} else if ( category.equals("_pdbx_audit_revision_history")) {
 			PdbxAuditRevisionHistory history = (PdbxAuditRevisionHistory) buildObject(
-					PdbxAuditRevisionHistory.class.getName(),
+					PdbxAuditRevisionHistory.class,
 					loopFields, lineData, loopWarnings);
 
 			triggerNewPdbxAuditRevisionHistory(history);
@@ -665,200 +655,200 @@ public class SimpleMMcifParser implements MMcifParser {
     // MMCIF version 5 dates
 		} else if ( category.equals("_pdbx_database_status")) {
 			PdbxDatabaseStatus status = (PdbxDatabaseStatus) buildObject(
-					PdbxDatabaseStatus.class.getName(),
+					PdbxDatabaseStatus.class,
 					loopFields, lineData, loopWarnings);
 
 			triggerNewPdbxDatabaseStatus(status);
 
 		}else if (  category.equals("_database_PDB_remark")) {
 			DatabasePDBremark remark = (DatabasePDBremark) buildObject(
-					DatabasePDBremark.class.getName(),
+					DatabasePDBremark.class,
 					loopFields, lineData, loopWarnings);
 
 			triggerNewDatabasePDBremark(remark);
 
 		} else if ( category.equals("_exptl")){
 			Exptl exptl  = (Exptl) buildObject(
-					Exptl.class.getName(),
+					Exptl.class,
 					loopFields,lineData, loopWarnings);
 
 			triggerExptl(exptl);
 
 		} else if ( category.equals("_cell")){
 			Cell cell  = (Cell) buildObject(
-					Cell.class.getName(),
+					Cell.class,
 					loopFields,lineData, loopWarnings);
 
 			triggerNewCell(cell);
 
 		} else if ( category.equals("_symmetry")){
 			Symmetry symmetry  = (Symmetry) buildObject(
-					Symmetry.class.getName(),
+					Symmetry.class,
 					loopFields,lineData, loopWarnings);
 
 			triggerNewSymmetry(symmetry);
 		} else if ( category.equals("_struct_ncs_oper")) {
 
 			StructNcsOper sNcsOper = (StructNcsOper) buildObject(
-					StructNcsOper.class.getName(), 
+					StructNcsOper.class, 
 					loopFields, lineData, loopWarnings);
 			triggerNewStructNcsOper(sNcsOper);
 		} else if ( category.equals("_atom_sites")) {
 			
 			AtomSites atomSites = (AtomSites) buildObject(
-					AtomSites.class.getName(),
+					AtomSites.class,
 					loopFields, lineData, loopWarnings);
 			triggerNewAtomSites(atomSites);
 
 		} else if ( category.equals("_struct_ref")){
 			StructRef sref  = (StructRef) buildObject(
-					StructRef.class.getName(),
+					StructRef.class,
 					loopFields,lineData, loopWarnings);
 
 			triggerNewStrucRef(sref);
 
 		} else if ( category.equals("_struct_ref_seq")){
 			StructRefSeq sref  = (StructRefSeq) buildObject(
-					StructRefSeq.class.getName(),
+					StructRefSeq.class,
 					loopFields,lineData, loopWarnings);
 
 			triggerNewStrucRefSeq(sref);
 		} else if ( category.equals("_struct_ref_seq_dif")) {
 			StructRefSeqDif sref = (StructRefSeqDif) buildObject(
-					StructRefSeqDif.class.getName(),
+					StructRefSeqDif.class,
 					loopFields, lineData, loopWarnings);
 
 			triggerNewStrucRefSeqDif(sref);
 		} else if ( category.equals("_struct_site_gen")) {
 			StructSiteGen sref = (StructSiteGen) buildObject(
-					StructSiteGen.class.getName(),
+					StructSiteGen.class,
 					loopFields, lineData, loopWarnings);
 
 			triggerNewStructSiteGen(sref);
 		} else if ( category.equals("_struct_site")) {
 			StructSite sref = (StructSite) buildObject(
-					StructSite.class.getName(),
+					StructSite.class,
 					loopFields, lineData, loopWarnings);
 			triggerNewStructSite(sref);
 		} else if ( category.equals("_entity_poly_seq")){
 			EntityPolySeq exptl  = (EntityPolySeq) buildObject(
-					EntityPolySeq.class.getName(),
+					EntityPolySeq.class,
 					loopFields,lineData, loopWarnings);
 
 			triggerNewEntityPolySeq(exptl);
 		} else if ( category.equals("_entity_src_gen")){
 			EntitySrcGen entitySrcGen = (EntitySrcGen) buildObject(
-					EntitySrcGen.class.getName(),
+					EntitySrcGen.class,
 					loopFields,lineData, loopWarnings);
 			triggerNewEntitySrcGen(entitySrcGen);
 		} else if ( category.equals("_entity_src_nat")){
 			EntitySrcNat entitySrcNat = (EntitySrcNat) buildObject(
-					EntitySrcNat.class.getName(),
+					EntitySrcNat.class,
 					loopFields,lineData, loopWarnings);
 			triggerNewEntitySrcNat(entitySrcNat);
 		} else if ( category.equals("_pdbx_entity_src_syn")){
 			EntitySrcSyn entitySrcSyn = (EntitySrcSyn) buildObject(
-					EntitySrcSyn.class.getName(),
+					EntitySrcSyn.class,
 					loopFields,lineData, loopWarnings);
 			triggerNewEntitySrcSyn(entitySrcSyn);
 		} else if ( category.equals("_struct_asym")){
 			StructAsym sasym  = (StructAsym) buildObject(
-					StructAsym.class.getName(),
+					StructAsym.class,
 					loopFields,lineData, loopWarnings);
 
 			triggerNewStructAsym(sasym);
 
 		} else if ( category.equals("_pdbx_poly_seq_scheme")){
 			PdbxPolySeqScheme ppss  = (PdbxPolySeqScheme) buildObject(
-					PdbxPolySeqScheme.class.getName(),
+					PdbxPolySeqScheme.class,
 					loopFields,lineData, loopWarnings);
 
 			triggerNewPdbxPolySeqScheme(ppss);
 
 		} else if ( category.equals("_pdbx_nonpoly_scheme")){
 			PdbxNonPolyScheme ppss  = (PdbxNonPolyScheme) buildObject(
-					PdbxNonPolyScheme.class.getName(),
+					PdbxNonPolyScheme.class,
 					loopFields,lineData, loopWarnings);
 
 			triggerNewPdbxNonPolyScheme(ppss);
 
 		} else if ( category.equals("_pdbx_entity_nonpoly")){
 			PdbxEntityNonPoly pen = (PdbxEntityNonPoly) buildObject(
-					PdbxEntityNonPoly.class.getName(),
+					PdbxEntityNonPoly.class,
 					loopFields,lineData, loopWarnings
 					);
 			triggerNewPdbxEntityNonPoly(pen);
 		} else if ( category.equals("_struct_keywords")){
 			StructKeywords kw = (StructKeywords)buildObject(
-					StructKeywords.class.getName(),
+					StructKeywords.class,
 					loopFields,lineData, loopWarnings
 					);
 			triggerNewStructKeywords(kw);
 		} else if (category.equals("_refine")){
 			Refine r = (Refine)buildObject(
-					Refine.class.getName(),
+					Refine.class,
 					loopFields,lineData, loopWarnings
 					);
 			triggerNewRefine(r);
 		} else if (category.equals("_chem_comp")){
 			ChemComp c = (ChemComp)buildObject(
-					ChemComp.class.getName(),
+					ChemComp.class,
 					loopFields, lineData, loopWarnings
 					);
 			triggerNewChemComp(c);
 		} else if (category.equals("_audit_author")) {
 			AuditAuthor aa = (AuditAuthor)buildObject(
-					AuditAuthor.class.getName(),
+					AuditAuthor.class,
 					loopFields, lineData, loopWarnings);
 			triggerNewAuditAuthor(aa);
 		} else if (category.equals("_pdbx_chem_comp_descriptor")) {
 			ChemCompDescriptor ccd = (ChemCompDescriptor) buildObject(
-					ChemCompDescriptor.class.getName(),
+					ChemCompDescriptor.class,
 					loopFields, lineData, loopWarnings);
 			triggerNewChemCompDescriptor(ccd);
 		} else if (category.equals("_pdbx_struct_oper_list")) {
 
 			PdbxStructOperList structOper = (PdbxStructOperList) buildObject(
-					PdbxStructOperList.class.getName(),
+					PdbxStructOperList.class,
 					loopFields, lineData, loopWarnings
 					);
 			triggerNewPdbxStructOper(structOper);
 
 		} else if (category.equals("_pdbx_struct_assembly")) {
 			PdbxStructAssembly sa = (PdbxStructAssembly) buildObject(
-					PdbxStructAssembly.class.getName(),
+					PdbxStructAssembly.class,
 					loopFields, lineData, loopWarnings);
 			triggerNewPdbxStructAssembly(sa);
 
 		} else if (category.equals("_pdbx_struct_assembly_gen")) {
 			PdbxStructAssemblyGen sa = (PdbxStructAssemblyGen) buildObject(
-					PdbxStructAssemblyGen.class.getName(),
+					PdbxStructAssemblyGen.class,
 					loopFields, lineData, loopWarnings);
 			triggerNewPdbxStructAssemblyGen(sa);
 		} else if ( category.equals("_chem_comp_atom")){
 			ChemCompAtom atom = (ChemCompAtom)buildObject(
-					ChemCompAtom.class.getName(),
+					ChemCompAtom.class,
 					loopFields,lineData, loopWarnings);
 			triggerNewChemCompAtom(atom);
 
 		}else if ( category.equals("_chem_comp_bond")){
 			ChemCompBond bond = (ChemCompBond)buildObject(
-					ChemCompBond.class.getName(),
+					ChemCompBond.class,
 					loopFields,lineData, loopWarnings);
 			triggerNewChemCompBond(bond);
 		} else if ( category.equals("_pdbx_chem_comp_identifier")){
 			PdbxChemCompIdentifier id = (PdbxChemCompIdentifier)buildObject(
-					PdbxChemCompIdentifier.class.getName(),
+					PdbxChemCompIdentifier.class,
 					loopFields,lineData, loopWarnings);
 			triggerNewPdbxChemCompIdentifier(id);
 		} else if ( category.equals("_pdbx_chem_comp_descriptor")){
 			PdbxChemCompDescriptor id = (PdbxChemCompDescriptor)buildObject(
-					PdbxChemCompDescriptor.class.getName(),
+					PdbxChemCompDescriptor.class,
 					loopFields,lineData, loopWarnings);
 			triggerNewPdbxChemCompDescriptor(id);
 		} else if ( category.equals("_struct_conn")){
 			StructConn id = (StructConn)buildObject(
-					StructConn.class.getName(),
+					StructConn.class,
 					loopFields,lineData, loopWarnings);
 			triggerNewStructConn(id);
 
@@ -937,104 +927,36 @@ public class SimpleMMcifParser implements MMcifParser {
 	 * Populates a bean object from  the {@link org.biojava.nbio.structure.io.mmcif.model} package, 
 	 * from the data read from a CIF file.
 	 * It uses reflection to lookup the field and setter method names given the category 
-	 * found in the CIF file. 
+	 * found in the CIF file. The lookup is done only once per class and the setters for the
+	 * current loop fields only once per loop, see {@link MMcifBeanBinder}.
 	 * <p>
 	 * Due to limitations in variable names in java, not all fields can have names 
 	 * exactly as defined in the CIF categories. In those cases the {@link CIFLabel} tag
 	 * can be used in the field names to give the appropriate name that corresponds to the
 	 * CIF category, which is the name that will be then looked up here.
 	 * The {@link IgnoreField} tag can also be used to exclude fields from being looked up.
-	 * @param className
+	 * @param c
 	 * @param loopFields
 	 * @param lineData
 	 * @param warnings
 	 * @return
 	 */
-	private Object buildObject(String className, List<String> loopFields, List<String> lineData, Set<String> warnings) {
-
-		Object o = null;
-		Class<?> c = null;
-
-		try {
-			// build up the Entity object from the line data...
-			c = Class.forName(className);
-
-			o = c.newInstance();
-
-		} catch (InstantiationException|ClassNotFoundException|IllegalAccessException e){
-			logger.error( "Error while constructing {}: {}", className, e.getMessage());
-			return null;
-		} 
-
-		// these methods get the fields but also looking at the IgnoreField and CIFLabel annotations 
-		Field[] fields = MMCIFFileTools.getFields(c);
-		String[] names = MMCIFFileTools.getFieldNames(fields);
-
-		// let's build a map of all methods so that we can look up the setter methods later
-		Method[] methods = c.getMethods();
-
-		Map<String,Method> methodMap = new HashMap<String, Method>();
-		for (Method m : methods) {
-			methodMap.put(m.getName(),m);
-		}
+	private <T> T buildObject(Class<T> c, List<String> loopFields, List<String> lineData, Set<String> warnings) {
 
-		// and a map of all the fields so that we can lookup them up later
-		Map<String, Field> names2fields = new HashMap<>();
-		for (int i=0;i<fields.length;i++) {
-			names2fields.put(names[i], fields[i]);
+		if (loopLayout == null || loopLayoutClass != c) {
+			// the first row since the loop header was parsed
+			loopLayout = MMcifBeanBinder.getBinder(c).getLayout(loopFields);
+			loopLayoutClass = c;
 		}
-		
-		int pos = -1 ;
-		for (String key: loopFields){
-			pos++;
-
-			String val = lineData.get(pos);
-			
-			// we first start looking up the field which can be annotated with a CIFLabel if they 
-			// need alternative names (e.g. for field _symmetry.space_group_name_H-M, since hyphen is not allowed in var names in java)
-			Field field = names2fields.get(key);
-			
-			if (field == null) {
-				produceWarning(key, val, c, warnings);
-				continue;
-			}
-			// now we need to find the corresponding setter
-			// note that we can't use the field directly and then call Field.set() because many setters 
-			// have more functionality than just setting the value (e.g. some setters in ChemComp)
+		MMcifBeanBinder.Layout layout = loopLayout;
 
-			// building up the setter method name: need to upper case the first letter, leave the rest untouched
-			String setterMethodName = "set" + field.getName().substring(0,1).toUpperCase() + field.getName().substring(1, field.getName().length());
+		T o = MMcifBeanBinder.getBinder(c).bind(layout, lineData);
+		if (o == null) return null;
 
-			Method setter = methodMap.get(setterMethodName);
-			
-			if (setter==null) {
-				produceWarning(key, val, c, warnings);
-				continue;
+		for (int pos=0;pos<loopFields.size();pos++) {
+			if (layout.getSetter(pos) == null) {
+				produceWarning(loopFields.get(pos), lineData.get(pos), c, warnings);
 			}
-			
-			
-
-			// now we populate the object with the values by invoking the corresponding setter method,			
-			// note that all of the mmCif container classes have only one argument (they are beans)
-			Class<?>[] pType  = setter.getParameterTypes();
-			
-
-			try {
-				if ( pType[0].getName().equals(Integer.class.getName())) {
-					if ( val != null && ! val.equals("?") && !val.equals(".")) {
-
-						Integer intVal = Integer.parseInt(val);
-						setter.invoke(o, intVal);
-						
-					}
-				} else {
-					// default val is a String					
-					setter.invoke(o, val);
-				}
-			} catch (IllegalAccessException|InvocationTargetException e) {
-				logger.error("Could not invoke setter {} with value {} for class {}", setterMethodName, val, className);
-			} 
-
 		}
 
 		return o;
@@ -1042,8 +964,13 @@ public class SimpleMMcifParser implements MMcifParser {
 	
 	private void produceWarning(String key, String val, Class<?> c, Set<String> warnings) {
 
-		String warning = "Trying to set field " + key + " in "+ c.getName() +" found in file, but no corresponding field could be found in model class (value:" + val + ")";
 		String warnkey = key+"-"+c.getName();
+		if (warnings != null && warnings.contains(warnkey) && !logger.isDebugEnabled()) {
+			// already warned for this loop, no need to build the message again for every row
+			return;
+		}
+
+		String warning = "Trying to set field " + key + " in "+ c.getName() +" found in file, but no corresponding field could be found in model class (value:" + val + ")";
 		// Suppress duplicate warnings or attempts to store empty data
 		if( val.equals("?") || val.equals(".") || ( warnings != null && warnings.contains(warnkey)) ) {
 			logger.debug(warning);
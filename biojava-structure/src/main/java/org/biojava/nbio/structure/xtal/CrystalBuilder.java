@@ -23,6 +23,7 @@ package org.biojava.nbio.structure.xtal;
 
 import org.biojava.nbio.structure.*;
 import org.biojava.nbio.structure.contact.AtomContactSet;
+import org.biojava.nbio.structure.contact.BoundingBox;
 import org.biojava.nbio.structure.contact.StructureInterface;
 import org.biojava.nbio.structure.contact.StructureInterfaceList;
 import org.slf4j.Logger;
@@ -32,6 +33,8 @@ import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3i;
 import javax.vecmath.Vector3d;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
@@ -74,6 +77,12 @@ public class CrystalBuilder {
 	 */
 	private static final boolean INCLUDE_HETATOMS = true;
 
+	/**
+	 * Margin (in fractional coordinates) added to the ranges of cells searched for each operator,
+	 * to be safe against rounding errors
+	 */
+	private static final double CELL_RANGE_MARGIN = 1e-6;
+
 	private Structure structure;
 	private PDBCrystallographicInfo crystallographicInfo;
 	private int numPolyChainsAu;
@@ -91,6 +100,12 @@ public class CrystalBuilder {
 	private boolean searchBeyondAU;
 	private Matrix4d[] ops;
 
+	private int nThreads = 1;
+	private ForkJoinPool pool;
+
+	// false to search all the (2*numCells+1)^3 cells for every operator, only to test the pruning
+	private boolean pruneCells = true;
+
 	/**
 	 * Special constructor for NCS-aware CrystalBuilder.
 	 * The output list of interfaces will be pre-clustered by NCS-equivalence.
@@ -179,6 +194,48 @@ public class CrystalBuilder {
 		this.numCells = numCells;
 	}
 
+	/**
+	 * Set the number of threads used to calculate the contacts between chains
+	 * in the search for interfaces. Default 1. With more than 1 thread the contacts
+	 * are calculated on the common fork-join pool, unless a pool was set with
+	 * {@link #setForkJoinPool(ForkJoinPool)}.
+	 * @param nThreads
+	 * @since 5.1.2
+	 */
+	public void setNumThreads(int nThreads) {
+		this.nThreads = nThreads;
+	}
+
+	/**
+	 * @return the number of threads used to calculate the contacts between chains
+	 * @since 5.1.2
+	 */
+	public int getNumThreads() {
+		return nThreads;
+	}
+
+	/**
+	 * Set a pool to calculate the contacts between chains in parallel, overriding the
+	 * number of threads. The pool is owned by the caller, who can reuse it for several
+	 * structures, for instance a <code>new ForkJoinPool(n)</code> to use n threads.
+	 * Passing null reverts to using the number of threads.
+	 * @param pool
+	 * @since 5.1.2
+	 */
+	public void setForkJoinPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Sets whether the cells searched for each operator are restricted to those returned by
+	 * {@link #getCellRanges(UnitCellBoundingBox, double)}. Default true: the interfaces are the same
+	 * without the restriction, which is only used to test it.
+	 * @param pruneCells
+	 */
+	void setPruneCells(boolean pruneCells) {
+		this.pruneCells = pruneCells;
+	}
+
 	private void initialiseVisited() {
 		visitedCrystalTransforms = new ArrayList<>();
 		if(this.hasNcsOps()) {
@@ -241,6 +298,12 @@ public class CrystalBuilder {
 	/**
 	 * Calculate interfaces between original asymmetric unit and neighboring
 	 * whole unit cells, including the original full unit cell i.e. i=0,j=0,k=0
+	 * <p>
+	 * The cells and operators are enumerated first, restricted to the cells where the AU of each operator
+	 * can be in contact with the original AU (see {@link #getCellRanges(UnitCellBoundingBox, double)}), and the
+	 * chain pairs whose bounding boxes overlap are collected. Their contacts are then calculated, in parallel
+	 * if {@link #getNumThreads()} is more than 1 or a pool was set, and the interfaces are added in the order
+	 * of enumeration.
 	 * @param set
 	 * @param cutoff
 	 */
@@ -250,14 +313,13 @@ public class CrystalBuilder {
 		// initialising debugging vars
 		long start = -1;
 		long end = -1;
-		int trialCount = 0;
 		int skippedRedundant = 0;
 		int skippedAUsNoOverlap = 0;
 		int skippedChainsNoOverlap = 0;
 		int skippedSelfEquivalent = 0;
 
 		// The bounding boxes of all AUs of the unit cell
-		UnitCellBoundingBox bbGrid = new UnitCellBoundingBox(numOperatorsSg, numPolyChainsAu);;
+		UnitCellBoundingBox bbGrid = new UnitCellBoundingBox(numOperatorsSg, numPolyChainsAu);
 		// we calculate all the bounds of each of the asym units, those will then be reused and translated
 		bbGrid.setBbs(structure, ops, INCLUDE_HETATOMS);
 
@@ -268,7 +330,6 @@ public class CrystalBuilder {
 		boolean verbose = logger.isDebugEnabled();
 
 		if (verbose) {
-			trialCount = 0;
 			start= System.currentTimeMillis();
 			int neighbors = (2*numCells+1)*(2*numCells+1)*(2*numCells+1)-1;
 			int auTrials = (numPolyChainsAu*(numPolyChainsAu-1))/2;
@@ -281,26 +342,47 @@ public class CrystalBuilder {
 			logger.debug("Total trials: "+(auTrials+trials));
 		}
 
-		List<Chain> polyChains = structure.getPolyChains();
+		// the cells where the AU of each operator can be in contact with the original AU, and their union
+		int[][] cellRanges = getCellRanges(bbGrid, cutoff);
+		int[] union = {numCells, -numCells, numCells, -numCells, numCells, -numCells};
+		for (int[] range : cellRanges) {
+			for (int d=0;d<3;d++) {
+				union[2*d] = Math.min(union[2*d], range[2*d]);
+				union[2*d+1] = Math.max(union[2*d+1], range[2*d+1]);
+			}
+		}
 
-		for (int a=-numCells;a<=numCells;a++) {
-			for (int b=-numCells;b<=numCells;b++) {
-				for (int c=-numCells;c<=numCells;c++) {
+		List<ChainPairTrial> trials = new ArrayList<>();
+		// for debugging: the trials of each operator and the number of chain pairs compared
+		List<StringBuilder> builders = new ArrayList<>();
+		List<Integer> builderPairs = new ArrayList<>();
 
-					Point3i trans = new Point3i(a,b,c);
-					Vector3d transOrth = new Vector3d(a,b,c);
-					if (a!=0 || b!=0 || c!=0) {
-						// we avoid doing the transformation for 0,0,0 (in case it's not crystallographic)
-						this.crystallographicInfo.getCrystalCell().transfToOrthonormal(transOrth);
-					}
+		for (int a=union[0];a<=union[1];a++) {
+			for (int b=union[2];b<=union[3];b++) {
+				for (int c=union[4];c<=union[5];c++) {
 
-					UnitCellBoundingBox bbGridTrans = bbGrid.getTranslatedBbs(transOrth);
+					Point3i trans = new Point3i(a,b,c);
+					Vector3d transOrth = null;
 
 					for (int n=0;n<numOperatorsSg;n++) {
 
 						// short-cut strategies
 						// 1) we skip first of all if the bounding boxes of the AUs don't overlap
-						if (!bbGrid.getAuBoundingBox(0).overlaps(bbGridTrans.getAuBoundingBox(n), cutoff)) {
+						int[] range = cellRanges[n];
+						if (a<range[0] || a>range[1] || b<range[2] || b>range[3] || c<range[4] || c>range[5]) {
+							skippedAUsNoOverlap++;
+							continue;
+						}
+						if (transOrth == null) {
+							transOrth = new Vector3d(a,b,c);
+							if (a!=0 || b!=0 || c!=0) {
+								// we avoid doing the transformation for 0,0,0 (in case it's not crystallographic)
+								this.crystallographicInfo.getCrystalCell().transfToOrthonormal(transOrth);
+							}
+						}
+						BoundingBox auBbTrans = new BoundingBox(bbGrid.getAuBoundingBox(n));
+						auBbTrans.translate(transOrth);
+						if (!bbGrid.getAuBoundingBox(0).overlaps(auBbTrans, cutoff)) {
 							skippedAUsNoOverlap++;
 							continue;
 						}
@@ -326,13 +408,23 @@ public class CrystalBuilder {
 						}
 
 						StringBuilder builder = null;
-						if (verbose) builder = new StringBuilder(String.valueOf(tt)).append(" ");
+						if (verbose) {
+							builder = new StringBuilder(String.valueOf(tt)).append(" ");
+							builders.add(builder);
+							if (a==0 && b==0 && c==0 && n==0)
+								builderPairs.add((numPolyChainsAu*(numPolyChainsAu-1))/2);
+							else if (selfEquivalent)
+								builderPairs.add((numPolyChainsAu*(numPolyChainsAu+1))/2);
+							else
+								builderPairs.add(numPolyChainsAu*numPolyChainsAu);
+						}
 
 						// Now that we know that boxes overlap and operator is not redundant, we have to go to the details
-						int contactsFound = 0;
-
 						for (int j=0;j<numPolyChainsAu;j++) {
 
+							BoundingBox chainBbTrans = new BoundingBox(bbGrid.getChainBoundingBox(n,j));
+							chainBbTrans.translate(transOrth);
+
 							for (int i=0;i<numPolyChainsAu;i++) { // we only have to compare the original asymmetric unit to every full cell around
 
 								if(selfEquivalent && (j>i)) {
@@ -344,7 +436,7 @@ public class CrystalBuilder {
 								if (n==0 && a==0 && b==0 && c==0 && i==j) continue;
 
 								// before calculating the AtomContactSet we check for overlap, then we save putting atoms into the grid
-								if (!bbGrid.getChainBoundingBox(0,i).overlaps(bbGridTrans.getChainBoundingBox(n,j),cutoff)) {
+								if (!bbGrid.getChainBoundingBox(0,i).overlaps(chainBbTrans,cutoff)) {
 									skippedChainsNoOverlap++;
 									if (verbose) {
 										builder.append(".");
@@ -352,52 +444,53 @@ public class CrystalBuilder {
 									continue;
 								}
 
-								trialCount++;
-
-								// finally we've gone through all short-cuts and the 2 chains seem to be close enough:
-								// we do the calculation of contacts
-								Chain chaini = polyChains.get(i);
-								Chain chainj = polyChains.get(j);
-
-								if (n!=0 || a!=0 || b!=0 || c!=0) {
-									Matrix4d mJCryst = new Matrix4d(ops[n]);
-									translate(mJCryst, transOrth);
-									chainj = (Chain)chainj.clone();
-									Calc.transform(chainj,mJCryst);
-								}
-
-								StructureInterface interf = calcContacts(chaini, chainj, cutoff, tt, builder);
-								if (interf == null) {
-									continue;
-								}
-
-								contactsFound++;
-								if(this.hasNcsOps()) {
-									StructureInterface interfNcsRef = findNcsRef(interf);
-									set.addNcsEquivalent(interf,interfNcsRef);
-								} else {
-									set.add(interf);
+								// the 2 chains seem to be close enough: their contacts will be calculated
+								boolean original = n==0 && a==0 && b==0 && c==0;
+								trials.add(new ChainPairTrial(i, j, n, original ? null : transOrth, tt, verbose ? builders.size()-1 : -1));
+								if (verbose) {
+									builder.append("?");
 								}
 							}
 						}
-
-						if( verbose ) {
-							if (a==0 && b==0 && c==0 && n==0)
-								builder.append(" "+contactsFound+"("+(numPolyChainsAu*(numPolyChainsAu-1))/2+")");
-							else if (selfEquivalent)
-								builder.append(" "+contactsFound+"("+(numPolyChainsAu*(numPolyChainsAu+1))/2+")");
-							else
-								builder.append(" "+contactsFound+"("+numPolyChainsAu*numPolyChainsAu+")");
-
-							logger.debug(builder.toString());
-						}
 					}
 				}
 			}
 		}
 
+		// finally we've gone through all short-cuts: we do the calculation of contacts
+		StructureInterface[] interfaces = calcContacts(trials, cutoff);
+
+		int contactsFound = 0;
+		int[] builderContacts = new int[builders.size()];
+		for (int t=0;t<trials.size();t++) {
+			ChainPairTrial trial = trials.get(t);
+			StructureInterface interf = interfaces[t];
+			if (verbose) {
+				StringBuilder builder = builders.get(trial.builderIndex);
+				builder.setCharAt(builder.indexOf("?"), interf == null ? 'o' : 'x');
+			}
+			if (interf == null) {
+				continue;
+			}
+
+			contactsFound++;
+			if (verbose) builderContacts[trial.builderIndex]++;
+			if(this.hasNcsOps()) {
+				StructureInterface interfNcsRef = findNcsRef(interf);
+				set.addNcsEquivalent(interf,interfNcsRef);
+			} else {
+				set.add(interf);
+			}
+		}
+
+		if (verbose) {
+			for (int k=0;k<builders.size();k++) {
+				logger.debug(builders.get(k).append(" "+builderContacts[k]+"("+builderPairs.get(k)+")").toString());
+			}
+		}
+
 		end = System.currentTimeMillis();
-		logger.debug("\n"+trialCount+" chain-chain clash trials done. Time "+(end-start)/1000+"s");
+		logger.debug("\n"+trials.size()+" chain-chain clash trials done ("+contactsFound+" in contact). Time "+(end-start)/1000+"s");
 		logger.debug("  skipped (not overlapping AUs)       : "+skippedAUsNoOverlap);
 		logger.debug("  skipped (not overlapping chains)    : "+skippedChainsNoOverlap);
 		logger.debug("  skipped (sym redundant op pairs)    : "+skippedRedundant);
@@ -405,6 +498,159 @@ public class CrystalBuilder {
 		logger.debug("Found "+set.size()+" interfaces.");
 	}
 
+	/**
+	 * Calculates for each operator the ranges of cell translations (within the {@link #setNumCells(int) number of cells})
+	 * where its AU bounding box can overlap the one of the original AU.
+	 * Overlapping translations lie within a box in orthonormal space, the ranges bound that box in the crystal basis.
+	 * The ranges can include cells that don't overlap, but never exclude one that does.
+	 * @param bbGrid
+	 * @param cutoff
+	 * @return an array of numOperatorsSg ranges: min and max a, min and max b, min and max c
+	 */
+	private int[][] getCellRanges(UnitCellBoundingBox bbGrid, double cutoff) {
+
+		int[][] cellRanges = new int[numOperatorsSg][];
+		BoundingBox au = bbGrid.getAuBoundingBox(0);
+
+		for (int n=0;n<numOperatorsSg;n++) {
+			if (numCells == 0) {
+				cellRanges[n] = new int[6];
+				continue;
+			}
+			if (!pruneCells) {
+				cellRanges[n] = new int[] {-numCells, numCells, -numCells, numCells, -numCells, numCells};
+				continue;
+			}
+			BoundingBox auN = bbGrid.getAuBoundingBox(n);
+			double[] min = {au.xmin - auN.xmax - cutoff, au.ymin - auN.ymax - cutoff, au.zmin - auN.zmax - cutoff};
+			double[] max = {au.xmax - auN.xmin + cutoff, au.ymax - auN.ymin + cutoff, au.zmax - auN.zmin + cutoff};
+
+			double[] cellMin = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+			double[] cellMax = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+			for (int corner=0;corner<8;corner++) {
+				Vector3d v = new Vector3d(
+						(corner & 1) == 0 ? min[0] : max[0],
+						(corner & 2) == 0 ? min[1] : max[1],
+						(corner & 4) == 0 ? min[2] : max[2]);
+				this.crystallographicInfo.getCrystalCell().transfToCrystal(v);
+				double[] xtal = {v.x, v.y, v.z};
+				for (int d=0;d<3;d++) {
+					cellMin[d] = Math.min(cellMin[d], xtal[d]);
+					cellMax[d] = Math.max(cellMax[d], xtal[d]);
+				}
+			}
+
+			int[] range = new int[6];
+			for (int d=0;d<3;d++) {
+				// a margin for the rounding errors, the exact overlap is checked for every cell anyway
+				range[2*d] = (int) Math.max(-numCells, Math.floor(cellMin[d] - CELL_RANGE_MARGIN));
+				range[2*d+1] = (int) Math.min(numCells, Math.ceil(cellMax[d] + CELL_RANGE_MARGIN));
+			}
+			cellRanges[n] = range;
+		}
+		return cellRanges;
+	}
+
+	/**
+	 * Calculates the contacts of all the given chain pairs, on the pool set with
+	 * {@link #setForkJoinPool(ForkJoinPool)}, or on the common fork-join pool if
+	 * there is more than 1 thread.
+	 * @param trials
+	 * @param cutoff
+	 * @return the interface of each chain pair, null if there are no contacts
+	 */
+	private StructureInterface[] calcContacts(List<ChainPairTrial> trials, double cutoff) {
+
+		StructureInterface[] interfaces = new StructureInterface[trials.size()];
+		List<Chain> polyChains = structure.getPolyChains();
+
+		if ((pool == null && nThreads <= 1) || trials.size() <= 1) {
+			for (int t=0;t<trials.size();t++) {
+				interfaces[t] = calcContacts(polyChains, trials.get(t), cutoff);
+			}
+			return interfaces;
+		}
+
+		ForkJoinPool p = pool != null ? pool : ForkJoinPool.commonPool();
+		p.invoke(new ContactsTask(polyChains, trials, cutoff, interfaces, 0, trials.size()));
+		return interfaces;
+	}
+
+	private StructureInterface calcContacts(List<Chain> polyChains, ChainPairTrial trial, double cutoff) {
+
+		Chain chaini = polyChains.get(trial.i);
+		Chain chainj = polyChains.get(trial.j);
+
+		if (trial.transOrth != null) {
+			Matrix4d mJCryst = new Matrix4d(ops[trial.n]);
+			translate(mJCryst, trial.transOrth);
+			chainj = (Chain)chainj.clone();
+			Calc.transform(chainj,mJCryst);
+		}
+
+		return calcContacts(chaini, chainj, cutoff, trial.tt);
+	}
+
+	/**
+	 * A pair of chains of the original AU (i) and of an operator and cell (j) whose
+	 * bounding boxes overlap. The translation is null for a pair within the original AU.
+	 */
+	private static class ChainPairTrial {
+
+		private final int i;
+		private final int j;
+		private final int n;
+		private final Vector3d transOrth;
+		private final CrystalTransform tt;
+		private final int builderIndex;
+
+		public ChainPairTrial(int i, int j, int n, Vector3d transOrth, CrystalTransform tt, int builderIndex) {
+			this.i = i;
+			this.j = j;
+			this.n = n;
+			this.transOrth = transOrth;
+			this.tt = tt;
+			this.builderIndex = builderIndex;
+		}
+	}
+
+	/**
+	 * Calculates the contacts of a range of chain pairs, splitting it in halves
+	 * so that idle threads of the pool can steal work.
+	 */
+	private class ContactsTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<Chain> polyChains;
+		private final List<ChainPairTrial> trials;
+		private final double cutoff;
+		private final StructureInterface[] interfaces;
+		private final int from;
+		private final int to;
+
+		public ContactsTask(List<Chain> polyChains, List<ChainPairTrial> trials, double cutoff,
+				StructureInterface[] interfaces, int from, int to) {
+			this.polyChains = polyChains;
+			this.trials = trials;
+			this.cutoff = cutoff;
+			this.interfaces = interfaces;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				interfaces[from] = calcContacts(polyChains, trials.get(from), cutoff);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ContactsTask(polyChains, trials, cutoff, interfaces, from, mid),
+					new ContactsTask(polyChains, trials, cutoff, interfaces, mid, to));
+		}
+	}
+
 
 	/**
 	 * Checks whether given interface is NCS-redundant, i.e., an identical interface between NCS copies of
@@ -489,13 +735,11 @@ public class CrystalBuilder {
 		return matchInterface;
 	}
 
-	private StructureInterface calcContacts(Chain chaini, Chain chainj, double cutoff, CrystalTransform tt, StringBuilder builder) {
+	private StructureInterface calcContacts(Chain chaini, Chain chainj, double cutoff, CrystalTransform tt) {
 		// note that we don't consider hydrogens when calculating contacts
 		AtomContactSet graph = StructureTools.getAtomsInContact(chaini, chainj, cutoff, INCLUDE_HETATOMS);
 
 		if (graph.size()>0) {
-			if (builder != null) builder.append("x");
-
 			CrystalTransform transf = new CrystalTransform(this.crystallographicInfo.getSpaceGroup());
 			StructureInterface interf = new StructureInterface(
 					StructureTools.getAllAtomArray(chaini), StructureTools.getAllAtomArray(chainj),
@@ -506,7 +750,6 @@ public class CrystalBuilder {
 			return interf;
 
 		} else {
-			if (builder != null) builder.append("o");
 			return null;
 		}
 	}
@@ -0,0 +1,245 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.align.ce.CeMain;
+import org.biojava.nbio.structure.align.util.AtomCache;
+import org.biojava.nbio.structure.align.util.DBSearchCheckpoint;
+import org.biojava.nbio.structure.align.util.DBSearchStatistics;
+import org.biojava.nbio.structure.align.util.SynchronizedOutFile;
+import org.biojava.nbio.structure.io.LocalPDBDirectory.FetchBehavior;
+import org.biojava.nbio.structure.io.PDBFileReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the database search, its checkpoint and statistics on a local copy of
+ * 4hhb.
+ *
+ * @since 5.1.2
+ */
+public class TestMultiThreadedDBSearch {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private AtomCache localCache() throws IOException {
+		File pdbDir = folder.newFolder("pdb");
+		File splitDir = pdbDir;
+		for (String dir : PDBFileReader.PDB_SPLIT_DIR) {
+			splitDir = new File(splitDir, dir);
+		}
+		splitDir = new File(splitDir, "hh");
+		assertTrue(splitDir.mkdirs());
+
+		InputStream in = getClass().getResourceAsStream("/4hhb.pdb.gz");
+		OutputStream out = new FileOutputStream(new File(splitDir, "pdb4hhb.ent.gz"));
+		try {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
+			}
+		} finally {
+			in.close();
+			out.close();
+		}
+
+		AtomCache cache = new AtomCache(pdbDir.getAbsolutePath());
+		cache.setUseMmtf(false);
+		cache.setUseMmCif(false);
+		cache.setFetchBehavior(FetchBehavior.LOCAL_ONLY);
+		return cache;
+	}
+
+	private static List<String> readLines(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+	private static int countResults(List<String> lines) {
+		int results = 0;
+		for (String line : lines) {
+			if (!line.startsWith("#")) {
+				results++;
+			}
+		}
+		return results;
+	}
+
+	@Test
+	public void testSearchAndResume() throws Exception {
+		AtomCache cache = localCache();
+		Structure structure = cache.getStructure("4HHB.A");
+		File outDir = folder.newFolder("out");
+		SortedSet<String> targets = new TreeSet<String>(Arrays.asList("4HHB.A", "4HHB.B", "4HHB.C"));
+
+		MultiThreadedDBSearch search = new MultiThreadedDBSearch("4HHB.A", structure, outDir.getAbsolutePath(),
+				StructureAlignmentFactory.getAlgorithm(CeMain.algorithmName), 2, false, targets);
+		search.setAtomCache(cache);
+		search.setMaxInFlight(2);
+		search.run();
+
+		List<String> lines = readLines(search.getResultFile());
+		assertEquals(3, countResults(lines));
+		assertTrue(lines.get(0).startsWith("# algorithm:"));
+		assertEquals(3, search.getStatistics().getNrAlignments());
+		assertEquals(new ArrayList<String>(targets), readLines(new File(outDir, "checkpoint_4HHB.A.txt")));
+		for (String target : targets) {
+			assertTrue(new File(outDir, "dbsearch_4HHB.A_" + target + ".xml.gz").exists());
+		}
+
+		// resuming a complete search aligns nothing more
+		MultiThreadedDBSearch resumed = new MultiThreadedDBSearch("4HHB.A", structure, outDir.getAbsolutePath(),
+				StructureAlignmentFactory.getAlgorithm(CeMain.algorithmName), 2, false, targets);
+		resumed.setAtomCache(cache);
+		resumed.setResume(true);
+		resumed.run();
+		assertEquals(0, resumed.getStatistics().getNrAlignments());
+		assertEquals(lines, readLines(resumed.getResultFile()));
+
+		// a run interrupted after writing the last result, but before its checkpoint
+		List<String> checkpointed = new ArrayList<String>();
+		for (String line : lines) {
+			if (!line.startsWith("#") && checkpointed.size() < 2) {
+				checkpointed.add(line.split("\t")[1]);
+			}
+		}
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(outDir, "checkpoint_4HHB.A.txt")), "UTF-8");
+		writer.write(checkpointed.get(0) + "\n" + checkpointed.get(1) + "\n");
+		writer.close();
+		writer = new OutputStreamWriter(new FileOutputStream(search.getResultFile(), true), "UTF-8");
+		writer.write("4HHB.A\t4HHB");
+		writer.close();
+
+		resumed = new MultiThreadedDBSearch("4HHB.A", structure, outDir.getAbsolutePath(),
+				StructureAlignmentFactory.getAlgorithm(CeMain.algorithmName), 2, false, targets);
+		resumed.setAtomCache(cache);
+		resumed.setResume(true);
+		resumed.run();
+		assertEquals(1, resumed.getStatistics().getNrAlignments());
+		List<String> resumedLines = readLines(resumed.getResultFile());
+		assertEquals(3, countResults(resumedLines));
+		assertEquals(new HashSet<String>(lines), new HashSet<String>(resumedLines));
+		assertEquals(targets, new TreeSet<String>(readLines(new File(outDir, "checkpoint_4HHB.A.txt"))));
+
+		// a new search replaces the results of the previous one
+		MultiThreadedDBSearch again = new MultiThreadedDBSearch("4HHB.A", structure, outDir.getAbsolutePath(),
+				StructureAlignmentFactory.getAlgorithm(CeMain.algorithmName), 2, false, targets);
+		again.setAtomCache(cache);
+		again.run();
+		assertEquals(3, again.getStatistics().getNrAlignments());
+		List<String> againLines = readLines(again.getResultFile());
+		assertEquals(3, countResults(againLines));
+		// a single header
+		assertEquals(0, againLines.lastIndexOf(lines.get(0)));
+	}
+
+	@Test
+	public void testCheckpoint() throws IOException {
+		File file = folder.newFile("checkpoint.txt");
+		DBSearchCheckpoint checkpoint = new DBSearchCheckpoint(file, true);
+		checkpoint.markCompleted(Arrays.asList("d1a", "d2b"));
+		checkpoint.close();
+
+		// a run interrupted while writing a name
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+		writer.write("d3");
+		writer.close();
+
+		checkpoint = new DBSearchCheckpoint(file, true);
+		assertEquals(2, checkpoint.getNrCompleted());
+		assertTrue(checkpoint.isCompleted("d1a"));
+		assertFalse(checkpoint.isCompleted("d3"));
+		checkpoint.markCompleted(Arrays.asList("d3c", "d1a"));
+		checkpoint.close();
+		assertEquals(Arrays.asList("d1a", "d2b", "d3c"), readLines(file));
+
+		checkpoint = new DBSearchCheckpoint(file, false);
+		assertEquals(0, checkpoint.getNrCompleted());
+		checkpoint.close();
+		assertEquals(0, file.length());
+	}
+
+	/**
+	 * A result that can not be written fails the flush that precedes the
+	 * checkpoint.
+	 */
+	@Test
+	public void testResultWriteFails() throws IOException {
+		File file = folder.newFile("results.out");
+		SynchronizedOutFile out = new SynchronizedOutFile(file);
+		out.write("4HHB.A\t4HHB.B\n");
+		assertTrue(file.delete());
+		assertTrue(file.mkdir());
+		try {
+			out.flush();
+			fail("the result was not written");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testStatistics() {
+		DBSearchStatistics statistics = new DBSearchStatistics();
+		assertEquals(0.0, statistics.getLatencyPercentile(50), 0.0);
+		for (int i = 100; i >= 1; i--) {
+			statistics.record(i * 1000000L);
+		}
+		statistics.stop();
+		assertEquals(100, statistics.getNrAlignments());
+		assertEquals(1.0, statistics.getLatencyPercentile(0), 1e-9);
+		assertEquals(50.0, statistics.getLatencyPercentile(50), 1e-9);
+		assertEquals(99.0, statistics.getLatencyPercentile(99), 1e-9);
+		assertEquals(100.0, statistics.getLatencyPercentile(100), 1e-9);
+		assertTrue(statistics.getAlignmentsPerSecond() > 0);
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.fatcat;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.AtomImpl;
+import org.biojava.nbio.structure.Calc;
+import org.biojava.nbio.structure.align.fatcat.calc.AFPExtractor;
+import org.biojava.nbio.structure.align.fatcat.calc.FatCatParameters;
+import org.biojava.nbio.structure.align.model.AFP;
+import org.biojava.nbio.structure.geometry.SuperPositions;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestAFPExtractor {
+
+	/**
+	 * A random walk of CA atoms 3.8 A apart.
+	 */
+	private static Atom[] randomChain(Random random, int length) {
+		Atom[] ca = new Atom[length];
+		double[] coords = new double[3];
+		for (int i = 0; i < length; i++) {
+			ca[i] = new AtomImpl();
+			ca[i].setCoords(coords.clone());
+			double x = random.nextGaussian();
+			double y = random.nextGaussian();
+			double z = random.nextGaussian();
+			double norm = 3.8 / Math.sqrt(x * x + y * y + z * z);
+			coords[0] += x * norm;
+			coords[1] += y * norm;
+			coords[2] += z * norm;
+		}
+		return ca;
+	}
+
+	/**
+	 * The chain rotated about z, moved and with noise added to the coordinates.
+	 */
+	private static Atom[] noisyCopy(Random random, Atom[] chain, double noise) {
+		Atom[] ca = new Atom[chain.length];
+		double cos = Math.cos(1.0);
+		double sin = Math.sin(1.0);
+		for (int i = 0; i < chain.length; i++) {
+			ca[i] = new AtomImpl();
+			ca[i].setCoords(new double[] {
+					cos * chain[i].getX() - sin * chain[i].getY() + 10 + noise * random.nextGaussian(),
+					sin * chain[i].getX() + cos * chain[i].getY() - 5 + noise * random.nextGaussian(),
+					chain[i].getZ() + 3 + noise * random.nextGaussian() });
+		}
+		return ca;
+	}
+
+	private static double superposeRmsd(Atom[] ca1, Atom[] ca2, int p1, int p2, int fragLen) {
+		return SuperPositions.getRmsd(
+				Calc.atomsToPoints(Arrays.copyOfRange(ca1, p1, p1 + fragLen)),
+				Calc.atomsToPoints(Arrays.copyOfRange(ca2, p2, p2 + fragLen)));
+	}
+
+	@Test
+	public void testRmsd() {
+		Random random = new Random(42);
+		Atom[] ca1 = randomChain(random, 60);
+		Atom[] ca2 = noisyCopy(random, randomChain(random, 50), 0.5);
+		FatCatParameters params = new FatCatParameters();
+		AFPExtractor extractor = new AFPExtractor(params, ca1, ca2);
+		for (int p1 = 0; p1 < ca1.length - params.getFragLen(); p1 += 3) {
+			for (int p2 = 0; p2 < ca2.length - params.getFragLen(); p2 += 3) {
+				assertEquals(superposeRmsd(ca1, ca2, p1, p2, params.getFragLen()), extractor.getRmsd(p1, p2), 1e-6);
+			}
+		}
+	}
+
+	@Test
+	public void testSameAsSuperposition() {
+		Random random = new Random(7);
+		Atom[] ca1 = randomChain(random, 300);
+		Atom[] ca2 = noisyCopy(random, ca1, 1.0);
+		for (int sparse : new int[] {0, 1}) {
+			FatCatParameters params = new FatCatParameters();
+			params.setSparse(sparse);
+			int fragLen = params.getFragLen();
+			List<AFP> afps = new AFPExtractor(params, ca1, ca2).extract();
+			assertFalse(afps.isEmpty());
+
+			// the fragment pairs expected in order, and those too close to the cutoff to compare
+			List<int[]> expected = new ArrayList<int[]>();
+			List<Double> rmsds = new ArrayList<Double>();
+			Set<List<Integer>> boundary = new HashSet<List<Integer>>();
+			for (int p1 = 0; p1 < ca1.length - fragLen; p1 += sparse + 1) {
+				for (int p2 = 0; p2 < ca2.length - fragLen; p2 += sparse + 1) {
+					double ends1 = Calc.getDistance(ca1[p1], ca1[p1 + fragLen - 1]);
+					double ends2 = Calc.getDistance(ca2[p2], ca2[p2 + fragLen - 1]);
+					if (Math.abs(ends1 - ends2) > params.getDisFilter()) {
+						continue;
+					}
+					int maxAlignment = Math.min(p1, p2) + fragLen
+							+ Math.min(ca1.length - p1 - fragLen + 1, ca2.length - p2 - fragLen + 1);
+					if (maxAlignment < (int) (0.3 * ca1.length)) {
+						continue;
+					}
+					double rmsd = superposeRmsd(ca1, ca2, p1, p2, fragLen);
+					if (Math.abs(rmsd - params.getRmsdCut()) < 1e-6) {
+						boundary.add(Arrays.asList(p1, p2));
+					} else if (rmsd < params.getRmsdCut()) {
+						expected.add(new int[] {p1, p2});
+						rmsds.add(rmsd);
+					}
+				}
+			}
+
+			List<int[]> extracted = new ArrayList<int[]>();
+			List<AFP> compared = new ArrayList<AFP>();
+			for (AFP afp : afps) {
+				if (!boundary.contains(Arrays.asList(afp.getP1(), afp.getP2()))) {
+					extracted.add(new int[] {afp.getP1(), afp.getP2()});
+					compared.add(afp);
+				}
+			}
+			assertEquals(expected.size(), extracted.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertArrayEquals(expected.get(i), extracted.get(i));
+				assertEquals(rmsds.get(i), compared.get(i).getRmsd(), 1e-6);
+			}
+		}
+	}
+}
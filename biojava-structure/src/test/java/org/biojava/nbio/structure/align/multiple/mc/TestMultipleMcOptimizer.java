@@ -0,0 +1,184 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.multiple.mc;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.align.ce.CeMain;
+import org.biojava.nbio.structure.align.multiple.Block;
+import org.biojava.nbio.structure.align.multiple.MultipleAlignment;
+import org.biojava.nbio.structure.align.multiple.TestSampleGenerator;
+import org.biojava.nbio.structure.align.multiple.util.MultipleAlignmentScorer;
+import org.biojava.nbio.structure.io.PDBFileParser;
+import org.junit.Test;
+
+/**
+ * Test the MC optimization of {@link MultipleAlignment}s and its parallel
+ * multi-start in {@link MultipleMcMain}.
+ *
+ * @since 5.1.2
+ */
+public class TestMultipleMcOptimizer {
+
+	private static MultipleMcParameters parameters(int seed) {
+		MultipleMcParameters params = new MultipleMcParameters();
+		params.setRandomSeed(seed);
+		params.setMinBlockLen(1);
+		params.setConvergenceSteps(300);
+		params.setNrThreads(1);
+		return params;
+	}
+
+	/**
+	 * The score kept up to date during the optimization is the one of the
+	 * returned alignment, and no residue is aligned twice.
+	 */
+	@Test
+	public void testScore() throws Exception {
+
+		MultipleAlignment seed = TestSampleGenerator.testAlignment1();
+		MultipleMcParameters params = parameters(1);
+		MultipleAlignment result =
+				new MultipleMcOptimizer(seed, params, 0).optimize();
+
+		double mcScore = MultipleAlignmentScorer.getMCScore(result,
+				params.getGapOpen(), params.getGapExtension(),
+				params.getDistanceCutoff());
+		assertEquals(mcScore,
+				result.getScore(MultipleAlignmentScorer.MC_SCORE), 1e-6);
+		assertEquals(MultipleAlignmentScorer.getRMSD(result),
+				result.getScore(MultipleAlignmentScorer.RMSD), 1e-6);
+
+		for (int str = 0; str < result.size(); str++) {
+			Set<Integer> aligned = new HashSet<Integer>();
+			for (Block b : result.getBlocks()) {
+				for (Integer residue : b.getAlignRes().get(str)) {
+					if (residue != null)
+						assertTrue(aligned.add(residue));
+				}
+			}
+		}
+		// the seed is not modified
+		assertEquals(TestSampleGenerator.testAlignment1().getBlocks().size(),
+				seed.getBlocks().size());
+	}
+
+	/**
+	 * The same random seed always gives the same alignment.
+	 */
+	@Test
+	public void testReproducible() throws Exception {
+
+		MultipleAlignment seed = TestSampleGenerator.testAlignment1();
+		MultipleAlignment result1 =
+				new MultipleMcOptimizer(seed, parameters(7), 0).optimize();
+		MultipleAlignment result2 =
+				new MultipleMcOptimizer(seed, parameters(7), 0).optimize();
+
+		assertEquals(result1.getScore(MultipleAlignmentScorer.MC_SCORE),
+				result2.getScore(MultipleAlignmentScorer.MC_SCORE), 0.0);
+		assertEquals(result1.getBlocks().size(), result2.getBlocks().size());
+		for (int b = 0; b < result1.getBlocks().size(); b++) {
+			assertEquals(result1.getBlock(b).getAlignRes(),
+					result2.getBlock(b).getAlignRes());
+		}
+	}
+
+	/**
+	 * The alignment found for a fixed random seed is the one found by the
+	 * previous implementation, which superimposed and scored the whole
+	 * alignment at each step instead of updating it incrementally.
+	 */
+	@Test
+	public void testSameAsPrevious() throws Exception {
+
+		MultipleAlignment seed = TestSampleGenerator.testAlignment1();
+		MultipleAlignment result =
+				new MultipleMcOptimizer(seed, parameters(7), 0).optimize();
+
+		String[] expected = new String[] {
+				"[[0, 1, 2, 3, 4, 7, 8, 9], [0, 1, 2, 3, 4, 5, 8, 9], "
+						+ "[0, 1, 2, 3, 4, 7, 8, 9]]",
+				"[[10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20], "
+						+ "[10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20], "
+						+ "[10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20]]",
+				"[[21, 22, 23, 24, 25, 26, 27, 28], "
+						+ "[21, 22, 23, 24, 25, 26, 27, 29], "
+						+ "[24, 25, 26, 27, 28, 29, 30, 32]]",
+				"[[30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40, 41, 42, 43], "
+						+ "[30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40, 41, 42, 43], "
+						+ "[33, 34, 35, 36, 37, 38, 39, 40, 41, 42, 43, 44, 45, 46]]" };
+
+		assertEquals(expected.length, result.getBlocks().size());
+		for (int b = 0; b < expected.length; b++) {
+			assertEquals(expected[b], result.getBlock(b).getAlignRes().toString());
+		}
+		assertEquals(833.2186849498473,
+				result.getScore(MultipleAlignmentScorer.MC_SCORE), 1e-9);
+	}
+
+	/**
+	 * The parallel chains start from consecutive random seeds, so the best
+	 * of them scores at least as well as a single chain from the first seed.
+	 */
+	@Test
+	public void testMultiStart() throws Exception {
+
+		InputStream in = new GZIPInputStream(
+				getClass().getResourceAsStream("/4hhb.pdb.gz"));
+		Structure structure;
+		try {
+			structure = new PDBFileParser().parsePDBFile(in);
+		} finally {
+			in.close();
+		}
+		List<Atom[]> atomArrays = new ArrayList<Atom[]>();
+		for (String chain : new String[] { "A", "B", "C" }) {
+			atomArrays.add(StructureTools.getRepresentativeAtomArray(
+					structure.getPolyChainByPDB(chain)));
+		}
+
+		MultipleMcParameters params = parameters(3);
+		params.setMinBlockLen(10);
+		MultipleAlignment single =
+				new MultipleMcMain(new CeMain()).align(atomArrays, params);
+
+		params.setNrThreads(3);
+		MultipleAlignment best =
+				new MultipleMcMain(new CeMain()).align(atomArrays, params);
+
+		assertEquals(3, params.getRandomSeed());
+		assertEquals(1, best.getEnsemble().getMultipleAlignments().size());
+		assertSame(best, best.getEnsemble().getMultipleAlignment(0));
+		assertTrue(best.getScore(MultipleAlignmentScorer.MC_SCORE) >= single
+				.getScore(MultipleAlignmentScorer.MC_SCORE));
+	}
+}
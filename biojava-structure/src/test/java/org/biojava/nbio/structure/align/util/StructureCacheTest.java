@@ -0,0 +1,245 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.biojava.nbio.structure.AminoAcidImpl;
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.AtomImpl;
+import org.biojava.nbio.structure.Chain;
+import org.biojava.nbio.structure.ChainImpl;
+import org.biojava.nbio.structure.Group;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureImpl;
+import org.biojava.nbio.structure.StructureTools;
+import org.junit.Test;
+
+/**
+ * Tests for {@link StructureCache}, using in-memory structures instead of loading files.
+ */
+public class StructureCacheTest {
+
+	private static Structure createStructure(int nAtoms) {
+		Group g = new AminoAcidImpl();
+		for (int i=0;i<nAtoms;i++) {
+			Atom a = new AtomImpl();
+			a.setName("CA"+i);
+			a.setX(i);
+			g.addAtom(a);
+		}
+		Chain c = new ChainImpl();
+		c.setId("A");
+		c.addGroup(g);
+		Structure s = new StructureImpl();
+		s.addChain(c);
+		return s;
+	}
+
+	private static class CountingLoader implements Callable<Structure> {
+		private final AtomicInteger calls = new AtomicInteger();
+		private final int nAtoms;
+
+		public CountingLoader(int nAtoms) {
+			this.nAtoms = nAtoms;
+		}
+
+		@Override
+		public Structure call() {
+			calls.incrementAndGet();
+			return createStructure(nAtoms);
+		}
+	}
+
+	@Test
+	public void testHitsAndCopies() throws Exception {
+		StructureCache cache = new StructureCache(100);
+		CountingLoader loader = new CountingLoader(10);
+
+		Structure s1 = cache.get("1abc", loader);
+		Structure s2 = cache.get("1abc", loader);
+
+		assertEquals(1, loader.calls.get());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+		assertEquals(10, cache.getTotalAtoms());
+
+		// callers get independent copies
+		assertNotSame(s1, s2);
+		s1.getChainByIndex(0).getAtomGroup(0).getAtom(0).setX(1000);
+		Structure s3 = cache.get("1abc", loader);
+		assertEquals(0, s3.getChainByIndex(0).getAtomGroup(0).getAtom(0).getX(), 0.0);
+		assertEquals(10, StructureTools.getNrAtoms(s3));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		StructureCache cache = new StructureCache(25);
+
+		cache.get("1aaa", new CountingLoader(10));
+		cache.get("2bbb", new CountingLoader(10));
+		// access 1aaa so that 2bbb becomes the least recently used
+		cache.get("1aaa", new CountingLoader(10));
+		cache.get("3ccc", new CountingLoader(10));
+
+		assertEquals(2, cache.size());
+		assertEquals(20, cache.getTotalAtoms());
+		assertEquals(1, cache.getEvictions());
+
+		CountingLoader loader = new CountingLoader(10);
+		cache.get("1aaa", loader);
+		assertEquals(0, loader.calls.get());
+		cache.get("2bbb", loader);
+		assertEquals(1, loader.calls.get());
+
+		// too large to be cached at all
+		CountingLoader large = new CountingLoader(30);
+		cache.get("4ddd", large);
+		cache.get("4ddd", large);
+		assertEquals(2, large.calls.get());
+	}
+
+	@Test
+	public void testNoCaching() throws Exception {
+		StructureCache cache = new StructureCache(0);
+		CountingLoader loader = new CountingLoader(10);
+
+		cache.get("1abc", loader);
+		cache.get("1abc", loader);
+
+		assertEquals(2, loader.calls.get());
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Calls {@link StructureCache#get(String, Callable)} from new threads, once they have all started.
+	 * @return the structures returned to each thread
+	 */
+	private static Structure[] getConcurrently(final StructureCache cache, final Callable<Structure> loader,
+			int nThreads, final CountDownLatch started) throws Exception {
+		final Structure[] results = new Structure[nThreads];
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[nThreads];
+		for (int i=0;i<threads.length;i++) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						started.countDown();
+						results[index] = cache.get("1abc", loader);
+					} catch (Throwable e) {
+						error.set(e);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t:threads) {
+			t.join();
+		}
+		assertNull(error.get());
+		return results;
+	}
+
+	@Test
+	public void testConcurrentLoadsOnce() throws Exception {
+		final StructureCache cache = new StructureCache(1000);
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(4);
+
+		// the load only finishes once all threads have started
+		Callable<Structure> blockingLoader = new Callable<Structure>() {
+			@Override
+			public Structure call() throws Exception {
+				calls.incrementAndGet();
+				started.await();
+				return createStructure(5);
+			}
+		};
+
+		getConcurrently(cache, blockingLoader, 4, started);
+
+		assertEquals(1, calls.get());
+		assertEquals(1, cache.getMisses());
+		assertEquals(3, cache.getHits());
+	}
+
+	@Test
+	public void testConcurrentCopiesWithoutCaching() throws Exception {
+		final StructureCache cache = new StructureCache(0);
+		final List<Structure> loaded = Collections.synchronizedList(new ArrayList<Structure>());
+		final CountDownLatch started = new CountDownLatch(4);
+
+		Callable<Structure> blockingLoader = new Callable<Structure>() {
+			@Override
+			public Structure call() throws Exception {
+				started.await();
+				Structure s = createStructure(5);
+				loaded.add(s);
+				return s;
+			}
+		};
+
+		Structure[] results = getConcurrently(cache, blockingLoader, 4, started);
+
+		// the loading thread keeps the loaded instance, the waiting ones get their own copies
+		// (a thread that is late to join loads the structure again)
+		int loadedInstances = 0;
+		for (int i=0;i<results.length;i++) {
+			assertEquals(5, StructureTools.getNrAtoms(results[i]));
+			for (Structure s : loaded) {
+				if (s == results[i]) loadedInstances++;
+			}
+			for (int j=0;j<i;j++) {
+				assertNotSame(results[j], results[i]);
+			}
+		}
+		assertEquals(loaded.size(), loadedInstances);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testNotCopiedWithoutCaching() throws Exception {
+		StructureCache cache = new StructureCache(0);
+		final Structure s = createStructure(5);
+		Callable<Structure> loader = new Callable<Structure>() {
+			@Override
+			public Structure call() {
+				return s;
+			}
+		};
+		assertSame(s, cache.get("1abc", loader));
+
+		// a structure that is cached is not handed out
+		cache = new StructureCache(100);
+		assertNotSame(s, cache.get("1abc", loader));
+		assertNotSame(s, cache.get("1abc", loader));
+	}
+}
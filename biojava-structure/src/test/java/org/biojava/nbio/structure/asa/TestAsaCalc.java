@@ -29,7 +29,9 @@ import org.biojava.nbio.structure.io.mmcif.DownloadChemCompProvider;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.vecmath.Point3d;
 import java.io.IOException;
+import java.util.Random;
 
 /**
  * Testing of Accessible Surface Area calculations
@@ -78,4 +80,50 @@ public class TestAsaCalc {
 		Assert.assertEquals(17462.0, totAtoms, 1.0);
 
 	}
+
+	/**
+	 * Compares the grid-based neighbor search against a brute-force
+	 * Shrake-Rupley calculation on a random cloud of points.
+	 */
+	@Test
+	public void testAsaAgainstBruteForce() {
+
+		Random random = new Random(42);
+		Point3d[] points = new Point3d[500];
+		for (int i=0;i<points.length;i++) {
+			points[i] = new Point3d(random.nextDouble()*30, random.nextDouble()*30, random.nextDouble()*30);
+		}
+
+		double radius = 1.8;
+		double probe = AsaCalculator.DEFAULT_PROBE_SIZE;
+		int nSpherePoints = 100;
+
+		AsaCalculator asaCalc = new AsaCalculator(points, probe, nSpherePoints, 1, radius);
+		double[] asas = asaCalc.calculateAsas();
+
+		double inc = Math.PI * (3.0 - Math.sqrt(5.0));
+		double offset = 2.0 / nSpherePoints;
+		double r = radius + probe;
+
+		for (int i=0;i<points.length;i++) {
+			int nAccessible = 0;
+			for (int k=0;k<nSpherePoints;k++) {
+				double y = k * offset - 1.0 + (offset / 2.0);
+				double rk = Math.sqrt(1.0 - y*y);
+				double phi = k * inc;
+				Point3d testPoint = new Point3d(Math.cos(phi)*rk*r + points[i].x, y*r + points[i].y, Math.sin(phi)*rk*r + points[i].z);
+				boolean accessible = true;
+				for (int j=0;j<points.length;j++) {
+					if (j==i) continue;
+					if (testPoint.distanceSquared(points[j]) < r*r) {
+						accessible = false;
+						break;
+					}
+				}
+				if (accessible) nAccessible++;
+			}
+			double expected = 4.0 * Math.PI / nSpherePoints * nAccessible * r * r;
+			Assert.assertEquals(expected, asas[i], 0.000001);
+		}
+	}
 }
@@ -0,0 +1,173 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.geometry;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.vecmath.AxisAngle4d;
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of the superposition of two blocks of points with the
+ * {@link SuperPositionQCP}, {@link SuperPositionQuat} and
+ * {@link SuperPositionSVD} algorithms, with the static {@link SuperPositions}
+ * from several threads, and with the packed coordinates of
+ * {@link PackedSuperPositions}.
+ * <p>
+ * It is not run by the unit tests. Run it from the test classpath with
+ * {@link #main(String[])}, or with
+ * <code>org.openjdk.jmh.Main SuperPositionsBenchmark</code>.
+ *
+ * @since 5.1.2
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuperPositionsBenchmark {
+
+	/** number of points of each block */
+	@Param({ "16", "128", "1024" })
+	public int length;
+
+	private Point3d[] fixed;
+	private Point3d[] moved;
+	private double[] packed;
+
+	private SuperPositionQCP qcp;
+	private SuperPositionQuat quat;
+	private SuperPositionSVD svd;
+	private PackedSuperPositions.Reference reference;
+	private Matrix4d transformation;
+
+	@Setup
+	public void setup() {
+		Random rnd = new Random(0);
+		Matrix4d transform = new Matrix4d();
+		transform.set(new AxisAngle4d(rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble(), 6 * rnd.nextDouble()));
+		transform.setTranslation(new Vector3d(rnd.nextDouble(), 10 * rnd.nextDouble(), -20 * rnd.nextDouble()));
+
+		fixed = new Point3d[length];
+		moved = new Point3d[length];
+		packed = new double[6 * length];
+		for (int i = 0; i < length; i++) {
+			fixed[i] = new Point3d(50 * rnd.nextDouble(), 50 * rnd.nextDouble(), 50 * rnd.nextDouble());
+			moved[i] = new Point3d(fixed[i]);
+			transform.transform(moved[i]);
+			moved[i].add(new Point3d(rnd.nextGaussian(), rnd.nextGaussian(), rnd.nextGaussian()));
+
+			packed[3 * i] = fixed[i].x;
+			packed[3 * i + 1] = fixed[i].y;
+			packed[3 * i + 2] = fixed[i].z;
+			packed[3 * (length + i)] = moved[i].x;
+			packed[3 * (length + i) + 1] = moved[i].y;
+			packed[3 * (length + i) + 2] = moved[i].z;
+		}
+
+		qcp = new SuperPositionQCP(false);
+		quat = new SuperPositionQuat(false);
+		svd = new SuperPositionSVD(false);
+		reference = new PackedSuperPositions.Reference(packed, 0, length);
+		transformation = new Matrix4d();
+	}
+
+	@Benchmark
+	public Matrix4d qcp() {
+		return qcp.superpose(fixed, moved);
+	}
+
+	@Benchmark
+	public Matrix4d quaternion() {
+		return quat.superpose(fixed, moved);
+	}
+
+	@Benchmark
+	public Matrix4d svd() {
+		return svd.superpose(fixed, moved);
+	}
+
+	@Benchmark
+	public double qcpRmsd() {
+		return qcp.getRmsd(fixed, moved);
+	}
+
+	/** the default algorithm of {@link SuperPositions}, called by 4 threads at the same time */
+	@Benchmark
+	@Threads(4)
+	public Matrix4d superPositionsConcurrent() {
+		return SuperPositions.superpose(fixed, moved);
+	}
+
+	@Benchmark
+	public Matrix4d packed() {
+		PackedSuperPositions.superpose(packed, 0, packed, 3 * length, length, transformation);
+		return transformation;
+	}
+
+	@Benchmark
+	public double packedRmsd() {
+		return PackedSuperPositions.getRmsd(packed, 0, packed, 3 * length, length);
+	}
+
+	@Benchmark
+	public Matrix4d packedReference() {
+		reference.superpose(packed, 3 * length, transformation);
+		return transformation;
+	}
+
+	/** packed coordinates, called by 4 threads at the same time */
+	@Benchmark
+	@Threads(4)
+	public Matrix4d packedConcurrent() {
+		PackedSuperPositions.superpose(packed, 0, packed, 3 * length, length, transformation);
+		return transformation;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(SuperPositionsBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
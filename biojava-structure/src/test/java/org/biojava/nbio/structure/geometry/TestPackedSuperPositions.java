@@ -0,0 +1,229 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.geometry;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.vecmath.AxisAngle4d;
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+import org.junit.Test;
+
+/**
+ * Test the packed coordinate superpositions of {@link PackedSuperPositions}
+ * against {@link SuperPositionQCP}.
+ *
+ * @since 5.1.2
+ *
+ */
+public class TestPackedSuperPositions {
+
+	private static final int LENGTH = 40;
+	private static final int BLOCKS = 30;
+
+	/**
+	 * Blocks of LENGTH random points after an offset of 5 values, each the
+	 * first block transformed with a random rotation and translation and
+	 * some noise.
+	 */
+	private static double[] randomBlocks(Random rnd) {
+		double[] coords = new double[5 + 3 * LENGTH * BLOCKS];
+		for (int i = 0; i < 3 * LENGTH; i++) {
+			coords[5 + i] = 50 * rnd.nextDouble();
+		}
+		for (int b = 1; b < BLOCKS; b++) {
+			Matrix4d transform = new Matrix4d();
+			transform.set(new AxisAngle4d(rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble(),
+					6 * rnd.nextDouble()));
+			transform.setTranslation(new Vector3d(rnd.nextDouble(), 10 * rnd.nextDouble(), -20 * rnd.nextDouble()));
+			for (int i = 0; i < LENGTH; i++) {
+				Point3d p = new Point3d(coords[5 + 3 * i], coords[5 + 3 * i + 1], coords[5 + 3 * i + 2]);
+				transform.transform(p);
+				int o = 5 + 3 * (b * LENGTH + i);
+				coords[o] = p.x + b * 0.05 * rnd.nextGaussian();
+				coords[o + 1] = p.y + b * 0.05 * rnd.nextGaussian();
+				coords[o + 2] = p.z + b * 0.05 * rnd.nextGaussian();
+			}
+		}
+		return coords;
+	}
+
+	private static Point3d[] toPoints(double[] coords, int offset) {
+		Point3d[] points = new Point3d[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			points[i] = new Point3d(coords[offset + 3 * i], coords[offset + 3 * i + 1], coords[offset + 3 * i + 2]);
+		}
+		return points;
+	}
+
+	private static int offset(int block) {
+		return 5 + 3 * LENGTH * block;
+	}
+
+	private static void assertMatrixEquals(Matrix4d expected, Matrix4d actual) {
+		assertTrue("Expected " + expected + " but was " + actual, expected.epsilonEquals(actual, 1e-6));
+	}
+
+	@Test
+	public void testSameAsQCP() {
+		double[] coords = randomBlocks(new Random(0));
+		SuperPositionQCP qcp = new SuperPositionQCP(false);
+		Matrix4d transformation = new Matrix4d();
+
+		for (int b = 0; b < BLOCKS; b++) {
+			Point3d[] fixed = toPoints(coords, offset(0));
+			Point3d[] moved = toPoints(coords, offset(b));
+			double rmsd = qcp.getRmsd(fixed, moved);
+			Matrix4d expected = new Matrix4d(qcp.superpose(fixed, moved));
+
+			assertEquals(rmsd, PackedSuperPositions.getRmsd(coords, offset(0), coords, offset(b), LENGTH), 1e-8);
+			assertEquals(rmsd, PackedSuperPositions.superpose(coords, offset(0), coords, offset(b), LENGTH,
+					transformation), 1e-8);
+			assertMatrixEquals(expected, transformation);
+
+			// the transformation superposes the moved points onto the fixed ones
+			CalcPoint.transform(transformation, moved);
+			assertEquals(rmsd, CalcPoint.rmsd(fixed, moved), 1e-6);
+		}
+	}
+
+	@Test
+	public void testReference() {
+		double[] coords = randomBlocks(new Random(1));
+		float[] floats = new float[coords.length];
+		for (int i = 0; i < coords.length; i++) {
+			floats[i] = (float) coords[i];
+		}
+		int[] offsets = new int[BLOCKS];
+		Matrix4d[] transformations = new Matrix4d[BLOCKS];
+		for (int b = 0; b < BLOCKS; b++) {
+			offsets[b] = offset(b);
+			transformations[b] = new Matrix4d();
+		}
+
+		PackedSuperPositions.Reference reference = new PackedSuperPositions.Reference(coords, offset(0), LENGTH);
+		assertEquals(LENGTH, reference.getLength());
+		double[] rmsds = new double[BLOCKS];
+		reference.superpose(coords, offsets, rmsds, transformations);
+		double[] floatRmsds = new double[BLOCKS];
+		new PackedSuperPositions.Reference(floats, offset(0), LENGTH).getRmsds(floats, offsets, floatRmsds);
+
+		Matrix4d transformation = new Matrix4d();
+		for (int b = 0; b < BLOCKS; b++) {
+			double rmsd = PackedSuperPositions.superpose(coords, offset(0), coords, offset(b), LENGTH,
+					transformation);
+			assertEquals(rmsd, rmsds[b], 1e-8);
+			assertEquals(rmsd, reference.getRmsd(coords, offset(b)), 1e-8);
+			assertMatrixEquals(transformation, transformations[b]);
+			assertEquals(rmsd, floatRmsds[b], 1e-3);
+			assertEquals(rmsd, PackedSuperPositions.getRmsd(floats, offset(0), floats, offset(b), LENGTH), 1e-3);
+		}
+		// identical blocks
+		assertEquals(0.0, rmsds[0], 1e-6);
+	}
+
+	@Test
+	public void testAtOrigin() {
+		double[] coords = randomBlocks(new Random(2));
+		Point3d[] fixed = toPoints(coords, offset(0));
+		Point3d[] moved = toPoints(coords, offset(3));
+		CalcPoint.center(fixed);
+		CalcPoint.center(moved);
+		double[] centered = new double[6 * LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			centered[3 * i] = fixed[i].x;
+			centered[3 * i + 1] = fixed[i].y;
+			centered[3 * i + 2] = fixed[i].z;
+			centered[3 * (LENGTH + i)] = moved[i].x;
+			centered[3 * (LENGTH + i) + 1] = moved[i].y;
+			centered[3 * (LENGTH + i) + 2] = moved[i].z;
+		}
+
+		SuperPositionQCP qcp = new SuperPositionQCP(true);
+		Matrix4d rotation = new Matrix4d();
+		assertEquals(qcp.getRmsd(fixed, moved),
+				PackedSuperPositions.superposeAtOrigin(centered, 0, centered, 3 * LENGTH, LENGTH, rotation), 1e-8);
+		assertMatrixEquals(qcp.superpose(fixed, moved), rotation);
+		assertEquals(0.0, rotation.m03, 1e-6);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBlockOutOfBounds() {
+		double[] coords = new double[3 * LENGTH];
+		PackedSuperPositions.getRmsd(coords, 0, coords, 3, LENGTH);
+	}
+
+	/**
+	 * The static methods and a shared reference give the same results when
+	 * called from several threads.
+	 */
+	@Test
+	public void testConcurrent() throws Exception {
+		final double[] coords = randomBlocks(new Random(3));
+		final PackedSuperPositions.Reference reference = new PackedSuperPositions.Reference(coords, offset(0),
+				LENGTH);
+		final double[] expected = new double[BLOCKS];
+		for (int b = 0; b < BLOCKS; b++) {
+			expected[b] = PackedSuperPositions.getRmsd(coords, offset(0), coords, offset(b), LENGTH);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 8; t++) {
+				futures.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						Matrix4d transformation = new Matrix4d();
+						for (int repeat = 0; repeat < 200; repeat++) {
+							for (int b = 0; b < BLOCKS; b++) {
+								if (Math.abs(reference.superpose(coords, offset(b), transformation) - expected[b]) > 1e-10) {
+									return false;
+								}
+								double rmsd = SuperPositions.getRmsd(toPoints(coords, offset(0)),
+										toPoints(coords, offset(b)));
+								if (Math.abs(rmsd - expected[b]) > 1e-6) {
+									return false;
+								}
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> future : futures) {
+				assertTrue(future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -201,4 +201,28 @@ public class TestSuperPosition {
 		}
 	}
 
+	/**
+	 * Test that {@link SuperPositions} calls a copy of the default algorithm
+	 * with its settings, or the algorithm itself if it can not be copied.
+	 */
+	@Test
+	public void testDefaultSuperPosition() {
+		Point3d[] fixed = cloud1.get(1);
+		Point3d[] moved = cloud2.get(1);
+		try {
+			SuperPositionQCP qcp = new SuperPositionQCP(false, 1E-2, 1E-3);
+			SuperPositions.setDefaultSuperPosition(qcp);
+			assertEquals(qcp.superpose(fixed, moved), SuperPositions.superpose(fixed, moved));
+			assertEquals(qcp.getRmsd(fixed, moved), SuperPositions.getRmsd(fixed, moved), 0.0);
+
+			// a subclass that does not override newInstance()
+			SuperPositionSVD svd = new SuperPositionSVD(false) {
+			};
+			SuperPositions.setDefaultSuperPosition(svd);
+			assertEquals(svd.superpose(fixed, moved), SuperPositions.superpose(fixed, moved));
+			assertEquals(svd.getRmsd(fixed, moved), SuperPositions.getRmsd(fixed, moved), 0.0);
+		} finally {
+			SuperPositions.setDefaultSuperPosition(new SuperPositionQuat(false));
+		}
+	}
 }
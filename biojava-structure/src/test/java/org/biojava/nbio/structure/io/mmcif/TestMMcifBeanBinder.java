@@ -0,0 +1,80 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.io.mmcif;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.biojava.nbio.structure.io.mmcif.model.AtomSite;
+import org.biojava.nbio.structure.io.mmcif.model.StructRefSeqDif;
+import org.biojava.nbio.structure.io.mmcif.model.Symmetry;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MMcifBeanBinder}
+ */
+public class TestMMcifBeanBinder {
+
+	@Test
+	public void testBindByLayout() {
+		MMcifBeanBinder<AtomSite> binder = MMcifBeanBinder.getBinder(AtomSite.class);
+		assertSame(binder, MMcifBeanBinder.getBinder(AtomSite.class));
+
+		List<String> fields = Arrays.asList("group_PDB", "id", "not_a_field", "Cartn_x", "label_atom_id");
+		MMcifBeanBinder.Layout layout = binder.getLayout(fields);
+
+		assertTrue(layout.matches(Arrays.asList("group_PDB", "id", "not_a_field", "Cartn_x", "label_atom_id")));
+		assertFalse(layout.matches(Arrays.asList("group_PDB", "id")));
+		assertNull(layout.getSetter(2));
+
+		AtomSite a = binder.bind(layout, Arrays.asList("ATOM", "1", "x", "12.5", "CA"));
+		assertEquals("ATOM", a.getGroup_PDB());
+		assertEquals("1", a.getId());
+		assertEquals("12.5", a.getCartn_x());
+		assertEquals("CA", a.getLabel_atom_id());
+
+		// new bean for every row
+		AtomSite b = binder.bind(layout, Arrays.asList("HETATM", "2", "x", "1.0", "O"));
+		assertNotSame(a, b);
+		assertEquals("HETATM", b.getGroup_PDB());
+		assertEquals("CA", a.getLabel_atom_id());
+	}
+
+	@Test
+	public void testIntegerAndLabelledFields() {
+		MMcifBeanBinder<StructRefSeqDif> binder = MMcifBeanBinder.getBinder(StructRefSeqDif.class);
+		MMcifBeanBinder.Layout layout = binder.getLayout(Arrays.asList("mon_id", "seq_num"));
+
+		StructRefSeqDif dif = binder.bind(layout, Arrays.asList("ALA", "42"));
+		assertEquals("ALA", dif.getMon_id());
+		assertEquals(Integer.valueOf(42), dif.getSeq_num());
+
+		// missing values are not set for integers
+		dif = binder.bind(layout, Arrays.asList("ALA", "?"));
+		assertNull(dif.getSeq_num());
+
+		MMcifBeanBinder<Symmetry> symBinder = MMcifBeanBinder.getBinder(Symmetry.class);
+		Symmetry sym = symBinder.bind(symBinder.getLayout(Arrays.asList("space_group_name_H-M")), Arrays.asList("P 1 21 1"));
+		assertEquals("P 1 21 1", sym.getSpace_group_name_H_M());
+	}
+}
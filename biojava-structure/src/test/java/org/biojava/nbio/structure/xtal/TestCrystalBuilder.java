@@ -0,0 +1,138 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.xtal;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.contact.StructureInterface;
+import org.biojava.nbio.structure.contact.StructureInterfaceList;
+import org.biojava.nbio.structure.io.PDBFileParser;
+import org.junit.Test;
+
+/**
+ * Test the search of interfaces in the crystal lattice by {@link CrystalBuilder}.
+ *
+ * @since 5.1.2
+ */
+public class TestCrystalBuilder {
+
+	private static Structure getStructure(String resource) throws IOException {
+		InputStream inStream = new GZIPInputStream(TestCrystalBuilder.class.getResourceAsStream(resource));
+		try {
+			return new PDBFileParser().parsePDBFile(inStream);
+		} finally {
+			inStream.close();
+		}
+	}
+
+	private static void assertSameInterfaces(StructureInterfaceList expected, StructureInterfaceList actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int id = 1; id <= expected.size(); id++) {
+			StructureInterface e = expected.get(id);
+			StructureInterface a = actual.get(id);
+			assertEquals(e.getMoleculeIds().getFirst(), a.getMoleculeIds().getFirst());
+			assertEquals(e.getMoleculeIds().getSecond(), a.getMoleculeIds().getSecond());
+			assertEquals(e.getTransforms().getSecond().toString(), a.getTransforms().getSecond().toString());
+			assertEquals(e.getContacts().size(), a.getContacts().size());
+		}
+	}
+
+	/**
+	 * The contacts calculated in parallel give the same interfaces, in the same order,
+	 * as the ones calculated in a single thread.
+	 */
+	@Test
+	public void testParallelInterfaces() throws IOException {
+
+		Structure s = getStructure("/org/biojava/nbio/structure/io/3c5f_raw.pdb.gz");
+
+		CrystalBuilder cb = new CrystalBuilder(s);
+		assertEquals(1, cb.getNumThreads());
+		StructureInterfaceList sequential = cb.getUniqueInterfaces(5.5);
+
+		cb = new CrystalBuilder(s);
+		cb.setNumThreads(4);
+		StructureInterfaceList parallel = cb.getUniqueInterfaces(5.5);
+
+		assertEquals(25, sequential.size());
+		assertSameInterfaces(sequential, parallel);
+
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			cb = new CrystalBuilder(s);
+			cb.setForkJoinPool(pool);
+			assertSameInterfaces(sequential, cb.getUniqueInterfaces(5.5));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Searching only the cells where the AU of each operator can contact the original AU
+	 * gives the same interfaces as searching all the (2n+1)^3 cells. With 5 cells in each
+	 * direction, most cells are too far to contact the original AU.
+	 */
+	@Test
+	public void testCellPruning() throws IOException {
+
+		Structure s = getStructure("/org/biojava/nbio/structure/io/3c5f_raw.pdb.gz");
+
+		CrystalBuilder cb = new CrystalBuilder(s);
+		cb.setNumCells(5);
+		cb.setPruneCells(false);
+		StructureInterfaceList all = cb.getUniqueInterfaces(5.5);
+
+		cb = new CrystalBuilder(s);
+		cb.setNumCells(5);
+		StructureInterfaceList pruned = cb.getUniqueInterfaces(5.5);
+
+		assertEquals(25, all.size());
+		assertSameInterfaces(all, pruned);
+	}
+
+	/**
+	 * Limiting the search to the neighbouring cells only finds the interfaces within them.
+	 */
+	@Test
+	public void testNumCells() throws IOException {
+
+		Structure s = getStructure("/org/biojava/nbio/structure/io/3c5f_raw.pdb.gz");
+
+		CrystalBuilder cb = new CrystalBuilder(s);
+		cb.setNumCells(0);
+		StructureInterfaceList interfaces = cb.getUniqueInterfaces(5.5);
+
+		assertTrue(interfaces.size() > 0);
+		assertTrue(interfaces.size() < 25);
+		for (StructureInterface interf : interfaces) {
+			CrystalTransform tt = interf.getTransforms().getSecond();
+			assertEquals(0, tt.getCrystalTranslation().x);
+			assertEquals(0, tt.getCrystalTranslation().y);
+			assertEquals(0, tt.getCrystalTranslation().z);
+		}
+	}
+}
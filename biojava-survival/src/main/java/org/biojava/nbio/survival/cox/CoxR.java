@@ -166,8 +166,167 @@ public class CoxR {
 		CoxInfo coxInfo = new CoxInfo();
 		coxInfo.setSurvivalInfoList(data);
 
+		int nused = data.size();
+		int nvar = variables.size();
+		int i, person;
+		double[] time = new double[nused];
+		int[] status = new int[nused];
+		double[] offset = new double[nused];
+		double[] weights = new double[nused];
+		int[] strata = new int[nused];
+
+		double[][] covar = new double[nvar][nused];
+		ArrayList<String> clusterList = null;
+
+		if(cluster){
+			clusterList = new ArrayList<String>();
+		}
+		//copy data over to local arrays to minimuze changing code
+		for (person = 0; person < nused; person++) {
+			SurvivalInfo si = data.get(person);
+			time[person] = si.getTime();
+			status[person] = si.getStatus();
+			offset[person] = si.getOffset();
+			if(cluster){
+				if(si.getClusterValue() == null && si.getClusterValue().length() == 0){
+					throw new Exception("Cluster value is not valid for " + si.toString());
+				}
+				clusterList.add(si.getClusterValue());
+			}
+			if (useWeighted) {
+				weights[person] = si.getWeight();
+			} else {
+				weights[person] = 1.0;
+			}
+			if (useStrata) {
+				strata[person] = si.getStrata();
+			} else {
+				strata[person] = 0;
+			}
+			for (i = 0; i < variables.size(); i++) {
+				String variable = variables.get(i);
+				covar[i][person] = si.getVariable(variable);
+			}
+		}
 
+		fit(coxInfo, variables, time, status, offset, weights, strata, covar, maxiter, method, eps, toler, beta, doscale);
 
+		coxphfitSCleanup(coxInfo, useWeighted, robust,clusterList);
+		return coxInfo;
+	}
+
+	/**
+	 * Fits the model on a column oriented dataset, with the same defaults as
+	 * {@link #process(ArrayList, ArrayList, boolean, boolean, boolean, boolean)}.
+	 *
+	 * @param variables
+	 * @param data
+	 * @param useStrata
+	 * @param useWeighted
+	 * @param robust
+	 * @param cluster
+	 * @return
+	 * @throws Exception
+	 */
+	public CoxInfo process(ArrayList<String> variables, SurvivalDataset data, boolean useStrata, boolean useWeighted, boolean robust, boolean cluster) throws Exception {
+		//from coxph.control.S
+		int maxiter2 = 20;
+		double eps2 = 1e-9;
+		double toler2 = Math.pow(eps2, .75);
+		int doscale2 = 1;
+		double[] beta = new double[variables.size()];
+		return process(variables, data, maxiter2, CoxMethod.Efron, eps2, toler2, beta, doscale2, useStrata, useWeighted, robust, cluster);
+	}
+
+	/**
+	 * Fits the model on a column oriented dataset. The dataset is not modified: the covariates are
+	 * gathered in the sorted order of the dataset into arrays owned by this fit, and the survival info
+	 * of the returned CoxInfo are new objects holding only the variables of the model, so several
+	 * models can be fit on the same dataset at the same time. Strata of the dataset are labels.
+	 *
+	 * @param variables
+	 * @param data
+	 * @param maxiter
+	 * @param method
+	 * @param eps
+	 * @param toler
+	 * @param beta
+	 * @param doscale
+	 * @param useStrata
+	 * @param useWeighted
+	 * @param robust
+	 * @param cluster
+	 * @return
+	 * @throws Exception
+	 */
+	public CoxInfo process(ArrayList<String> variables, SurvivalDataset data, int maxiter, CoxMethod method, double eps, double toler, double[] beta, int doscale, boolean useStrata, boolean useWeighted, boolean robust, boolean cluster) throws Exception {
+		if (cluster && !data.hasClusters()) {
+			throw new Exception("Cluster values are not set in the dataset");
+		}
+		int[] order = data.getOrder(useStrata);
+		int[] codes = data.getStrataCodes();
+		int nused = order.length;
+		int nvar = variables.size();
+		double[][] columns = new double[nvar][];
+		for (int i = 0; i < nvar; i++) {
+			columns[i] = data.getVariable(variables.get(i));
+		}
+
+		double[] time = new double[nused];
+		int[] status = new int[nused];
+		double[] offset = new double[nused];
+		double[] weights = new double[nused];
+		int[] strata = new int[nused];
+		double[][] covar = new double[nvar][nused];
+		ArrayList<SurvivalInfo> survivalInfoList = new ArrayList<SurvivalInfo>(nused);
+		ArrayList<String> clusterList = null;
+		if (cluster) {
+			clusterList = new ArrayList<String>(nused);
+		}
+
+		for (int person = 0; person < nused; person++) {
+			int subject = order[person];
+			time[person] = data.getTime()[subject];
+			status[person] = data.getStatus()[subject];
+			offset[person] = data.getOffset()[subject];
+			if (useWeighted) {
+				weights[person] = data.getWeight()[subject];
+			} else {
+				weights[person] = 1.0;
+			}
+			//mark the last person of each stratum
+			if (useStrata && (person == nused - 1 || codes[subject] != codes[order[person + 1]])) {
+				strata[person] = 1;
+			}
+
+			SurvivalInfo si = new SurvivalInfo(time[person], status[person]);
+			si.setOrder(subject);
+			si.setOffset(offset[person]);
+			si.setWeight(data.getWeight()[subject]);
+			si.setStrata(strata[person]);
+			si.setClusterValue(data.getClusterLabel(subject));
+			if (cluster) {
+				clusterList.add(si.getClusterValue());
+			}
+			for (int i = 0; i < nvar; i++) {
+				covar[i][person] = columns[i][subject];
+				si.addContinuousVariable(variables.get(i), columns[i][subject]);
+			}
+			survivalInfoList.add(si);
+		}
+
+		CoxInfo coxInfo = new CoxInfo();
+		coxInfo.setSurvivalInfoList(survivalInfoList);
+		fit(coxInfo, variables, time, status, offset, weights, strata, covar, maxiter, method, eps, toler, beta, doscale);
+		coxphfitSCleanup(coxInfo, useWeighted, robust, clusterList);
+		return coxInfo;
+	}
+
+	/**
+	 * Fits the model on the data sorted by ascending time within strata, where strata[person] is 1 for the
+	 * last person of each stratum. covar and beta are modified, the results are set on coxInfo.
+	 */
+	void fit(CoxInfo coxInfo, ArrayList<String> variables, double[] time, int[] status, double[] offset, double[] weights, int[] strata, double[][] covar, int maxiter, CoxMethod method, double eps, double toler, double[] beta, int doscale) throws Exception {
 		int i, j, k, person;
 		boolean gotofinish = false;
 		double[][] cmat, imat;  /*ragged arrays covar[][], */
@@ -209,7 +368,7 @@ public class CoxR {
 		//  int nprotect;  /* number of protect calls I have issued */
 
 		/* get local copies of some input args */
-		nused = data.size(); // LENGTH(offset2);
+		nused = time.length; // LENGTH(offset2);
 		nvar = variables.size(); // ncols(covar2);
 
 
@@ -263,46 +422,6 @@ public class CoxR {
 		 ** Subtract the mean from each covar, as this makes the regression
 		 **  much more stable.
 		 */
-		double[] time = new double[nused];
-		int[] status = new int[nused];
-		double[] offset = new double[nused];
-		double[] weights = new double[nused];
-		int[] strata = new int[nused];
-
-		double[][] covar = new double[nvar][nused];
-		ArrayList<String> clusterList = null;
-
-		if(cluster){
-			clusterList = new ArrayList<String>();
-		}
-		//copy data over to local arrays to minimuze changing code
-		for (person = 0; person < nused; person++) {
-			SurvivalInfo si = data.get(person);
-			time[person] = si.getTime();
-			status[person] = si.getStatus();
-			offset[person] = si.getOffset();
-			if(cluster){
-				if(si.getClusterValue() == null && si.getClusterValue().length() == 0){
-					throw new Exception("Cluster value is not valid for " + si.toString());
-				}
-				clusterList.add(si.getClusterValue());
-			}
-			if (useWeighted) {
-				weights[person] = si.getWeight();
-			} else {
-				weights[person] = 1.0;
-			}
-			if (useStrata) {
-				strata[person] = si.getStrata();
-			} else {
-				strata[person] = 0;
-			}
-			for (i = 0; i < variables.size(); i++) {
-				String variable = variables.get(i);
-				covar[i][person] = si.getVariable(variable);
-			}
-		}
-
 		double tempsd = 0;
 		i = 0;
 		for (i = 0; i < nvar; i++) {
@@ -752,31 +871,6 @@ public class CoxR {
 		coxInfo.loglikInit = loglik[0];
 		coxInfo.loglikFinal = loglik[1];
 		coxInfo.method = method;
-
-		//    System.out.println("loglik[0]=" + loglik[0]);
-		//    System.out.println("loglik[1]=" + loglik[1]);
-
-		//    System.out.println("chisq? sctest[0]=" + sctest[0]);
-		//    System.out.println("?overall model p-value=" + chiSq(sctest[0], beta.length));
-
-
-		//      System.out.println();
-		//       for (int n = 0; n < covar[0].length; n++) {
-		//           System.out.print(n);
-		//           for (int variable = 0; variable < covar.length; variable++) {
-		//               System.out.print("\t" + covar[variable][n]);
-
-		//           }
-		//           System.out.println();
-		//       }
-		//      for (SurvivalInfo si : data) {
-		//          System.out.println(si.order + " " + si.getScore());
-		//      }
-//        coxInfo.dump();
-
-
-		coxphfitSCleanup(coxInfo, useWeighted, robust,clusterList);
-		return coxInfo;
 	}
 
 	/**
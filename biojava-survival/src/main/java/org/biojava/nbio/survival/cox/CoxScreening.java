@@ -0,0 +1,285 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.survival.cox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fits many Cox models on the same {@link SurvivalDataset} in parallel, for example one model per
+ * candidate variable. The subjects are sorted into risk sets once and the time, status, weight,
+ * offset and strata arrays are shared by all fits; each thread gathers the covariates of its
+ * models into its own reusable buffers.
+ *
+ * <p>The fits are summaries: coefficients, variance, score and Wald tests as
+ * {@link CoxR#process(ArrayList, SurvivalDataset, boolean, boolean, boolean, boolean)} returns them
+ * without robust variance, but the residuals and linear predictors of the subjects are not
+ * computed and {@link CoxInfo#getSurvivalInfoList()} is empty.
+ *
+ * @since 5.1.2
+ */
+public class CoxScreening {
+
+	private final SurvivalDataset data;
+	private final int[] order;
+	private final double[] time;
+	private final int[] status;
+	private final double[] offset;
+	private final double[] weights;
+	private final int[] strata;
+	private int numEvents = 0;
+
+	private final CoxR coxR = new CoxR();
+	private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>();
+
+	//from coxph.control.S
+	private int maxiter = 20;
+	private double eps = 1e-9;
+	private double toler = Math.pow(eps, .75);
+	private CoxMethod method = CoxMethod.Efron;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 *
+	 * @param data
+	 * @param useStrata
+	 * @param useWeighted
+	 */
+	public CoxScreening(SurvivalDataset data, boolean useStrata, boolean useWeighted) {
+		this.data = data;
+		order = data.getOrder(useStrata);
+		int n = order.length;
+		int[] codes = data.getStrataCodes();
+		time = new double[n];
+		status = new int[n];
+		offset = new double[n];
+		weights = new double[n];
+		strata = new int[n];
+		for (int person = 0; person < n; person++) {
+			int subject = order[person];
+			time[person] = data.getTime()[subject];
+			status[person] = data.getStatus()[subject];
+			offset[person] = data.getOffset()[subject];
+			weights[person] = useWeighted ? data.getWeight()[subject] : 1.0;
+			//mark the last person of each stratum
+			if (useStrata && (person == n - 1 || codes[subject] != codes[order[person + 1]])) {
+				strata[person] = 1;
+			}
+			if (status[person] == 1) {
+				numEvents++;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param threads the number of models fit at the same time, the number of processors by default
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 *
+	 * @param maxiter the maximum number of Newton iterations, 20 by default
+	 */
+	public void setMaxIterations(int maxiter) {
+		this.maxiter = maxiter;
+	}
+
+	/**
+	 *
+	 * @param method the method for tied times, Efron by default
+	 */
+	public void setMethod(CoxMethod method) {
+		this.method = method;
+	}
+
+	/**
+	 * Fits one model in the calling thread.
+	 *
+	 * @param variables
+	 * @return
+	 * @throws Exception
+	 */
+	public CoxInfo fit(ArrayList<String> variables) throws Exception {
+		return fit(variables, new double[variables.size()]);
+	}
+
+	/**
+	 * Fits one model in the calling thread, starting the Newton iterations at beta. The initial log
+	 * likelihood and the score test of the result are those at beta.
+	 *
+	 * @param variables
+	 * @param beta the initial coefficients, which are not modified
+	 * @return
+	 * @throws Exception
+	 */
+	public CoxInfo fit(ArrayList<String> variables, double[] beta) throws Exception {
+		int n = order.length;
+		int nvar = variables.size();
+		Buffers b = buffers.get();
+		if (b == null) {
+			b = new Buffers(n);
+			buffers.set(b);
+		}
+		double[][] covar = b.covar(nvar);
+		for (int i = 0; i < nvar; i++) {
+			double[] column = data.getVariable(variables.get(i));
+			double[] row = covar[i];
+			for (int person = 0; person < n; person++) {
+				row[person] = column[order[person]];
+			}
+		}
+		System.arraycopy(strata, 0, b.strata, 0, n);
+
+		CoxInfo coxInfo = new CoxInfo();
+		coxInfo.numSamples = n;
+		coxInfo.numEvents = numEvents;
+		coxR.fit(coxInfo, variables, time, status, offset, weights, b.strata, covar, maxiter, method, eps, toler, beta.clone(), 1);
+		CoxR.calculateWaldTestInfo(coxInfo);
+		return coxInfo;
+	}
+
+	/**
+	 * Fits the models in parallel and gives them to the listener in order, in the calling thread.
+	 *
+	 * @param models the variables of each model
+	 * @param listener
+	 * @throws Exception
+	 */
+	public void screen(List<ArrayList<String>> models, CoxScreeningListener listener) throws Exception {
+		ArrayList<double[]> betas = new ArrayList<double[]>(models.size());
+		for (ArrayList<String> variables : models) {
+			betas.add(new double[variables.size()]);
+		}
+		screen(models, betas, listener);
+	}
+
+	/**
+	 * Fits the model of the adjustment variables, then in parallel one model per candidate with the
+	 * adjustment variables and the candidate. The Newton iterations of each candidate model start at
+	 * the coefficients of the adjustment model and 0 for the candidate, so the initial log likelihood
+	 * and the score test of each result are taken at that point rather than at 0.
+	 *
+	 * @param adjustment the variables in every model, may be empty
+	 * @param candidates
+	 * @param listener
+	 * @throws Exception
+	 */
+	public void screen(ArrayList<String> adjustment, List<String> candidates, CoxScreeningListener listener) throws Exception {
+		double[] adjustmentBeta = new double[adjustment.size()];
+		if (!adjustment.isEmpty()) {
+			int i = 0;
+			for (CoxCoefficient coe : fit(adjustment).getCoefficientsList().values()) {
+				adjustmentBeta[i] = coe.getCoeff();
+				i++;
+			}
+		}
+		ArrayList<ArrayList<String>> models = new ArrayList<ArrayList<String>>(candidates.size());
+		ArrayList<double[]> betas = new ArrayList<double[]>(candidates.size());
+		for (String candidate : candidates) {
+			ArrayList<String> variables = new ArrayList<String>(adjustment);
+			variables.add(candidate);
+			models.add(variables);
+			double[] beta = new double[variables.size()];
+			System.arraycopy(adjustmentBeta, 0, beta, 0, adjustmentBeta.length);
+			betas.add(beta);
+		}
+		screen(models, betas, listener);
+	}
+
+	private void screen(List<ArrayList<String>> models, List<double[]> betas, CoxScreeningListener listener) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			//bound the fits waiting to be delivered
+			ArrayDeque<Future<CoxInfo>> pending = new ArrayDeque<Future<CoxInfo>>();
+			int submitted = 0;
+			for (int delivered = 0; delivered < models.size(); delivered++) {
+				while (submitted < models.size() && pending.size() < 2 * threads) {
+					final ArrayList<String> variables = models.get(submitted);
+					final double[] beta = betas.get(submitted);
+					pending.add(executor.submit(new Callable<CoxInfo>() {
+						@Override
+						public CoxInfo call() throws Exception {
+							return fit(variables, beta);
+						}
+					}));
+					submitted++;
+				}
+				listener.model(models.get(delivered), get(pending.removeFirst()));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static CoxInfo get(Future<CoxInfo> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Covariate and strata arrays reused by the fits of one thread.
+	 */
+	private static class Buffers {
+
+		private final int n;
+		private double[][] covar = new double[0][];
+		private final int[] strata;
+
+		Buffers(int n) {
+			this.n = n;
+			strata = new int[n];
+		}
+
+		double[][] covar(int nvar) {
+			if (covar.length < nvar) {
+				double[][] grown = new double[nvar][];
+				System.arraycopy(covar, 0, grown, 0, covar.length);
+				for (int i = covar.length; i < nvar; i++) {
+					grown[i] = new double[n];
+				}
+				covar = grown;
+			}
+			return covar;
+		}
+	}
+}
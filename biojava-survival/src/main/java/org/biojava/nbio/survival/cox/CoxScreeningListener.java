@@ -0,0 +1,39 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.survival.cox;
+
+import java.util.ArrayList;
+
+/**
+ * Receives the models fit by {@link CoxScreening}, in the order they were given.
+ *
+ * @since 5.1.2
+ */
+public interface CoxScreeningListener {
+
+	/**
+	 *
+	 * @param variables the variables of the model
+	 * @param coxInfo the summary of the fit
+	 * @throws Exception
+	 */
+	void model(ArrayList<String> variables, CoxInfo coxInfo) throws Exception;
+}
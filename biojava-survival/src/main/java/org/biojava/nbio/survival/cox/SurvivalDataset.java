@@ -0,0 +1,350 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.survival.cox;
+
+import org.biojava.nbio.survival.data.WorkSheet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Column oriented survival data for Cox regression: the time, status, weight and offset of each
+ * subject and each variable are stored as primitive arrays, the strata and clusters as codes of
+ * interned labels. The order of the subjects by time, and by strata then time, is computed once,
+ * so that many models can be fit on the same dataset with
+ * {@link CoxR#process(ArrayList, SurvivalDataset, boolean, boolean, boolean, boolean)}.
+ * Fitting does not modify the dataset, so models can be fit concurrently once it is built.
+ *
+ * @since 5.1.2
+ */
+public class SurvivalDataset {
+
+	private final int size;
+	private final double[] time;
+	private final int[] status;
+	private final double[] weight;
+	private final double[] offset;
+	private int[] strata;
+	private int[] cluster;
+	private String[] clusterLabels;
+	private final LinkedHashMap<String, double[]> variables = new LinkedHashMap<String, double[]>();
+
+	private int[] timeOrder;
+	private int[] strataOrder;
+
+	/**
+	 *
+	 * @param time the event or censor time of each subject
+	 * @param status the status of each subject, event=1 and censor=0
+	 */
+	public SurvivalDataset(double[] time, int[] status) {
+		if (time.length != status.length) {
+			throw new IllegalArgumentException("time and status must have the same length");
+		}
+		size = time.length;
+		this.time = time.clone();
+		this.status = status.clone();
+		weight = new double[size];
+		Arrays.fill(weight, 1.0);
+		offset = new double[size];
+		strata = new int[size];
+	}
+
+	/**
+	 * Creates a dataset from survival info, with all their variables. Variables given as labels are
+	 * converted to numbers first as {@link SurvivalInfoHelper#categorizeData(ArrayList)} does, and
+	 * values missing for a subject are NaN. The strata of the survival info are taken as stratum labels.
+	 *
+	 * @param data
+	 * @return
+	 */
+	public static SurvivalDataset fromSurvivalInfoList(ArrayList<SurvivalInfo> data) {
+		SurvivalInfoHelper.categorizeData(data);
+
+		int n = data.size();
+		double[] time = new double[n];
+		int[] status = new int[n];
+		for (int i = 0; i < n; i++) {
+			time[i] = data.get(i).getTime();
+			status[i] = data.get(i).getStatus();
+		}
+		SurvivalDataset dataset = new SurvivalDataset(time, status);
+
+		String[] strata = new String[n];
+		String[] clusters = new String[n];
+		for (int i = 0; i < n; i++) {
+			SurvivalInfo si = data.get(i);
+			dataset.weight[i] = si.getWeight();
+			dataset.offset[i] = si.getOffset();
+			strata[i] = String.valueOf(si.getStrata());
+			clusters[i] = si.getClusterValue();
+			for (String variable : si.getDataVariables()) {
+				double[] values = dataset.variables.get(variable);
+				if (values == null) {
+					values = new double[n];
+					Arrays.fill(values, Double.NaN);
+					dataset.variables.put(variable, values);
+				}
+				Double value = si.getVariable(variable);
+				if (value != null) {
+					values[i] = value;
+				}
+			}
+		}
+		dataset.setStrata(strata);
+		dataset.setClusters(clusters);
+		return dataset;
+	}
+
+	/**
+	 * Creates a dataset from the rows of a worksheet, reading each cell once, with the same conventions
+	 * as {@link CoxHelper#process(WorkSheet, String, String, String, String, String, ArrayList, boolean, boolean)}:
+	 * rows with a weight &lt;= 0 are skipped and variables given as labels are converted to numbers.
+	 *
+	 * @param worksheet
+	 * @param timeColumn The column representing the event/censor time
+	 * @param statusColumn The column representing an event=1 and censor=0
+	 * @param weightColumn The column of the weights, or null
+	 * @param strataColumn The column of the strata, or null
+	 * @param clusterColumn The column of the clusters, or null
+	 * @param variables The variables to read
+	 * @return
+	 * @throws Exception
+	 */
+	public static SurvivalDataset fromWorkSheet(WorkSheet worksheet, String timeColumn, String statusColumn, String weightColumn, String strataColumn, String clusterColumn, List<String> variables) throws Exception {
+		ArrayList<SurvivalInfo> survivalInfoList = new ArrayList<SurvivalInfo>();
+		int i = 1;
+		for (String row : worksheet.getRows()) {
+			double weight = 1.0;
+			if (weightColumn != null && weightColumn.length() > 0) {
+				weight = worksheet.getCellDouble(row, weightColumn);
+			}
+			if (weight <= 0) {
+				i++;
+				continue;
+			}
+			SurvivalInfo si = new SurvivalInfo(worksheet.getCellDouble(row, timeColumn), worksheet.getCellDouble(row, statusColumn).intValue());
+			si.setOrder(i);
+			si.setWeight(weight);
+			if (strataColumn != null && strataColumn.length() > 0) {
+				si.setStrata(worksheet.getCellDouble(row, strataColumn).intValue());
+			}
+			if (clusterColumn != null && clusterColumn.length() > 0) {
+				si.setClusterValue(worksheet.getCell(row, clusterColumn));
+			}
+			for (String column : variables) {
+				if (!column.contains(":")) {
+					si.addUnknownDataTypeVariable(column, worksheet.getCell(row, column));
+				}
+			}
+			survivalInfoList.add(si);
+			i++;
+		}
+		return fromSurvivalInfoList(survivalInfoList);
+	}
+
+	/**
+	 *
+	 * @return the number of subjects
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @param weights the case weight of each subject
+	 */
+	public void setWeights(double[] weights) {
+		checkLength(weights.length);
+		System.arraycopy(weights, 0, weight, 0, size);
+	}
+
+	/**
+	 *
+	 * @param offsets the offset of the linear predictor of each subject
+	 */
+	public void setOffsets(double[] offsets) {
+		checkLength(offsets.length);
+		System.arraycopy(offsets, 0, offset, 0, size);
+	}
+
+	/**
+	 *
+	 * @param labels the stratum label of each subject
+	 */
+	public void setStrata(String[] labels) {
+		checkLength(labels.length);
+		strata = intern(labels, new LinkedHashMap<String, Integer>());
+		strataOrder = null;
+	}
+
+	/**
+	 *
+	 * @param labels the cluster label of each subject, used for the robust variance
+	 */
+	public void setClusters(String[] labels) {
+		checkLength(labels.length);
+		LinkedHashMap<String, Integer> codes = new LinkedHashMap<String, Integer>();
+		cluster = intern(labels, codes);
+		clusterLabels = codes.keySet().toArray(new String[codes.size()]);
+	}
+
+	/**
+	 * Adds or replaces a variable.
+	 *
+	 * @param name
+	 * @param values the value of the variable for each subject
+	 */
+	public void addVariable(String name, double[] values) {
+		checkLength(values.length);
+		variables.put(name, values.clone());
+	}
+
+	/**
+	 *
+	 * @return the names of the variables
+	 */
+	public ArrayList<String> getVariables() {
+		return new ArrayList<String>(variables.keySet());
+	}
+
+	/**
+	 * Returns the values of a variable for each subject, the product of two variables for an
+	 * interaction <code>variable1:variable2</code> that was not added as such.
+	 *
+	 * @param name
+	 * @return the values, which must not be modified
+	 */
+	public double[] getVariable(String name) {
+		double[] values = variables.get(name);
+		if (values == null) {
+			int colon = name.indexOf(':');
+			if (colon < 0) {
+				throw new IllegalArgumentException("Variable " + name + " is not in the dataset");
+			}
+			double[] values1 = getVariable(name.substring(0, colon));
+			double[] values2 = getVariable(name.substring(colon + 1));
+			values = new double[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = values1[i] * values2[i];
+			}
+		}
+		return values;
+	}
+
+	double[] getTime() {
+		return time;
+	}
+
+	int[] getStatus() {
+		return status;
+	}
+
+	double[] getWeight() {
+		return weight;
+	}
+
+	double[] getOffset() {
+		return offset;
+	}
+
+	int[] getStrataCodes() {
+		return strata;
+	}
+
+	/**
+	 *
+	 * @return the cluster label of each subject, or null if no clusters were set
+	 */
+	String getClusterLabel(int subject) {
+		return cluster == null ? null : clusterLabels[cluster[subject]];
+	}
+
+	boolean hasClusters() {
+		return cluster != null;
+	}
+
+	/**
+	 * The subjects in increasing time, deaths before censored subjects at the same time as
+	 * {@link SurvivalInfo#compareTo(SurvivalInfo)}, within increasing strata if useStrata.
+	 * Subjects that compare equal keep their order.
+	 *
+	 * @param useStrata
+	 * @return the order, which must not be modified
+	 */
+	synchronized int[] getOrder(final boolean useStrata) {
+		if (useStrata ? strataOrder == null : timeOrder == null) {
+			Integer[] subjects = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				subjects[i] = i;
+			}
+			final int[] codes = strata;
+			Arrays.sort(subjects, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					if (useStrata && codes[a] != codes[b]) {
+						return codes[a] < codes[b] ? -1 : 1;
+					}
+					if (time[a] != time[b]) {
+						return time[a] < time[b] ? -1 : 1;
+					}
+					if (status[a] == status[b]) {
+						return 0;
+					}
+					return status[a] == 1 ? -1 : 1;
+				}
+			});
+			int[] order = new int[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = subjects[i];
+			}
+			if (useStrata) {
+				strataOrder = order;
+			} else {
+				timeOrder = order;
+			}
+		}
+		return useStrata ? strataOrder : timeOrder;
+	}
+
+	private void checkLength(int length) {
+		if (length != size) {
+			throw new IllegalArgumentException("Expected " + size + " values, got " + length);
+		}
+	}
+
+	private static int[] intern(String[] labels, LinkedHashMap<String, Integer> codes) {
+		int[] result = new int[labels.length];
+		for (int i = 0; i < labels.length; i++) {
+			Integer code = codes.get(labels[i]);
+			if (code == null) {
+				code = codes.size();
+				codes.put(labels[i], code);
+			}
+			result[i] = code;
+		}
+		return result;
+	}
+}
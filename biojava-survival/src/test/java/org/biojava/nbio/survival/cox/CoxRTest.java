@@ -0,0 +1,193 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.survival.cox;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test that {@link CoxR} fits the same model on a {@link SurvivalDataset} as
+ * on the equivalent list of {@link SurvivalInfo}.
+ *
+ * @since 5.1.2
+ *
+ */
+public class CoxRTest {
+
+	private static final int SIZE = 200;
+	private static final double DELTA = 1e-9;
+
+	/**
+	 * Random subjects with tied times, two covariates a and b that change the
+	 * hazard and a weight. Even subjects are in stratum 0 with times below 50,
+	 * odd subjects in stratum 1 with times above, so that the end of each stratum
+	 * in time order is known: the subject at time 49 for stratum 0 and the one
+	 * at time 99 for stratum 1.
+	 */
+	static class Subjects {
+		final double[] time = new double[SIZE];
+		final int[] status = new int[SIZE];
+		final double[] weight = new double[SIZE];
+		final int[] stratum = new int[SIZE];
+		final double[] a = new double[SIZE];
+		final double[] b = new double[SIZE];
+
+		Subjects(long seed) {
+			Random rnd = new Random(seed);
+			for (int i = 0; i < SIZE; i++) {
+				a[i] = rnd.nextGaussian();
+				b[i] = rnd.nextInt(3);
+				stratum[i] = i % 2;
+				double hazard = Math.exp(0.7 * a[i] - 0.4 * b[i]);
+				int t = 1 + Math.min(47, (int) (-10 * Math.log(rnd.nextDouble()) / hazard));
+				time[i] = 50 * stratum[i] + t;
+				status[i] = rnd.nextDouble() < 0.7 ? 1 : 0;
+				weight[i] = 0.5 + rnd.nextDouble();
+			}
+			time[SIZE - 2] = 49;
+			time[SIZE - 1] = 99;
+		}
+
+		ArrayList<SurvivalInfo> toList() {
+			ArrayList<SurvivalInfo> data = new ArrayList<SurvivalInfo>();
+			for (int i = 0; i < SIZE; i++) {
+				SurvivalInfo si = new SurvivalInfo(time[i], status[i]);
+				si.setWeight(weight[i]);
+				si.setStrata(i >= SIZE - 2 ? 1 : 0);
+				si.addContinuousVariable("a", a[i]);
+				si.addContinuousVariable("b", b[i]);
+				data.add(si);
+			}
+			return data;
+		}
+
+		SurvivalDataset toDataset() {
+			SurvivalDataset dataset = new SurvivalDataset(time, status);
+			dataset.setWeights(weight);
+			String[] labels = new String[SIZE];
+			for (int i = 0; i < SIZE; i++) {
+				labels[i] = "stratum" + stratum[i];
+			}
+			dataset.setStrata(labels);
+			dataset.addVariable("a", a);
+			dataset.addVariable("b", b);
+			return dataset;
+		}
+	}
+
+	private static ArrayList<String> variables(String... names) {
+		return new ArrayList<String>(Arrays.asList(names));
+	}
+
+	private static void assertSameFit(CoxInfo expected, CoxInfo actual) {
+		assertEquals(expected.getNumberCoefficients(), actual.getNumberCoefficients());
+		for (String name : expected.getCoefficientsList().keySet()) {
+			CoxCoefficient e = expected.getCoefficient(name);
+			CoxCoefficient c = actual.getCoefficient(name);
+			assertNotNull(name, c);
+			assertEquals(name, e.getCoeff(), c.getCoeff(), DELTA);
+			assertEquals(name, e.getStdError(), c.getStdError(), DELTA);
+		}
+		assertMatrixEquals(expected.getVariance(), actual.getVariance());
+		assertEquals(expected.loglikInit, actual.loglikInit, DELTA);
+		assertEquals(expected.loglikFinal, actual.loglikFinal, DELTA);
+	}
+
+	private static void assertMatrixEquals(double[][] expected, double[][] actual) {
+		if (expected == null) {
+			assertNull(actual);
+			return;
+		}
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals(expected[i], actual[i], DELTA);
+		}
+	}
+
+	private static void assertSameFit(ArrayList<String> variables, boolean useStrata, boolean useWeighted,
+			boolean robust) throws Exception {
+		Subjects subjects = new Subjects(42);
+		CoxInfo expected = new CoxR().process(variables, subjects.toList(), useStrata, useWeighted, robust, false);
+		CoxInfo actual = new CoxR().process(variables, subjects.toDataset(), useStrata, useWeighted, robust, false);
+		assertSameFit(expected, actual);
+		if (robust) {
+			assertMatrixEquals(expected.getNaiveVariance(), actual.getNaiveVariance());
+			for (String name : expected.getCoefficientsList().keySet()) {
+				assertEquals(name, expected.getCoefficient(name).getRobustStdError(),
+						actual.getCoefficient(name).getRobustStdError(), DELTA);
+			}
+		}
+	}
+
+	@Test
+	public void testSameAsList() throws Exception {
+		assertSameFit(variables("a", "b"), false, false, false);
+	}
+
+	@Test
+	public void testStrata() throws Exception {
+		assertSameFit(variables("a", "b"), true, false, false);
+	}
+
+	@Test
+	public void testWeights() throws Exception {
+		assertSameFit(variables("a", "b"), false, true, false);
+	}
+
+	@Test
+	public void testInteraction() throws Exception {
+		assertSameFit(variables("a", "b", "a:b"), true, true, false);
+	}
+
+	@Test
+	public void testRobust() throws Exception {
+		assertSameFit(variables("a", "b", "a:b"), true, true, true);
+	}
+
+	/**
+	 * The strata change the fit, so that {@link #testStrata()} checks that the
+	 * dataset derives the end of each stratum.
+	 */
+	@Test
+	public void testStrataChangeFit() throws Exception {
+		SurvivalDataset dataset = new Subjects(42).toDataset();
+		CoxInfo stratified = new CoxR().process(variables("a", "b"), dataset, true, false, false, false);
+		CoxInfo unstratified = new CoxR().process(variables("a", "b"), dataset, false, false, false, false);
+		assertNotEquals(unstratified.getCoefficient("a").getCoeff(), stratified.getCoefficient("a").getCoeff(), 1e-6);
+	}
+
+	/**
+	 * The dataset is not modified by a fit: fitting it again gives the same result.
+	 */
+	@Test
+	public void testDatasetUnchanged() throws Exception {
+		SurvivalDataset dataset = new Subjects(7).toDataset();
+		CoxInfo first = new CoxR().process(variables("a", "a:b"), dataset, true, true, false, false);
+		assertEquals(variables("a", "b"), dataset.getVariables());
+		CoxInfo second = new CoxR().process(variables("a", "a:b"), dataset, true, true, false, false);
+		assertSameFit(first, second);
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.survival.cox;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test that the parallel fits of {@link CoxScreening} are those of
+ * {@link CoxR} fitting each model on its own.
+ *
+ * @since 5.1.2
+ *
+ */
+public class CoxScreeningTest {
+
+	private static final int SIZE = 150;
+	private static final int CANDIDATES = 24;
+
+	/**
+	 * Subjects with an age, a treatment and CANDIDATES gene variables, of which
+	 * g0 changes the hazard, in two strata and with weights.
+	 */
+	private static SurvivalDataset dataset() {
+		Random rnd = new Random(11);
+		double[] time = new double[SIZE];
+		int[] status = new int[SIZE];
+		double[] weights = new double[SIZE];
+		String[] strata = new String[SIZE];
+		double[] age = new double[SIZE];
+		double[] treatment = new double[SIZE];
+		double[][] genes = new double[CANDIDATES][SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			age[i] = 40 + 30 * rnd.nextDouble();
+			treatment[i] = rnd.nextInt(2);
+			for (int g = 0; g < CANDIDATES; g++) {
+				genes[g][i] = rnd.nextGaussian();
+			}
+			double hazard = Math.exp(0.03 * (age[i] - 55) - 0.6 * treatment[i] + 0.5 * genes[0][i]);
+			time[i] = 1 + (int) (-20 * Math.log(rnd.nextDouble()) / hazard);
+			status[i] = rnd.nextDouble() < 0.75 ? 1 : 0;
+			weights[i] = 0.5 + rnd.nextDouble();
+			strata[i] = rnd.nextBoolean() ? "site1" : "site2";
+		}
+		SurvivalDataset dataset = new SurvivalDataset(time, status);
+		dataset.setWeights(weights);
+		dataset.setStrata(strata);
+		dataset.addVariable("age", age);
+		dataset.addVariable("treatment", treatment);
+		for (int g = 0; g < CANDIDATES; g++) {
+			dataset.addVariable(gene(g), genes[g]);
+		}
+		return dataset;
+	}
+
+	private static String gene(int g) {
+		return "g" + g;
+	}
+
+	private static List<String> candidates() {
+		List<String> candidates = new ArrayList<String>();
+		for (int g = 0; g < CANDIDATES; g++) {
+			candidates.add(gene(g));
+		}
+		return candidates;
+	}
+
+	/**
+	 * Collects the models in the order the listener receives them.
+	 */
+	private static class Collector implements CoxScreeningListener {
+		final List<ArrayList<String>> models = new ArrayList<ArrayList<String>>();
+		final List<CoxInfo> fits = new ArrayList<CoxInfo>();
+
+		@Override
+		public void model(ArrayList<String> variables, CoxInfo coxInfo) {
+			models.add(variables);
+			fits.add(coxInfo);
+		}
+	}
+
+	private static void assertSameFit(CoxInfo expected, CoxInfo actual, double delta) {
+		assertEquals(expected.getNumberCoefficients(), actual.getNumberCoefficients());
+		for (String name : expected.getCoefficientsList().keySet()) {
+			CoxCoefficient e = expected.getCoefficient(name);
+			CoxCoefficient c = actual.getCoefficient(name);
+			assertNotNull(name, c);
+			assertEquals(name, e.getCoeff(), c.getCoeff(), delta);
+			assertEquals(name, e.getStdError(), c.getStdError(), delta);
+		}
+		double[][] expectedVariance = expected.getVariance();
+		double[][] variance = actual.getVariance();
+		assertEquals(expectedVariance.length, variance.length);
+		for (int i = 0; i < expectedVariance.length; i++) {
+			assertArrayEquals(expectedVariance[i], variance[i], delta);
+		}
+		assertEquals(expected.loglikFinal, actual.loglikFinal, delta);
+	}
+
+	@Test
+	public void testSameAsSequential() throws Exception {
+		SurvivalDataset dataset = dataset();
+		List<ArrayList<String>> models = new ArrayList<ArrayList<String>>();
+		for (String candidate : candidates()) {
+			models.add(new ArrayList<String>(Arrays.asList(candidate)));
+			models.add(new ArrayList<String>(Arrays.asList("age", "treatment", candidate)));
+		}
+		models.add(new ArrayList<String>(Arrays.asList("age", "g1", "age:g1")));
+
+		CoxScreening screening = new CoxScreening(dataset, true, true);
+		screening.setThreads(4);
+		Collector collector = new Collector();
+		screening.screen(models, collector);
+
+		assertEquals(models, collector.models);
+		CoxR coxR = new CoxR();
+		for (int m = 0; m < models.size(); m++) {
+			CoxInfo expected = coxR.process(models.get(m), dataset, true, true, false, false);
+			CoxInfo actual = collector.fits.get(m);
+			assertSameFit(expected, actual, 1e-9);
+			assertEquals(expected.loglikInit, actual.loglikInit, 1e-9);
+			assertEquals(SIZE, actual.numSamples);
+		}
+	}
+
+	/**
+	 * The candidate models started at the coefficients of the adjustment model
+	 * converge to the fit started at 0.
+	 */
+	@Test
+	public void testWarmStartSameAsColdStart() throws Exception {
+		SurvivalDataset dataset = dataset();
+		ArrayList<String> adjustment = new ArrayList<String>(Arrays.asList("age", "treatment"));
+		CoxScreening screening = new CoxScreening(dataset, true, true);
+		screening.setThreads(3);
+		Collector collector = new Collector();
+		screening.screen(adjustment, candidates(), collector);
+
+		assertEquals(CANDIDATES, collector.models.size());
+		CoxR coxR = new CoxR();
+		for (int g = 0; g < CANDIDATES; g++) {
+			ArrayList<String> variables = new ArrayList<String>(adjustment);
+			variables.add(gene(g));
+			assertEquals(variables, collector.models.get(g));
+			assertSameFit(screening.fit(variables), collector.fits.get(g), 1e-6);
+			assertSameFit(coxR.process(variables, dataset, true, true, false, false), collector.fits.get(g), 1e-6);
+		}
+	}
+}